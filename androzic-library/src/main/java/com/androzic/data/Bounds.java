@@ -52,6 +52,14 @@ public class Bounds
 			maxLon = longitude;
 	}
 
+	public void clear()
+	{
+		minLat = Double.MAX_VALUE;
+		maxLat = Double.MIN_VALUE;
+		minLon = Double.MAX_VALUE;
+		maxLon = Double.MIN_VALUE;
+	}
+
 	public void fix()
 	{
 		if (minLat < -90d)
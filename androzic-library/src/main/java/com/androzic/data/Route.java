@@ -64,7 +64,7 @@ public class Route
 	{
 		if (lastWaypoint != null)
 		{
-			distance += Geo.distance(lastWaypoint.latitude, lastWaypoint.longitude, waypoint.latitude, waypoint.longitude);
+			distance += Geo.distance(lastWaypoint.latitude, lastWaypoint.longitude, waypoint.latitude, waypoint.longitude, Geo.ACCURATE);
 		}
 		lastWaypoint = waypoint;
 		waypoints.add(lastWaypoint);		
@@ -97,7 +97,7 @@ public class Route
 		{
 			for (int i = 0; i < waypoints.size()-1; i++)
 			{
-				double distance = Geo.distance(waypoint.latitude, waypoint.longitude, waypoints.get(i+1).latitude, waypoints.get(i+1).longitude);
+				double distance = Geo.distance(waypoint.latitude, waypoint.longitude, waypoints.get(i+1).latitude, waypoints.get(i+1).longitude, Geo.ACCURATE);
 				double bearing1 = Geo.bearing(waypoint.latitude, waypoint.longitude, waypoints.get(i+1).latitude, waypoints.get(i+1).longitude);
 				double dtk1 = Geo.bearing(waypoints.get(i).latitude, waypoints.get(i).longitude, waypoints.get(i+1).latitude, waypoints.get(i+1).longitude);
 				double cxtk1 = Math.abs(Geo.xtk(distance, dtk1, bearing1));
@@ -175,7 +175,7 @@ public class Route
 		{
 			for (int i = first; i < last; i++)
 			{
-				dist += Geo.distance(waypoints.get(i).latitude, waypoints.get(i).longitude, waypoints.get(i+1).latitude, waypoints.get(i+1).longitude);
+				dist += Geo.distance(waypoints.get(i).latitude, waypoints.get(i).longitude, waypoints.get(i+1).latitude, waypoints.get(i+1).longitude, Geo.ACCURATE);
 			}
 		}
 		return dist;
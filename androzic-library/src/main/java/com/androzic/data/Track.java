@@ -20,14 +20,31 @@
 
 package com.androzic.data;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
+import java.util.RandomAccess;
 
 import com.androzic.util.Geo;
 
+/**
+ * Track points are stored per segment in primitive columns (struct of arrays) rather than as
+ * objects, segments act as chunks of at most {@link #SEGMENT_CAPACITY} points. Points are read
+ * with {@link Cursor} or with index accessors of {@link TrackSegment}, {@link TrackPoint} objects
+ * are only created by compatibility methods.
+ */
 public class Track
 {
 	private static final int SEGMENT_CAPACITY = 5000;
+	private static final int INITIAL_CAPACITY = 16;
+	// Projections kept for current and two previous maps
+	private static final int PROJECTIONS = 3;
+	// Spatial index: points per chunk and chunks per group, as powers of two
+	private static final int CHUNK_SHIFT = 6;
+	private static final int GROUP_SHIFT = 4;
+	private static final double METERS_PER_DEGREE = 111319.5;
 
 	public String name;
 	public String description;
@@ -45,9 +62,24 @@ public class Track
 
 	private final List<TrackSegment> segments = new ArrayList<TrackSegment>(1);
 	private TrackSegment lastSegment;
-	private TrackPoint lastTrackPoint;
+	private int pointCount;
+	private final TrackStatistics statistics = new TrackStatistics();
 
-	public class TrackPoint
+	/**
+	 * Converts coordinates to map pixels in bulk.
+	 */
+	public interface Projector
+	{
+		/**
+		 * @param xy receives x and y of each point in pairs
+		 */
+		void project(double[] lat, double[] lon, int count, int[] xy);
+	}
+
+	/**
+	 * Detached copy of a track point. Changing it does not affect the track.
+	 */
+	public static class TrackPoint
 	{
 		public boolean continous;
 		public double latitude;
@@ -57,10 +89,6 @@ public class Track
 		public double bearing;
 		public double accuracy;
 		public long time;
-		// Map position cache fields
-		public boolean dirty = true;
-		public int x = 0;
-		public int y = 0;
 
 		public TrackPoint()
 		{
@@ -87,19 +115,555 @@ public class Track
 		}
 	}
 
+	/**
+	 * Chunk of track points. Points are appended to the tail and bounded tracks remove them
+	 * from the head, so both operations take constant time and stored points never move.
+	 * Accessors do not check index against size, segment should be locked while it is read
+	 * if track is being recorded.
+	 */
 	public class TrackSegment
 	{
 		public boolean independent;
 		public final Bounds bounds = new Bounds();
-		private final List<TrackPoint> trackpoints = new ArrayList<TrackPoint>(0);
+
+		private int first = 0;
+		private int size = 0;
+		private int removed = 0;
+		private double[] latitudes = new double[0];
+		private double[] longitudes = new double[0];
+		private float[] elevations = new float[0];
+		private float[] speeds = new float[0];
+		private float[] bearings = new float[0];
+		private float[] accuracies = new float[0];
+		private long[] times = new long[0];
+		private final BitSet continuity = new BitSet();
+		// Most recently used first
+		private final Projection[] projections = new Projection[PROJECTIONS];
+		// Bounding boxes (min lat, max lat, min lon, max lon) of point chunks and of chunk groups.
+		// Chunk box includes the first point of the next chunk, so it covers all chunk legs.
+		private double[] chunks = new double[0];
+		private double[] groups = new double[0];
 
 		public TrackSegment()
 		{
 		}
 
+		public int size()
+		{
+			return size;
+		}
+
+		public double getLatitude(int i)
+		{
+			return latitudes[first + i];
+		}
+
+		public double getLongitude(int i)
+		{
+			return longitudes[first + i];
+		}
+
+		public float getElevation(int i)
+		{
+			return elevations[first + i];
+		}
+
+		public float getSpeed(int i)
+		{
+			return speeds[first + i];
+		}
+
+		public float getBearing(int i)
+		{
+			return bearings[first + i];
+		}
+
+		public float getAccuracy(int i)
+		{
+			return accuracies[first + i];
+		}
+
+		public long getTime(int i)
+		{
+			return times[first + i];
+		}
+
+		public boolean isContinous(int i)
+		{
+			return continuity.get(first + i);
+		}
+
+		/**
+		 * Returns true if all segment points are projected with specified key.
+		 */
+		public boolean isProjected(long key)
+		{
+			for (Projection projection : projections)
+			{
+				if (projection != null && projection.key == key)
+					return projection.end == first + size;
+			}
+			return false;
+		}
+
+		/**
+		 * Returns map pixel coordinates of segment points. Coordinates are cached for
+		 * several recently used keys, only points added after last call are projected.
+		 *
+		 * @param key identifies map and zoom that projector belongs to
+		 */
+		public Projection getProjection(long key, Projector projector)
+		{
+			int k = 0;
+			while (k < PROJECTIONS - 1 && projections[k] != null && projections[k].key != key)
+				k++;
+			Projection projection = projections[k];
+			if (projection == null || projection.key != key)
+				projection = new Projection(this, key);
+			System.arraycopy(projections, 0, projections, 1, k);
+			projections[0] = projection;
+			projection.extend(projector);
+			return projection;
+		}
+
+		/**
+		 * Returns <b>new</b> track point object for the point at specified position.
+		 */
+		public TrackPoint getPoint(int i)
+		{
+			return getPointAt(first + i);
+		}
+
+		/**
+		 * Returns read-only view of segment points, points are created on access. Iterate segment
+		 * by index instead where possible.
+		 */
 		public List<TrackPoint> getPoints()
 		{
-			return trackpoints;
+			return new PointList(new TrackSegment[] {this}, new int[] {first}, new int[] {0, size});
+		}
+
+		private TrackPoint getPointAt(int j)
+		{
+			return new TrackPoint(continuity.get(j), latitudes[j], longitudes[j], elevations[j], speeds[j], bearings[j], accuracies[j], times[j]);
+		}
+
+		/**
+		 * Returns storage index of the first point. Storage indices of points do not change
+		 * when points are removed from the head.
+		 */
+		int offset()
+		{
+			return first;
+		}
+
+		/**
+		 * Returns storage index after the last point.
+		 */
+		private int end()
+		{
+			return first + size;
+		}
+
+		private void add(boolean continous, double lat, double lon, double elev, double spd, double brn, double acc, long t)
+		{
+			int j = first + size;
+			if (j == latitudes.length)
+				resize(Math.min(Math.max(INITIAL_CAPACITY, j * 2), Math.max(SEGMENT_CAPACITY + 1, j + 1)));
+			latitudes[j] = lat;
+			longitudes[j] = lon;
+			elevations[j] = (float) elev;
+			speeds[j] = (float) spd;
+			bearings[j] = (float) brn;
+			accuracies[j] = (float) acc;
+			times[j] = t;
+			continuity.set(j, continous);
+			size++;
+			int c = j >> CHUNK_SHIFT;
+			extendChunk(c, lat, lon);
+			if (c > 0 && (j & ((1 << CHUNK_SHIFT) - 1)) == 0)
+				extendChunk(c - 1, lat, lon);
+		}
+
+		private void extendChunk(int c, double lat, double lon)
+		{
+			chunks = extendBox(chunks, c, lat, lon);
+			groups = extendBox(groups, c >> GROUP_SHIFT, lat, lon);
+		}
+
+		/**
+		 * Returns true if any leg between points <code>from</code> and <code>to</code> can
+		 * intersect the area. Only bounding boxes of point chunks are checked.
+		 */
+		public boolean intersects(int from, int to, Bounds area)
+		{
+			int c = (first + from) >> CHUNK_SHIFT;
+			int last = (first + Math.max(from, to - 1)) >> CHUNK_SHIFT;
+			while (c <= last)
+			{
+				if (!boxIntersects(groups, c >> GROUP_SHIFT, area))
+				{
+					c = ((c >> GROUP_SHIFT) + 1) << GROUP_SHIFT;
+					continue;
+				}
+				if (boxIntersects(chunks, c, area))
+					return true;
+				c++;
+			}
+			return false;
+		}
+
+		/**
+		 * Looks for points within specified distance, chunks that are farther are skipped. When
+		 * the nearest point is looked for, radius shrinks as closer points are found. Distance
+		 * is approximated on a plane tangent at the query point.
+		 *
+		 * @param radius2 square of radius in meters
+		 * @param base index of the first segment point in track
+		 * @param result receives track indices of found points if not null
+		 * @return index of the nearest point or -1, square of distance is put in <code>radius2</code>
+		 */
+		private int find(double lat, double lon, double kx, double[] radius2, int base, IntList result)
+		{
+			int nearest = -1;
+			int end = first + size;
+			int groupCount = ((end - 1) >> (CHUNK_SHIFT + GROUP_SHIFT)) + 1;
+			for (int g = first >> (CHUNK_SHIFT + GROUP_SHIFT); g < groupCount; g++)
+			{
+				if (boxDistance2(groups, g, lat, lon, kx) > radius2[0])
+					continue;
+				int cend = Math.min((g + 1) << GROUP_SHIFT, ((end - 1) >> CHUNK_SHIFT) + 1);
+				for (int c = Math.max(g << GROUP_SHIFT, first >> CHUNK_SHIFT); c < cend; c++)
+				{
+					if (boxDistance2(chunks, c, lat, lon, kx) > radius2[0])
+						continue;
+					int pend = Math.min((c + 1) << CHUNK_SHIFT, end);
+					for (int j = Math.max(c << CHUNK_SHIFT, first); j < pend; j++)
+					{
+						double dx = (longitudes[j] - lon) * kx;
+						double dy = (latitudes[j] - lat) * METERS_PER_DEGREE;
+						double d2 = dx * dx + dy * dy;
+						if (d2 > radius2[0])
+							continue;
+						if (result != null)
+						{
+							result.add(base + j - first);
+						}
+						else
+						{
+							radius2[0] = d2;
+							nearest = base + j - first;
+						}
+					}
+				}
+			}
+			return nearest;
+		}
+
+		private void removeFirst()
+		{
+			first++;
+			size--;
+			removed++;
+			// Bounds are left loose until enough points are gone to keep amortized cost constant
+			if (removed * 8 >= size)
+			{
+				bounds.clear();
+				for (int j = first; j < first + size; j++)
+					bounds.extend(latitudes[j], longitudes[j]);
+				removed = 0;
+			}
+		}
+
+		/**
+		 * Releases unused capacity, called when segment is complete.
+		 */
+		private void trim()
+		{
+			if (first + size < latitudes.length)
+				resize(first + size);
+		}
+
+		private void resize(int capacity)
+		{
+			latitudes = Arrays.copyOf(latitudes, capacity);
+			longitudes = Arrays.copyOf(longitudes, capacity);
+			elevations = Arrays.copyOf(elevations, capacity);
+			speeds = Arrays.copyOf(speeds, capacity);
+			bearings = Arrays.copyOf(bearings, capacity);
+			accuracies = Arrays.copyOf(accuracies, capacity);
+			times = Arrays.copyOf(times, capacity);
+			for (Projection projection : projections)
+			{
+				if (projection != null)
+					projection.xy = Arrays.copyOf(projection.xy, capacity * 2);
+			}
+		}
+	}
+
+	private static double[] extendBox(double[] boxes, int i, double lat, double lon)
+	{
+		int k = i * 4;
+		if (k >= boxes.length)
+		{
+			int length = boxes.length;
+			boxes = Arrays.copyOf(boxes, Math.max(k + 4, length * 2));
+			for (int b = length; b < boxes.length; b += 4)
+			{
+				boxes[b] = Double.MAX_VALUE;
+				boxes[b + 1] = -Double.MAX_VALUE;
+				boxes[b + 2] = Double.MAX_VALUE;
+				boxes[b + 3] = -Double.MAX_VALUE;
+			}
+		}
+		if (lat < boxes[k])
+			boxes[k] = lat;
+		if (lat > boxes[k + 1])
+			boxes[k + 1] = lat;
+		if (lon < boxes[k + 2])
+			boxes[k + 2] = lon;
+		if (lon > boxes[k + 3])
+			boxes[k + 3] = lon;
+		return boxes;
+	}
+
+	private static boolean boxIntersects(double[] boxes, int i, Bounds area)
+	{
+		int k = i * 4;
+		return k < boxes.length && boxes[k] <= area.maxLat && area.minLat <= boxes[k + 1] && boxes[k + 2] <= area.maxLon && area.minLon <= boxes[k + 3];
+	}
+
+	/**
+	 * Returns square of approximate distance in meters from point to a box.
+	 */
+	private static double boxDistance2(double[] boxes, int i, double lat, double lon, double kx)
+	{
+		int k = i * 4;
+		if (k >= boxes.length || boxes[k] > boxes[k + 1])
+			return Double.MAX_VALUE;
+		double dy = lat < boxes[k] ? boxes[k] - lat : lat > boxes[k + 1] ? lat - boxes[k + 1] : 0;
+		double dx = lon < boxes[k + 2] ? boxes[k + 2] - lon : lon > boxes[k + 3] ? lon - boxes[k + 3] : 0;
+		dx *= kx;
+		dy *= METERS_PER_DEGREE;
+		return dx * dx + dy * dy;
+	}
+
+	private static class IntList
+	{
+		int[] values = new int[16];
+		int count = 0;
+
+		void add(int value)
+		{
+			if (count == values.length)
+				values = Arrays.copyOf(values, count * 2);
+			values[count++] = value;
+		}
+	}
+
+	/**
+	 * Map pixel coordinates of segment points.
+	 */
+	public static class Projection
+	{
+		private final TrackSegment segment;
+		private final long key;
+		private int[] xy = new int[0];
+		// Storage index after the last projected point
+		private int end = 0;
+
+		private Projection(TrackSegment segment, long key)
+		{
+			this.segment = segment;
+			this.key = key;
+		}
+
+		public int getX(int i)
+		{
+			return xy[(segment.first + i) * 2];
+		}
+
+		public int getY(int i)
+		{
+			return xy[(segment.first + i) * 2 + 1];
+		}
+
+		private void extend(Projector projector)
+		{
+			int from = Math.max(end, segment.first);
+			int to = segment.first + segment.size;
+			if (from >= to)
+				return;
+			if (xy.length < segment.latitudes.length * 2)
+				xy = Arrays.copyOf(xy, segment.latitudes.length * 2);
+			int count = to - from;
+			if (from == 0)
+			{
+				projector.project(segment.latitudes, segment.longitudes, count, xy);
+			}
+			else
+			{
+				double[] lat = Arrays.copyOfRange(segment.latitudes, from, to);
+				double[] lon = Arrays.copyOfRange(segment.longitudes, from, to);
+				int[] pxy = new int[count * 2];
+				projector.project(lat, lon, count, pxy);
+				System.arraycopy(pxy, 0, xy, from * 2, count * 2);
+			}
+			end = to;
+		}
+	}
+
+	/**
+	 * Read-only forward cursor over all track points. Cursor takes a snapshot of segment
+	 * list and of each segment size when it enters the segment, so points that are added
+	 * while the track is read are not seen.
+	 */
+	public class Cursor
+	{
+		private final TrackSegment[] segs;
+		private int segmentIndex = -1;
+		private TrackSegment segment;
+		private int start = 0;
+		private int end = 0;
+		private int position = -1;
+		private int index = -1;
+
+		private Cursor()
+		{
+			synchronized (Track.this)
+			{
+				segs = segments.toArray(new TrackSegment[segments.size()]);
+			}
+		}
+
+		public boolean moveToNext()
+		{
+			position++;
+			while (position >= end)
+			{
+				segmentIndex++;
+				if (segmentIndex >= segs.length)
+				{
+					segment = null;
+					return false;
+				}
+				segment = segs[segmentIndex];
+				synchronized (segment)
+				{
+					start = segment.first;
+					end = segment.end();
+				}
+				position = start;
+			}
+			index++;
+			return true;
+		}
+
+		/**
+		 * Returns index of the current point within the track.
+		 */
+		public int getIndex()
+		{
+			return index;
+		}
+
+		public TrackSegment getSegment()
+		{
+			return segment;
+		}
+
+		/**
+		 * Returns index of the current point within its segment at the time cursor entered it.
+		 */
+		public int getPosition()
+		{
+			return position - start;
+		}
+
+		public boolean isContinous()
+		{
+			return segment.continuity.get(position);
+		}
+
+		public double getLatitude()
+		{
+			return segment.latitudes[position];
+		}
+
+		public double getLongitude()
+		{
+			return segment.longitudes[position];
+		}
+
+		public float getElevation()
+		{
+			return segment.elevations[position];
+		}
+
+		public float getSpeed()
+		{
+			return segment.speeds[position];
+		}
+
+		public float getBearing()
+		{
+			return segment.bearings[position];
+		}
+
+		public float getAccuracy()
+		{
+			return segment.accuracies[position];
+		}
+
+		public long getTime()
+		{
+			return segment.times[position];
+		}
+
+		public TrackPoint getPoint()
+		{
+			return segment.getPointAt(position);
+		}
+	}
+
+	/**
+	 * Read-only list view of track points, used by compatibility methods.
+	 */
+	private static class PointList extends AbstractList<TrackPoint> implements RandomAccess
+	{
+		private final TrackSegment[] segs;
+		private final int[] starts;
+		private final int[] offsets;
+
+		PointList(TrackSegment[] segs, int[] starts, int[] offsets)
+		{
+			this.segs = segs;
+			this.starts = starts;
+			this.offsets = offsets;
+		}
+
+		@Override
+		public TrackPoint get(int location)
+		{
+			if (location < 0 || location >= size())
+				throw new IndexOutOfBoundsException();
+			int s = Arrays.binarySearch(offsets, location);
+			if (s < 0)
+				s = -s - 2;
+			// skip empty segments
+			while (offsets[s + 1] == location)
+				s++;
+			TrackSegment segment = segs[s];
+			synchronized (segment)
+			{
+				return segment.getPointAt(starts[s] + location - offsets[s]);
+			}
+		}
+
+		@Override
+		public int size()
+		{
+			return offsets[segs.length];
 		}
 	}
 
@@ -129,18 +693,29 @@ public class Track
 		return segments;
 	}
 
+	/**
+	 * Returns cursor positioned before the first track point.
+	 */
+	public Cursor cursor()
+	{
+		return new Cursor();
+	}
+
 	public synchronized int getPointCount()
 	{
 		int count = 0;
 		for (TrackSegment segment : segments)
 		{
-			count += segment.trackpoints.size();
+			synchronized (segment)
+			{
+				count += segment.size;
+			}
 		}
 		return count;
 	}
 
 	/**
-	 * Returns <b>new</b> list of track points that are located in supplied
+	 * Returns read-only view of track points that are located in supplied
 	 * area, no synchronization is necessary on that list. For performance only
 	 * segment bounds are checked, not individual points.
 	 * 
@@ -150,51 +725,63 @@ public class Track
 	 */
 	public synchronized List<TrackPoint> getPoints(Bounds area)
 	{
-		List<TrackPoint> trackpoints = new ArrayList<TrackPoint>(0);
+		List<TrackSegment> segs = new ArrayList<TrackSegment>();
 		for (TrackSegment segment : segments)
 		{
 			// We do not check particular points for performance
 			if (segment.bounds.intersects(area))
-			{
-				synchronized (segment)
-				{
-					trackpoints.addAll(segment.trackpoints);
-				}
-			}
+				segs.add(segment);
 		}
-		return trackpoints;
+		return getPointList(segs);
 	}
 
 	/**
-	 * Returns <b>new</b> list of track points, no synchronization is necessary
-	 * on that list.
+	 * Returns read-only view of track points, no synchronization is necessary
+	 * on that list. Points are created on access, use {@link #cursor()} to
+	 * iterate over large tracks.
 	 *
 	 * @return new List
 	 */
 	public synchronized List<TrackPoint> getAllPoints()
 	{
-		List<TrackPoint> trackpoints = new ArrayList<TrackPoint>(0);
-		for (TrackSegment segment : segments)
+		return getPointList(segments);
+	}
+
+	private List<TrackPoint> getPointList(List<TrackSegment> segs)
+	{
+		int[] starts = new int[segs.size()];
+		int[] offsets = new int[segs.size() + 1];
+		for (int i = 0; i < segs.size(); i++)
 		{
+			TrackSegment segment = segs.get(i);
 			synchronized (segment)
 			{
-				trackpoints.addAll(segment.trackpoints);
+				starts[i] = segment.first;
+				offsets[i + 1] = offsets[i] + segment.size;
 			}
 		}
-		return trackpoints;
+		return new PointList(segs.toArray(new TrackSegment[segs.size()]), starts, offsets);
+	}
+
+	public void addPoint(TrackPoint point)
+	{
+		addPoint(point.continous, point.latitude, point.longitude, point.elevation, point.speed, point.bearing, point.accuracy, point.time);
 	}
 
 	public void addPoint(boolean continous, double lat, double lon, double elev, double speed, double bearing, double accuracy, long time)
 	{
-		if (lastTrackPoint != null)
-		{
-			distance += Geo.distance(lastTrackPoint.latitude, lastTrackPoint.longitude, lat, lon);
-		}
-		lastTrackPoint = new TrackPoint(continous, lat, lon, elev, speed, bearing, accuracy, time);
 		boolean needNewSegment = false;
+		double leg = 0;
 		synchronized (lastSegment)
 		{
-			needNewSegment = !continous || lastSegment.trackpoints.size() > SEGMENT_CAPACITY;
+			int n = lastSegment.end();
+			if (lastSegment.size > 0)
+				leg = Geo.distance(lastSegment.latitudes[n - 1], lastSegment.longitudes[n - 1], lat, lon, Geo.ACCURATE);
+			distance += leg;
+			// Segment is limited by storage size, not by point count, as bounded track removes points from its head
+			needNewSegment = !continous || n > SEGMENT_CAPACITY;
+			if (needNewSegment)
+				lastSegment.trim();
 		}
 		if (needNewSegment)
 		{
@@ -207,17 +794,43 @@ public class Track
 		}
 		synchronized (lastSegment)
 		{
-			if (maxPoints > 0 && lastSegment.trackpoints.size() > maxPoints)
-			{
-				// TODO add correct cleaning if preferences changed
-				TrackPoint fp = lastSegment.trackpoints.get(0);
-				TrackPoint sp = lastSegment.trackpoints.get(1);
-				distance -= Geo.distance(fp.latitude, fp.longitude, sp.latitude, sp.longitude);
-				lastSegment.trackpoints.remove(0);
-			}
-			lastSegment.trackpoints.add(lastTrackPoint);
+			lastSegment.add(continous, lat, lon, elev, speed, bearing, accuracy, time);
 		}
-		lastSegment.bounds.extend(lastTrackPoint.latitude, lastTrackPoint.longitude);
+		lastSegment.bounds.extend(lat, lon);
+		synchronized (statistics)
+		{
+			statistics.addPoint(continous, elev, time, leg);
+		}
+		pointCount++;
+		// Several points are removed at once if limit was decreased
+		while (maxPoints > 0 && pointCount > maxPoints)
+			removeFirstPoint();
+	}
+
+	/**
+	 * Removes the oldest point of bounded track. Drained segments are dropped, so track
+	 * works as a circular buffer of segment chunks.
+	 */
+	private synchronized void removeFirstPoint()
+	{
+		while (segments.size() > 1 && segments.get(0).size == 0)
+			segments.remove(0);
+		TrackSegment segment = segments.get(0);
+		double lat, lon;
+		synchronized (segment)
+		{
+			lat = segment.latitudes[segment.first];
+			lon = segment.longitudes[segment.first];
+			segment.removeFirst();
+		}
+		pointCount--;
+		if (segment.size == 0 && segments.size() > 1)
+		{
+			segments.remove(0);
+			segment = segments.get(0);
+		}
+		if (segment.size > 0)
+			distance -= Geo.distance(lat, lon, segment.latitudes[segment.first], segment.longitudes[segment.first], Geo.ACCURATE);
 	}
 
 	public synchronized void clear()
@@ -225,15 +838,79 @@ public class Track
 		segments.clear();
 		lastSegment = new TrackSegment();
 		segments.add(lastSegment);
-		lastTrackPoint = null;
+		pointCount = 0;
 		distance = 0;
+		synchronized (statistics)
+		{
+			statistics.reset();
+		}
+	}
+
+	/**
+	 * Returns snapshot of track statistics. Statistics are maintained while points are added,
+	 * so this does not depend on track size.
+	 */
+	public TrackStatistics getStatistics()
+	{
+		synchronized (statistics)
+		{
+			return statistics.copy();
+		}
+	}
+
+	/**
+	 * Returns index of the track point nearest to specified location.
+	 *
+	 * @param radius search radius in meters
+	 * @return point index or -1 if there are no points within radius
+	 */
+	public synchronized int getNearestPoint(double lat, double lon, double radius)
+	{
+		double kx = METERS_PER_DEGREE * Math.cos(Math.toRadians(lat));
+		double[] radius2 = new double[] {radius * radius};
+		int nearest = -1;
+		int base = 0;
+		for (TrackSegment segment : segments)
+		{
+			synchronized (segment)
+			{
+				int i = segment.find(lat, lon, kx, radius2, base, null);
+				if (i >= 0)
+					nearest = i;
+				base += segment.size;
+			}
+		}
+		return nearest;
+	}
+
+	/**
+	 * Returns indices of track points located within specified distance.
+	 *
+	 * @param radius distance in meters
+	 * @return ascending point indices
+	 */
+	public synchronized int[] getPointsWithin(double lat, double lon, double radius)
+	{
+		double kx = METERS_PER_DEGREE * Math.cos(Math.toRadians(lat));
+		double[] radius2 = new double[] {radius * radius};
+		IntList result = new IntList();
+		int base = 0;
+		for (TrackSegment segment : segments)
+		{
+			synchronized (segment)
+			{
+				segment.find(lat, lon, kx, radius2, base, result);
+				base += segment.size;
+			}
+		}
+		return Arrays.copyOf(result.values, result.count);
 	}
 
 	/**
 	 * Returns the track point at the specified location in this Track.
 	 * 
 	 * @param location the index of the element to return
-	 * @return the element at the specified location
+	 * @return <b>new</b> track point object
 	 * @throws IndexOutOfBoundsException if location < 0 || location >= track length
 	 */
 	public synchronized TrackPoint getPoint(int location) throws IndexOutOfBoundsException
@@ -243,9 +920,9 @@ public class Track
 		{
 			synchronized (segment)
 			{
-				int s = segment.trackpoints.size();
+				int s = segment.size;
 				if (i + s > location)
-					return segment.trackpoints.get(location - i);
+					return segment.getPoint(location - i);
 				else
 					i += s;
 			}
@@ -253,9 +930,16 @@ public class Track
 		throw new IndexOutOfBoundsException();
 	}
 
+	/**
+	 * Returns <b>new</b> track point object for the last track point or null if track is empty.
+	 */
 	public TrackPoint getLastPoint()
 	{
-		return lastTrackPoint;
+		TrackSegment segment = lastSegment;
+		synchronized (segment)
+		{
+			return segment.size > 0 ? segment.getPoint(segment.size - 1) : null;
+		}
 	}
 
 	/*
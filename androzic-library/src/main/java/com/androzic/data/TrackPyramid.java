@@ -0,0 +1,366 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.androzic.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.WeakHashMap;
+
+/**
+ * Multi-resolution representation of a track used for rendering. Each level holds vertices
+ * of track simplified with Douglas-Peucker algorithm with tolerance four times larger than on
+ * the previous level, next level is simplified from the previous one. Points are processed in
+ * chunks, so levels are extended incrementally as recorded track grows and points that are not
+ * processed yet are taken from lower levels. Tail of the segment that is being recorded is
+ * processed only when it grows to a full chunk.
+ */
+public class TrackPyramid
+{
+	public static final int LEVELS = 9;
+	private static final double BASE_TOLERANCE = 1; // meters
+	private static final int CHUNK = 256;
+
+	private static final double METERS_PER_DEGREE = 111319.5;
+
+	private final Track track;
+	private final WeakHashMap<Track.TrackSegment, SegmentLevels> levels = new WeakHashMap<Track.TrackSegment, SegmentLevels>();
+
+	// Simplification buffers, used only by update thread
+	private final int[] source = new int[CHUNK + 1];
+	private final boolean[] keep = new boolean[CHUNK + 1];
+	private final int[] stack = new int[(CHUNK + 1) * 2];
+
+	/**
+	 * Storage indices of vertices of one level of a segment.
+	 */
+	private static class Level
+	{
+		int[] indices = new int[16];
+		int count = 0;
+		// Position in previous level (or storage index for the first level) that was processed
+		int processed = -1;
+
+		void add(int index)
+		{
+			if (count == indices.length)
+				indices = Arrays.copyOf(indices, count * 2);
+			indices[count++] = index;
+		}
+	}
+
+	private static class SegmentLevels
+	{
+		final Level[] levels = new Level[LEVELS];
+		// All points of closed segment are processed
+		boolean complete = false;
+
+		SegmentLevels()
+		{
+			for (int l = 0; l < LEVELS; l++)
+				levels[l] = new Level();
+		}
+	}
+
+	/**
+	 * Vertex list filled by {@link TrackPyramid#getVertices(Track.TrackSegment, int, Vertices)}.
+	 */
+	public static class Vertices
+	{
+		public int[] indices = new int[256];
+		public int count;
+
+		void add(int index)
+		{
+			if (count == indices.length)
+				indices = Arrays.copyOf(indices, count * 2);
+			indices[count++] = index;
+		}
+	}
+
+	public TrackPyramid(Track track)
+	{
+		this.track = track;
+	}
+
+	public Track getTrack()
+	{
+		return track;
+	}
+
+	public static double getTolerance(int level)
+	{
+		return BASE_TOLERANCE * Math.pow(4, level);
+	}
+
+	/**
+	 * Returns the coarsest level which error is not visible at specified scale.
+	 *
+	 * @param mpp meters per pixel
+	 * @return level or -1 if track should be drawn with all points
+	 */
+	public static int getLevel(double mpp)
+	{
+		int level = -1;
+		while (level + 1 < LEVELS && getTolerance(level + 1) <= mpp)
+			level++;
+		return level;
+	}
+
+	/**
+	 * Fills list with indices of segment points that form specified level. Segment should be
+	 * locked by caller.
+	 */
+	public void getVertices(Track.TrackSegment segment, int level, Vertices vertices)
+	{
+		vertices.count = 0;
+		int first = segment.offset();
+		int end = first + segment.size();
+		if (first == end)
+			return;
+		// Head of bounded track could be already removed from levels
+		vertices.add(0);
+		int last = first;
+		SegmentLevels segmentLevels;
+		synchronized (levels)
+		{
+			segmentLevels = levels.get(segment);
+		}
+		if (segmentLevels != null)
+		{
+			for (int l = level; l >= 0; l--)
+			{
+				Level lvl = segmentLevels.levels[l];
+				int k = Arrays.binarySearch(lvl.indices, 0, lvl.count, last);
+				k = k < 0 ? -k - 1 : k + 1;
+				for (; k < lvl.count; k++)
+				{
+					last = lvl.indices[k];
+					vertices.add(last - first);
+				}
+			}
+		}
+		for (int j = last + 1; j < end; j++)
+			vertices.add(j - first);
+	}
+
+	/**
+	 * Returns true if there are enough new points to extend levels.
+	 */
+	public boolean needsUpdate()
+	{
+		List<Track.TrackSegment> segments = getSegments();
+		for (int i = 0; i < segments.size(); i++)
+		{
+			Track.TrackSegment segment = segments.get(i);
+			SegmentLevels segmentLevels;
+			synchronized (levels)
+			{
+				segmentLevels = levels.get(segment);
+			}
+			boolean closed = i < segments.size() - 1;
+			synchronized (segment)
+			{
+				if (segment.size() < 2)
+					continue;
+				if (closed && (segmentLevels == null || !segmentLevels.complete))
+					return true;
+				int processed = segmentLevels != null ? segmentLevels.levels[0].processed : segment.offset();
+				if (segment.offset() + segment.size() - processed > CHUNK)
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Extends levels with new points. Should be called on background thread, segments are
+	 * locked only while a chunk is processed.
+	 *
+	 * @return true if any level was changed
+	 */
+	public synchronized boolean update()
+	{
+		boolean changed = false;
+		List<Track.TrackSegment> segments = getSegments();
+		for (int i = 0; i < segments.size(); i++)
+		{
+			Track.TrackSegment segment = segments.get(i);
+			SegmentLevels segmentLevels;
+			synchronized (levels)
+			{
+				segmentLevels = levels.get(segment);
+				if (segmentLevels == null)
+				{
+					segmentLevels = new SegmentLevels();
+					levels.put(segment, segmentLevels);
+				}
+			}
+			if (segmentLevels.complete)
+				continue;
+			// Only the last segment can grow
+			boolean closed = i < segments.size() - 1;
+			boolean more = true;
+			while (more)
+			{
+				synchronized (segment)
+				{
+					more = processChunk(segment, segmentLevels.levels, closed);
+				}
+				changed |= more;
+			}
+			segmentLevels.complete = closed;
+		}
+		return changed;
+	}
+
+	private List<Track.TrackSegment> getSegments()
+	{
+		synchronized (track)
+		{
+			return new ArrayList<Track.TrackSegment>(track.getSegments());
+		}
+	}
+
+	/**
+	 * Simplifies one chunk of new points and propagates new vertices to upper levels.
+	 *
+	 * @param closed true if segment will not grow, so last incomplete chunks can be processed
+	 * @return false if there are no points left to process
+	 */
+	private boolean processChunk(Track.TrackSegment segment, Level[] segmentLevels, boolean closed)
+	{
+		int first = segment.offset();
+		int end = first + segment.size();
+		Level base = segmentLevels[0];
+		// Head of bounded track could be removed
+		if (base.processed < first)
+			base.processed = first;
+		int n = getChunkSize(end - 1 - base.processed, closed);
+		if (n == 0)
+			return false;
+
+		for (int i = 0; i < n; i++)
+			source[i] = base.processed + i;
+		simplify(segment, n, BASE_TOLERANCE, base);
+		base.processed += n - 1;
+
+		// Upper levels get incomplete chunks only when the whole segment is processed
+		closed = closed && end - 1 == base.processed;
+		for (int l = 1; l < LEVELS; l++)
+		{
+			Level previous = segmentLevels[l - 1];
+			Level level = segmentLevels[l];
+			if (level.processed < 0)
+				level.processed = 0;
+			while ((n = getChunkSize(previous.count - 1 - level.processed, closed)) > 0)
+			{
+				System.arraycopy(previous.indices, level.processed, source, 0, n);
+				simplify(segment, n, getTolerance(l), level);
+				level.processed += n - 1;
+			}
+		}
+		return true;
+	}
+
+	private static int getChunkSize(int remaining, boolean closed)
+	{
+		if (remaining >= CHUNK)
+			return CHUNK + 1;
+		if (closed && remaining > 0)
+			return remaining + 1;
+		return 0;
+	}
+
+	/**
+	 * Douglas-Peucker simplification of points referenced by source buffer. Points are
+	 * projected to local plane, which is precise enough for the chunk size.
+	 */
+	private void simplify(Track.TrackSegment segment, int n, double tolerance, Level level)
+	{
+		int first = segment.offset();
+		double lat0 = segment.getLatitude(source[0] - first);
+		double kx = METERS_PER_DEGREE * Math.cos(Math.toRadians(lat0));
+		double ky = METERS_PER_DEGREE;
+		double tolerance2 = tolerance * tolerance;
+
+		Arrays.fill(keep, 0, n, false);
+		keep[0] = true;
+		keep[n - 1] = true;
+		int sp = 0;
+		stack[sp++] = 0;
+		stack[sp++] = n - 1;
+		while (sp > 0)
+		{
+			int b = stack[--sp];
+			int a = stack[--sp];
+			if (b - a < 2)
+				continue;
+			double ax = segment.getLongitude(source[a] - first) * kx;
+			double ay = segment.getLatitude(source[a] - first) * ky;
+			double dx = segment.getLongitude(source[b] - first) * kx - ax;
+			double dy = segment.getLatitude(source[b] - first) * ky - ay;
+			double len2 = dx * dx + dy * dy;
+			double max = -1;
+			int index = -1;
+			for (int i = a + 1; i < b; i++)
+			{
+				double px = segment.getLongitude(source[i] - first) * kx - ax;
+				double py = segment.getLatitude(source[i] - first) * ky - ay;
+				double d2;
+				if (len2 == 0)
+				{
+					d2 = px * px + py * py;
+				}
+				else
+				{
+					double t = (px * dx + py * dy) / len2;
+					if (t < 0)
+						t = 0;
+					else if (t > 1)
+						t = 1;
+					double ex = px - t * dx;
+					double ey = py - t * dy;
+					d2 = ex * ex + ey * ey;
+				}
+				if (d2 > max)
+				{
+					max = d2;
+					index = i;
+				}
+			}
+			if (max > tolerance2)
+			{
+				keep[index] = true;
+				stack[sp++] = a;
+				stack[sp++] = index;
+				stack[sp++] = index;
+				stack[sp++] = b;
+			}
+		}
+		// First point of a chunk is the last point of previous one
+		for (int i = level.count == 0 ? 0 : 1; i < n; i++)
+		{
+			if (keep[i])
+				level.add(source[i]);
+		}
+	}
+}
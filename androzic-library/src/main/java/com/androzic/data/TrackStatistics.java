@@ -0,0 +1,226 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.androzic.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Track statistics accumulated as points are added, so they never require walking the track.
+ * Bounded tracks keep statistics of all points ever added, not only of retained ones.
+ */
+public class TrackStatistics
+{
+	/**
+	 * Speed below which track is considered stopped, in m/s
+	 */
+	public static final double MOVING_SPEED = 0.5;
+	/**
+	 * Elevation change that has to be exceeded to count as gain or loss, in meters. Filters
+	 * out GPS elevation noise.
+	 */
+	public static final double ELEVATION_THRESHOLD = 5;
+	/**
+	 * Distance of one split, in meters
+	 */
+	public static final double SPLIT_DISTANCE = 1000;
+
+	/**
+	 * Summary of a part of the track
+	 */
+	public static class Split
+	{
+		public double distance;
+		public long time;
+		public double maxSpeed;
+		public double elevationGain;
+		public double elevationLoss;
+
+		Split copy()
+		{
+			Split split = new Split();
+			split.distance = distance;
+			split.time = time;
+			split.maxSpeed = maxSpeed;
+			split.elevationGain = elevationGain;
+			split.elevationLoss = elevationLoss;
+			return split;
+		}
+	}
+
+	public int pointCount;
+	public int segmentCount;
+	public double distance;
+	public double movingDistance;
+	public long movingTime;
+	public long stoppedTime;
+	public double maxSpeed;
+	// Zero elevation is treated as unknown
+	public double minElevation = Double.MAX_VALUE;
+	public double maxElevation = Double.MIN_VALUE;
+	public double elevationGain;
+	public double elevationLoss;
+
+	private double speedSum;
+	private int speedCount;
+	private long lastTime;
+	private double elevationReference = Double.NaN;
+	private final List<Split> splits = new ArrayList<Split>();
+
+	/**
+	 * Returns mean of leg speeds.
+	 */
+	public double getAverageSpeed()
+	{
+		return speedCount > 0 ? speedSum / speedCount : 0;
+	}
+
+	/**
+	 * Returns average speed while moving.
+	 */
+	public double getMovingSpeed()
+	{
+		return movingTime > 0 ? movingDistance / movingTime * 1000 : 0;
+	}
+
+	/**
+	 * Returns summaries of consecutive parts of the track of {@link #SPLIT_DISTANCE} length,
+	 * the last split is usually shorter.
+	 */
+	public List<Split> getSplits()
+	{
+		return splits;
+	}
+
+	/**
+	 * Accounts new track point.
+	 *
+	 * @param leg distance from previous point in meters
+	 */
+	void addPoint(boolean continous, double elevation, long time, double leg)
+	{
+		distance += leg;
+		if (!continous)
+			segmentCount++;
+
+		Split split = splits.isEmpty() ? null : splits.get(splits.size() - 1);
+		if (split == null || split.distance >= SPLIT_DISTANCE)
+		{
+			split = new Split();
+			splits.add(split);
+		}
+		split.distance += leg;
+
+		if (continous && pointCount > 0)
+		{
+			long dt = time - lastTime;
+			if (dt > 0)
+			{
+				double speed = leg / dt * 1000;
+				speedSum += speed;
+				speedCount++;
+				if (speed > maxSpeed)
+					maxSpeed = speed;
+				if (speed > split.maxSpeed)
+					split.maxSpeed = speed;
+				split.time += dt;
+				if (speed >= MOVING_SPEED)
+				{
+					movingTime += dt;
+					movingDistance += leg;
+				}
+				else
+				{
+					stoppedTime += dt;
+				}
+			}
+		}
+		lastTime = time;
+		pointCount++;
+
+		if (elevation != 0)
+		{
+			if (elevation < minElevation)
+				minElevation = elevation;
+			if (elevation > maxElevation)
+				maxElevation = elevation;
+			if (Double.isNaN(elevationReference))
+			{
+				elevationReference = elevation;
+			}
+			else if (elevation - elevationReference > ELEVATION_THRESHOLD)
+			{
+				elevationGain += elevation - elevationReference;
+				split.elevationGain += elevation - elevationReference;
+				elevationReference = elevation;
+			}
+			else if (elevationReference - elevation > ELEVATION_THRESHOLD)
+			{
+				elevationLoss += elevationReference - elevation;
+				split.elevationLoss += elevationReference - elevation;
+				elevationReference = elevation;
+			}
+		}
+	}
+
+	void reset()
+	{
+		pointCount = 0;
+		segmentCount = 0;
+		distance = 0;
+		movingDistance = 0;
+		movingTime = 0;
+		stoppedTime = 0;
+		maxSpeed = 0;
+		minElevation = Double.MAX_VALUE;
+		maxElevation = Double.MIN_VALUE;
+		elevationGain = 0;
+		elevationLoss = 0;
+		speedSum = 0;
+		speedCount = 0;
+		lastTime = 0;
+		elevationReference = Double.NaN;
+		splits.clear();
+	}
+
+	public TrackStatistics copy()
+	{
+		TrackStatistics statistics = new TrackStatistics();
+		statistics.pointCount = pointCount;
+		statistics.segmentCount = segmentCount;
+		statistics.distance = distance;
+		statistics.movingDistance = movingDistance;
+		statistics.movingTime = movingTime;
+		statistics.stoppedTime = stoppedTime;
+		statistics.maxSpeed = maxSpeed;
+		statistics.minElevation = minElevation;
+		statistics.maxElevation = maxElevation;
+		statistics.elevationGain = elevationGain;
+		statistics.elevationLoss = elevationLoss;
+		statistics.speedSum = speedSum;
+		statistics.speedCount = speedCount;
+		statistics.lastTime = lastTime;
+		statistics.elevationReference = elevationReference;
+		for (Split split : splits)
+			statistics.splits.add(split.copy());
+		return statistics;
+	}
+}
@@ -24,6 +24,8 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.Region;
 
 import com.androzic.data.Bounds;
 import com.androzic.ui.Viewport;
@@ -62,9 +64,15 @@ public abstract class BaseMap implements Serializable
 	protected transient TileRAMCache cache;
 	protected transient int width;
 	protected transient int height;
+	protected transient ProjectionMesh mesh;
+	private transient Rect tileRect;
+	private transient Region tileRegion;
 
 	public transient Throwable loadError;
 
+	private static int instanceCount;
+	private transient int instance;
+
 	protected BaseMap()
 	{
 	}
@@ -75,6 +83,21 @@ public abstract class BaseMap implements Serializable
 		this.id = path.hashCode();
 	}
 
+	/**
+	 * Returns number unique for this map object. Unlike id it differs for map reloaded
+	 * from the same file, e.g. after recalibration. Assigned lazily as deserialization
+	 * does not run field initializers.
+	 */
+	public final int getInstance()
+	{
+		synchronized (BaseMap.class)
+		{
+			if (instance == 0)
+				instance = ++instanceCount;
+			return instance;
+		}
+	}
+
 	/**
 	 * Called after map object is created.
 	 */
@@ -116,6 +139,7 @@ public abstract class BaseMap implements Serializable
 		listener = null;
 		borderPaint = null;
 		mapClipPath = null;
+		mesh = null;
 	}
 
 	public boolean activated()
@@ -147,6 +171,14 @@ public abstract class BaseMap implements Serializable
 		return bounds;
 	}
 
+	/**
+	 * Returns map corner markers, geographic polygon covered by map.
+	 */
+	public MapPoint[] getCornerMarkers()
+	{
+		return cornerMarkers;
+	}
+
 	/**
 	 * Checks if map covers given coordinates
 	 * @param lat latitude in degrees
@@ -226,10 +258,65 @@ public abstract class BaseMap implements Serializable
 		return inside;
 	}
 
+	/**
+	 * Returns projection approximation for dense coordinate conversions, e.g. per pixel.
+	 * Mesh is rebuilt if map zoom has changed since previous call.
+	 */
+	public synchronized ProjectionMesh getProjectionMesh()
+	{
+		if (mesh == null || mesh.zoom != getZoom() || mesh.mpp != getMPP())
+			mesh = new ProjectionMesh(this, mesh != null ? mesh.getTolerance() : ProjectionMesh.DEFAULT_TOLERANCE);
+		return mesh;
+	}
+
+	/**
+	 * Checks if map border polygon intersects given area
+	 * @param area area bounds
+	 * @return true if any part of area is covered by map
+	 */
 	public boolean containsArea(Bounds area)
 	{
 		Bounds b = getBounds();
-		return b.intersects(area);
+		if (!b.intersects(area))
+			return false;
+		// Border is not a polygon, bounds are all we have
+		if (cornerMarkers.length < 3)
+			return true;
+
+		for (MapPoint corner : cornerMarkers)
+		{
+			if (corner.lat >= area.minLat && corner.lat <= area.maxLat && corner.lon >= area.minLon && corner.lon <= area.maxLon)
+				return true;
+		}
+		if (coversLatLon(area.minLat, area.minLon) || coversLatLon(area.minLat, area.maxLon) || coversLatLon(area.maxLat, area.minLon) || coversLatLon(area.maxLat, area.maxLon))
+			return true;
+
+		// Border crosses area without corners inside each other
+		int j = cornerMarkers.length - 1;
+		for (int i = 0; i < cornerMarkers.length; i++)
+		{
+			MapPoint p1 = cornerMarkers[j];
+			MapPoint p2 = cornerMarkers[i];
+			if (crosses(p1, p2, area.minLat, area.minLon, area.minLat, area.maxLon) || crosses(p1, p2, area.maxLat, area.minLon, area.maxLat, area.maxLon)
+					|| crosses(p1, p2, area.minLat, area.minLon, area.maxLat, area.minLon) || crosses(p1, p2, area.minLat, area.maxLon, area.maxLat, area.maxLon))
+				return true;
+			j = i;
+		}
+		return false;
+	}
+
+	private static boolean crosses(MapPoint p1, MapPoint p2, double lat1, double lon1, double lat2, double lon2)
+	{
+		double d1 = side(lat1, lon1, lat2, lon2, p1.lat, p1.lon);
+		double d2 = side(lat1, lon1, lat2, lon2, p2.lat, p2.lon);
+		double d3 = side(p1.lat, p1.lon, p2.lat, p2.lon, lat1, lon1);
+		double d4 = side(p1.lat, p1.lon, p2.lat, p2.lon, lat2, lon2);
+		return d1 * d2 < 0 && d3 * d4 < 0;
+	}
+
+	private static double side(double lat1, double lon1, double lat2, double lon2, double lat, double lon)
+	{
+		return (lon2 - lon1) * (lat - lat1) - (lat2 - lat1) * (lon - lon1);
 	}
 
 	public abstract int getScaledWidth();
@@ -237,6 +324,37 @@ public abstract class BaseMap implements Serializable
 
 	public abstract boolean getLatLonByXY(int x, int y, double[] ll);
 	public abstract boolean getXYByLatLon(double lat, double lon, int[] xy);
+
+	/**
+	 * Converts coordinates to map pixels in bulk
+	 * @param lat latitudes in degrees
+	 * @param lon longitudes in degrees
+	 * @param xy receives x and y of each point in pairs, has to be twice as long as lat
+	 * @return number of points inside map
+	 */
+	public final int getXYByLatLon(double[] lat, double[] lon, int[] xy)
+	{
+		return getXYByLatLon(lat, lon, lat.length, xy);
+	}
+
+	/**
+	 * Converts first <code>count</code> coordinates to map pixels in bulk.
+	 * Maps override it to convert all points in one pass.
+	 * @return number of points inside map
+	 */
+	public int getXYByLatLon(double[] lat, double[] lon, int count, int[] xy)
+	{
+		int[] point = new int[2];
+		int inside = 0;
+		for (int i = 0; i < count; i++)
+		{
+			if (getXYByLatLon(lat[i], lon[i], point))
+				inside++;
+			xy[i * 2] = point[0];
+			xy[i * 2 + 1] = point[1];
+		}
+		return inside;
+	}
 	public abstract void getMapCenter(double[] center);
 
 	/**
@@ -278,6 +396,59 @@ public abstract class BaseMap implements Serializable
 
 	public abstract boolean drawMap(Viewport viewport, boolean cropBorder, boolean drawBorder, Canvas c) throws OutOfMemoryError;
 
+	/**
+	 * Draws map skipping tiles that are hidden by other maps.
+	 *
+	 * @param visible screen region that is not covered by other maps, null if whole screen is visible
+	 */
+	public boolean drawMap(Viewport viewport, boolean cropBorder, boolean drawBorder, Region visible, Canvas c) throws OutOfMemoryError
+	{
+		return drawMap(viewport, cropBorder, drawBorder, c);
+	}
+
+	/**
+	 * Returns true if map image completely fills the area inside map border when drawn, so maps
+	 * below it are not seen there.
+	 */
+	public boolean isOpaque()
+	{
+		return false;
+	}
+
+	/**
+	 * Returns map border in screen coordinates for specified viewport.
+	 *
+	 * @return false if map is not active
+	 */
+	public boolean getClipPath(Viewport viewport, Path path)
+	{
+		Path clipPath = mapClipPath;
+		if (!isActive || clipPath == null)
+			return false;
+		int[] map_xy = new int[2];
+		getXYByLatLon(viewport.mapCenter[0], viewport.mapCenter[1], map_xy);
+		map_xy[0] -= viewport.lookAheadXY[0];
+		map_xy[1] -= viewport.lookAheadXY[1];
+		clipPath.offset(-map_xy[0] + viewport.canvasWidth / 2, -map_xy[1] + viewport.canvasHeight / 2, path);
+		return true;
+	}
+
+	/**
+	 * Checks if tile rectangle is at least partially visible. Should be called from drawing thread only.
+	 */
+	protected boolean isTileVisible(Region visible, int left, int top, int right, int bottom)
+	{
+		if (visible == null)
+			return true;
+		if (tileRegion == null)
+		{
+			tileRect = new Rect();
+			tileRegion = new Region();
+		}
+		tileRect.set(left, top, right, bottom);
+		return tileRegion.op(tileRect, visible, Region.Op.INTERSECT);
+	}
+
 	public abstract int getPriority();
 	public abstract List<String> info();
 
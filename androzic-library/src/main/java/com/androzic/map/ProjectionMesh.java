@@ -0,0 +1,358 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.androzic.map;
+
+import java.util.HashMap;
+
+import com.jhlabs.map.proj.ProjectionException;
+
+/**
+ * Approximates map projection with bilinear interpolation over adaptive mesh. Mesh cells are
+ * built lazily on first query and are subdivided until interpolation error at cell center and
+ * edge midpoints does not exceed tolerance. Cells that fail to project are not approximated,
+ * queries in them are passed to the map as is.
+ * Mesh is bound to map zoom, obtain it with {@link BaseMap#getProjectionMesh()} before each
+ * batch of queries.
+ */
+public class ProjectionMesh
+{
+	/**
+	 * Default error tolerance in pixels
+	 */
+	public static final double DEFAULT_TOLERANCE = 0.5;
+
+	private static final int ROOT_CELL_SIZE = 256;
+	private static final int MIN_CELL_SIZE = 4;
+	private static final int MAX_ROOT_CELLS = 1024;
+	private static final double METERS_PER_DEGREE = 111319.49;
+
+	private final BaseMap map;
+	private double tolerance;
+	final double zoom;
+	final double mpp;
+	private final int width;
+	private final int height;
+	private final double[] xyd = new double[2];
+
+	private final Mesh inverse;
+	private final Mesh forward;
+
+	ProjectionMesh(BaseMap map, double tolerance)
+	{
+		this.map = map;
+		this.tolerance = tolerance;
+		zoom = map.getZoom();
+		mpp = map.getMPP();
+		width = map.getScaledWidth();
+		height = map.getScaledHeight();
+		inverse = new InverseMesh();
+		forward = new ForwardMesh();
+	}
+
+	/**
+	 * Sets error tolerance and discards built mesh.
+	 * @param tolerance error tolerance in pixels
+	 */
+	public synchronized void setTolerance(double tolerance)
+	{
+		this.tolerance = tolerance;
+		clear();
+	}
+
+	public double getTolerance()
+	{
+		return tolerance;
+	}
+
+	/**
+	 * Discards built mesh.
+	 */
+	public synchronized void clear()
+	{
+		inverse.clear();
+		forward.clear();
+	}
+
+	/**
+	 * Approximates {@link BaseMap#getLatLonByXY(int, int, double[])}.
+	 */
+	public synchronized void getLatLonByXY(int x, int y, double[] ll)
+	{
+		inverse.interpolate(x, y, ll);
+	}
+
+	/**
+	 * Approximates {@link BaseMap#getXYByLatLon(double, double, int[])}.
+	 * @return true if point is inside map
+	 */
+	public synchronized boolean getXYByLatLon(double lat, double lon, int[] xy)
+	{
+		forward.interpolate(lon, lat, xyd);
+		xy[0] = (int) Math.round(xyd[0]);
+		xy[1] = (int) Math.round(xyd[1]);
+		return xy[0] >= 0 && xy[0] < width && xy[1] >= 0 && xy[1] < height;
+	}
+
+	/**
+	 * Adaptive mesh over (u, v) domain producing (p, q) values.
+	 */
+	private abstract class Mesh
+	{
+		private final HashMap<Long, Cell> roots = new HashMap<Long, Cell>();
+		private Cell last;
+		final double[] corner = new double[2];
+		private final double[] sample = new double[2];
+		private final double[] result = new double[2];
+
+		/**
+		 * Size of root cell in domain units.
+		 */
+		abstract double rootSize();
+
+		/**
+		 * Calculates exact value, throws ProjectionException if it can not be calculated.
+		 * Used only while building cells.
+		 */
+		abstract void exact(double u, double v, double[] pq);
+
+		/**
+		 * Calculates value by map directly, as map does it without mesh.
+		 */
+		abstract void direct(double u, double v, double[] pq);
+
+		/**
+		 * Returns distance in pixels between two values.
+		 */
+		abstract double error(double p1, double q1, double p2, double q2);
+
+		void clear()
+		{
+			roots.clear();
+			last = null;
+		}
+
+		void interpolate(double u, double v, double[] pq)
+		{
+			Cell cell = last;
+			if (cell == null || !cell.contains(u, v))
+			{
+				cell = leaf(u, v);
+				last = cell;
+			}
+			if (cell.exact)
+				direct(u, v, pq);
+			else
+				cell.interpolate(u, v, pq);
+		}
+
+		private Cell leaf(double u, double v)
+		{
+			double size = rootSize();
+			long cu = (long) Math.floor(u / size);
+			long cv = (long) Math.floor(v / size);
+			Long key = (cv << 32) ^ (cu & 0xFFFFFFFFL);
+			Cell cell = roots.get(key);
+			if (cell == null)
+			{
+				if (roots.size() >= MAX_ROOT_CELLS)
+					roots.clear();
+				cell = new Cell(this, cu * size, cv * size, size);
+				roots.put(key, cell);
+			}
+			while (cell.children != null)
+			{
+				int i = (u >= cell.u0 + cell.size / 2 ? 1 : 0) + (v >= cell.v0 + cell.size / 2 ? 2 : 0);
+				if (cell.children[i] == null)
+				{
+					double half = cell.size / 2;
+					cell.children[i] = new Cell(this, cell.u0 + (i & 1) * half, cell.v0 + (i >> 1) * half, half);
+				}
+				cell = cell.children[i];
+			}
+			return cell;
+		}
+
+		/**
+		 * Returns interpolation error of a cell in pixels.
+		 */
+		private double cellError(Cell cell)
+		{
+			double max = 0;
+			for (int i = 0; i < 5; i++)
+			{
+				double fu = i == 0 ? .5 : i == 1 ? 0. : i == 2 ? 1. : .5;
+				double fv = i == 0 ? .5 : i == 3 ? 0. : i == 4 ? 1. : .5;
+				exact(cell.u0 + fu * cell.size, cell.v0 + fv * cell.size, sample);
+				cell.interpolate(cell.u0 + fu * cell.size, cell.v0 + fv * cell.size, result);
+				max = Math.max(max, error(sample[0], sample[1], result[0], result[1]));
+			}
+			return max;
+		}
+
+		boolean refine(Cell cell, double minSize)
+		{
+			return cell.size / 2 >= minSize && cellError(cell) > tolerance;
+		}
+
+		abstract double minSize();
+	}
+
+	private static class Cell
+	{
+		final double u0, v0, size;
+		// corner values: p and q of (u0, v0), (u1, v0), (u0, v1), (u1, v1)
+		final double[] pq = new double[8];
+		Cell[] children;
+		boolean exact;
+
+		Cell(Mesh mesh, double u0, double v0, double size)
+		{
+			this.u0 = u0;
+			this.v0 = v0;
+			this.size = size;
+			try
+			{
+				for (int i = 0; i < 4; i++)
+				{
+					mesh.exact(u0 + (i & 1) * size, v0 + (i >> 1) * size, mesh.corner);
+					pq[i * 2] = mesh.corner[0];
+					pq[i * 2 + 1] = mesh.corner[1];
+				}
+				if (mesh.refine(this, mesh.minSize()))
+					children = new Cell[4];
+			}
+			catch (ProjectionException e)
+			{
+				exact = true;
+			}
+		}
+
+		boolean contains(double u, double v)
+		{
+			return u >= u0 && u < u0 + size && v >= v0 && v < v0 + size;
+		}
+
+		void interpolate(double u, double v, double[] out)
+		{
+			double fu = (u - u0) / size;
+			double fv = (v - v0) / size;
+			double w00 = (1 - fu) * (1 - fv);
+			double w10 = fu * (1 - fv);
+			double w01 = (1 - fu) * fv;
+			double w11 = fu * fv;
+			out[0] = w00 * pq[0] + w10 * pq[2] + w01 * pq[4] + w11 * pq[6];
+			out[1] = w00 * pq[1] + w10 * pq[3] + w01 * pq[5] + w11 * pq[7];
+		}
+	}
+
+	/**
+	 * Map pixels to latitude and longitude.
+	 */
+	private class InverseMesh extends Mesh
+	{
+		private final double[] ll = new double[2];
+
+		@Override
+		double rootSize()
+		{
+			return ROOT_CELL_SIZE;
+		}
+
+		@Override
+		double minSize()
+		{
+			return MIN_CELL_SIZE;
+		}
+
+		@Override
+		void exact(double u, double v, double[] pq)
+		{
+			direct(u, v, pq);
+			if (Double.isNaN(pq[0]) || Double.isNaN(pq[1]))
+				throw new ProjectionException();
+		}
+
+		@Override
+		void direct(double u, double v, double[] pq)
+		{
+			map.getLatLonByXY((int) u, (int) v, ll);
+			pq[0] = ll[0];
+			pq[1] = ll[1];
+		}
+
+		@Override
+		double error(double lat1, double lon1, double lat2, double lon2)
+		{
+			double dy = (lat1 - lat2) * METERS_PER_DEGREE;
+			double dx = (lon1 - lon2) * METERS_PER_DEGREE * Math.cos(Math.toRadians(lat1));
+			return Math.sqrt(dx * dx + dy * dy) / mpp;
+		}
+	}
+
+	/**
+	 * Longitude and latitude to map pixels.
+	 */
+	private class ForwardMesh extends Mesh
+	{
+		private final int[] xy = new int[2];
+
+		@Override
+		double rootSize()
+		{
+			return ROOT_CELL_SIZE * degreesPerPixel();
+		}
+
+		@Override
+		double minSize()
+		{
+			return MIN_CELL_SIZE * degreesPerPixel();
+		}
+
+		private double degreesPerPixel()
+		{
+			return mpp / METERS_PER_DEGREE;
+		}
+
+		@Override
+		void exact(double lon, double lat, double[] pq)
+		{
+			if (lat < -90 || lat > 90)
+				throw new ProjectionException();
+			direct(lon, lat, pq);
+		}
+
+		@Override
+		void direct(double lon, double lat, double[] pq)
+		{
+			map.getXYByLatLon(lat, lon, xy);
+			pq[0] = xy[0];
+			pq[1] = xy[1];
+		}
+
+		@Override
+		double error(double x1, double y1, double x2, double y2)
+		{
+			// exact values are rounded to pixels
+			double d = Math.max(Math.abs(x1 - x2), Math.abs(y1 - y2)) - 0.5;
+			return d > 0 ? d : 0;
+		}
+	}
+}
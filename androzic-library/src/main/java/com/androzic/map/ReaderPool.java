@@ -0,0 +1,145 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.androzic.map;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LRU pool of opened map readers (image files, databases) released by deactivated maps. Map
+ * that is activated again gets its reader back without paying the open cost. Pool is bounded
+ * by the number of file descriptors held by idle readers, least recently released readers
+ * are closed first.
+ */
+public final class ReaderPool
+{
+	private static final int MAX_DESCRIPTORS = 16;
+
+	public interface Closer
+	{
+		void close(Object handle);
+	}
+
+	private static final LinkedHashMap<String, Entry> idle = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private static int descriptors = 0;
+
+	private ReaderPool()
+	{
+	}
+
+	/**
+	 * Returns pool key for a file. Key includes file size and modification time, so readers of
+	 * replaced files are never reused.
+	 */
+	public static String getKey(File file)
+	{
+		return file.getAbsolutePath() + ':' + file.length() + ':' + file.lastModified();
+	}
+
+	/**
+	 * Takes idle reader from the pool.
+	 *
+	 * @return reader or null if there is no idle reader for the key
+	 */
+	public static <T> T acquire(String key, Class<T> type)
+	{
+		synchronized (idle)
+		{
+			Entry entry = idle.get(key);
+			if (entry == null || !type.isInstance(entry.handle))
+				return null;
+			idle.remove(key);
+			descriptors -= entry.descriptors;
+			return type.cast(entry.handle);
+		}
+	}
+
+	/**
+	 * Puts reader to the pool. Readers that do not fit into descriptor budget are closed.
+	 *
+	 * @param descriptors number of file descriptors held by reader
+	 */
+	public static void release(String key, Object handle, int descriptors, Closer closer)
+	{
+		List<Entry> evicted = new ArrayList<Entry>();
+		synchronized (idle)
+		{
+			Entry old = idle.put(key, new Entry(handle, descriptors, closer));
+			if (old != null)
+			{
+				ReaderPool.descriptors -= old.descriptors;
+				if (old.handle != handle)
+					evicted.add(old);
+			}
+			ReaderPool.descriptors += descriptors;
+			Iterator<Map.Entry<String, Entry>> i = idle.entrySet().iterator();
+			while (ReaderPool.descriptors > MAX_DESCRIPTORS && i.hasNext())
+			{
+				Entry entry = i.next().getValue();
+				i.remove();
+				ReaderPool.descriptors -= entry.descriptors;
+				evicted.add(entry);
+			}
+		}
+		// Readers are closed outside of the lock as closing can block on I/O
+		for (Entry entry : evicted)
+			entry.close();
+	}
+
+	/**
+	 * Closes all idle readers.
+	 */
+	public static void clear()
+	{
+		List<Entry> evicted;
+		synchronized (idle)
+		{
+			evicted = new ArrayList<Entry>(idle.values());
+			idle.clear();
+			descriptors = 0;
+		}
+		for (Entry entry : evicted)
+			entry.close();
+	}
+
+	private static class Entry
+	{
+		final Object handle;
+		final int descriptors;
+		final Closer closer;
+
+		Entry(Object handle, int descriptors, Closer closer)
+		{
+			this.handle = handle;
+			this.descriptors = descriptors;
+			this.closer = closer;
+		}
+
+		void close()
+		{
+			closer.close(handle);
+		}
+	}
+}
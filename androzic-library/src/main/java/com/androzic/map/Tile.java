@@ -45,6 +45,11 @@ public class Tile
 	 */
 	public boolean expired = false;
 
+	/**
+	 * Memory held by tile bitmap when it was put to cache
+	 */
+	int size;
+
 	/**
 	 * X number of this tile.
 	 */
@@ -22,11 +22,15 @@ package com.androzic.map;
 
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Paint;
 import android.graphics.Path;
+import android.graphics.RectF;
+import android.graphics.Region;
 
 import com.androzic.Log;
 import com.androzic.ui.Viewport;
 import com.jhlabs.map.Ellipsoid;
+import com.jhlabs.map.proj.Projection;
 import com.jhlabs.map.proj.ProjectionFactory;
 
 public abstract class TileMap extends BaseMap
@@ -48,6 +52,8 @@ public abstract class TileMap extends BaseMap
 	private double prescaleFactor = 1.;
 
 	protected transient double lastLatitude;
+	private transient RectF tileRect;
+	private transient Paint tilePaint;
 	private transient double defMPP;
 
 	protected TileMap()
@@ -59,9 +65,9 @@ public abstract class TileMap extends BaseMap
 		super(path);
 
 		datum = "WGS84";
-		projection = ProjectionFactory.fromPROJ4Specification("+proj=merc".split(" "));
-		projection.setEllipsoid(Ellipsoid.WGS_1984);
-		projection.initialize();
+		Projection merc = ProjectionFactory.fromPROJ4Specification("+proj=merc".split(" "));
+		merc.setEllipsoid(Ellipsoid.WGS_1984);
+		projection = ProjectionFactory.getSharedProjection(merc);
 
 		zoom = 1.;
 		dynZoom = 1.;
@@ -101,24 +107,13 @@ public abstract class TileMap extends BaseMap
 	@Override
 	public int getScaledWidth()
 	{
-		return (int) (Math.pow(2.0, srcZoom) * tileSize * zoom);
+		return (int) (WebMercator.tiles(srcZoom) * tileSize * zoom);
 	}
 
 	@Override
 	public int getScaledHeight()
 	{
-		return (int) (Math.pow(2.0, srcZoom) * tileSize * zoom);
-	}
-
-	/**
-	 * Calculates the inverse hyperbolic tangent of the number, i.e.
-	 * the value whose hyperbolic tangent is number
-	 * @param arg number
-	 * @return inverse hyperbolic tangent
-	 */
-	private static double atanh (double arg)
-	{
-		return 0.5 * Math.log((1 + arg) / (1 - arg));
+		return (int) (WebMercator.tiles(srcZoom) * tileSize * zoom);
 	}
 
 	@Override
@@ -126,33 +121,10 @@ public abstract class TileMap extends BaseMap
 	{
 		int map_x = (int) (x * 1. / dynZoom);
 		int map_y = (int) (y * 1. / dynZoom);
-		double dx = map_x * 1. / tileSize;
-		double dy = map_y * 1. / tileSize;
+		double size = WebMercator.tiles(srcZoom) * tileSize;
 
-		double n = Math.pow(2.0, srcZoom);
-		if (ellipsoid)
-		{
-			ll[0] = (map_y - tileSize * n / 2) / -(tileSize * n / (2 * Math.PI));
-			ll[0] = (2 * Math.atan(Math.exp(ll[0])) - Math.PI / 2) * 180 / Math.PI;
-
-			double Zu = Math.toRadians(ll[0]);
-			double Zum1 = Zu + 1;
-			double yy = (map_y - tileSize * n / 2);
-			int i = 100000;
-			while ((Math.abs(Zum1 - Zu) > 0.0000001) && (i != 0))
-			{
-				i--;
-				Zum1 = Zu;
-				Zu = Math.asin(1 - ((1 + Math.sin(Zum1)) * Math.pow(1 - 0.0818197 * Math.sin(Zum1), 0.0818197))
-						/ (Math.exp((2 * yy) / -(tileSize * n / (2 * Math.PI))) * Math.pow(1 + 0.0818197 * Math.sin(Zum1), 0.0818197)));
-			}
-			ll[0] = Math.toDegrees(Zu);
-		}
-		else
-		{
-			ll[0] = Math.toDegrees(Math.atan((Math.sinh(Math.PI * (1 - 2 * dy / n)))));
-		}
-		ll[1] = dx * 360.0 / n - 180.0;
+		ll[0] = WebMercator.latitude(map_y / size, ellipsoid);
+		ll[1] = WebMercator.longitude(map_x / size);
 
 		return true;
 	}
@@ -160,37 +132,26 @@ public abstract class TileMap extends BaseMap
 	@Override
 	public boolean getXYByLatLon(double lat, double lon, int[] xy)
 	{
-		double n = Math.pow(2.0, srcZoom);
-
-		xy[0] = (int) Math.floor((lon + 180.0) / 360.0 * n * tileSize * dynZoom);
+		double size = WebMercator.tiles(srcZoom) * tileSize * dynZoom;
 
-		if (ellipsoid)
-		{
-			double z = Math.sin(Math.toRadians(lat));
-			xy[1] = (int) Math.floor((1 - (atanh(z) - 0.0818197 * atanh(0.0818197 * z)) / Math.PI) / 2 * n * tileSize * dynZoom);
-		}
-		else
-		{
-			xy[1] = (int) Math.floor((1 - (Math.log(Math.tan(Math.toRadians(lat)) + 1 / Math.cos(Math.toRadians(lat))) / Math.PI)) / 2 * n * tileSize * dynZoom);
-		}
+		xy[0] = (int) Math.floor(WebMercator.x(lon) * size);
+		xy[1] = (int) Math.floor(WebMercator.y(lat, ellipsoid) * size);
 		return true;
 	}
 
-	public void getTileXYByLatLon(double lat, double lon, int[] xy)
+	@Override
+	public int getXYByLatLon(double[] lat, double[] lon, int count, int[] xy)
 	{
-		double n = Math.pow(2.0, srcZoom);
+		WebMercator.getXYByLatLon(lat, lon, count, WebMercator.tiles(srcZoom) * tileSize * dynZoom, ellipsoid, xy);
+		return count;
+	}
 
-		xy[0] = (int) Math.floor((lon + 180) / 360 * n) ;
+	public void getTileXYByLatLon(double lat, double lon, int[] xy)
+	{
+		double n = WebMercator.tiles(srcZoom);
 
-		if (ellipsoid)
-		{
-			double z = Math.sin(Math.toRadians(lat));
-			xy[1] = (int) Math.floor((1 - (atanh(z)-0.0818197*atanh(0.0818197*z)) / Math.PI) / 2 * n);
-		}
-		else
-		{
-			xy[1] = (int) Math.floor((1 - Math.log(Math.tan(Math.toRadians(lat)) + 1 / Math.cos(Math.toRadians(lat))) / Math.PI) / 2 * n);
-		}
+		xy[0] = (int) Math.floor(WebMercator.x(lon) * n);
+		xy[1] = (int) Math.floor(WebMercator.y(lat, ellipsoid) * n);
 
 		if (xy[0] < 0)
 			xy[0] = 0;
@@ -228,12 +189,12 @@ public abstract class TileMap extends BaseMap
 		double zMpp;
 		for (int z = maxZoom; z > minZoom; z--)
 		{
-			zMpp = prescaleFactor * projection.getEllipsoid().equatorRadius * Math.PI * 2 * Math.cos(Math.toRadians(lastLatitude)) / Math.pow(2.0, (z + 8));
+			zMpp = prescaleFactor * projection.getEllipsoid().equatorRadius * Math.PI * 2 * Math.cos(Math.toRadians(lastLatitude)) / WebMercator.tiles(z + 8);
 			double ratio = refMpp / zMpp;
 			if (ratio <= 5d)
 				return ratio;
 		}
-		zMpp = prescaleFactor * projection.getEllipsoid().equatorRadius * Math.PI * 2 * Math.cos(Math.toRadians(lastLatitude)) / Math.pow(2.0, (minZoom + 8));
+		zMpp = prescaleFactor * projection.getEllipsoid().equatorRadius * Math.PI * 2 * Math.cos(Math.toRadians(lastLatitude)) / WebMercator.tiles(minZoom + 8);
 		return refMpp / zMpp;
 	}
 
@@ -246,7 +207,7 @@ public abstract class TileMap extends BaseMap
 		else if (z < minZoom || z > maxZoom)
 			return zoom * 2;
 		else
-			return Math.pow(2, srcZoom + 1 - defZoom);
+			return WebMercator.tiles(srcZoom + 1 - defZoom);
 	}
 
 	@Override
@@ -258,7 +219,7 @@ public abstract class TileMap extends BaseMap
 		else if (z < minZoom || z > maxZoom)
 			return zoom / 2;
 		else
-			return Math.pow(2, srcZoom - 1 - defZoom);
+			return WebMercator.tiles(srcZoom - 1 - defZoom);
 	}
 
 	@Override
@@ -287,7 +248,7 @@ public abstract class TileMap extends BaseMap
 		}
 
 		zoom = z;
-		dynZoom = zoom / Math.pow(2, srcZoom - defZoom);
+		dynZoom = zoom / WebMercator.tiles(srcZoom - defZoom);
 		if (Math.abs(dynZoom - 1) < 0.0078125)
 			dynZoom = 1.0;
 		Log.e("TileMap", "z: " + srcZoom + " diff: " + zDiff + " zoom: " + zoom + " dymZoom: " + dynZoom);
@@ -326,12 +287,18 @@ public abstract class TileMap extends BaseMap
 	     * ellipsoidal, there will be a slight error in this calculation. But it's very slight.
 	     * (0.3% maximum error)
 	     */
-		mpp = prescaleFactor * projection.getEllipsoid().equatorRadius * Math.PI * 2 * Math.cos(Math.toRadians(lastLatitude)) / Math.pow(2.0, (srcZoom + 8));
-		defMPP = prescaleFactor * projection.getEllipsoid().equatorRadius * Math.PI * 2 * Math.cos(Math.toRadians(lastLatitude)) / Math.pow(2.0, (defZoom + 8));
+		mpp = prescaleFactor * projection.getEllipsoid().equatorRadius * Math.PI * 2 * Math.cos(Math.toRadians(lastLatitude)) / WebMercator.tiles(srcZoom + 8);
+		defMPP = prescaleFactor * projection.getEllipsoid().equatorRadius * Math.PI * 2 * Math.cos(Math.toRadians(lastLatitude)) / WebMercator.tiles(defZoom + 8);
 	}
 
 	@Override
 	public boolean drawMap(Viewport viewport, boolean cropBorder, boolean drawBorder, Canvas c) throws OutOfMemoryError
+	{
+		return drawMap(viewport, cropBorder, drawBorder, null, c);
+	}
+
+	@Override
+	public boolean drawMap(Viewport viewport, boolean cropBorder, boolean drawBorder, Region visible, Canvas c) throws OutOfMemoryError
 	{
 		if (!isActive)
 			return false;
@@ -375,20 +342,26 @@ public abstract class TileMap extends BaseMap
 			r_min = 0;
 			result = false;
 		}
-		if (c_max > Math.pow(2.0, srcZoom))
+		int n = (int) WebMercator.tiles(srcZoom);
+		if (c_max > n)
 		{
-			c_max = (int) (Math.pow(2.0, srcZoom));
+			c_max = n;
 			result = false;
 		}
-		if (r_max > Math.pow(2.0, srcZoom))
+		if (r_max > n)
 		{
-			r_max = (int) (Math.pow(2.0, srcZoom));
+			r_max = n;
 			result = false;
 		}
 
 		float w2mx = viewport.canvasWidth / 2 - map_xy[0];
 		float h2my = viewport.canvasHeight / 2 - map_xy[1];
 		int twh = Math.round(tile_wh);
+		if (tilePaint == null)
+		{
+			tileRect = new RectF();
+			tilePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+		}
 
 		int i = osm_y, j = osm_x, dx = 0, dy = -1;
 		int t = Math.max(c_max - c_min + 1, r_max - r_min + 1);
@@ -396,16 +369,23 @@ public abstract class TileMap extends BaseMap
 
 		for (int k = 0; k < maxI; k++)
 		{
-			if (c_min <= j && j <= c_max && r_min <= i && i <= r_max)
+			float tx = w2mx + j * tile_wh;
+			float ty = h2my + i * tile_wh;
+			if (c_min <= j && j <= c_max && r_min <= i && i <= r_max && isTileVisible(visible, (int) tx, (int) ty, (int) tx + twh, (int) ty + twh))
 			{
 				Bitmap tile = getTile(j, i);
 				if (tile != null && ! tile.isRecycled())
 				{
+					// Tiles are cached in source size and scaled when drawn
 					if (tile.getWidth() != twh)
-						tile = Bitmap.createScaledBitmap(tile, twh, twh, true);
-					float tx = w2mx + j * tile_wh;
-					float ty = h2my + i * tile_wh;
-					c.drawBitmap(tile, tx, ty, null);
+					{
+						tileRect.set(tx, ty, tx + twh, ty + twh);
+						c.drawBitmap(tile, null, tileRect, tilePaint);
+					}
+					else
+					{
+						c.drawBitmap(tile, tx, ty, null);
+					}
 				}
 				else
 				{
@@ -433,14 +413,15 @@ public abstract class TileMap extends BaseMap
 	@Override
 	public synchronized void recalculateCache()
 	{
-		TileRAMCache oldCache = cache;
 		int nx = (int) Math.ceil(viewportWidth * 1. / (tileSize * dynZoom)) + 2;
 		int ny = (int) Math.ceil(viewportHeight * 1. / (tileSize * dynZoom)) + 2;
 		int cacheSize = nx * ny;
 		Log.e("TileMap", "Cache size: " + cacheSize);
-		cache = new TileRAMCache(cacheSize);
-		if (oldCache != null)
-			oldCache.destroy();
+		// Tiles of previous zoom levels are kept, they are evicted when memory is needed
+		if (cache == null)
+			cache = new TileRAMCache(cacheSize);
+		else
+			cache.setCapacity(cacheSize);
 	}
 
 	protected abstract Bitmap getTile(int x, int y) throws OutOfMemoryError;
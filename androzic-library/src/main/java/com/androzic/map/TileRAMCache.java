@@ -22,11 +22,17 @@
 
 package com.androzic.map;
 
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+import android.graphics.Bitmap;
+
 /**
- * A thread-safe cache for tiles with a fixed size and LRU policy.
+ * A thread-safe LRU cache for tiles. Tile keys include zoom level, so tiles of different
+ * zoom levels live in the same cache and survive zoom changes. Cache is bounded by memory
+ * shared by all tile caches rather than by the number of tiles, but the number of tiles
+ * specified as capacity (usually tiles needed to fill the screen) is always retained.
  */
 public class TileRAMCache
 {
@@ -35,14 +41,20 @@ public class TileRAMCache
 	 */
 	private static final float LOAD_FACTOR = .75f;
 
-	private final int capacity;
+	/**
+	 * Memory available for tile bitmaps of all caches.
+	 */
+	private static final long MEMORY_LIMIT = Runtime.getRuntime().maxMemory() / 4;
+	private static long memoryUsed = 0;
+
+	private int capacity;
 	private LinkedHashMap<Long, Tile> map;
 
 	/**
-	 * Constructs an tile cache with a fixes size and LRU policy.
+	 * Constructs a tile cache with LRU policy.
 	 * 
 	 * @param capacity
-	 *            the maximum number of entries in the cache.
+	 *            the number of entries that are kept regardless of memory limit.
 	 * @throws IllegalArgumentException
 	 *             if the capacity is negative.
 	 */
@@ -53,31 +65,21 @@ public class TileRAMCache
 			throw new IllegalArgumentException();
 		}
 		this.capacity = capacity;
-		this.map = createMap(this.capacity);
+		this.map = new LinkedHashMap<Long, Tile>((int)(capacity * 1. / LOAD_FACTOR + 2), LOAD_FACTOR, true);
 	}
 
-	private LinkedHashMap<Long, Tile> createMap(final int initialCapacity)
+	/**
+	 * Changes the number of entries that are kept regardless of memory limit. Cached tiles are
+	 * not discarded.
+	 */
+	public synchronized void setCapacity(int capacity)
 	{
-		return new LinkedHashMap<Long, Tile>((int)(initialCapacity * 1. / LOAD_FACTOR + 2), LOAD_FACTOR, true) {
-			private static final long serialVersionUID = 4L;
-
-			/*
-			@Override
-			public Tile remove(Object key) {
-				Tile tile = super.remove(key);
-				if (tile.bitmap != null)
-					tile.bitmap.recycle();
-				tile.bitmap = null;
-				return tile;
-			}
-			 */
-
-			@Override
-			protected boolean removeEldestEntry(Map.Entry<Long, Tile> eldest)
-			{
-				return size() > initialCapacity;
-			}
-		};
+		if (capacity < 0)
+		{
+			throw new IllegalArgumentException();
+		}
+		this.capacity = capacity;
+		trim();
 	}
 
 	/**
@@ -99,14 +101,10 @@ public class TileRAMCache
 	{
 		if (map != null)
 		{
-			/*
+			long size = 0;
 			for (Tile tile : map.values())
-			{
-				if (tile.bitmap != null)
-					tile.bitmap.recycle();
-				tile.bitmap = null;
-			}
-			*/
+				size += tile.size;
+			allocate(-size);
 			map.clear();
 		}
 	}
@@ -144,18 +142,73 @@ public class TileRAMCache
 	{
 		if (capacity > 0 && map != null)
 		{
-			if (map.containsKey(key))
+			Tile t = map.get(key);
+			if (t != null)
 			{
-				Tile t = map.get(key);
 				if (t.generated && !tile.generated)
-					map.remove(key);
+					remove(key);
 				else if (t.expired && !tile.expired)
-					map.remove(key);
-				// the item is already in the cache
+					remove(key);
+				// the item is already in the cache, but its bitmap could be updated
 				else
+				{
+					if (t == tile)
+						resize(tile);
 					return;
+				}
 			}
+			tile.size = getSize(tile.bitmap);
+			allocate(tile.size);
 			map.put(key, tile);
+			trim();
 		}
 	}
-}
\ No newline at end of file
+
+	public synchronized void remove(long key)
+	{
+		if (map == null)
+			return;
+		Tile tile = map.remove(key);
+		if (tile != null)
+			allocate(-tile.size);
+	}
+
+	private void resize(Tile tile)
+	{
+		int size = getSize(tile.bitmap);
+		allocate(size - tile.size);
+		tile.size = size;
+		trim();
+	}
+
+	/**
+	 * Removes least recently used tiles while memory limit is exceeded.
+	 */
+	private void trim()
+	{
+		if (map == null)
+			return;
+		Iterator<Tile> i = map.values().iterator();
+		while (map.size() > capacity && i.hasNext() && isOverLimit())
+		{
+			Tile tile = i.next();
+			i.remove();
+			allocate(-tile.size);
+		}
+	}
+
+	private static int getSize(Bitmap bitmap)
+	{
+		return bitmap != null ? bitmap.getRowBytes() * bitmap.getHeight() : 0;
+	}
+
+	private static synchronized void allocate(long size)
+	{
+		memoryUsed += size;
+	}
+
+	private static synchronized boolean isOverLimit()
+	{
+		return memoryUsed > MEMORY_LIMIT;
+	}
+}
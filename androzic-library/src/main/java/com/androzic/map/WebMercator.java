@@ -0,0 +1,158 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.androzic.map;
+
+/**
+ * Web Mercator math used by tile maps. Coordinates are normalized to the world size, (0, 0) is
+ * the top left corner of the world and (1, 1) is the bottom right. Ellipsoidal variant (used by
+ * some providers, e.g. Yandex) is inverted with conformal latitude series, without iterations.
+ */
+public final class WebMercator
+{
+	/**
+	 * Eccentricity used by ellipsoidal tile providers
+	 */
+	public static final double E = 0.0818197;
+
+	private static final double E2 = E * E;
+	private static final double E4 = E2 * E2;
+	private static final double E6 = E4 * E2;
+	private static final double E8 = E4 * E4;
+	// Conformal latitude to geodetic latitude series (Snyder, Map Projections - A Working Manual, 3-5)
+	private static final double C2 = E2 / 2 + 5 * E4 / 24 + E6 / 12 + 13 * E8 / 360;
+	private static final double C4 = 7 * E4 / 48 + 29 * E6 / 240 + 811 * E8 / 11520;
+	private static final double C6 = 7 * E6 / 120 + 81 * E8 / 1120;
+	private static final double C8 = 4279 * E8 / 161280;
+
+	private static final double[] TILES = new double[64];
+
+	static
+	{
+		for (int z = 0; z < TILES.length; z++)
+			TILES[z] = Math.scalb(1.0, z);
+	}
+
+	private WebMercator()
+	{
+	}
+
+	/**
+	 * Returns number of tiles per side at zoom level, i.e. 2^zoom, zoom can be negative
+	 * for relative zoom levels.
+	 */
+	public static double tiles(int zoom)
+	{
+		return zoom >= 0 && zoom < TILES.length ? TILES[zoom] : Math.scalb(1.0, zoom);
+	}
+
+	/**
+	 * Converts longitude to normalized x.
+	 */
+	public static double x(double lon)
+	{
+		return (lon + 180.0) / 360.0;
+	}
+
+	/**
+	 * Converts latitude to normalized y.
+	 */
+	public static double y(double lat, boolean ellipsoid)
+	{
+		double z = Math.sin(Math.toRadians(lat));
+		double psi = atanh(z);
+		if (ellipsoid)
+			psi -= E * atanh(E * z);
+		return (1 - psi / Math.PI) / 2;
+	}
+
+	/**
+	 * Converts normalized x to longitude.
+	 */
+	public static double longitude(double x)
+	{
+		return x * 360.0 - 180.0;
+	}
+
+	/**
+	 * Converts normalized y to latitude.
+	 */
+	public static double latitude(double y, boolean ellipsoid)
+	{
+		double chi = Math.atan(Math.sinh(Math.PI * (1 - 2 * y)));
+		if (ellipsoid)
+		{
+			double s2 = Math.sin(2 * chi);
+			double c2 = Math.cos(2 * chi);
+			// sin(4x), sin(6x), sin(8x) by multiple angle recurrence
+			double s4 = 2 * s2 * c2;
+			double c4 = 1 - 2 * s2 * s2;
+			double s6 = s4 * c2 + c4 * s2;
+			double s8 = 2 * s4 * c4;
+			chi += C2 * s2 + C4 * s4 + C6 * s6 + C8 * s8;
+		}
+		return Math.toDegrees(chi);
+	}
+
+	/**
+	 * Converts coordinates to pixels in bulk.
+	 * @param size world size in pixels
+	 * @param xy receives x and y of each point in pairs
+	 */
+	public static void getXYByLatLon(double[] lat, double[] lon, int count, double size, boolean ellipsoid, int[] xy)
+	{
+		double sx = size / 360.0;
+		double sy = size / 2;
+		double ipi = 1 / Math.PI;
+		for (int i = 0; i < count; i++)
+		{
+			double z = Math.sin(Math.toRadians(lat[i]));
+			double psi = atanh(z);
+			if (ellipsoid)
+				psi -= E * atanh(E * z);
+			xy[i * 2] = (int) Math.floor((lon[i] + 180.0) * sx);
+			xy[i * 2 + 1] = (int) Math.floor((1 - psi * ipi) * sy);
+		}
+	}
+
+	/**
+	 * Converts pixels to coordinates in bulk.
+	 * @param size world size in pixels
+	 */
+	public static void getLatLonByXY(int[] xy, int count, double size, boolean ellipsoid, double[] lat, double[] lon)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			lat[i] = latitude(xy[i * 2 + 1] / size, ellipsoid);
+			lon[i] = longitude(xy[i * 2] / size);
+		}
+	}
+
+	/**
+	 * Calculates the inverse hyperbolic tangent of the number, i.e.
+	 * the value whose hyperbolic tangent is number
+	 * @param arg number
+	 * @return inverse hyperbolic tangent
+	 */
+	static double atanh(double arg)
+	{
+		return 0.5 * Math.log((1 + arg) / (1 - arg));
+	}
+}
@@ -0,0 +1,173 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.androzic.map.mbtiles;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * MBTiles store backed by JDBC connection, used for headless export on desktop JVM
+ * (requires SQLite JDBC driver in classpath, e.g. org.xerial:sqlite-jdbc).
+ */
+public class JdbcMBTilesStore implements MBTilesStore
+{
+	private final String url;
+	private Connection connection;
+	private PreparedStatement insertTile;
+
+	/**
+	 * @param path database file path
+	 */
+	public JdbcMBTilesStore(String path)
+	{
+		this.url = "jdbc:sqlite:" + path;
+	}
+
+	@Override
+	public void open() throws IOException
+	{
+		try
+		{
+			connection = DriverManager.getConnection(url);
+			Statement statement = connection.createStatement();
+			statement.executeUpdate(MBTilesExporter.SQL_CREATE_TILES);
+			statement.executeUpdate(MBTilesExporter.SQL_CREATE_METADATA);
+			statement.executeUpdate(MBTilesExporter.SQL_CREATE_TILE_INDEX);
+			statement.close();
+			insertTile = connection.prepareStatement(MBTilesExporter.SQL_INSERT_TILE);
+		}
+		catch (SQLException e)
+		{
+			throw new IOException(e.getMessage());
+		}
+	}
+
+	@Override
+	public void putMetadata(String name, String value) throws IOException
+	{
+		try
+		{
+			PreparedStatement delete = connection.prepareStatement(MBTilesExporter.SQL_DELETE_METADATA);
+			delete.setString(1, name);
+			delete.executeUpdate();
+			delete.close();
+			PreparedStatement insert = connection.prepareStatement(MBTilesExporter.SQL_INSERT_METADATA);
+			insert.setString(1, name);
+			insert.setString(2, value);
+			insert.executeUpdate();
+			insert.close();
+		}
+		catch (SQLException e)
+		{
+			throw new IOException(e.getMessage());
+		}
+	}
+
+	@Override
+	public Set<Long> getTiles(int zoom) throws IOException
+	{
+		Set<Long> tiles = new HashSet<>();
+		try
+		{
+			PreparedStatement query = connection.prepareStatement(MBTilesExporter.SQL_GET_TILES);
+			query.setInt(1, zoom);
+			ResultSet rs = query.executeQuery();
+			while (rs.next())
+				tiles.add(MBTilesExporter.getTileKey(rs.getInt(1), rs.getInt(2)));
+			rs.close();
+			query.close();
+		}
+		catch (SQLException e)
+		{
+			throw new IOException(e.getMessage());
+		}
+		return tiles;
+	}
+
+	@Override
+	public void beginBatch() throws IOException
+	{
+		try
+		{
+			connection.setAutoCommit(false);
+		}
+		catch (SQLException e)
+		{
+			throw new IOException(e.getMessage());
+		}
+	}
+
+	@Override
+	public void putTile(int zoom, int column, int row, byte[] data) throws IOException
+	{
+		try
+		{
+			insertTile.setInt(1, zoom);
+			insertTile.setInt(2, column);
+			insertTile.setInt(3, row);
+			insertTile.setBytes(4, data);
+			insertTile.executeUpdate();
+		}
+		catch (SQLException e)
+		{
+			throw new IOException(e.getMessage());
+		}
+	}
+
+	@Override
+	public void commitBatch() throws IOException
+	{
+		try
+		{
+			connection.commit();
+			connection.setAutoCommit(true);
+		}
+		catch (SQLException e)
+		{
+			throw new IOException(e.getMessage());
+		}
+	}
+
+	@Override
+	public void close()
+	{
+		try
+		{
+			if (insertTile != null)
+				insertTile.close();
+			if (connection != null)
+				connection.close();
+		}
+		catch (SQLException e)
+		{
+			e.printStackTrace();
+		}
+		insertTile = null;
+		connection = null;
+	}
+}
@@ -0,0 +1,603 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.androzic.map.mbtiles;
+
+import com.androzic.map.MapPoint;
+import com.androzic.map.ozf.ImageTransform;
+import com.androzic.map.ozf.OzfDecoder;
+import com.androzic.map.ozf.OzfFile;
+import com.androzic.util.Geo;
+import com.jhlabs.map.proj.ProjectionException;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Converts OziExplorer map to Web Mercator MBTiles tile pyramid readable by {@link MBTilesMap}.
+ * Tiles are rendered by a pool of workers and written by calling thread in batched transactions.
+ * Tiles already present in store are skipped so interrupted export can be resumed.
+ *
+ * Exporter does not use Android classes, it works with image file, image transform and map
+ * bounds, so it can run on plain JVM and map can be rendered while it is exported.
+ */
+public class MBTilesExporter
+{
+	static final String SQL_CREATE_TILES = "CREATE TABLE IF NOT EXISTS tiles (zoom_level integer, tile_column integer, tile_row integer, tile_data blob);";
+	static final String SQL_CREATE_METADATA = "CREATE TABLE IF NOT EXISTS metadata (name text, value text);";
+	static final String SQL_CREATE_TILE_INDEX = "CREATE UNIQUE INDEX IF NOT EXISTS tile_index ON tiles (zoom_level, tile_column, tile_row);";
+	static final String SQL_INSERT_TILE = "INSERT OR REPLACE INTO tiles (zoom_level, tile_column, tile_row, tile_data) VALUES (?, ?, ?, ?)";
+	static final String SQL_DELETE_METADATA = "DELETE FROM metadata WHERE name = ?";
+	static final String SQL_INSERT_METADATA = "INSERT INTO metadata (name, value) VALUES (?, ?)";
+	static final String SQL_GET_TILES = "SELECT tile_column, tile_row FROM tiles WHERE zoom_level = ?";
+
+	public static final int TILE_SIZE = 256;
+
+	/**
+	 * Reprojection is calculated exactly in grid nodes and interpolated between them
+	 */
+	private static final int GRID_STEP = 16;
+	private static final int MAX_SAMPLES = 4;
+	private static final int SOURCE_CACHE_SIZE = 256;
+	private static final double EARTH_CIRCUMFERENCE = 2 * Math.PI * 6378137.;
+
+	public interface OnProgressListener
+	{
+		void onProgress(int zoom, int done, int total);
+	}
+
+	private final OzfFile file;
+	private final ImageTransform transform;
+	private final double[] boundsLat;
+	private final double[] boundsLon;
+	private final MBTilesStore store;
+	private String name = "";
+	private int minZoom = -1;
+	private int maxZoom = -1;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int batchSize = 100;
+	private OnProgressListener progressListener;
+
+	private SourceImage source;
+
+	/**
+	 * @param file opened OZF image, it is not closed by exporter
+	 * @param transform conversion between geographic coordinates and image pixels at native scale
+	 * @param bounds polygon of map area, if it is null the whole image is exported
+	 * @param store tile store
+	 */
+	public MBTilesExporter(OzfFile file, ImageTransform transform, MapPoint[] bounds, MBTilesStore store)
+	{
+		this.file = file;
+		this.transform = transform;
+		this.store = store;
+		if (bounds == null || bounds.length < 3)
+			bounds = getImageBounds(file, transform);
+		boundsLat = new double[bounds.length];
+		boundsLon = new double[bounds.length];
+		for (int i = 0; i < bounds.length; i++)
+		{
+			boundsLat[i] = bounds[i].lat;
+			boundsLon[i] = bounds[i].lon;
+		}
+	}
+
+	/**
+	 * Sets map name stored in tileset metadata.
+	 */
+	public void setName(String name)
+	{
+		this.name = name;
+	}
+
+	/**
+	 * Sets zoom range, by default maximum zoom is the first zoom that does not loose
+	 * map details and minimum zoom is four levels less.
+	 */
+	public void setZoomRange(int min, int max)
+	{
+		minZoom = min;
+		maxZoom = max;
+	}
+
+	public void setThreads(int threads)
+	{
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Sets number of tiles written in one database transaction.
+	 */
+	public void setBatchSize(int batchSize)
+	{
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	public void setProgressListener(OnProgressListener listener)
+	{
+		progressListener = listener;
+	}
+
+	public static long getTileKey(int column, int row)
+	{
+		return (long) column << 32 | row & 0xFFFFFFFFL;
+	}
+
+	public void export() throws IOException, InterruptedException
+	{
+		source = new SourceImage(file);
+
+		// minLat, maxLat, minLon, maxLon
+		double[] extent = getExtent();
+		int max = maxZoom >= 0 ? maxZoom : getNativeZoom((extent[0] + extent[1]) / 2);
+		int min = minZoom >= 0 ? minZoom : Math.max(0, max - 4);
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		store.open();
+		try
+		{
+			store.putMetadata("name", name);
+			store.putMetadata("type", "baselayer");
+			store.putMetadata("version", "1.1");
+			store.putMetadata("description", name);
+			store.putMetadata("format", "png");
+			store.putMetadata("bounds", String.format(Locale.US, "%f,%f,%f,%f", extent[2], extent[0], extent[3], extent[1]));
+			store.putMetadata("minzoom", String.valueOf(min));
+			store.putMetadata("maxzoom", String.valueOf(max));
+
+			for (int z = max; z >= min; z--)
+			{
+				int samples = Math.min(MAX_SAMPLES, 1 << (max - z));
+				exportZoom(executor, z, samples, extent);
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+			store.close();
+			source = null;
+		}
+	}
+
+	private void exportZoom(ExecutorService executor, int z, int samples, double[] extent) throws IOException, InterruptedException
+	{
+		int n = 1 << z;
+		int txMin = lonToTile(extent[2], n);
+		int txMax = lonToTile(extent[3], n);
+		int tyMin = latToTile(extent[1], n);
+		int tyMax = latToTile(extent[0], n);
+		int total = (txMax - txMin + 1) * (tyMax - tyMin + 1);
+		int done = 0;
+
+		Set<Long> existing = store.getTiles(z);
+		ExecutorCompletionService<TileResult> completion = new ExecutorCompletionService<>(executor);
+		int maxInFlight = threads * 4;
+		int inFlight = 0;
+		int pending = 0;
+
+		store.beginBatch();
+		try
+		{
+			for (int ty = tyMin; ty <= tyMax; ty++)
+			{
+				for (int tx = txMin; tx <= txMax; tx++)
+				{
+					if (existing.contains(getTileKey(tx, n - 1 - ty)))
+					{
+						done++;
+						continue;
+					}
+					completion.submit(new TileTask(z, tx, ty, samples));
+					inFlight++;
+					if (inFlight >= maxInFlight)
+					{
+						pending += write(completion.take(), n);
+						inFlight--;
+						done++;
+					}
+					if (pending >= batchSize)
+					{
+						store.commitBatch();
+						store.beginBatch();
+						pending = 0;
+						if (progressListener != null)
+							progressListener.onProgress(z, done, total);
+					}
+				}
+			}
+			while (inFlight > 0)
+			{
+				pending += write(completion.take(), n);
+				inFlight--;
+				done++;
+			}
+		}
+		finally
+		{
+			// Commit even if interrupted, so export can be resumed
+			store.commitBatch();
+		}
+		if (progressListener != null)
+			progressListener.onProgress(z, total, total);
+	}
+
+	private int write(Future<TileResult> future, int n) throws IOException, InterruptedException
+	{
+		TileResult result;
+		try
+		{
+			result = future.get();
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			throw new IOException(cause != null ? cause.toString() : e.toString());
+		}
+		if (result.data == null)
+			return 0;
+		store.putTile(result.z, result.tx, n - 1 - result.ty, result.data);
+		return 1;
+	}
+
+	/**
+	 * Returns image corners as map bounds.
+	 */
+	private static MapPoint[] getImageBounds(OzfFile file, ImageTransform transform)
+	{
+		int w = OzfDecoder.scale_dx(file, 0);
+		int h = OzfDecoder.scale_dy(file, 0);
+		int[][] corners = {{0, 0}, {w, 0}, {w, h}, {0, h}};
+		MapPoint[] bounds = new MapPoint[corners.length];
+		double[] ll = new double[2];
+		for (int i = 0; i < corners.length; i++)
+		{
+			transform.getLatLonByXY(corners[i][0], corners[i][1], ll);
+			bounds[i] = new MapPoint();
+			bounds[i].lat = ll[0];
+			bounds[i].lon = ll[1];
+		}
+		return bounds;
+	}
+
+	/**
+	 * Calculates map geographic extent from map bounds.
+	 */
+	private double[] getExtent()
+	{
+		double[] extent = {Double.MAX_VALUE, -Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE};
+		for (int i = 0; i < boundsLat.length; i++)
+		{
+			extent[0] = Math.min(extent[0], boundsLat[i]);
+			extent[1] = Math.max(extent[1], boundsLat[i]);
+			extent[2] = Math.min(extent[2], boundsLon[i]);
+			extent[3] = Math.max(extent[3], boundsLon[i]);
+		}
+		extent[0] = Math.max(extent[0], -85.0511);
+		extent[1] = Math.min(extent[1], 85.0511);
+		return extent;
+	}
+
+	/**
+	 * Tests if point lies inside map bounds polygon, same as {@link com.androzic.map.BaseMap#coversLatLon(double, double)}.
+	 */
+	private boolean coversLatLon(double lat, double lon)
+	{
+		int j = boundsLat.length - 1;
+		int odd = 0;
+
+		for (int i = 0; i < boundsLat.length; i++)
+		{
+			if (boundsLon[i] < lon && boundsLon[j] >= lon || boundsLon[j] < lon && boundsLon[i] >= lon)
+			{
+				if (boundsLat[i] + (lon - boundsLon[i]) / (boundsLon[j] - boundsLon[i]) * (boundsLat[j] - boundsLat[i]) < lat)
+					odd++;
+			}
+			j = i;
+		}
+
+		return odd % 2 == 1;
+	}
+
+	/**
+	 * Returns image pixel size in meters measured in the center of image.
+	 */
+	private double getMPP()
+	{
+		double cx = source.width / 2.;
+		double cy = source.height / 2.;
+		double d = Math.min(100, Math.min(cx, cy));
+		double[] c = new double[2];
+		double[] h = new double[2];
+		double[] v = new double[2];
+		transform.getLatLonByXY(cx, cy, c);
+		transform.getLatLonByXY(cx + d, cy, h);
+		transform.getLatLonByXY(cx, cy + d, v);
+		double dx = Geo.distance(c[0], c[1], h[0], h[1]);
+		double dy = Geo.distance(c[0], c[1], v[0], v[1]);
+		return Math.min(dx, dy) / d;
+	}
+
+	/**
+	 * Returns minimum zoom with pixel size not larger then map pixel size at given latitude.
+	 */
+	private int getNativeZoom(double lat)
+	{
+		double mpp = getMPP();
+		int z = (int) Math.ceil(Math.log(EARTH_CIRCUMFERENCE * Math.cos(Math.toRadians(lat)) / (TILE_SIZE * mpp)) / Math.log(2));
+		return Math.max(0, Math.min(22, z));
+	}
+
+	private static int lonToTile(double lon, int n)
+	{
+		int t = (int) Math.floor((lon + 180.) / 360. * n);
+		return Math.max(0, Math.min(n - 1, t));
+	}
+
+	private static int latToTile(double lat, int n)
+	{
+		double r = Math.toRadians(lat);
+		int t = (int) Math.floor((1 - Math.log(Math.tan(r) + 1 / Math.cos(r)) / Math.PI) / 2 * n);
+		return Math.max(0, Math.min(n - 1, t));
+	}
+
+	private static double pixelToLat(double py, double worldSize)
+	{
+		return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * py / worldSize))));
+	}
+
+	private static double pixelToLon(double px, double worldSize)
+	{
+		return px / worldSize * 360. - 180.;
+	}
+
+	private static class TileResult
+	{
+		int z;
+		int tx;
+		int ty;
+		byte[] data;
+	}
+
+	private class TileTask implements Callable<TileResult>
+	{
+		private final int z;
+		private final int tx;
+		private final int ty;
+		private final int samples;
+
+		TileTask(int z, int tx, int ty, int samples)
+		{
+			this.z = z;
+			this.tx = tx;
+			this.ty = ty;
+			this.samples = samples;
+		}
+
+		@Override
+		public TileResult call() throws Exception
+		{
+			TileResult result = new TileResult();
+			result.z = z;
+			result.tx = tx;
+			result.ty = ty;
+			int[] pixels = render();
+			if (pixels != null)
+				result.data = PngEncoder.encode(pixels, TILE_SIZE, TILE_SIZE);
+			return result;
+		}
+
+		private int[] render() throws InterruptedException
+		{
+			double worldSize = (double) TILE_SIZE * (1L << z);
+			double x0 = (double) tx * TILE_SIZE;
+			double y0 = (double) ty * TILE_SIZE;
+
+			// Exact reprojection in grid nodes
+			int nodes = TILE_SIZE / GRID_STEP + 1;
+			double[] gx = new double[nodes * nodes];
+			double[] gy = new double[nodes * nodes];
+			double[] xy = new double[2];
+			boolean any = false;
+			for (int j = 0; j < nodes; j++)
+			{
+				double lat = pixelToLat(y0 + j * GRID_STEP, worldSize);
+				for (int i = 0; i < nodes; i++)
+				{
+					double lon = pixelToLon(x0 + i * GRID_STEP, worldSize);
+					int k = j * nodes + i;
+					try
+					{
+						transform.getXYByLatLon(lat, lon, xy);
+						gx[k] = xy[0];
+						gy[k] = xy[1];
+						any = true;
+					}
+					catch (ProjectionException e)
+					{
+						gx[k] = Double.NaN;
+						gy[k] = Double.NaN;
+					}
+				}
+			}
+			if (!any)
+				return null;
+
+			double[] lats = new double[TILE_SIZE];
+			double[] lons = new double[TILE_SIZE];
+			for (int i = 0; i < TILE_SIZE; i++)
+			{
+				lats[i] = pixelToLat(y0 + i + .5, worldSize);
+				lons[i] = pixelToLon(x0 + i + .5, worldSize);
+			}
+
+			int[] pixels = new int[TILE_SIZE * TILE_SIZE];
+			SourceTiles tiles = new SourceTiles();
+			boolean empty = true;
+			double step = 1. / samples;
+
+			for (int py = 0; py < TILE_SIZE; py++)
+			{
+				if (Thread.interrupted())
+					throw new InterruptedException();
+				for (int px = 0; px < TILE_SIZE; px++)
+				{
+					if (!coversLatLon(lats[py], lons[px]))
+						continue;
+					int r = 0, g = 0, b = 0, n = 0;
+					for (int sy = 0; sy < samples; sy++)
+					{
+						for (int sx = 0; sx < samples; sx++)
+						{
+							double fx = px + (sx + .5) * step;
+							double fy = py + (sy + .5) * step;
+							int c = sample(gx, gy, nodes, fx, fy, tiles);
+							if (c == 0)
+								continue;
+							r += (c >> 16) & 0xFF;
+							g += (c >> 8) & 0xFF;
+							b += c & 0xFF;
+							n++;
+						}
+					}
+					if (n == 0)
+						continue;
+					pixels[py * TILE_SIZE + px] = 0xFF000000 | (r / n) << 16 | (g / n) << 8 | (b / n);
+					empty = false;
+				}
+			}
+			return empty ? null : pixels;
+		}
+
+		/**
+		 * Returns opaque source color for tile pixel position or 0 if it is outside of image
+		 */
+		private int sample(double[] gx, double[] gy, int nodes, double fx, double fy, SourceTiles tiles)
+		{
+			int i = Math.min((int) (fx / GRID_STEP), nodes - 2);
+			int j = Math.min((int) (fy / GRID_STEP), nodes - 2);
+			double u = (fx - i * GRID_STEP) / GRID_STEP;
+			double v = (fy - j * GRID_STEP) / GRID_STEP;
+			int k = j * nodes + i;
+			double ix = (1 - v) * ((1 - u) * gx[k] + u * gx[k+1]) + v * ((1 - u) * gx[k+nodes] + u * gx[k+nodes+1]);
+			double iy = (1 - v) * ((1 - u) * gy[k] + u * gy[k+1]) + v * ((1 - u) * gy[k+nodes] + u * gy[k+nodes+1]);
+			if (Double.isNaN(ix) || Double.isNaN(iy))
+				return 0;
+			int x = (int) Math.floor(ix);
+			int y = (int) Math.floor(iy);
+			if (x < 0 || y < 0 || x >= source.width || y >= source.height)
+				return 0;
+			int[] tile = tiles.get(x / OzfDecoder.OZF_TILE_WIDTH, y / OzfDecoder.OZF_TILE_HEIGHT);
+			if (tile == null)
+				return 0;
+			return tile[(y % OzfDecoder.OZF_TILE_HEIGHT) * OzfDecoder.OZF_TILE_WIDTH + x % OzfDecoder.OZF_TILE_WIDTH] | 0xFF000000;
+		}
+	}
+
+	/**
+	 * Per task lookup of decoded source tiles, avoids locking shared cache for every pixel
+	 */
+	private class SourceTiles
+	{
+		private int lastKey = -1;
+		private int[] lastTile;
+		private final Map<Integer, int[]> tiles = new HashMap<>();
+
+		int[] get(int c, int r)
+		{
+			int key = r * source.xtiles + c;
+			if (key == lastKey)
+				return lastTile;
+			int[] tile;
+			if (tiles.containsKey(key))
+			{
+				tile = tiles.get(key);
+			}
+			else
+			{
+				tile = source.getTile(c, r);
+				tiles.put(key, tile);
+			}
+			lastKey = key;
+			lastTile = tile;
+			return tile;
+		}
+	}
+
+	/**
+	 * Source image at native scale with LRU cache of decoded tiles shared by workers.
+	 * Tiles are decoded outside of cache lock, so workers decode different tiles in parallel.
+	 */
+	private static class SourceImage
+	{
+		final OzfFile file;
+		final int width;
+		final int height;
+		final int xtiles;
+		private final LinkedHashMap<Integer, int[]> cache;
+
+		SourceImage(OzfFile file)
+		{
+			this.file = file;
+			width = OzfDecoder.scale_dx(file, 0);
+			height = OzfDecoder.scale_dy(file, 0);
+			xtiles = OzfDecoder.num_tiles_per_x(file, 0);
+			cache = new LinkedHashMap<Integer, int[]>(SOURCE_CACHE_SIZE * 2, .75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Integer, int[]> eldest)
+				{
+					return size() > SOURCE_CACHE_SIZE;
+				}
+			};
+		}
+
+		int[] getTile(int c, int r)
+		{
+			int key = r * xtiles + c;
+			synchronized (cache)
+			{
+				if (cache.containsKey(key))
+					return cache.get(key);
+			}
+			// Rarely the same tile is decoded by two workers, it is cheaper than waiting for each other
+			int[] tile = new int[OzfDecoder.OZF_TILE_WIDTH * OzfDecoder.OZF_TILE_HEIGHT];
+			if (!OzfDecoder.getTile(file, 0, c, r, tile))
+				tile = null;
+			synchronized (cache)
+			{
+				cache.put(key, tile);
+			}
+			return tile;
+		}
+	}
+}
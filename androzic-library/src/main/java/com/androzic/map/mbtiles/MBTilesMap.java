@@ -29,9 +29,12 @@ import android.graphics.Matrix;
 
 import com.androzic.Log;
 import com.androzic.map.OnMapTileStateChangeListener;
+import com.androzic.map.ReaderPool;
 import com.androzic.map.Tile;
 import com.androzic.map.TileMap;
+import com.androzic.map.WebMercator;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -55,7 +58,16 @@ public class MBTilesMap extends TileMap
 	private static final String SQL_GET_MAXX = "SELECT MAX(tile_column) FROM tiles WHERE zoom_level = ?";
 	private static final String SQL_GET_MAXY = "SELECT MAX(tile_column) FROM tiles WHERE zoom_level = ?";
 
+	private static final ReaderPool.Closer CLOSER = new ReaderPool.Closer() {
+		@Override
+		public void close(Object handle)
+		{
+			((SQLiteDatabase) handle).close();
+		}
+	};
+
 	private transient SQLiteDatabase database;
+	private transient String databaseKey;
 
 	protected MBTilesMap()
 	{
@@ -174,7 +186,10 @@ public class MBTilesMap extends TileMap
 	@Override
 	public synchronized void activate(OnMapTileStateChangeListener listener, double mpp, boolean current) throws Throwable
 	{
-		database = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY);
+		databaseKey = ReaderPool.getKey(new File(path));
+		database = ReaderPool.acquire(databaseKey, SQLiteDatabase.class);
+		if (database == null || !database.isOpen())
+			database = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY);
 		super.activate(listener, mpp, current);
 	}
 
@@ -182,7 +197,10 @@ public class MBTilesMap extends TileMap
 	public synchronized void deactivate()
 	{
 		super.deactivate();
-		database.close();
+		// Database is kept open for some time in case map is activated again
+		if (database != null)
+			ReaderPool.release(databaseKey, database, 1, CLOSER);
+		database = null;
 	}
 
 	@Override
@@ -208,11 +226,6 @@ public class MBTilesMap extends TileMap
 				}
 				if (tile.bitmap != null)
 				{
-					if (dynZoom != 1.0)
-					{
-				        int ss = (int) (dynZoom * tileSize);
-						tile.bitmap = Bitmap.createScaledBitmap(tile.bitmap, ss, ss, true);
-					}
 					cache.put(tile.getKey(), tile);
 				}
 			}
@@ -270,9 +283,10 @@ public class MBTilesMap extends TileMap
 	{
 		byte[] data = null;
 
-		if (database.isOpen())
+		SQLiteDatabase database = this.database;
+		if (database != null && database.isOpen())
 		{
-			String[] args = {String.valueOf(tx), String.valueOf((int) (Math.pow(2, z) - 1 - ty)), String.valueOf(z)};
+			String[] args = {String.valueOf(tx), String.valueOf((int) (WebMercator.tiles(z) - 1 - ty)), String.valueOf(z)};
 			Cursor c = database.rawQuery(SQL_GET_IMAGE, args);
 			try
 			{
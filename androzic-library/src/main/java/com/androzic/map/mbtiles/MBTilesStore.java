@@ -0,0 +1,52 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.androzic.map.mbtiles;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Storage backend for MBTiles tile set. Rows are addressed in TMS scheme (as stored in database).
+ * Implementations are used from single thread.
+ */
+public interface MBTilesStore
+{
+	/**
+	 * Opens store creating schema if it does not exist yet.
+	 */
+	void open() throws IOException;
+
+	void putMetadata(String name, String value) throws IOException;
+
+	/**
+	 * Returns keys of tiles already present on given zoom level, used to resume interrupted export.
+	 * @see MBTilesExporter#getTileKey(int, int)
+	 */
+	Set<Long> getTiles(int zoom) throws IOException;
+
+	void beginBatch() throws IOException;
+
+	void putTile(int zoom, int column, int row, byte[] data) throws IOException;
+
+	void commitBatch() throws IOException;
+
+	void close();
+}
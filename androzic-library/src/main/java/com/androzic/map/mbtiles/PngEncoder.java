@@ -0,0 +1,141 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.androzic.map.mbtiles;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Minimal PNG encoder that does not depend on platform imaging, so tiles can be
+ * produced both on device and in headless JVM.
+ */
+public final class PngEncoder
+{
+	private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+	private PngEncoder()
+	{
+	}
+
+	/**
+	 * Encodes ARGB pixels. If all pixels are opaque RGB image is produced, otherwise RGBA.
+	 */
+	public static byte[] encode(int[] argb, int width, int height)
+	{
+		boolean opaque = true;
+		for (int i = 0; i < width * height; i++)
+		{
+			if ((argb[i] >>> 24) != 0xFF)
+			{
+				opaque = false;
+				break;
+			}
+		}
+		int bpp = opaque ? 3 : 4;
+		int stride = width * bpp + 1;
+		byte[] raw = new byte[stride * height];
+		int p = 0;
+		for (int y = 0; y < height; y++)
+		{
+			// Sub filter, it compresses map images noticeably better then none
+			raw[p++] = 1;
+			int row = y * width;
+			int pr = 0, pg = 0, pb = 0, pa = 0;
+			for (int x = 0; x < width; x++)
+			{
+				int c = argb[row + x];
+				int r = (c >> 16) & 0xFF;
+				int g = (c >> 8) & 0xFF;
+				int b = c & 0xFF;
+				raw[p++] = (byte) (r - pr);
+				raw[p++] = (byte) (g - pg);
+				raw[p++] = (byte) (b - pb);
+				pr = r;
+				pg = g;
+				pb = b;
+				if (!opaque)
+				{
+					int a = c >>> 24;
+					raw[p++] = (byte) (a - pa);
+					pa = a;
+				}
+			}
+		}
+
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+		deflater.setInput(raw);
+		deflater.finish();
+		ByteArrayOutputStream zdata = new ByteArrayOutputStream(raw.length / 4);
+		byte[] buffer = new byte[8192];
+		while (!deflater.finished())
+		{
+			int n = deflater.deflate(buffer);
+			zdata.write(buffer, 0, n);
+		}
+		deflater.end();
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(zdata.size() + 64);
+		try
+		{
+			out.write(SIGNATURE);
+			byte[] ihdr = new byte[13];
+			putInt(ihdr, 0, width);
+			putInt(ihdr, 4, height);
+			ihdr[8] = 8; // bit depth
+			ihdr[9] = (byte) (opaque ? 2 : 6); // color type
+			writeChunk(out, "IHDR", ihdr);
+			writeChunk(out, "IDAT", zdata.toByteArray());
+			writeChunk(out, "IEND", new byte[0]);
+		}
+		catch (IOException e)
+		{
+			// Can not happen with byte array stream
+			throw new IllegalStateException(e);
+		}
+		return out.toByteArray();
+	}
+
+	private static void writeChunk(ByteArrayOutputStream out, String type, byte[] data) throws IOException
+	{
+		byte[] header = new byte[8];
+		putInt(header, 0, data.length);
+		for (int i = 0; i < 4; i++)
+			header[4 + i] = (byte) type.charAt(i);
+		out.write(header);
+		out.write(data);
+		CRC32 crc = new CRC32();
+		crc.update(header, 4, 4);
+		crc.update(data);
+		byte[] trailer = new byte[4];
+		putInt(trailer, 0, (int) crc.getValue());
+		out.write(trailer);
+	}
+
+	private static void putInt(byte[] buffer, int pos, int value)
+	{
+		buffer[pos] = (byte) (value >>> 24);
+		buffer[pos+1] = (byte) (value >>> 16);
+		buffer[pos+2] = (byte) (value >>> 8);
+		buffer[pos+3] = (byte) value;
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.androzic.map.mbtiles;
+
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * MBTiles store backed by Android SQLite database.
+ */
+public class SQLiteMBTilesStore implements MBTilesStore
+{
+	private final String path;
+	private SQLiteDatabase database;
+	private SQLiteStatement insertTile;
+
+	public SQLiteMBTilesStore(String path)
+	{
+		this.path = path;
+	}
+
+	@Override
+	public void open() throws IOException
+	{
+		try
+		{
+			database = SQLiteDatabase.openOrCreateDatabase(path, null);
+			database.execSQL(MBTilesExporter.SQL_CREATE_TILES);
+			database.execSQL(MBTilesExporter.SQL_CREATE_METADATA);
+			database.execSQL(MBTilesExporter.SQL_CREATE_TILE_INDEX);
+			insertTile = database.compileStatement(MBTilesExporter.SQL_INSERT_TILE);
+		}
+		catch (SQLException e)
+		{
+			throw new IOException(e.getMessage());
+		}
+	}
+
+	@Override
+	public void putMetadata(String name, String value) throws IOException
+	{
+		try
+		{
+			database.execSQL(MBTilesExporter.SQL_DELETE_METADATA, new Object[] {name});
+			database.execSQL(MBTilesExporter.SQL_INSERT_METADATA, new Object[] {name, value});
+		}
+		catch (SQLException e)
+		{
+			throw new IOException(e.getMessage());
+		}
+	}
+
+	@Override
+	public Set<Long> getTiles(int zoom) throws IOException
+	{
+		Set<Long> tiles = new HashSet<>();
+		try
+		{
+			Cursor c = database.rawQuery(MBTilesExporter.SQL_GET_TILES, new String[] {String.valueOf(zoom)});
+			try
+			{
+				while (c.moveToNext())
+					tiles.add(MBTilesExporter.getTileKey(c.getInt(0), c.getInt(1)));
+			}
+			finally
+			{
+				c.close();
+			}
+		}
+		catch (SQLException e)
+		{
+			throw new IOException(e.getMessage());
+		}
+		return tiles;
+	}
+
+	@Override
+	public void beginBatch() throws IOException
+	{
+		database.beginTransaction();
+	}
+
+	@Override
+	public void putTile(int zoom, int column, int row, byte[] data) throws IOException
+	{
+		try
+		{
+			insertTile.clearBindings();
+			insertTile.bindLong(1, zoom);
+			insertTile.bindLong(2, column);
+			insertTile.bindLong(3, row);
+			insertTile.bindBlob(4, data);
+			insertTile.executeInsert();
+		}
+		catch (SQLException e)
+		{
+			throw new IOException(e.getMessage());
+		}
+	}
+
+	@Override
+	public void commitBatch() throws IOException
+	{
+		try
+		{
+			database.setTransactionSuccessful();
+		}
+		finally
+		{
+			database.endTransaction();
+		}
+	}
+
+	@Override
+	public void close()
+	{
+		if (insertTile != null)
+			insertTile.close();
+		if (database != null)
+			database.close();
+		insertTile = null;
+		database = null;
+	}
+}
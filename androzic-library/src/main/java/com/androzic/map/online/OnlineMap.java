@@ -120,14 +120,6 @@ public class OnlineMap extends TileMap
 	public Bitmap getTile(int x, int y) throws OutOfMemoryError
 	{
 		Tile tile = tileController.getTile(x, y, srcZoom);
-		if (tile.bitmap != null)
-		{
-			if (dynZoom != 1.0)
-			{
-		        int ss = (int) (dynZoom * tileSize);
-				tile.bitmap = Bitmap.createScaledBitmap(tile.bitmap, ss, ss, true);
-			}
-		}
 		return tile.bitmap;
 	}
 
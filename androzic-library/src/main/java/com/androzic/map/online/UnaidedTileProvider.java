@@ -22,6 +22,8 @@ package com.androzic.map.online;
 
 import android.support.annotation.Nullable;
 
+import com.androzic.map.WebMercator;
+
 import java.util.ArrayList;
 import java.util.Locale;
 
@@ -57,7 +59,7 @@ public class UnaidedTileProvider extends TileProvider
 			nextServer++;
 		}
 		if (inverseY)
-			y = (int) (Math.pow(2, z) - 1 - y);
+			y = (int) (WebMercator.tiles(z) - 1 - y);
 		uri = uri.replace("{$l}", locale);
 		uri = uri.replace("{$z}", String.valueOf(z));
 		uri = uri.replace("{$x}", String.valueOf(x));
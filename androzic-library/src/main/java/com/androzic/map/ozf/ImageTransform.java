@@ -0,0 +1,313 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.androzic.map.ozf;
+
+import java.util.Collection;
+
+import com.androzic.map.MapPoint;
+import com.jhlabs.Point2D;
+import com.jhlabs.map.proj.Projection;
+
+/**
+ * Linear conversion between projected coordinates and image pixels, fitted to calibration
+ * points with least squares. Conversion is immutable and can be shared by several threads.
+ */
+public class ImageTransform
+{
+	private final Projection projection;
+	final double[] Kx = new double[3];
+	final double[] Ky = new double[3];
+	final double[] Klat = new double[3];
+	final double[] Klon = new double[3];
+
+	private ImageTransform(Projection projection)
+	{
+		this.projection = projection;
+	}
+
+	/**
+	 * Fits conversion to calibration points.
+	 *
+	 * @param scaleX factor applied to horizontal pixel coordinates of points, e.g. map zoom
+	 * @param scaleY factor applied to vertical pixel coordinates of points
+	 */
+	public static ImageTransform fit(Projection projection, Collection<MapPoint> calibration, double scaleX, double scaleY)
+	{
+		MapPoint[] points = new MapPoint[calibration.size()];
+
+		int i = 0;
+		for (MapPoint mp : calibration)
+		{
+			points[i] = new MapPoint();
+			points[i].lat = mp.lat;
+			points[i].lon = mp.lon;
+			points[i].x = (int) (mp.x * scaleX);
+			points[i].y = (int) (mp.y * scaleY);
+			Point2D.Double dst = new Point2D.Double();
+			projection.transform(points[i].lon, points[i].lat, dst);
+			points[i].n = dst.y;
+			points[i].e = dst.x;
+			i++;
+		}
+
+		ImageTransform binding = new ImageTransform(projection);
+		getKx(points, binding);
+		getKy(points, binding);
+		getKLat(points, binding);
+		getKLon(points, binding);
+		return binding;
+	}
+
+	/**
+	 * Converts geographic coordinates to fractional image pixel coordinates.
+	 * @throws com.jhlabs.map.proj.ProjectionException if coordinates can not be projected
+	 */
+	public void getXYByLatLon(double lat, double lon, double[] xy)
+	{
+		Point2D.Double dst = new Point2D.Double();
+		projection.transform(lon, lat, dst);
+		xy[0] = Kx[0]*dst.y + Kx[1]*dst.x + Kx[2];
+		xy[1] = Ky[0]*dst.y + Ky[1]*dst.x + Ky[2];
+	}
+
+	/**
+	 * Converts image pixel coordinates to geographic coordinates.
+	 * @throws com.jhlabs.map.proj.ProjectionException if coordinates can not be projected
+	 */
+	public void getLatLonByXY(double x, double y, double[] ll)
+	{
+		Point2D.Double dst = new Point2D.Double();
+		dst.y = Klat[0]*x + Klat[1]*y + Klat[2];
+		dst.x = Klon[0]*x + Klon[1]*y + Klon[2];
+		projection.inverseTransform(dst, dst);
+		ll[0] = dst.y;
+		ll[1] = dst.x;
+	}
+
+	private static void getKx(MapPoint[] points, ImageTransform binding)
+	{
+		double[][] a = new double[3][3];
+		double[] b = new double[3];
+		double[][] p = new double[3][points.length];
+
+		int i = 0;
+		for (MapPoint mp : points)
+		{
+			p[0][i] = mp.n;
+			p[1][i] = mp.e;
+			p[2][i] = mp.x;
+			i++;
+		}
+		
+		init_3x3(a, b, p, points.length);
+		gauss(a, b, binding.Kx, 3);
+		//Log.e("OZI", "Kx: "+binding.Kx[0]+","+binding.Kx[1]+","+binding.Kx[2]);
+	}
+
+	private static void getKy(MapPoint[] points, ImageTransform binding)
+	{
+		double[][] a = new double[3][3];
+		double[] b = new double[3];
+		double[][] p = new double[3][points.length];
+
+		int i = 0;
+		for (MapPoint mp : points)
+		{
+			p[0][i] = mp.n;
+			p[1][i] = mp.e;
+			p[2][i] = mp.y;
+			i++;
+		}
+
+		init_3x3(a, b, p, points.length);
+		gauss(a, b, binding.Ky, 3);
+		//Log.e("OZI", "Ky: "+binding.Ky[0]+","+binding.Ky[1]+","+binding.Ky[2]);
+	}
+
+	private static void getKLat(MapPoint[] points, ImageTransform binding)
+	{
+		double[][] a = new double[3][3];
+		double[] b = new double[3];
+		double[][] p = new double[3][points.length];
+
+		int i = 0;
+		for (MapPoint mp : points)
+		{
+			p[0][i] = mp.x;
+			p[1][i] = mp.y;
+			p[2][i] = mp.n;
+			i++;
+		}
+		
+		init_3x3(a, b, p, points.length);
+		gauss(a, b, binding.Klat, 3);
+		//Log.e("OZI", "Klat: "+binding.Klat[0]+","+binding.Klat[1]+","+binding.Klat[2]);
+	}
+
+	private static void getKLon(MapPoint[] points, ImageTransform binding)
+	{
+		double[][] a = new double[3][3];
+		double[] b = new double[3];
+		double[][] p = new double[3][points.length];
+
+		int i = 0;
+		for (MapPoint mp : points)
+		{
+			p[0][i] = mp.x;
+			p[1][i] = mp.y;
+			p[2][i] = mp.e;
+			i++;
+		}
+
+		init_3x3(a, b, p, points.length);
+		gauss(a, b, binding.Klon, 3);
+		//Log.e("OZI", "Klon: "+binding.Klon[0]+","+binding.Klon[1]+","+binding.Klon[2]);
+	}
+
+	/**
+	 *  Solves linear equation.  Finds vector x such that ax = b.
+	 *
+	 *	@param a nXn matrix
+	 *	@param b vector size n
+	 *	@param x vector size n
+	 *	@param n number of variables (size of vectors) (must be > 1)
+	 *
+	 *	This function will alter a and b, and put the solution in x.
+	 *	@return true if the solution was found, false otherwise.
+	 */
+	private static boolean gauss(double[][] a, double[] b, double[] x, int n)
+	{
+		int i,j,k;
+		int ip = 0, kk, jj;
+		double temp;
+		double pivot;
+		double q;
+
+		/*
+		 *	transform matrix to echelon form.
+		 */
+		for (i = 0; i < n-1; i++)
+		{
+			/*
+			 *	Find the pivot.
+			 */
+			pivot = 0.0;
+		    for (j = i; j < n; j++)
+		    {
+		    	temp = Math.abs(a[j][i]);
+		    	if (temp > pivot)
+		    	{
+		    		pivot = temp;
+		    		ip = j;
+		    	}
+		    }
+
+		    if (pivot < 1.E-14)
+		    {
+		    	/*
+		    	 *   Error - singular matrix.
+		    	 */
+		    	return false;
+		    }
+
+		    /*
+		     *	Move the pivot row to the ith position
+		     */
+		    if (ip != i)
+		    {
+		    	double[] temp_p = a[i];
+		    	a[i] = a[ip];
+		    	a[ip] = temp_p;
+		    	temp = b[i];
+		    	b[i] = b[ip];
+		    	b[ip] = temp;
+		    }
+
+		    /*
+		     *	Zero entries below the diagonal.
+		     */
+		    for (k = i + 1; k < n; k++)
+		    {
+		    	q = -a[k][i] / a[i][i];
+
+		    	a[k][i] = 0.0;
+
+		    	for (j = i + 1; j < n; j++)
+		    		a[k][j] = q * a[i][j] + a[k][j];
+		    	b[k] = q * b[i] + b[k];
+		    }
+
+		}
+
+		if (Math.abs(a[n-1][n-1]) < 1.E-14)
+		{
+			return false;
+		}
+
+		/*
+		 *	Backsolve to obtain solution vector x.
+		 */
+		kk = n - 1;
+		x[kk] = b[kk] / a[kk][kk];
+		for (k = 0; k < n - 1; k++)
+		{
+			kk = n - k - 2;
+			q = 0.0;
+
+			for (j = 0; j <= k; j++)
+			{
+				jj = n - j - 1;
+				q = q + a[kk][jj] * x[jj];
+			}
+			x[kk] = (b[kk] - q) / a[kk][kk];
+		}
+
+		return true;
+	}
+
+	private static void init_3x3(double[][] a, double[] b, double[][] p, int size)
+	{
+		for (int i = 0; i < 3; i++)
+		{
+			b[i] = 0;
+			
+			for (int j = 0; j < 3; j++)
+				a[i][j] = 0;
+		}
+
+		for(int i = 0; i < size; i++)
+		{
+			a[0][0] += p[0][i] * p[0][i];
+			a[0][1] += p[0][i] * p[1][i];
+			a[0][2] += p[0][i];
+			a[1][1] += p[1][i] * p[1][i];
+			a[1][2] += p[1][i];
+			b[0] += p[2][i] * p[0][i];
+			b[1] += p[2][i] * p[1][i];
+			b[2] += p[2][i];
+		}
+
+		a[1][0] = a[0][1];
+		a[2][0] = a[0][2];
+		a[2][1] = a[1][2];
+		a[2][2] = size;
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.androzic.map.ozf;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+
+/**
+ * Pool of reusable tile inflater contexts. Each context keeps its inflater and tile buffers
+ * between tiles, so decoding a tile does not allocate memory. Contexts are borrowed by decoding
+ * thread and returned back when tile is decoded.
+ */
+final class InflaterPool
+{
+	private static final int MAX_POOLED = 4;
+
+	private static final ArrayDeque<Context> pool = new ArrayDeque<Context>(MAX_POOLED);
+	private static int backend = OzfDecoder.INFLATER_PLATFORM;
+
+	private InflaterPool()
+	{
+	}
+
+	static Context acquire()
+	{
+		int current;
+		synchronized (pool)
+		{
+			Context context = pool.poll();
+			if (context != null)
+				return context;
+			current = getBackend();
+		}
+		return new Context(current);
+	}
+
+	static void release(Context context)
+	{
+		synchronized (pool)
+		{
+			if (context.backend == backend && pool.size() < MAX_POOLED)
+				pool.push(context);
+			else
+				context.inflater.end();
+		}
+	}
+
+	static void setBackend(int backend)
+	{
+		synchronized (pool)
+		{
+			InflaterPool.backend = backend;
+			for (Context context : pool)
+				context.inflater.end();
+			pool.clear();
+		}
+	}
+
+	static int getBackend()
+	{
+		synchronized (pool)
+		{
+			return backend;
+		}
+	}
+
+	static TileInflater newInflater(int backend)
+	{
+		switch (backend)
+		{
+			case OzfDecoder.INFLATER_JZLIB:
+				return new JZlibTileInflater();
+			case OzfDecoder.INFLATER_PLATFORM:
+			default:
+				return new ZipTileInflater();
+		}
+	}
+
+	static final class Context
+	{
+		final int backend;
+		final TileInflater inflater;
+		/**
+		 * Decompressed palette indexes of a tile
+		 */
+		final byte[] output = new byte[OzfDecoder.OZF_TILE_WIDTH * OzfDecoder.OZF_TILE_HEIGHT];
+		/**
+		 * Scratch buffer for reading table entries
+		 */
+		final byte[] scratch = new byte[4];
+		private byte[] input = new byte[8192];
+		private String message;
+
+		Context(int backend)
+		{
+			this.backend = backend;
+			inflater = newInflater(backend);
+		}
+
+		/**
+		 * Returns buffer for compressed tile data, at least of specified size.
+		 */
+		byte[] input(int size)
+		{
+			if (input.length < size)
+				input = new byte[size];
+			return input;
+		}
+
+		/**
+		 * Inflates compressed tile data into output buffer.
+		 * 
+		 * @return false on decompression error
+		 */
+		boolean inflate(byte[] source, int length)
+		{
+			try
+			{
+				int size = inflater.inflate(source, 0, length, output, output.length);
+				if (size < output.length)
+					Arrays.fill(output, size, output.length, (byte) 0);
+				message = null;
+				return true;
+			}
+			catch (DataFormatException e)
+			{
+				// Keep the part of tile that was decoded before error
+				Arrays.fill(output, inflater.getTotalOut(), output.length, (byte) 0);
+				message = e.getMessage();
+				return false;
+			}
+		}
+
+		/**
+		 * Returns error message of last failed inflate() call.
+		 */
+		String message()
+		{
+			return message;
+		}
+	}
+}
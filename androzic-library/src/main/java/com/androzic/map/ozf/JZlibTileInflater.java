@@ -0,0 +1,58 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.androzic.map.ozf;
+
+import java.util.zip.DataFormatException;
+
+import com.jcraft.jzlib.Inflater;
+import com.jcraft.jzlib.JZlib;
+
+/**
+ * Pure Java inflater backed by bundled jzlib.
+ */
+public class JZlibTileInflater implements TileInflater
+{
+	private final Inflater inflater = new Inflater();
+
+	@Override
+	public int inflate(byte[] source, int offset, int length, byte[] dest, int destLength) throws DataFormatException
+	{
+		inflater.reset();
+		inflater.setInput(source, offset, length, false);
+		inflater.setOutput(dest, 0, destLength);
+		int err = inflater.inflate(JZlib.Z_FINISH);
+		if (err != JZlib.Z_OK && err != JZlib.Z_STREAM_END)
+			throw new DataFormatException(inflater.getMessage() != null ? inflater.getMessage() : "inflate error " + err);
+		return (int) inflater.getTotalOut();
+	}
+
+	@Override
+	public int getTotalOut()
+	{
+		return (int) inflater.getTotalOut();
+	}
+
+	@Override
+	public void end()
+	{
+		inflater.end();
+	}
+}
@@ -25,8 +25,6 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 
 import com.androzic.Log;
-import com.jcraft.jzlib.JZlib;
-import com.jcraft.jzlib.ZStream;
 
 public class OzfDecoder
 {
@@ -41,6 +39,9 @@ public class OzfDecoder
 	public static final int D1_KEY_CYCLE = 0x1A;
 	public static final int OZFX3_ZDATA_ENCRYPTION_LENGTH = 16;
 
+	public static final int INFLATER_JZLIB = 1;
+	public static final int INFLATER_PLATFORM = 2;
+
 	public static final int OZF_TILE_WIDTH = 64;
 	public static final int OZF_TILE_HEIGHT = 64;
 
@@ -58,7 +59,6 @@ public class OzfDecoder
 		(byte) 0xD8, (byte) 0x5B, (byte) 0x8B, (byte) 0xC0
 	};
 	
-	private static ZStream zip = new ZStream();
 	private static int[] pixels = new int[OZF_TILE_WIDTH * OZF_TILE_HEIGHT];
 
 	public static boolean useNativeCalls = false;
@@ -135,45 +135,96 @@ public class OzfDecoder
 			return getTileNative(file.fileptr, file.type, file.key, file.images[scale].encryption_depth, file.scales_table[scale], i, w, h, file.images[scale].palette);
 		}
 
+		InflaterPool.Context context = InflaterPool.acquire();
+		try
+		{
+			return decodeTile(file, scale, i, context, pixels) ? pixels : null;
+		}
+		finally
+		{
+			InflaterPool.release(context);
+		}
+	}
+
+	/**
+	 * Decodes native size tile into caller owned buffer. Unlike {@link #getTile(OzfFile, int, int, int, int, int)}
+	 * it does not use shared buffer, so tiles can be decoded by several threads in parallel.
+	 * 
+	 * @param pixels buffer of OZF_TILE_WIDTH * OZF_TILE_HEIGHT size
+	 * @return false if tile can not be decoded
+	 */
+	public static boolean getTile(OzfFile file, int scale, int x, int y, int[] pixels)
+	{
+		if (scale > file.scales - 1 || x < 0 || x > file.images[scale].xtiles - 1 || y < 0 || y > file.images[scale].ytiles - 1)
+			return false;
+
+		int i = y * file.images[scale].xtiles + x;
+
+		if (useNativeCalls)
+		{
+			int[] data = getTileNative(file.fileptr, file.type, file.key, file.images[scale].encryption_depth, file.scales_table[scale], i, OZF_TILE_WIDTH, OZF_TILE_HEIGHT, file.images[scale].palette);
+			if (data == null)
+				return false;
+			System.arraycopy(data, 0, pixels, 0, OZF_TILE_WIDTH * OZF_TILE_HEIGHT);
+			return true;
+		}
+
+		InflaterPool.Context context = InflaterPool.acquire();
+		try
+		{
+			return decodeTile(file, scale, i, context, pixels);
+		}
+		finally
+		{
+			InflaterPool.release(context);
+		}
+	}
+
+	private static boolean decodeTile(OzfFile file, int scale, int i, InflaterPool.Context context, int[] pixels)
+	{
 		int tilesize;
 		byte[] tile;
 		
 		try
 		{
-			file.reader.seek(file.scales_table[scale]);
-			file.reader.skipBytes(1036);
-			file.reader.skipBytes(i * 4);
+			// File position is shared, only reading is serialized, decompression runs in parallel
+			synchronized (file)
+			{
+				file.reader.seek(file.scales_table[scale]);
+				file.reader.skipBytes(1036);
+				file.reader.skipBytes(i * 4);
 	
-			int tilepos, tilepos1;
+				int tilepos, tilepos1;
 	
-			if (file.type == OzfFile.OZF_STREAM_ENCRYPTED)
-			{
-				byte[] buffer = new byte[4];
-				file.reader.read(buffer);
-				ozf_decode1(buffer, buffer.length, (byte) file.key);
-				tilepos = getInt(buffer, 0);
-				file.reader.read(buffer);
-				ozf_decode1(buffer, buffer.length, (byte) file.key);
-				tilepos1 = getInt(buffer, 0);			
-			}
-			else
-			{
-				tilepos = readInt(file.reader);
-				tilepos1 = readInt(file.reader);
-			}
+				if (file.type == OzfFile.OZF_STREAM_ENCRYPTED)
+				{
+					byte[] buffer = context.scratch;
+					file.reader.read(buffer);
+					ozf_decode1(buffer, buffer.length, (byte) file.key);
+					tilepos = getInt(buffer, 0);
+					file.reader.read(buffer);
+					ozf_decode1(buffer, buffer.length, (byte) file.key);
+					tilepos1 = getInt(buffer, 0);			
+				}
+				else
+				{
+					tilepos = readInt(file.reader);
+					tilepos1 = readInt(file.reader);
+				}
 	
-			tilesize = tilepos1 - tilepos;
+				tilesize = tilepos1 - tilepos;
 	
-			tile = new byte[tilesize];
+				tile = context.input(tilesize);
 			
-			file.reader.seek(tilepos);
-			file.reader.read(tile);
+				file.reader.seek(tilepos);
+				file.reader.readFully(tile, 0, tilesize);
+			}
 		}
 		catch (IOException e)
 		{
 			Log.e("OZF", "Tile read io error");
 			e.printStackTrace();
-			return null;
+			return false;
 		}
 		
 		if (file.type == OzfFile.OZF_STREAM_ENCRYPTED)
@@ -187,28 +238,15 @@ public class OzfDecoder
 		if (!(tile[0] == 0x78 && (tile[1] & 0xFF) == 0xDA))  // zlib signature
 		{
 			Log.w("OZF", "zlib signature verification failed");
-			return null;
+			return false;
 		}
 	
-		int decompressed_size = OZF_TILE_WIDTH * OZF_TILE_HEIGHT;
-		byte[] decompressed = new byte[decompressed_size];
-		
-	    zip.next_in=tile;
-	    zip.avail_in = tilesize;
-	    zip.next_in_index=0;
-	    zip.next_out=decompressed;
-	    zip.avail_out = decompressed_size;
-	    zip.next_out_index=0;
-
-	    zip.inflateInit();
-	    int err = zip.inflate(JZlib.Z_FINISH);
-	    if (err != JZlib.Z_OK)
-	    {
-	    	if (zip.msg != null) Log.e("OZF", zip.msg + " " + err);		          
-	    }
-	    decompressed_size = (int) zip.total_out;
-	    zip.inflateEnd();
+		if (!context.inflate(tile, tilesize))
+		{
+			if (context.message() != null) Log.e("OZF", context.message());
+		}
 
+		byte[] decompressed = context.output;
 		byte[] palette = file.images[scale].palette;
 
 		int tile_z = OZF_TILE_WIDTH * (OZF_TILE_HEIGHT - 1) * 4;
@@ -235,7 +273,7 @@ public class OzfDecoder
 			}
 		}
 
-		return pixels;
+		return true;
 	}
 
 	private static void ozf_decode1(byte[] source, int n, byte key)
@@ -568,19 +606,24 @@ public class OzfDecoder
 		int nEncryptionDepth = -1;
 
 		byte[] p = new byte[size];
-		int nDecompressed = OzfDecoder.OZF_TILE_WIDTH * OzfDecoder.OZF_TILE_HEIGHT;
-		
-		byte[] pDecompressed = new byte[nDecompressed];
+		InflaterPool.Context context = InflaterPool.acquire();
 
-		for (int i = 4; i <= size; i++)
+		try
 		{
-			System.arraycopy(data, 0, p, 0, size);
-			ozf_decode1(p, i, (byte) key);
-
-			nEncryptionDepth = i;
-			
-			if (decompressTile(pDecompressed, p))
-				break;
+			for (int i = 4; i <= size; i++)
+			{
+				System.arraycopy(data, 0, p, 0, size);
+				ozf_decode1(p, i, (byte) key);
+	
+				nEncryptionDepth = i;
+				
+				if (context.inflate(p, size))
+					break;
+			}
+		}
+		finally
+		{
+			InflaterPool.release(context);
 		}
 
 		if (nEncryptionDepth == size)
@@ -589,26 +632,6 @@ public class OzfDecoder
 		return nEncryptionDepth;
 	}
 
-	private static boolean decompressTile(byte[] dest, byte[] source)
-	{
-	    zip.next_in = source;
-	    zip.avail_in = source.length;
-	    zip.next_in_index = 0;
-	    zip.next_out = dest;
-	    zip.avail_out = dest.length;
-	    zip.next_out_index=0;
-
-	    zip.inflateInit();
-	    int err = zip.inflate(JZlib.Z_FINISH);
-	    if (err != JZlib.Z_OK && err != JZlib.Z_STREAM_END)
-	    {
-	    	return false;
-	    }
-//	    decompressed_size = (int) zip.total_out;
-	    zip.inflateEnd();
-	    return true;
-	}
-
 	public static void close(OzfFile file)
 	{
 		try
@@ -637,4 +660,15 @@ public class OzfDecoder
         System.loadLibrary("ozfdecoder");
         useNativeCalls = true;
 	}
+
+	/**
+	 * Sets inflater used to decompress tiles. Platform inflater is the default, it is native
+	 * zlib on all supported devices. Backends are compared by InflateBenchmark.
+	 *
+	 * @param inflater INFLATER_JZLIB or INFLATER_PLATFORM
+	 */
+	public static void setInflater(int inflater)
+	{
+		InflaterPool.setBackend(inflater);
+	}
 }
@@ -29,6 +29,7 @@ import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Path;
 import android.graphics.Rect;
+import android.graphics.Region;
 
 import com.androzic.Log;
 import com.androzic.map.BaseMap;
@@ -62,6 +63,11 @@ public class OzfMap extends BaseMap
 		5.00
 	};
 
+	/**
+	 * Size of tiles (in image pixels) composed from native 64x64 OZF tiles for rendering and caching
+	 */
+	public static int superTileSize = 256;
+
 	public String imagePath;
 	public String origDatum;
 	public int width;
@@ -71,7 +77,7 @@ public class OzfMap extends BaseMap
 	public Grid llGrid;
 	public Grid grGrid;
 	public ArrayList<MapPoint> calibrationPoints = new ArrayList<>();
-	private transient LinearBinding binding;
+	private transient ImageTransform binding;
 	private transient OzfReader ozf;
 
 	protected OzfMap()
@@ -81,14 +87,11 @@ public class OzfMap extends BaseMap
 	public OzfMap(String path)
 	{
 		super(path);
-		binding = new LinearBinding();
 	}
 
 	@Override
 	public void initialize()
 	{
-		// We do it twice because of deserialization
-		binding = new LinearBinding();
 		bind();
 	}
 
@@ -99,6 +102,18 @@ public class OzfMap extends BaseMap
 
 	@Override
 	public synchronized void activate(OnMapTileStateChangeListener listener, double mpp, boolean current) throws Throwable
+	{
+		File image = getImageFile();
+		Log.d("OZI", "Image file found: " + image.getCanonicalPath());
+		ozf = new OzfReader(image);
+		ozf.setSuperTileSize(superTileSize);
+		super.activate(listener, mpp, current);
+	}
+
+	/**
+	 * Locates map image file, if it is not found by specified path it is looked up near map file.
+	 */
+	public File getImageFile() throws FileNotFoundException
 	{
 		Log.d("OZI", "Image file specified: " + imagePath);
 		File image = new File(imagePath);
@@ -113,9 +128,7 @@ public class OzfMap extends BaseMap
 				throw new FileNotFoundException("Image file not found: " + imagePath);
 			}
 		}
-		Log.d("OZI", "Image file found: " + image.getCanonicalPath());
-		ozf = new OzfReader(image);
-		super.activate(listener, mpp, current);
+		return image;
 	}
 
 	@Override
@@ -138,9 +151,8 @@ public class OzfMap extends BaseMap
 	{
 		double nn, ee;
 		
-        Point2D.Double src = new Point2D.Double(lon, lat);
         Point2D.Double dst = new Point2D.Double();
-		projection.transform(src.x, src.y, dst);
+		projection.transform(lon, lat, dst);
 		ee = dst.x;
 		nn = dst.y;
 		xy[0] = (int) Math.round(binding.Kx[0]*nn + binding.Kx[1]*ee + binding.Kx[2]);
@@ -149,6 +161,30 @@ public class OzfMap extends BaseMap
 		return (xy[0] >= 0 && xy[0] < width * zoom && xy[1] >= 0 && xy[1] < height * zoom);
 	}
 
+	@Override
+	public int getXYByLatLon(double[] lat, double[] lon, int count, int[] xy)
+	{
+		double[] ee = new double[count];
+		double[] nn = new double[count];
+		projection.transform(lon, lat, ee, nn, 0, count);
+
+		double kx0 = binding.Kx[0], kx1 = binding.Kx[1], kx2 = binding.Kx[2];
+		double ky0 = binding.Ky[0], ky1 = binding.Ky[1], ky2 = binding.Ky[2];
+		double w = width * zoom;
+		double h = height * zoom;
+		int inside = 0;
+		for (int i = 0; i < count; i++)
+		{
+			int x = (int) Math.round(kx0*nn[i] + kx1*ee[i] + kx2);
+			int y = (int) Math.round(ky0*nn[i] + ky1*ee[i] + ky2);
+			xy[i * 2] = x;
+			xy[i * 2 + 1] = y;
+			if (x >= 0 && x < w && y >= 0 && y < h)
+				inside++;
+		}
+		return inside;
+	}
+
 	@SuppressWarnings("UnusedDeclaration")
 	public boolean getXYByEN(int e, int n, int[] xy)
 	{
@@ -185,9 +221,8 @@ public class OzfMap extends BaseMap
 		nn = binding.Klat[0]*x + binding.Klat[1]*y + binding.Klat[2];
 		ee = binding.Klon[0]*x + binding.Klon[1]*y + binding.Klon[2];
 
-        Point2D.Double src = new Point2D.Double(ee, nn);
-        Point2D.Double dst = new Point2D.Double();
-		projection.inverseTransform(src, dst);
+        Point2D.Double dst = new Point2D.Double(ee, nn);
+		projection.inverseTransform(dst, dst);
 		ll[0] = dst.y;
 		ll[1] = dst.x;
 
@@ -269,17 +304,19 @@ public class OzfMap extends BaseMap
 	@Override
 	public synchronized void recalculateCache()
 	{
-		if (cache != null)
-			cache.destroy();
-		int nx = (int) Math.ceil(viewportWidth * 1. / ozf.tile_dx()) + 2;
-		int ny = (int) Math.ceil(viewportHeight * 1. / ozf.tile_dy()) + 2;
-		if (nx > ozf.tiles_per_x())
-			nx = ozf.tiles_per_x();
-		if (ny > ozf.tiles_per_y())
-			ny = ozf.tiles_per_y();
+		int nx = (int) Math.ceil(viewportWidth * 1. / ozf.supertile_dx()) + 2;
+		int ny = (int) Math.ceil(viewportHeight * 1. / ozf.supertile_dy()) + 2;
+		if (nx > ozf.supertiles_per_x())
+			nx = ozf.supertiles_per_x();
+		if (ny > ozf.supertiles_per_y())
+			ny = ozf.supertiles_per_y();
 		int cacheSize = nx * ny;
 		Log.e("OZI", "Cache size: " + cacheSize);
-		cache = new TileRAMCache(cacheSize);
+		// Tiles are keyed by zoom, so tiles of previous zoom levels are kept until memory is needed
+		if (cache == null)
+			cache = new TileRAMCache(cacheSize);
+		else
+			cache.setCapacity(cacheSize);
 		ozf.setCache(cache);
 	}
 
@@ -352,7 +389,13 @@ public class OzfMap extends BaseMap
 		getLatLonByXY(x, y, center);
 	}
 
-	synchronized public boolean drawMap(Viewport viewport, boolean cropBorder, boolean drawBorder, Canvas c) throws OutOfMemoryError
+	public boolean drawMap(Viewport viewport, boolean cropBorder, boolean drawBorder, Canvas c) throws OutOfMemoryError
+	{
+		return drawMap(viewport, cropBorder, drawBorder, null, c);
+	}
+
+	@Override
+	synchronized public boolean drawMap(Viewport viewport, boolean cropBorder, boolean drawBorder, Region visible, Canvas c) throws OutOfMemoryError
 	{
 		if (ozf == null)
 			return false;
@@ -369,11 +412,11 @@ public class OzfMap extends BaseMap
 			if (cropBorder)
 				c.clipPath(clipPath);
 			
-			int[] cr = ozf.map_xy_to_cr(map_xy);
-			int[] xy = ozf.map_xy_to_xy_on_tile(map_xy);
+			int[] cr = ozf.map_xy_to_scr(map_xy);
+			int[] xy = ozf.map_xy_to_xy_on_supertile(map_xy);
 			
-			int tile_w = ozf.tile_dx();
-			int tile_h = ozf.tile_dy();
+			int tile_w = ozf.supertile_dx();
+			int tile_h = ozf.supertile_dy();
 			
 			if (tile_w == 0 || tile_h == 0)
 			{
@@ -382,11 +425,11 @@ public class OzfMap extends BaseMap
 				return false;
 			}
 
-			int c_min = (int) Math.floor(ozf.map_x_to_c(map_xy[0] - viewport.canvasWidth / 2));
-			int c_max = (int) Math.ceil(ozf.map_x_to_c(map_xy[0] + viewport.canvasWidth / 2));
+			int c_min = (int) Math.floor(ozf.map_x_to_sc(map_xy[0] - viewport.canvasWidth / 2));
+			int c_max = (int) Math.ceil(ozf.map_x_to_sc(map_xy[0] + viewport.canvasWidth / 2));
 			
-			int r_min = (int) Math.floor(ozf.map_y_to_r(map_xy[1] - viewport.canvasHeight / 2));
-			int r_max = (int) Math.ceil(ozf.map_y_to_r(map_xy[1] + viewport.canvasHeight / 2));
+			int r_min = (int) Math.floor(ozf.map_y_to_sr(map_xy[1] - viewport.canvasHeight / 2));
+			int r_max = (int) Math.ceil(ozf.map_y_to_sr(map_xy[1] + viewport.canvasHeight / 2));
 			
 			boolean result = true;
 			
@@ -400,14 +443,14 @@ public class OzfMap extends BaseMap
 				r_min = 0;
 				result = false;
 			}
-			if (c_max > ozf.tiles_per_x())
+			if (c_max > ozf.supertiles_per_x())
 			{
-				c_max = ozf.tiles_per_x();
+				c_max = ozf.supertiles_per_x();
 				result = false;
 			}
-			if (r_max > ozf.tiles_per_y())
+			if (r_max > ozf.supertiles_per_y())
 			{
-				r_max = ozf.tiles_per_y();
+				r_max = ozf.supertiles_per_y();
 				result = false;
 			}
 			
@@ -420,14 +463,18 @@ public class OzfMap extends BaseMap
 				{
 					int tx = txb + (j - c_min) * tile_w;
 					int ty = tyb + (i - r_min) * tile_h;
-				
-					Bitmap tile = ozf.tile_get(j, i);
+
+					if (!isTileVisible(visible, tx, ty, tx + tile_w, ty + tile_h))
+						continue;
+
+					Bitmap tile = ozf.supertile_get(j, i);
 					
 					if (tile != null)
 					{
-						int tile_dx = ozf.tile_dx(j, i);
-						int tile_dy = ozf.tile_dy(j, i);
-						if (tile_dx < tile_w || tile_dy < tile_h)
+						// composed tiles are already cropped to the image size
+						int tile_dx = Math.min(ozf.supertile_dx(j, i), tile.getWidth());
+						int tile_dy = Math.min(ozf.supertile_dy(j, i), tile.getHeight());
+						if (tile_dx < tile.getWidth() || tile_dy < tile.getHeight())
 						{
 							Rect src = new Rect(0, 0, tile_dx, tile_dy);
 							Rect dst = new Rect(tx, ty, tx + src.right, ty + src.bottom);
@@ -455,257 +502,30 @@ public class OzfMap extends BaseMap
 	}
 
 	@Override
-	public int getPriority()
+	public boolean isOpaque()
 	{
-		return 1;
-	}
-
-	public void bind()
-	{
-		MapPoint[] points = new MapPoint[calibrationPoints.size()];
-
-		int i = 0;
-		for (MapPoint mp : calibrationPoints)
-		{
-			points[i] = new MapPoint();
-			points[i].lat = mp.lat;
-			points[i].lon = mp.lon;
-			points[i].x = (int) (mp.x * zoom);
-			points[i].y = (int) (mp.y * zoom);
-	        Point2D.Double src = new Point2D.Double(points[i].lon, points[i].lat);
-	        Point2D.Double dst = new Point2D.Double();
-			projection.transform(src.x, src.y, dst);
-			points[i].n = dst.y;
-			points[i].e = dst.x;
-//			Log.e("OZI","point transform: "+points[i].lat+" "+points[i].lon+" -> "+points[i].n+" "+points[i].e);
-			src.x = dst.x;
-			src.y = dst.y;
-			projection.inverseTransform(src, dst);
-//			Log.e("OZI","point reverse transform: "+src.y+" "+src.x+" -> "+dst.y+" "+dst.x);
-			i++;
-		}
-
-		getKx(points);
-		getKy(points);
-		getKLat(points);
-		getKLon(points);
-	}
-
-	private void getKx(MapPoint[] points)
-	{
-		double[][] a = new double[3][3];
-		double[] b = new double[3];
-		double[][] p = new double[3][points.length];
-
-		int i = 0;
-		for (MapPoint mp : points)
-		{
-			p[0][i] = mp.n;
-			p[1][i] = mp.e;
-			p[2][i] = mp.x;
-			i++;
-		}
-		
-		init_3x3(a, b, p, points.length);
-		gauss(a, b, binding.Kx, 3);
-		//Log.e("OZI", "Kx: "+binding.Kx[0]+","+binding.Kx[1]+","+binding.Kx[2]);
-	}
-
-	private void getKy(MapPoint[] points)
-	{
-		double[][] a = new double[3][3];
-		double[] b = new double[3];
-		double[][] p = new double[3][points.length];
-
-		int i = 0;
-		for (MapPoint mp : points)
-		{
-			p[0][i] = mp.n;
-			p[1][i] = mp.e;
-			p[2][i] = mp.y;
-			i++;
-		}
-
-		init_3x3(a, b, p, points.length);
-		gauss(a, b, binding.Ky, 3);
-		//Log.e("OZI", "Ky: "+binding.Ky[0]+","+binding.Ky[1]+","+binding.Ky[2]);
+		return true;
 	}
 
-	private void getKLat(MapPoint[] points)
+	@Override
+	public int getPriority()
 	{
-		double[][] a = new double[3][3];
-		double[] b = new double[3];
-		double[][] p = new double[3][points.length];
-
-		int i = 0;
-		for (MapPoint mp : points)
-		{
-			p[0][i] = mp.x;
-			p[1][i] = mp.y;
-			p[2][i] = mp.n;
-			i++;
-		}
-		
-		init_3x3(a, b, p, points.length);
-		gauss(a, b, binding.Klat, 3);
-		//Log.e("OZI", "Klat: "+binding.Klat[0]+","+binding.Klat[1]+","+binding.Klat[2]);
+		return 1;
 	}
 
-	private void getKLon(MapPoint[] points)
+	public void bind()
 	{
-		double[][] a = new double[3][3];
-		double[] b = new double[3];
-		double[][] p = new double[3][points.length];
-
-		int i = 0;
-		for (MapPoint mp : points)
-		{
-			p[0][i] = mp.x;
-			p[1][i] = mp.y;
-			p[2][i] = mp.e;
-			i++;
-		}
-
-		init_3x3(a, b, p, points.length);
-		gauss(a, b, binding.Klon, 3);
-		//Log.e("OZI", "Klon: "+binding.Klon[0]+","+binding.Klon[1]+","+binding.Klon[2]);
+		binding = ImageTransform.fit(projection, calibrationPoints, zoom, zoom);
 	}
 
 	/**
-	 *  Solves linear equation.  Finds vector x such that ax = b.
-	 *
-	 *	@param a nXn matrix
-	 *	@param b vector size n
-	 *	@param x vector size n
-	 *	@param n number of variables (size of vectors) (must be > 1)
-	 *
-	 *	This function will alter a and b, and put the solution in x.
-	 *	@return true if the solution was found, false otherwise.
+	 * Returns conversion between geographic coordinates and pixels of image of given size,
+	 * e.g. of OZF image at native scale. Unlike map methods it does not depend on current
+	 * map zoom, so it can be used in background threads while map is rendered or zoomed.
 	 */
-	private boolean gauss(double[][] a, double[] b, double[] x, int n)
-	{
-		int i,j,k;
-		int ip = 0, kk, jj;
-		double temp;
-		double pivot;
-		double q;
-
-		/*
-		 *	transform matrix to echelon form.
-		 */
-		for (i = 0; i < n-1; i++)
-		{
-			/*
-			 *	Find the pivot.
-			 */
-			pivot = 0.0;
-		    for (j = i; j < n; j++)
-		    {
-		    	temp = Math.abs(a[j][i]);
-		    	if (temp > pivot)
-		    	{
-		    		pivot = temp;
-		    		ip = j;
-		    	}
-		    }
-
-		    if (pivot < 1.E-14)
-		    {
-		    	/*
-		    	 *   Error - singular matrix.
-		    	 */
-		    	return false;
-		    }
-
-		    /*
-		     *	Move the pivot row to the ith position
-		     */
-		    if (ip != i)
-		    {
-		    	double[] temp_p = a[i];
-		    	a[i] = a[ip];
-		    	a[ip] = temp_p;
-		    	temp = b[i];
-		    	b[i] = b[ip];
-		    	b[ip] = temp;
-		    }
-
-		    /*
-		     *	Zero entries below the diagonal.
-		     */
-		    for (k = i + 1; k < n; k++)
-		    {
-		    	q = -a[k][i] / a[i][i];
-
-		    	a[k][i] = 0.0;
-
-		    	for (j = i + 1; j < n; j++)
-		    		a[k][j] = q * a[i][j] + a[k][j];
-		    	b[k] = q * b[i] + b[k];
-		    }
-
-		}
-
-		if (Math.abs(a[n-1][n-1]) < 1.E-14)
-		{
-			return false;
-		}
-
-		/*
-		 *	Backsolve to obtain solution vector x.
-		 */
-		kk = n - 1;
-		x[kk] = b[kk] / a[kk][kk];
-		for (k = 0; k < n - 1; k++)
-		{
-			kk = n - k - 2;
-			q = 0.0;
-
-			for (j = 0; j <= k; j++)
-			{
-				jj = n - j - 1;
-				q = q + a[kk][jj] * x[jj];
-			}
-			x[kk] = (b[kk] - q) / a[kk][kk];
-		}
-
-		return true;
-	}
-
-	private void init_3x3(double[][] a, double[] b, double[][] p, int size)
-	{
-		for (int i = 0; i < 3; i++)
-		{
-			b[i] = 0;
-			
-			for (int j = 0; j < 3; j++)
-				a[i][j] = 0;
-		}
-
-		for(int i = 0; i < size; i++)
-		{
-			a[0][0] += p[0][i] * p[0][i];
-			a[0][1] += p[0][i] * p[1][i];
-			a[0][2] += p[0][i];
-			a[1][1] += p[1][i] * p[1][i];
-			a[1][2] += p[1][i];
-			b[0] += p[2][i] * p[0][i];
-			b[1] += p[2][i] * p[1][i];
-			b[2] += p[2][i];
-		}
-
-		a[1][0] = a[0][1];
-		a[2][0] = a[0][2];
-		a[2][1] = a[1][2];
-		a[2][2] = size;
-	}
-	
-	private static class LinearBinding
+	public synchronized ImageTransform getImageTransform(int width, int height)
 	{
-		double[] Kx = new double[3];
-		double[] Ky = new double[3];
-		double[] Klat = new double[3];
-		double[] Klon = new double[3];
+		return ImageTransform.fit(projection, calibrationPoints, width * 1. / this.width, height * 1. / this.height);
 	}
 
 	
@@ -24,23 +24,51 @@ import java.io.File;
 import java.io.IOException;
 
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
 
 import com.androzic.Log;
+import com.androzic.map.ReaderPool;
 import com.androzic.map.Tile;
 import com.androzic.map.TileRAMCache;
 
 public class OzfReader
 {
+	/**
+	 * Super tiles are cached in the same cache as native tiles, this bit distinguishes their keys
+	 */
+	private static final long SUPERTILE_KEY_FLAG = 1L << 47;
+
 	private double	zoom;
 	private int		source;
 	private double	factor;
 	private byte	zoomKey;
+	private int		span = 1;
+	private static final ReaderPool.Closer CLOSER = new ReaderPool.Closer() {
+		@Override
+		public void close(Object handle)
+		{
+			OzfDecoder.close((OzfFile) handle);
+		}
+	};
+
+	private final String key;
 	private OzfFile ozf;
 	private TileRAMCache cache;
+	/**
+	 * Decoded tile buffer, own for each reader so that maps are decoded independently
+	 */
+	private final int[] pixels = new int[OzfDecoder.OZF_TILE_WIDTH * OzfDecoder.OZF_TILE_HEIGHT];
 
+	/**
+	 * Opens image file, file that was recently closed by another reader is taken from reader pool.
+	 */
 	public OzfReader(File file) throws IOException, OutOfMemoryError
 	{
-		ozf = OzfDecoder.open(file);
+		key = ReaderPool.getKey(file);
+		ozf = ReaderPool.acquire(key, OzfFile.class);
+		if (ozf == null)
+			ozf = OzfDecoder.open(file);
 		setZoom(1.0);
 	}
 
@@ -49,6 +77,27 @@ public class OzfReader
 		this.cache = cache;
 	}
 
+	/**
+	 * Sets size of composed super tiles. Size is measured in source image pixels and is
+	 * rounded down to the multiple of native tile size, 64 (or less) disables composition.
+	 *
+	 * @param size super tile size in pixels, e.g. 256
+	 */
+	public void setSuperTileSize(int size)
+	{
+		span = Math.max(1, size / OzfDecoder.OZF_TILE_WIDTH);
+		if (cache != null)
+			cache.clear();
+	}
+
+	/**
+	 * Returns number of native tiles per super tile side
+	 */
+	public int supertile_span()
+	{
+		return span;
+	}
+
 	public double getZoom()
 	{
 		return zoom;
@@ -90,16 +139,24 @@ public class OzfReader
 		
 		source = k;
 		factor = this.zoom / ozf_zoom;
-		zoomKey = (byte) (this.zoom * 50);
+		// Zoom is arbitrary, so key only spreads zooms in cache and cached tiles are checked by full zoom
+		long bits = Double.doubleToLongBits(this.zoom);
+		bits ^= bits >>> 32;
+		bits ^= bits >>> 16;
+		zoomKey = (byte) (bits ^ bits >>> 8);
 
 		Log.d("OZF", String.format("zoom: %f, selected source scale: %f (%d), factor: %f", this.zoom, ozf_zoom, source, factor));
 		
 		return this.zoom;
 	}
 
+	/**
+	 * Returns image file to reader pool, it is closed when pool is full.
+	 */
 	public void close()
 	{
-		OzfDecoder.close(ozf);
+		// Native decoder holds its own descriptor
+		ReaderPool.release(key, ozf, OzfDecoder.useNativeCalls ? 2 : 1, CLOSER);
 	}
 
 	public double map_x_to_c(int map_x)
@@ -133,6 +190,37 @@ public class OzfReader
 		return xy;
 	}
 
+	public double map_x_to_sc(int map_x)
+	{
+		return map_x / (OzfDecoder.OZF_TILE_WIDTH * span * factor);
+	}
+
+	public double map_y_to_sr(int map_y)
+	{
+		return map_y / (OzfDecoder.OZF_TILE_HEIGHT * span * factor);
+	}
+
+	public int[] map_xy_to_scr(int[] map_xy)
+	{
+		int[] cr = new int[2];
+
+		cr[0] = (int) (Math.abs(map_xy[0])/(OzfDecoder.OZF_TILE_WIDTH * span * factor));
+		cr[1] = (int) (Math.abs(map_xy[1])/(OzfDecoder.OZF_TILE_HEIGHT * span * factor));
+
+		return cr;
+	}
+
+	public int[] map_xy_to_xy_on_supertile(int[] map_xy)
+	{
+		int[] cr = map_xy_to_scr(map_xy);
+		int[] xy = new int[2];
+
+		xy[0] = (int) Math.round(map_xy[0] - cr[0] * (OzfDecoder.OZF_TILE_WIDTH * span * factor));
+		xy[1] = (int) Math.round(map_xy[1] - cr[1] * (OzfDecoder.OZF_TILE_HEIGHT * span * factor));
+
+		return xy;
+	}
+
 	public int tile_dx()
 	{
 		return tile_dx(0, 0);
@@ -191,6 +279,141 @@ public class OzfReader
 		return OzfDecoder.num_tiles_per_y(ozf, source);
 	}
 
+	public int supertile_dx()
+	{
+		return span * tile_dx();
+	}
+
+	public int supertile_dy()
+	{
+		return span * tile_dy();
+	}
+
+	/**
+	 * Returns scaled width of super tile, right border super tiles can be narrower
+	 */
+	public int supertile_dx(int sc, int sr)
+	{
+		if (sc > supertiles_per_x() - 1 || sr > supertiles_per_y() - 1)
+			return 0;
+
+		int c = Math.min((sc + 1) * span, tiles_per_x()) - 1;
+		return (c - sc * span) * tile_dx() + tile_dx(c, 0);
+	}
+
+	/**
+	 * Returns scaled height of super tile, bottom border super tiles can be lower
+	 */
+	public int supertile_dy(int sc, int sr)
+	{
+		if (sc > supertiles_per_x() - 1 || sr > supertiles_per_y() - 1)
+			return 0;
+
+		int r = Math.min((sr + 1) * span, tiles_per_y()) - 1;
+		return (r - sr * span) * tile_dy() + tile_dy(0, r);
+	}
+
+	public int supertiles_per_x()
+	{
+		return (tiles_per_x() + span - 1) / span;
+	}
+
+	public int supertiles_per_y()
+	{
+		return (tiles_per_y() + span - 1) / span;
+	}
+
+	/**
+	 * Returns bitmap composed of native tiles that fall into given super tile. Bitmap
+	 * is cached as a whole, native tiles are not cached separately.
+	 */
+	public Bitmap supertile_get(int sc, int sr) throws OutOfMemoryError
+	{
+		if (span == 1)
+			return tile_get(sc, sr);
+
+		if (sc < 0 || sc > supertiles_per_x() - 1)
+			return null;
+
+		if (sr < 0 || sr > supertiles_per_y() - 1)
+			return null;
+
+		long key = Tile.getKey(sc, sr, zoomKey) | SUPERTILE_KEY_FLAG;
+
+		Bitmap cached = getCached(key);
+		if (cached != null)
+			return cached;
+
+		int w = supertile_dx(sc, sr);
+		int h = supertile_dy(sc, sr);
+		if (w == 0 || h == 0)
+			return null;
+
+		int tile_w = tile_dx();
+		int tile_h = tile_dy();
+		int c_min = sc * span;
+		int r_min = sr * span;
+		int c_max = Math.min(c_min + span, tiles_per_x());
+		int r_max = Math.min(r_min + span, tiles_per_y());
+
+		Bitmap superBitmap = Bitmap.createBitmap(w, h, Bitmap.Config.RGB_565);
+		Canvas canvas = new Canvas(superBitmap);
+		Rect src = new Rect();
+		Rect dst = new Rect();
+		boolean empty = true;
+
+		for (int r = r_min; r < r_max; r++)
+		{
+			for (int c = c_min; c < c_max; c++)
+			{
+				Bitmap tileBitmap = tile_decode(c, r);
+				if (tileBitmap == null)
+					continue;
+				int tx = (c - c_min) * tile_w;
+				int ty = (r - r_min) * tile_h;
+				// right and bottom border tiles are only partially filled
+				src.set(0, 0, tile_dx(c, r), tile_dy(c, r));
+				dst.set(tx, ty, tx + src.right, ty + src.bottom);
+				canvas.drawBitmap(tileBitmap, src, dst, null);
+				empty = false;
+			}
+		}
+
+		if (empty)
+			return null;
+
+		if (cache != null)
+		{
+			Tile tile = new ZoomTile(sc, sr, zoomKey, zoom);
+			tile.bitmap = superBitmap;
+			putCached(key, tile);
+		}
+
+		return superBitmap;
+	}
+
+	/**
+	 * Returns cached bitmap of a tile at current zoom, or null if it is not cached.
+	 */
+	private Bitmap getCached(long key)
+	{
+		if (cache == null)
+			return null;
+		Tile t = cache.get(key);
+		if (t instanceof ZoomTile && ((ZoomTile) t).zoom == zoom)
+			return t.bitmap;
+		return null;
+	}
+
+	/**
+	 * Puts tile to cache, replacing tile of another zoom with the same key.
+	 */
+	private void putCached(long key, Tile tile)
+	{
+		cache.remove(key);
+		cache.put(key, tile);
+	}
+
 	public Bitmap tile_get(int c, int r) throws OutOfMemoryError
 	{
 		if (c < 0 || c > tiles_per_x() - 1)
@@ -200,46 +423,65 @@ public class OzfReader
 			return null;
 
 		long key = Tile.getKey(c, r, zoomKey);
-		Tile tile = new Tile(c, r, zoomKey);
-		Bitmap tileBitmap = null;
-		
-		if (cache != null)
-		{
-			Tile t = cache.get(key);
-			if (t != null)
-				tileBitmap = t.bitmap;
-		}
+		Tile tile = new ZoomTile(c, r, zoomKey, zoom);
+		Bitmap tileBitmap = getCached(key);
+
 		if (tileBitmap == null)
 		{
-	        int w = OzfDecoder.OZF_TILE_WIDTH;
-	        int h = OzfDecoder.OZF_TILE_HEIGHT;
-	        if (OzfDecoder.useNativeCalls && factor < 1.0)
-			{
-		        w = (int) (factor * w);
-		        h = (int) (factor * h);
-			}
-			int[] data = OzfDecoder.getTile(ozf, source, c, r, w, h);
-			if (data != null)
-			{
-				tileBitmap = Bitmap.createBitmap(w, h, Bitmap.Config.RGB_565);
-				tileBitmap.setPixels(data, 0, w, 0, 0, w, h);
-			}
-			if (tileBitmap == null)
-				return null;
-			if (factor > 1.0 || (!OzfDecoder.useNativeCalls && factor < 1.0))
-			{
-		        int sw = (int) (factor * OzfDecoder.OZF_TILE_WIDTH);
-		        int sh = (int) (factor * OzfDecoder.OZF_TILE_HEIGHT);
-		        Bitmap scaled = Bitmap.createScaledBitmap(tileBitmap, sw, sh, false);
-		        tileBitmap = scaled;
-			}
+			tileBitmap = tile_decode(c, r);
 			if (cache != null && tileBitmap != null)
 			{
 				tile.bitmap = tileBitmap;
-				cache.put(tile.getKey(), tile);
+				putCached(key, tile);
 			}
 		}
 		
 		return tileBitmap;
 	}
+
+	private Bitmap tile_decode(int c, int r) throws OutOfMemoryError
+	{
+		Bitmap tileBitmap = null;
+		int w = OzfDecoder.OZF_TILE_WIDTH;
+		int h = OzfDecoder.OZF_TILE_HEIGHT;
+		if (OzfDecoder.useNativeCalls && factor < 1.0)
+		{
+			w = (int) (factor * w);
+			h = (int) (factor * h);
+		}
+		int[] data;
+		if (w == OzfDecoder.OZF_TILE_WIDTH && h == OzfDecoder.OZF_TILE_HEIGHT)
+			data = OzfDecoder.getTile(ozf, source, c, r, pixels) ? pixels : null;
+		else
+			data = OzfDecoder.getTile(ozf, source, c, r, w, h);
+		if (data != null)
+		{
+			tileBitmap = Bitmap.createBitmap(w, h, Bitmap.Config.RGB_565);
+			tileBitmap.setPixels(data, 0, w, 0, 0, w, h);
+		}
+		if (tileBitmap == null)
+			return null;
+		if (factor > 1.0 || (!OzfDecoder.useNativeCalls && factor < 1.0))
+		{
+			int sw = (int) (factor * OzfDecoder.OZF_TILE_WIDTH);
+			int sh = (int) (factor * OzfDecoder.OZF_TILE_HEIGHT);
+			tileBitmap = Bitmap.createScaledBitmap(tileBitmap, sw, sh, false);
+		}
+
+		return tileBitmap;
+	}
+
+	/**
+	 * Cached tile, keeps full zoom as several zooms can share the same zoom key.
+	 */
+	private static class ZoomTile extends Tile
+	{
+		final double zoom;
+
+		ZoomTile(int x, int y, byte zoomKey, double zoom)
+		{
+			super(x, y, zoomKey);
+			this.zoom = zoom;
+		}
+	}
 }
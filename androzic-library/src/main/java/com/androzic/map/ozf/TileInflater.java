@@ -0,0 +1,55 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.androzic.map.ozf;
+
+import java.util.zip.DataFormatException;
+
+/**
+ * Inflates zlib compressed tile data. Implementations are not thread safe, each decoding thread
+ * uses its own instance, see {@link InflaterPool}.
+ */
+public interface TileInflater
+{
+	/**
+	 * Inflates a complete zlib stream in one call. Stream has to end within destination,
+	 * its checksum is verified.
+	 * 
+	 * @param source compressed data
+	 * @param offset offset of stream in source
+	 * @param length length of stream
+	 * @param dest buffer for decompressed data
+	 * @param destLength expected size of decompressed data
+	 * @return number of decompressed bytes
+	 * @throws DataFormatException if stream is corrupted or truncated
+	 */
+	int inflate(byte[] source, int offset, int length, byte[] dest, int destLength) throws DataFormatException;
+
+	/**
+	 * Returns number of bytes written to destination by the last inflate() call, including
+	 * the call that failed.
+	 */
+	int getTotalOut();
+
+	/**
+	 * Releases resources held by inflater, it can not be used afterwards.
+	 */
+	void end();
+}
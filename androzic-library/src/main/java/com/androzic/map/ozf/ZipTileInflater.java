@@ -0,0 +1,75 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.androzic.map.ozf;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Platform inflater, on Android and most JVMs it is backed by native zlib.
+ */
+public class ZipTileInflater implements TileInflater
+{
+	private final Inflater inflater = new Inflater();
+	private final byte[] trailer = new byte[1];
+	private int totalOut;
+
+	@Override
+	public int inflate(byte[] source, int offset, int length, byte[] dest, int destLength) throws DataFormatException
+	{
+		inflater.reset();
+		inflater.setInput(source, offset, length);
+		totalOut = 0;
+		int size = 0;
+		while (size < destLength && !inflater.finished())
+		{
+			int n = inflater.inflate(dest, size, destLength - size);
+			if (n == 0)
+			{
+				if (inflater.finished())
+					break;
+				throw new DataFormatException("unexpected end of stream");
+			}
+			size += n;
+			totalOut = size;
+		}
+		// Destination is full, let zlib consume and verify stream trailer
+		if (!inflater.finished())
+		{
+			inflater.inflate(trailer);
+			if (!inflater.finished())
+				throw new DataFormatException("stream does not end within destination");
+		}
+		return size;
+	}
+
+	@Override
+	public int getTotalOut()
+	{
+		return totalOut;
+	}
+
+	@Override
+	public void end()
+	{
+		inflater.end();
+	}
+}
@@ -29,6 +29,7 @@ import android.graphics.Matrix;
 
 import com.androzic.Log;
 import com.androzic.map.OnMapTileStateChangeListener;
+import com.androzic.map.ReaderPool;
 import com.androzic.map.Tile;
 import com.androzic.map.TileMap;
 
@@ -54,7 +55,16 @@ public class SQLiteMap extends TileMap
 	private static final String SQL_GET_MAXX = "SELECT MAX(x) FROM tiles WHERE z = ?";
 	private static final String SQL_GET_MAXY = "SELECT MAX(y) FROM tiles WHERE z = ?";
 
+	private static final ReaderPool.Closer CLOSER = new ReaderPool.Closer() {
+		@Override
+		public void close(Object handle)
+		{
+			((SQLiteDatabase) handle).close();
+		}
+	};
+
 	private transient SQLiteDatabase database;
+	private transient String databaseKey;
 
 	protected SQLiteMap()
 	{
@@ -127,7 +137,10 @@ public class SQLiteMap extends TileMap
 	public synchronized void activate(OnMapTileStateChangeListener listener, double mpp, boolean current) throws Throwable
 	{
 		Log.e("SQLMap", "activate(): " + name);
-		database = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY);
+		databaseKey = ReaderPool.getKey(new File(path));
+		database = ReaderPool.acquire(databaseKey, SQLiteDatabase.class);
+		if (database == null || !database.isOpen())
+			database = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY);
 		super.activate(listener, mpp, current);
 	}
 
@@ -136,7 +149,10 @@ public class SQLiteMap extends TileMap
 	{
 		Log.e("SQLMap", "deactivate(): " + name);
 		super.deactivate();
-		database.close();
+		// Database is kept open for some time in case map is activated again
+		if (database != null)
+			ReaderPool.release(databaseKey, database, 1, CLOSER);
+		database = null;
 	}
 
 	@Override
@@ -162,11 +178,6 @@ public class SQLiteMap extends TileMap
 				}
 				if (tile.bitmap != null)
 				{
-					if (dynZoom != 1.0)
-					{
-				        int ss = (int) (dynZoom * tileSize);
-						tile.bitmap = Bitmap.createScaledBitmap(tile.bitmap, ss, ss, true);
-					}
 					cache.put(tile.getKey(), tile);
 				}
 			}
@@ -224,7 +235,8 @@ public class SQLiteMap extends TileMap
 	{
 		byte[] data = null;
 
-		if (database.isOpen())
+		SQLiteDatabase database = this.database;
+		if (database != null && database.isOpen())
 		{
 			String[] args = {String.valueOf(tx), String.valueOf(ty), String.valueOf(17 - z)};
 			Cursor c = database.rawQuery(SQL_GET_IMAGE, args);
@@ -22,6 +22,117 @@ package com.androzic.util;
 
 public class Geo
 {
+	/**
+	 * Relative distance error acceptable for accumulated lengths (tracks, routes)
+	 */
+	public static final double ACCURATE = 1e-6;
+	/**
+	 * Relative distance error acceptable for displaying and sorting
+	 */
+	public static final double APPROXIMATE = 1e-3;
+
+	// WGS-84 ellipsoid
+	private static final double A = 6378137;
+	private static final double F = 1/298.257223563;
+	private static final double E2 = F * (2 - F);
+
+	// Measured against Vincenty formula for latitudes up to 85 degrees. Equirectangular error
+	// grows with square of span (in degrees), Andoyer-Lambert error is almost constant until
+	// points become close to antipodal.
+	private static final double EQUIRECTANGULAR_ERROR = 4e-5;
+	private static final double ANDOYER_LAMBERT_ERROR = 5e-6;
+	private static final double ANDOYER_LAMBERT_SPAN = 90;
+
+	/**
+	 * Returns distance between two points using the cheapest formula that satisfies
+	 * requested accuracy: equirectangular approximation for short spans, Andoyer-Lambert
+	 * formula for longer ones and iterative Vincenty formula otherwise.
+	 *
+	 * @param tolerance acceptable relative error, e.g. {@link #ACCURATE}
+	 */
+	public static double distance(double lat1, double lon1, double lat2, double lon2, double tolerance)
+	{
+		double dlon = Math.abs(Math.IEEEremainder(lon2 - lon1, 360));
+		double span = Math.max(Math.abs(lat2 - lat1), dlon);
+		if (EQUIRECTANGULAR_ERROR * span * span <= tolerance)
+			return equirectangular(lat1, lon1, lat2, lon2);
+		if (ANDOYER_LAMBERT_ERROR <= tolerance && span <= ANDOYER_LAMBERT_SPAN)
+			return andoyerLambert(lat1, lon1, lat2, lon2);
+		return distance(lat1, lon1, lat2, lon2);
+	}
+
+	/**
+	 * Calculates distances between consecutive points.
+	 *
+	 * @param result receives <code>count - 1</code> distances
+	 */
+	public static void distances(double[] lat, double[] lon, int count, double tolerance, double[] result)
+	{
+		for (int i = 1; i < count; i++)
+			result[i - 1] = distance(lat[i - 1], lon[i - 1], lat[i], lon[i], tolerance);
+	}
+
+	/**
+	 * Calculates distances from one point to each of other points.
+	 */
+	public static void distances(double lat, double lon, double[] lats, double[] lons, int count, double tolerance, double[] result)
+	{
+		for (int i = 0; i < count; i++)
+			result[i] = distance(lat, lon, lats[i], lons[i], tolerance);
+	}
+
+	private static double equirectangular(double lat1, double lon1, double lat2, double lon2)
+	{
+		double dlon = Math.toRadians(Math.IEEEremainder(lon2 - lon1, 360));
+		double lat = Math.toRadians((lat1 + lat2) / 2);
+		double sinLat = Math.sin(lat);
+		double w2 = 1 - E2 * sinLat * sinLat;
+		// Prime vertical and meridional radii of curvature
+		double n = A / Math.sqrt(w2);
+		double m = n * (1 - E2) / w2;
+		double dx = n * Math.cos(lat) * dlon;
+		double dy = m * Math.toRadians(lat2 - lat1);
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+
+	private static double andoyerLambert(double lat1, double lon1, double lat2, double lon2)
+	{
+		// Sines and cosines of reduced latitudes
+		double rlat1 = Math.toRadians(lat1);
+		double rlat2 = Math.toRadians(lat2);
+		double y1 = (1 - F) * Math.sin(rlat1);
+		double x1 = Math.cos(rlat1);
+		double r1 = Math.sqrt(x1 * x1 + y1 * y1);
+		double sin1 = y1 / r1;
+		double cos1 = x1 / r1;
+		double y2 = (1 - F) * Math.sin(rlat2);
+		double x2 = Math.cos(rlat2);
+		double r2 = Math.sqrt(x2 * x2 + y2 * y2);
+		double sin2 = y2 / r2;
+		double cos2 = x2 / r2;
+
+		// Haversine of central angle, written without cancellation for short spans
+		double sinDlat = sin2 * cos1 - cos2 * sin1;
+		double cosDlat = cos1 * cos2 + sin1 * sin2;
+		double sinDlon = Math.sin(Math.toRadians(Math.IEEEremainder(lon2 - lon1, 360)) / 2);
+		double h = sinDlat * sinDlat / (2 * (1 + cosDlat)) + cos1 * cos2 * sinDlon * sinDlon;
+		if (h <= 0)
+			return 0;
+		h = Math.min(1, h);
+		double sigma = 2 * Math.asin(Math.sqrt(h));
+		double sinSigma = 2 * Math.sqrt(h * (1 - h));
+
+		// sin(P)cos(Q) and cos(P)sin(Q), where P and Q are half sum and half difference of reduced latitudes
+		double sPcQ = (sin1 + sin2) / 2;
+		double cPsQ = (sin2 - sin1) / 2;
+		double x = (sigma - sinSigma) * sPcQ * sPcQ / (1 - h);
+		double y = (sigma + sinSigma) * cPsQ * cPsQ / h;
+		return A * (sigma - F / 2 * (x + y));
+	}
+
+	/**
+	 * Returns distance between two points calculated by Vincenty formula.
+	 */
 	public static double distance(double lat1, double lon1, double lat2, double lon2)
 	{
 		// WGS-84 ellipsoid
@@ -120,7 +120,7 @@ final class Inflate{
   GZIPHeader gheader = null;
 
   int inflateReset(){
-    if(z == null) return Z_STREAM_ERROR;
+    if(z == null || blocks == null) return Z_STREAM_ERROR;
     
     z.total_in = z.total_out = 0;
     z.msg = null;
@@ -133,6 +133,7 @@ final class Inflate{
   int inflateEnd(){
     if(blocks != null){
       blocks.free();
+      blocks = null;
     }
     return Z_OK;
   }
@@ -282,7 +283,11 @@ final class Inflate{
           break;
         }
 
-        z.adler=new Adler32();
+        // reuse checksum of previous stream after inflateReset()
+        if(z.adler instanceof Adler32)
+          z.adler.reset();
+        else
+          z.adler=new Adler32();
 
         if((b&PRESET_DICT)==0){
           this.mode = BLOCKS;
@@ -136,6 +136,15 @@ final public class Inflater extends ZStream{
     return ret;
   }
 
+  /**
+   * Prepares inflater for a new stream keeping allocated window and tables.
+   */
+  public int reset(){
+    finished = false;
+    if(istate==null) return Z_STREAM_ERROR;
+    return istate.inflateReset();
+  }
+
   public int end(){
     finished = true;
     if(istate==null) return Z_STREAM_ERROR;
@@ -126,6 +126,15 @@ public class ZStream{
     if(istate==null) return Z_STREAM_ERROR;
     return istate.inflate(f);
   }
+  /**
+   * Resets inflater for a new stream keeping allocated window and tables.
+   * Has to be called instead of inflateEnd()/inflateInit() pair when the
+   * same ZStream is used to decompress multiple streams.
+   */
+  public int inflateReset(){
+    if(istate==null) return Z_STREAM_ERROR;
+    return istate.inflateReset();
+  }
   public int inflateEnd(){
     if(istate==null) return Z_STREAM_ERROR;
     int ret=istate.inflateEnd();
@@ -83,6 +83,48 @@ public class LambertConformalConicProjection extends ConicProjection {
 		return out;
 	}
 
+	protected void project(double[] x, double[] y, int offset, int count) {
+		final double k0 = scaleFactor, n = this.n, c = this.c, rho0 = this.rho0, e = this.e;
+		for (int i = offset, end = offset + count; i < end; i++) {
+			final double phi = y[i];
+			double rho;
+			if (Math.abs(Math.abs(phi) - MapMath.HALFPI) < 1e-10)
+				rho = 0.0;
+			else
+				rho = c * (spherical ?
+				Math.pow(Math.tan(MapMath.QUARTERPI + .5 * phi), -n) :
+				Math.pow(MapMath.tsfn(phi, Math.sin(phi), e), n));
+			final double lam = x[i] * n;
+			x[i] = k0 * (rho * Math.sin(lam));
+			y[i] = k0 * (rho0 - rho * Math.cos(lam));
+		}
+	}
+
+	protected void projectInverse(double[] x, double[] y, int offset, int count) {
+		final double k0 = scaleFactor, n = this.n, c = this.c, rho0 = this.rho0, e = this.e;
+		final double in = 1.0 / n;
+		for (int i = offset, end = offset + count; i < end; i++) {
+			double xi = x[i] / k0;
+			double yi = rho0 - y[i] / k0;
+			double rho = MapMath.distance(xi, yi);
+			if (rho != 0) {
+				if (n < 0.0) {
+					rho = -rho;
+					xi = -xi;
+					yi = -yi;
+				}
+				if (spherical)
+					y[i] = 2.0 * Math.atan(Math.pow(c / rho, in)) - MapMath.HALFPI;
+				else
+					y[i] = MapMath.phi2(Math.pow(rho / c, in), e);
+				x[i] = Math.atan2(xi, yi) / n;
+			} else {
+				x[i] = 0.0;
+				y[i] = n > 0.0 ? MapMath.HALFPI : -MapMath.HALFPI;
+			}
+		}
+	}
+
 	public void initialize() {
 		super.initialize();
 		double cosphi, sinphi;
@@ -55,6 +55,29 @@ public class MercatorProjection extends CylindricalProjection {
         return out;
     }
 
+    protected void project(double[] x, double[] y, int offset, int count) {
+        final double k0 = scaleFactor, e = this.e;
+        for (int i = offset, end = offset + count; i < end; i++) {
+            final double phi = y[i];
+            x[i] = k0 * x[i];
+            if (spherical)
+                y[i] = k0 * Math.log(Math.tan(MapMath.QUARTERPI + 0.5 * phi));
+            else
+                y[i] = -k0 * Math.log(MapMath.tsfn(phi, Math.sin(phi), e));
+        }
+    }
+
+    protected void projectInverse(double[] x, double[] y, int offset, int count) {
+        final double k0 = scaleFactor, e = this.e;
+        for (int i = offset, end = offset + count; i < end; i++) {
+            if (spherical)
+                y[i] = MapMath.HALFPI - 2. * Math.atan(Math.exp(-y[i] / k0));
+            else
+                y[i] = MapMath.phi2(Math.exp(-y[i] / k0), e);
+            x[i] = x[i] / k0;
+        }
+    }
+
     public boolean hasInverse() {
         return true;
     }
@@ -241,12 +241,46 @@ public abstract class Projection implements Cloneable, Serializable {
         for (int i = 0; i < numPoints; i++) {
             in.x = srcPoints[srcOffset++];
             in.y = srcPoints[srcOffset++];
-            transform(in, out);
+            transformRadians(in, out);
             dstPoints[dstOffset++] = out.x;
             dstPoints[dstOffset++] = out.y;
         }
     }
 
+    /**
+     * Project a number of lon/lat points (in degrees) stored in separate arrays,
+     * producing a result in metres. Longitudes are always normalized, as in
+     * transform(double, double, Point2D.Double). Result arrays may be the same
+     * as source arrays, no objects are allocated per point.
+     */
+    public void transform(double[] lon, double[] lat, double[] x, double[] y, int offset, int count) {
+        int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            x[i] = MapMath.normalizeLongitude(lon[i] * DTR - projectionLongitude);
+            y[i] = lat[i] * DTR;
+        }
+        project(x, y, offset, count);
+        for (int i = offset; i < end; i++) {
+            x[i] = totalScale * x[i] + totalFalseEasting;
+            y[i] = totalScale * y[i] + totalFalseNorthing;
+        }
+    }
+
+    /**
+     * The method which projects a number of points in place. Arrays contain
+     * longitudes and latitudes in radians on input and projected points on
+     * output. Projections should override it with a loop that does not call
+     * project(double, double, Point2D.Double) for each point.
+     */
+    protected void project(double[] x, double[] y, int offset, int count) {
+        Point2D.Double out = new Point2D.Double();
+        for (int i = offset, end = offset + count; i < end; i++) {
+            project(x[i], y[i], out);
+            x[i] = out.x;
+            y[i] = out.y;
+        }
+    }
+
     /**
      * Inverse-project a point (in metres), producing a lat/long result in degrees
      */
@@ -343,6 +377,47 @@ public abstract class Projection implements Cloneable, Serializable {
         }
     }
 
+    /**
+     * Inverse-project a number of points (in metres) stored in separate arrays,
+     * producing a lon/lat result in degrees. Result arrays may be the same as
+     * source arrays, no objects are allocated per point.
+     */
+    public void inverseTransform(double[] x, double[] y, double[] lon, double[] lat, int offset, int count) {
+        int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            lon[i] = (x[i] - totalFalseEasting) / totalScale;
+            lat[i] = (y[i] - totalFalseNorthing) / totalScale;
+        }
+        projectInverse(lon, lat, offset, count);
+        for (int i = offset; i < end; i++) {
+            double l = lon[i];
+            if (l < -Math.PI) {
+                l = -Math.PI;
+            } else if (l > Math.PI) {
+                l = Math.PI;
+            }
+            if (projectionLongitude != 0) {
+                l = MapMath.normalizeLongitude(l + projectionLongitude);
+            }
+            lon[i] = l * RTD;
+            lat[i] *= RTD;
+        }
+    }
+
+    /**
+     * The method which inverse-projects a number of points in place. Arrays
+     * contain unscaled projected points on input and longitudes and latitudes
+     * in radians on output.
+     */
+    protected void projectInverse(double[] x, double[] y, int offset, int count) {
+        Point2D.Double out = new Point2D.Double();
+        for (int i = offset, end = offset + count; i < end; i++) {
+            projectInverse(x[i], y[i], out);
+            x[i] = out.x;
+            y[i] = out.y;
+        }
+    }
+
     /**
      * Finds the smallest lat/long rectangle wholly inside the given view rectangle.
      * This is only a rough estimate.
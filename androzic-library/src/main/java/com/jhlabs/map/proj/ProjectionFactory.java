@@ -31,6 +31,8 @@ to register().
 package com.jhlabs.map.proj;
 
 import java.io.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.*;
 
 import com.jhlabs.Point2D;
@@ -291,6 +293,7 @@ public class ProjectionFactory {
     }
     private static Hashtable registry;
     private static Hashtable nameMap;
+    private static volatile boolean initialized;
 
     private static void register(String proj4Name, Class cls) throws InstantiationException, IllegalAccessException {
         try {
@@ -305,7 +308,7 @@ public class ProjectionFactory {
     }
 
     public static Projection getNamedProjection(String name) {
-        if (registry == null) {
+        if (!initialized) {
             initialize();
         }
         String proj4Name = (String) nameMap.get(name);
@@ -313,7 +316,7 @@ public class ProjectionFactory {
     }
 
     public static Projection getNamedPROJ4Projection(String name) {
-        if (registry == null) {
+        if (!initialized) {
             initialize();
         }
         Class cls = (Class) registry.get(name);
@@ -334,7 +337,7 @@ public class ProjectionFactory {
     }
 
     public static Object[] getOrderedProjectionNames() {
-        if (registry == null) {
+        if (!initialized) {
             initialize();
         }
         Object[] names = nameMap.keySet().toArray();
@@ -342,7 +345,10 @@ public class ProjectionFactory {
         return names;
     }
 
-    private static void initialize() {
+    private static synchronized void initialize() {
+        if (initialized) {
+            return;
+        }
         try {
             registry = new Hashtable();
             nameMap = new Hashtable();
@@ -470,6 +476,7 @@ public class ProjectionFactory {
             register("wink1", Winkel1Projection.class);
             register("wink2", Winkel2Projection.class);
             register("wintri", WinkelTripelProjection.class);
+            initialized = true;
         } catch (InstantiationException ex) {
             Logger.getLogger(ProjectionFactory.class.getName()).log(Level.SEVERE, null, ex);
             ex.printStackTrace();
@@ -584,6 +591,114 @@ public class ProjectionFactory {
         return null;
     }
 
+    private final static int MAX_SHARED = 256;
+
+    private static LinkedHashMap sharedProjections = new LinkedHashMap(16, 0.75f, true) {
+        protected boolean removeEldestEntry(Map.Entry eldest) {
+            return size() > MAX_SHARED;
+        }
+    };
+
+    /**
+     * Initialize projection or return an already initialized projection with
+     * the same parameters and ellipsoid. Projections returned by this method
+     * are shared and must not be modified, clone them instead. Projection
+     * passed to this method must not be used by caller afterwards.
+     */
+    public static Projection getSharedProjection(Projection projection) {
+        String key = getCanonicalKey(projection);
+        if (key == null) {
+            projection.initialize();
+            return projection;
+        }
+        synchronized (sharedProjections) {
+            Projection shared = (Projection) sharedProjections.get(key);
+            if (shared != null) {
+                return shared;
+            }
+        }
+        projection.initialize();
+        synchronized (sharedProjections) {
+            Projection shared = (Projection) sharedProjections.get(key);
+            if (shared != null) {
+                return shared;
+            }
+            sharedProjections.put(key, projection);
+        }
+        return projection;
+    }
+
+    /**
+     * Drop all shared projections. Projections already in use stay valid.
+     */
+    public static void clearSharedProjections() {
+        synchronized (sharedProjections) {
+            sharedProjections.clear();
+        }
+    }
+
+    /**
+     * Return a string uniquely describing projection state: its class, all
+     * parameters and ellipsoid. Returns null if state contains values that
+     * can not be described.
+     */
+    static String getCanonicalKey(Projection projection) {
+        StringBuffer sb = new StringBuffer(512);
+        sb.append(projection.getClass().getName());
+        try {
+            for (Class cls = projection.getClass(); cls != Object.class; cls = cls.getSuperclass()) {
+                if (!appendFields(sb, cls, projection)) {
+                    return null;
+                }
+            }
+        } catch (IllegalAccessException e) {
+            return null;
+        } catch (SecurityException e) {
+            return null;
+        }
+        return sb.toString();
+    }
+
+    private static boolean appendFields(StringBuffer sb, Class cls, Object object) throws IllegalAccessException {
+        Field[] fields = cls.getDeclaredFields();
+        for (int i = 0; i < fields.length; i++) {
+            Field field = fields[i];
+            int modifiers = field.getModifiers();
+            if (Modifier.isStatic(modifiers) || field.isSynthetic()) {
+                continue;
+            }
+            field.setAccessible(true);
+            Object value = field.get(object);
+            sb.append(' ').append(field.getName()).append('=');
+            if (value == null) {
+                sb.append("null");
+            } else if (value instanceof Double) {
+                // Bits distinguish values that decimal representation may round
+                sb.append(Long.toHexString(Double.doubleToLongBits(((Double) value).doubleValue())));
+            } else if (value instanceof Number || value instanceof Boolean || value instanceof String || value instanceof Character) {
+                sb.append(value);
+            } else if (value instanceof double[]) {
+                double[] array = (double[]) value;
+                sb.append('[');
+                for (int j = 0; j < array.length; j++) {
+                    sb.append(Long.toHexString(Double.doubleToLongBits(array[j]))).append(',');
+                }
+                sb.append(']');
+            } else if (value instanceof int[]) {
+                sb.append(Arrays.toString((int[]) value));
+            } else if (value instanceof Ellipsoid) {
+                sb.append('{');
+                if (!appendFields(sb, Ellipsoid.class, value)) {
+                    return false;
+                }
+                sb.append('}');
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public static void main(String[] args) {
         Projection projection = ProjectionFactory.fromPROJ4Specification(args);
 
@@ -224,6 +224,74 @@ public class TransverseMercatorProjection extends CylindricalProjection {
         return out;
     }
 
+    protected void project(double[] x, double[] y, int offset, int count) {
+        if (spherical) {
+            super.project(x, y, offset, count);
+            return;
+        }
+        final double es = this.es, esp = this.esp, ml0 = this.ml0, k0 = scaleFactor;
+        final double[] en = this.en;
+        for (int i = offset, end = offset + count; i < end; i++) {
+            final double lplam = x[i];
+            final double lpphi = y[i];
+            final double sinphi = Math.sin(lpphi);
+            final double cosphi = Math.cos(lpphi);
+            double t = Math.abs(cosphi) > 1e-10 ? sinphi / cosphi : 0.0;
+            t *= t;
+            double al = cosphi * lplam;
+            final double als = al * al;
+            al /= Math.sqrt(1. - es * sinphi * sinphi);
+            final double n = esp * cosphi * cosphi;
+            x[i] = k0 * al * (FC1
+                    + FC3 * als * (1. - t + n
+                    + FC5 * als * (5. + t * (t - 18.) + n * (14. - 58. * t)
+                    + FC7 * als * (61. + t * (t * (179. - t) - 479.)))));
+            y[i] = k0 * (MapMath.mlfn(lpphi, sinphi, cosphi, en) - ml0
+                    + sinphi * al * lplam * FC2 * (1.
+                    + FC4 * als * (5. - t + n * (9. + 4. * n)
+                    + FC6 * als * (61. + t * (t - 58.) + n * (270. - 330 * t)
+                    + FC8 * als * (1385. + t * (t * (543. - t) - 3111.))))));
+        }
+    }
+
+    protected void projectInverse(double[] x, double[] y, int offset, int count) {
+        if (spherical) {
+            super.projectInverse(x, y, offset, count);
+            return;
+        }
+        final double es = this.es, esp = this.esp, ml0 = this.ml0, k0 = scaleFactor;
+        final double[] en = this.en;
+        for (int i = offset, end = offset + count; i < end; i++) {
+            final double xi = x[i];
+            final double yi = y[i];
+            if (Math.abs(yi) >= MapMath.HALFPI) {
+                y[i] = yi < 0. ? -MapMath.HALFPI : MapMath.HALFPI;
+                x[i] = 0.;
+                continue;
+            }
+            double phi = MapMath.inv_mlfn(ml0 + yi / k0, es, en);
+            final double sinphi = Math.sin(phi);
+            final double cosphi = Math.cos(phi);
+            double t = Math.abs(cosphi) > 1e-10 ? sinphi / cosphi : 0.;
+            final double n = esp * cosphi * cosphi;
+            double con = 1. - es * sinphi * sinphi;
+            final double d = xi * Math.sqrt(con) / k0;
+            con *= t;
+            t *= t;
+            final double ds = d * d;
+            phi -= (con * ds / (1. - es)) * FC2 * (1.
+                    - ds * FC4 * (5. + t * (3. - 9. * n) + n * (1. - 4 * n)
+                    - ds * FC6 * (61. + t * (90. - 252. * n
+                    + 45. * t) + 46. * n
+                    - ds * FC8 * (1385. + t * (3633. + t * (4095. + 1574. * t))))));
+            x[i] = d * (FC1
+                    - ds * FC3 * (1. + 2. * t + n
+                    - ds * FC5 * (5. + t * (28. + 24. * t + 8. * n) + 6. * n
+                    - ds * FC7 * (61. + t * (662. + t * (1320. + 720. * t)))))) / cosphi;
+            y[i] = phi;
+        }
+    }
+
     public boolean hasInverse() {
         return true;
     }
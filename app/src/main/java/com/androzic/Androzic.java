@@ -39,6 +39,8 @@ import android.content.res.AssetManager;
 import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.graphics.Canvas;
+import android.graphics.Path;
+import android.graphics.Region;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.hardware.GeomagneticField;
@@ -72,7 +74,9 @@ import com.androzic.location.LocationService;
 import com.androzic.map.BaseMap;
 import com.androzic.map.ozf.OzfMap;
 import com.androzic.map.MapIndex;
+import com.androzic.map.MapWatcher;
 import com.androzic.map.MockMap;
+import com.androzic.map.ReaderPool;
 import com.androzic.map.ozf.OzfDecoder;
 import com.androzic.map.forge.ForgeMap;
 import com.androzic.map.online.OnlineMap;
@@ -144,6 +148,7 @@ public class Androzic extends BaseApplication implements OnSharedPreferenceChang
 	private boolean initialized = false;
 	private List<TileProvider> onlineMaps;
 	private MapIndex maps;
+	private MapWatcher mapWatcher;
 	private List<BaseMap> suitableMaps;
 	private List<BaseMap> coveringMaps;
 	private BaseMap currentMap;
@@ -158,6 +163,13 @@ public class Androzic extends BaseApplication implements OnSharedPreferenceChang
 	private double[] coveringLoc = new double[] {0.0, 0.0};
 	private Rectangle coveringScreen = new Rectangle();
 	private boolean invalidCoveringMaps = true;
+	// Map compositing state, used only by rendering thread
+	private final List<BaseMap> mapLayers = new ArrayList<>();
+	private final Path layerPath = new Path();
+	private final Region layerRegion = new Region();
+	private final Region screenRegion = new Region();
+	private final Region coveredRegion = new Region();
+	private final Region visibleRegion = new Region();
 	private double[] mapCenter = new double[] {0.0, 0.0};
 	private double[] location = new double[] {Double.NaN, Double.NaN};
 	private double magneticDeclination = 0;
@@ -725,7 +737,7 @@ public class Androzic extends BaseApplication implements OnSharedPreferenceChang
 				{
 					tp = points.get(j);
 					double b = Geo.bearing(tp.latitude, tp.longitude, fp.latitude, fp.longitude);
-					double d = Geo.distance(tp.latitude, tp.longitude, fp.latitude, fp.longitude);
+					double d = Geo.distance(tp.latitude, tp.longitude, fp.latitude, fp.longitude, Geo.ACCURATE);
 					double xtk = Geo.xtk(d, c, b);
 					if (xtk != Double.NEGATIVE_INFINITY && xtk < xtkMin)
 					{
@@ -799,7 +811,7 @@ public class Androzic extends BaseApplication implements OnSharedPreferenceChang
 		while (i < points.size())
 		{
 			cp = points.get(i);
-			d += Geo.distance(lp.latitude, lp.longitude, cp.latitude, cp.longitude);
+			d += Geo.distance(lp.latitude, lp.longitude, cp.latitude, cp.longitude, Geo.ACCURATE);
 			b = Geo.bearing(lp.latitude, lp.longitude, cp.latitude, cp.longitude);
 			t += Geo.turn(pb, b);
 			if (Math.abs(t) >= 360)
@@ -844,7 +856,7 @@ public class Androzic extends BaseApplication implements OnSharedPreferenceChang
 			// if turn in progress check xtk
 			if (tp != null)
 			{
-				double xd = Geo.distance(cp.latitude, cp.longitude, tp.latitude, tp.longitude);
+				double xd = Geo.distance(cp.latitude, cp.longitude, tp.latitude, tp.longitude, Geo.ACCURATE);
 				double xb = Geo.bearing(cp.latitude, cp.longitude, tp.latitude, tp.longitude);
 				xtk = Geo.xtk(xd, icb, xb);
 				// turned at sharp angle
@@ -1509,22 +1521,40 @@ public class Androzic extends BaseApplication implements OnSharedPreferenceChang
 			}
 			try
 			{
-				if (coveringMaps != null && !coveringMaps.isEmpty())
+				List<BaseMap> cma = coveringMaps;
+				if (cma != null && !cma.isEmpty())
 				{
+					// Maps are listed from bottom to top
+					mapLayers.clear();
 					boolean drawn = false;
-					for (BaseMap map : coveringMaps)
+					for (BaseMap map : cma)
 					{
 						if (! drawn && coveringBestMap && map.getMPP() < cm.getMPP())
 						{
-							coveredAll = cm.drawMap(viewport, cropMapBorder, drawMapBorder, c);
+							mapLayers.add(cm);
 							drawn = true;
 						}
-						map.drawMap(viewport, cropMapBorder, drawMapBorder, c);
+						mapLayers.add(map);
 					}
 					if (! drawn)
 					{
-						coveredAll = cm.drawMap(viewport, cropMapBorder, drawMapBorder, c);
+						mapLayers.add(cm);
 					}
+					if (cropMapBorder)
+					{
+						composeMaps(viewport, cm, c);
+					}
+					else
+					{
+						// Maps overflow their borders, so they are painted bottom to top
+						for (BaseMap map : mapLayers)
+						{
+							boolean covered = map.drawMap(viewport, cropMapBorder, drawMapBorder, c);
+							if (map == cm)
+								coveredAll = covered;
+						}
+					}
+					mapLayers.clear();
 				}
 				else
 				{
@@ -1547,6 +1577,66 @@ public class Androzic extends BaseApplication implements OnSharedPreferenceChang
 		}
 	}
 	
+	/**
+	 * Draws map layers from top to bottom. Each map is clipped to the part of the screen not yet
+	 * covered by opaque maps above it and does not fetch tiles outside of it. Drawing stops when
+	 * screen is fully covered.
+	 */
+	private void composeMaps(Viewport viewport, BaseMap cm, Canvas c)
+	{
+		screenRegion.set(0, 0, viewport.canvasWidth, viewport.canvasHeight);
+		coveredRegion.setEmpty();
+		boolean currentDrawn = false;
+		try
+		{
+			for (int i = mapLayers.size() - 1; i >= 0; i--)
+			{
+				BaseMap map = mapLayers.get(i);
+				visibleRegion.set(screenRegion);
+				if (!visibleRegion.op(coveredRegion, Region.Op.DIFFERENCE))
+					break;
+				c.save();
+				if (!coveredRegion.isEmpty())
+				{
+					layerPath.rewind();
+					visibleRegion.getBoundaryPath(layerPath);
+					c.clipPath(layerPath);
+				}
+				boolean covered = map.drawMap(viewport, cropMapBorder, drawMapBorder, coveredRegion.isEmpty() ? null : visibleRegion, c);
+				c.restore();
+				if (map == cm)
+				{
+					coveredAll = covered;
+					currentDrawn = true;
+				}
+				if (i > 0 && map.isOpaque())
+				{
+					layerPath.rewind();
+					if (map.getClipPath(viewport, layerPath) && layerRegion.setPath(layerPath, screenRegion))
+						coveredRegion.op(layerRegion, Region.Op.UNION);
+				}
+			}
+		}
+		finally
+		{
+			// Current map is hidden by maps above it, its coverage is taken from its border
+			if (!currentDrawn)
+				coveredAll = coversScreen(viewport, cm);
+		}
+	}
+
+	/**
+	 * Checks if map border encloses the whole screen.
+	 */
+	private boolean coversScreen(Viewport viewport, BaseMap map)
+	{
+		layerPath.rewind();
+		if (!map.getClipPath(viewport, layerPath) || !layerRegion.setPath(layerPath, screenRegion))
+			return false;
+		visibleRegion.set(screenRegion);
+		return !visibleRegion.op(layerRegion, Region.Op.DIFFERENCE);
+	}
+
 	private BroadcastReceiver broadcastReceiver = new BroadcastReceiver() {
 		@Override
 		public void onReceive(Context context, Intent intent)
@@ -1942,49 +2032,54 @@ public class Androzic extends BaseApplication implements OnSharedPreferenceChang
 	}
 
 	public void initializeMaps()
+	{
+		initializeMaps(null);
+	}
+
+	public void initializeMaps(MapIndex.OnProgressListener listener)
 	{
 		initializeRenderTheme();
 		SharedPreferences settings = PreferenceManager.getDefaultSharedPreferences(this);
 		boolean useIndex = settings.getBoolean(getString(R.string.pref_usemapindex), getResources().getBoolean(R.bool.def_usemapindex));
 		maps = null;
+		boolean changed = true;
 		File indexFile = new File(rootPath, "maps.idx");
 		if (useIndex && indexFile.exists())
 		{
 			try
 			{
 		    	maps = MapIndex.loadIndex(indexFile);
-		    	int hash = MapIndex.getMapsHash(mapPath);
-				if (hash != maps.hashCode())
-					maps = null;
+				changed = maps.update(mapPath, charset, listener);
+				// Maps are not activated yet
+				maps.destroyDropped();
 			}
 			catch (Throwable e)
 			{
 				e.printStackTrace();
+				maps = null;
 			}
 		}
 		if (maps == null)
+			maps = new MapIndex(mapPath, charset, listener);
+		if (changed)
 		{
-			maps = new MapIndex(mapPath, charset);
 			StringBuilder sb = new StringBuilder();
-			for (BaseMap mp : maps.getMaps())
+			for (BaseMap mp : maps.getBadMaps())
 			{
-				if (mp.loadError != null)
+				String fn = mp.path;
+				if (fn.startsWith(mapPath))
 				{
-					String fn = mp.path;
-					if (fn.startsWith(mapPath))
-					{
-						fn = fn.substring(mapPath.length() + 1);
-					}
-					sb.append("<b>");
-					sb.append(fn);
-					sb.append(":</b> ");
-					if (mp.loadError instanceof ProjectionException)
-					{
-						sb.append("projection error: ");					
-					}
-					sb.append(mp.loadError.getMessage());
-					sb.append("<br />\n");
+					fn = fn.substring(mapPath.length() + 1);
 				}
+				sb.append("<b>");
+				sb.append(fn);
+				sb.append(":</b> ");
+				if (mp.loadError instanceof ProjectionException)
+				{
+					sb.append("projection error: ");					
+				}
+				sb.append(mp.loadError.getMessage());
+				sb.append("<br />\n");
 			}
 			if (sb.length() > 0)
 			{
@@ -2052,9 +2147,73 @@ public class Androzic extends BaseApplication implements OnSharedPreferenceChang
 		suitableMaps = new ArrayList<BaseMap>();
 		coveredAll = false;
 		coveringBestMap = true;
+		mapWatcher = new MapWatcher(maps, mapPath, charset, mapsChangedListener);
+		mapWatcher.start();
 		mapsInited = true;
 	}
 
+	private final MapWatcher.OnMapsChangedListener mapsChangedListener = new MapWatcher.OnMapsChangedListener() {
+		@Override
+		public void onMapsChanged(final MapIndex index)
+		{
+			Log.i(TAG, "Map files changed");
+			SharedPreferences settings = PreferenceManager.getDefaultSharedPreferences(Androzic.this);
+			if (settings.getBoolean(getString(R.string.pref_usemapindex), getResources().getBoolean(R.bool.def_usemapindex)))
+			{
+				try
+				{
+					MapIndex.saveIndex(index, new File(rootPath, "maps.idx"));
+				}
+				catch (Throwable e)
+				{
+					e.printStackTrace();
+				}
+			}
+			mapsHandler.post(new Runnable() {
+				@Override
+				public void run()
+				{
+					if (maps == index)
+						refreshMaps();
+					// Dropped maps are deactivated by now, so they can be released
+					index.destroyDropped();
+				}
+			});
+		}
+	};
+
+	/**
+	 * Drops maps which were removed from index and refreshes maps for current location.
+	 */
+	private void refreshMaps()
+	{
+		BaseMap map = currentMap;
+		synchronized (this)
+		{
+			if (coveringMaps != null)
+			{
+				List<BaseMap> cma = new ArrayList<>(coveringMaps.size());
+				for (BaseMap cm : coveringMaps)
+				{
+					if (maps.contains(cm))
+						cma.add(cm);
+					else if (cm != map)
+						cm.deactivate();
+				}
+				coveringMaps = cma;
+			}
+			if (map != null && !(map instanceof MockMap) && !maps.contains(map))
+			{
+				map.deactivate();
+				currentMap = null;
+			}
+			invalidCoveringMaps = true;
+		}
+		updateLocationMaps(true, false);
+		if (mapHolder != null)
+			mapHolder.refreshMap();
+	}
+
 	public void resetMaps()
 	{
 		File index = new File(rootPath, "maps.idx");
@@ -2678,6 +2837,11 @@ public class Androzic extends BaseApplication implements OnSharedPreferenceChang
 
 	private void clearMaps()
 	{
+		if (mapWatcher != null)
+		{
+			mapWatcher.stop();
+			mapWatcher = null;
+		}
 		setOnlineMaps("");
 		ForgeMap.clear();
 		if (coveringMaps != null)
@@ -2689,6 +2853,7 @@ public class Androzic extends BaseApplication implements OnSharedPreferenceChang
 		}
 		if (currentMap != null)
 			currentMap.deactivate();
+		ReaderPool.clear();
 		suitableMaps.clear();
 		maps.clear();
 		onlineMaps = null;
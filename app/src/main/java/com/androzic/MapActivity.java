@@ -95,7 +95,7 @@ public class MapActivity extends AppCompatActivity implements View.OnClickListen
 		setFollowing(false);
 		application.editingTrack = track;
 		application.editingTrack.editing = true;
-		int n = application.editingTrack.getAllPoints().size() - 1;
+		int n = application.editingTrack.getPointCount() - 1;
 		int p = application.editingTrack.editingPos >= 0 ? application.editingTrack.editingPos : n;
 		application.editingTrack.editingPos = p;
 		trackBar.setMax(n);
@@ -186,13 +186,13 @@ public class MapActivity extends AppCompatActivity implements View.OnClickListen
 		{
 			case R.id.cutbefore:
 				//application.editingTrack.cutBefore(trackBar.getProgress());
-				int nb = application.editingTrack.getAllPoints().size() - 1;
+				int nb = application.editingTrack.getPointCount() - 1;
 				trackBar.setMax(nb);
 				trackBar.setProgress(0);
 				break;
 			case R.id.cutafter:
 				//application.editingTrack.cutAfter(trackBar.getProgress());
-				int na = application.editingTrack.getAllPoints().size() - 1;
+				int na = application.editingTrack.getPointCount() - 1;
 				trackBar.setMax(na);
 				trackBar.setProgress(0);
 				trackBar.setProgress(na);
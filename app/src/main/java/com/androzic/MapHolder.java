@@ -1,6 +1,7 @@
 package com.androzic;
 
 import com.androzic.data.Route;
+import com.androzic.data.Track;
 import com.androzic.data.Waypoint;
 import com.androzic.map.OnMapTileStateChangeListener;
 
@@ -28,5 +29,6 @@ public interface MapHolder extends OnMapTileStateChangeListener
 	void mapTapped();
 	boolean waypointTapped(Waypoint waypoint, int x, int y);
 	boolean routeWaypointTapped(Route route, int index, int x, int y);
+	boolean trackTapped(Track track, int index, int x, int y);
 	boolean mapObjectTapped(long id, int x, int y);
 }
@@ -30,7 +30,9 @@ import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
 import android.annotation.SuppressLint;
 import android.app.Activity;
+import android.app.ProgressDialog;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.content.SharedPreferences;
 import android.content.res.Resources;
 import android.os.Build;
@@ -51,10 +53,17 @@ import android.widget.BaseAdapter;
 import android.widget.ListView;
 import android.widget.ProgressBar;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import com.androzic.map.BaseMap;
 import com.androzic.map.OnMapActionListener;
+import com.androzic.map.mbtiles.MBTilesExporter;
+import com.androzic.map.mbtiles.SQLiteMBTilesStore;
 import com.androzic.map.online.OnlineMap;
+import com.androzic.map.ozf.ImageTransform;
+import com.androzic.map.ozf.OzfDecoder;
+import com.androzic.map.ozf.OzfFile;
+import com.androzic.map.ozf.OzfMap;
 
 public class MapList extends ListFragment
 {
@@ -304,10 +313,125 @@ public class MapList extends ListFragment
 					} 
 				}).start(); 
 				break;
+			case R.id.action_export_mbtiles:
+				exportMBTiles();
+				break;
 		}
 		return true;
 	}
 
+	/**
+	 * Starts export of OziExplorer maps to MBTiles in background, progress is shown in dialog.
+	 * Export can be cancelled from dialog, cancelled conversion is resumed next time.
+	 */
+	private void exportMBTiles()
+	{
+		final ProgressDialog pd = new ProgressDialog(getActivity());
+		pd.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+		pd.setMessage(getString(R.string.msg_wait));
+		pd.setCancelable(true);
+
+		final Thread thread = new Thread(new Runnable() {
+			public void run()
+			{
+				final int count = exportMBTiles(pd);
+				handler.post(new Runnable() {
+					@Override
+					public void run()
+					{
+						pd.dismiss();
+						Activity activity = getActivity();
+						if (activity != null)
+							Toast.makeText(activity, getString(R.string.msg_mbtilesexported, count), Toast.LENGTH_LONG).show();
+					}
+				});
+			}
+		});
+
+		pd.setOnCancelListener(new DialogInterface.OnCancelListener() {
+			@Override
+			public void onCancel(DialogInterface dialog)
+			{
+				thread.interrupt();
+			}
+		});
+		pd.setButton(DialogInterface.BUTTON_NEGATIVE, getString(R.string.cancel), new DialogInterface.OnClickListener() {
+			@Override
+			public void onClick(DialogInterface dialog, int which)
+			{
+				dialog.cancel();
+			}
+		});
+		pd.show();
+		thread.start();
+	}
+
+	/**
+	 * Converts all OziExplorer maps in library to MBTiles files placed near original map files.
+	 * Previously interrupted conversions are resumed.
+	 * @return number of converted maps
+	 */
+	private int exportMBTiles(final ProgressDialog pd)
+	{
+		Androzic application = Androzic.getApplication();
+		int count = 0;
+		for (BaseMap map : application.getMaps())
+		{
+			if (Thread.currentThread().isInterrupted())
+				break;
+			if (!(map instanceof OzfMap) || map.loadError != null)
+				continue;
+			final String title = map.title;
+			String path = map.path.replaceFirst("\\.[^.]*$", "") + ".mbtiles";
+			OzfFile ozf;
+			try
+			{
+				ozf = OzfDecoder.open(((OzfMap) map).getImageFile());
+			}
+			catch (Exception e)
+			{
+				e.printStackTrace();
+				continue;
+			}
+			ImageTransform transform = ((OzfMap) map).getImageTransform(OzfDecoder.scale_dx(ozf, 0), OzfDecoder.scale_dy(ozf, 0));
+			MBTilesExporter exporter = new MBTilesExporter(ozf, transform, map.getCornerMarkers(), new SQLiteMBTilesStore(path));
+			exporter.setName(title);
+			exporter.setProgressListener(new MBTilesExporter.OnProgressListener() {
+				@Override
+				public void onProgress(final int zoom, final int done, final int total)
+				{
+					handler.post(new Runnable() {
+						@Override
+						public void run()
+						{
+							pd.setMessage(pd.getContext().getString(R.string.msg_mbtilesexporting, title, zoom));
+							pd.setMax(total);
+							pd.setProgress(done);
+						}
+					});
+				}
+			});
+			try
+			{
+				exporter.export();
+				count++;
+			}
+			catch (InterruptedException e)
+			{
+				break;
+			}
+			catch (Exception e)
+			{
+				e.printStackTrace();
+			}
+			finally
+			{
+				OzfDecoder.close(ozf);
+			}
+		}
+		return count;
+	}
+
 	public class MapListAdapter extends BaseAdapter
 	{
 		private static final int VIEW_TYPE_FOLDER = 0;
@@ -170,6 +170,15 @@ public class MapView extends SurfaceView implements SurfaceHolder.Callback, Mult
 	private Bitmap bufferBitmapTmp;
 	private Handler renderHandler;
 	private Viewport renderViewport;
+	// Map scale and map which buffer was rendered for
+	private double renderMpp;
+	private int renderMapId;
+	// Buffer being rendered, it is shown over previous buffer as map tiles are drawn
+	private Bitmap progressBitmap;
+	private Viewport progressViewport;
+	private double progressMpp;
+	private int progressMapId;
+	private final Matrix bufferMatrix = new Matrix();
 
 	public MapView(Context context)
 	{
@@ -344,6 +353,7 @@ public class MapView extends SurfaceView implements SurfaceHolder.Callback, Mult
 			bufferBitmapTmp.recycle();
 		bufferBitmap = null;
 		bufferBitmapTmp = null;
+		progressBitmap = null;
 	}
 
 	/**
@@ -418,7 +428,8 @@ public class MapView extends SurfaceView implements SurfaceHolder.Callback, Mult
 				try
 				{
 					canvas = surfaceHolder.lockCanvas();
-					drawPeriod = mapView.calculateLookAhead() ? 50 : 200;
+					// Draw more frequently while buffer is being rendered to show its progress
+					drawPeriod = mapView.calculateLookAhead() || mapView.progressBitmap != null ? 50 : 200;
 					if (canvas != null)
 						mapView.doDraw(canvas);
 				}
@@ -437,34 +448,22 @@ public class MapView extends SurfaceView implements SurfaceHolder.Callback, Mult
 	{
 		long now = SystemClock.uptimeMillis();
 
-		Matrix matrix = new Matrix();
-		matrix.postTranslate((currentViewport.width - currentViewport.canvasWidth) / 2, (currentViewport.height - currentViewport.canvasHeight) / 2);
-		
 		boolean scaled = scale > 1.1 || scale < 0.9;
-		if (scaled)
-		{
-			float dx = currentViewport.canvasWidth * (1 - scale) / 2;
-			float dy = currentViewport.canvasWidth * (1 - scale) / 2;
-			canvas.translate(dx, dy);
-			matrix.postScale(scale, scale);
-		}
-		
+
 		canvas.drawARGB(255, 255, 255, 255);
 		
 		synchronized (this)
 		{
+			// Buffers rendered for previous zoom are drawn scaled until new buffer is ready
 			if (bufferBitmap != null && !bufferBitmap.isRecycled())
 			{
-				// Difference between current and buffer map center
-				int mcXdiff = renderViewport.mapCenterXY[0] - currentViewport.mapCenterXY[0];
-				int mcYdiff = renderViewport.mapCenterXY[1] - currentViewport.mapCenterXY[1];
-				// Difference between current and buffer look ahead
-				int laXdiff = renderViewport.lookAheadXY[0] - currentViewport.lookAheadXY[0];
-				int laYdiff = renderViewport.lookAheadXY[1] - currentViewport.lookAheadXY[1];
-				// Adjust buffer bitmap position
-				matrix.postTranslate(mcXdiff - laXdiff, mcYdiff - laYdiff);
-				// Draw buffer bitmap
-				canvas.drawBitmap(bufferBitmap, matrix, null);
+				getBufferMatrix(renderViewport, renderMpp, renderMapId, scaled, bufferMatrix);
+				canvas.drawBitmap(bufferBitmap, bufferMatrix, null);
+			}
+			if (progressBitmap != null && !progressBitmap.isRecycled())
+			{
+				getBufferMatrix(progressViewport, progressMpp, progressMapId, scaled, bufferMatrix);
+				canvas.drawBitmap(progressBitmap, bufferMatrix, null);
 			}
 		}
 
@@ -636,6 +635,35 @@ public class MapView extends SurfaceView implements SurfaceHolder.Callback, Mult
 			canvas.drawPath(crossPath, crossPaint);
 	}
 	
+	/**
+	 * Calculates transformation of a buffer rendered for specified viewport and map scale to
+	 * current viewport.
+	 */
+	private void getBufferMatrix(Viewport viewport, double bufferMpp, int bufferMapId, boolean scaled, Matrix matrix)
+	{
+		float k = bufferMpp > 0 && mpp > 0 ? (float) (bufferMpp / mpp) : 1f;
+		float dx, dy;
+		BaseMap map = application.getCurrentMap();
+		if (map != null && map.id == bufferMapId)
+		{
+			// Map coordinates are proportional to zoom
+			dx = k * (viewport.mapCenterXY[0] - viewport.lookAheadXY[0]) - (currentViewport.mapCenterXY[0] - currentViewport.lookAheadXY[0]);
+			dy = k * (viewport.mapCenterXY[1] - viewport.lookAheadXY[1]) - (currentViewport.mapCenterXY[1] - currentViewport.lookAheadXY[1]);
+		}
+		else
+		{
+			// Coordinates of different maps are not comparable, so map centers are aligned
+			dx = currentViewport.lookAheadXY[0] - k * viewport.lookAheadXY[0];
+			dy = currentViewport.lookAheadXY[1] - k * viewport.lookAheadXY[1];
+		}
+		matrix.reset();
+		matrix.postTranslate(-viewport.canvasWidth / 2f, -viewport.canvasHeight / 2f);
+		matrix.postScale(k, k);
+		matrix.postTranslate(dx + currentViewport.width / 2f, dy + currentViewport.height / 2f);
+		if (scaled)
+			matrix.postScale(scale, scale, currentViewport.width / 2f, currentViewport.height / 2f);
+	}
+
 	public void refreshMap()
 	{
 		refreshBuffer();
@@ -672,7 +700,8 @@ public class MapView extends SurfaceView implements SurfaceHolder.Callback, Mult
 			{
 				if (bufferBitmapTmp != null)
 					bufferBitmapTmp.recycle();
-				bufferBitmapTmp = Bitmap.createBitmap(currentViewport.canvasWidth, currentViewport.canvasHeight, Bitmap.Config.RGB_565);
+				// Buffer has transparent background to show previous buffer where it is not drawn yet
+				bufferBitmapTmp = Bitmap.createBitmap(currentViewport.canvasWidth, currentViewport.canvasHeight, Bitmap.Config.ARGB_8888);
 				if (recreateBuffers)
 				{
 					recreatedBuffer = true;
@@ -681,10 +710,21 @@ public class MapView extends SurfaceView implements SurfaceHolder.Callback, Mult
 			}
 		}
 		
-		Canvas canvas = new Canvas(bufferBitmapTmp);
 		Viewport viewport = currentViewport.copy();
-		
-		canvas.drawRGB(0xFF, 0xFF, 0xFF);
+		BaseMap map = application.getCurrentMap();
+		double bufferMpp = map != null ? map.getMPP() : 0;
+		int bufferMapId = map != null ? map.id : 0;
+
+		bufferBitmapTmp.eraseColor(Color.TRANSPARENT);
+		Canvas canvas = new Canvas(bufferBitmapTmp);
+
+		synchronized (this)
+		{
+			progressBitmap = bufferBitmapTmp;
+			progressViewport = viewport;
+			progressMpp = bufferMpp;
+			progressMapId = bufferMapId;
+		}
 
 		int cx = viewport.canvasWidth / 2;
 		int cy = viewport.canvasHeight / 2;
@@ -709,8 +749,11 @@ public class MapView extends SurfaceView implements SurfaceHolder.Callback, Mult
 		{
 			Bitmap t = bufferBitmap;
 			renderViewport = viewport;
+			renderMpp = bufferMpp;
+			renderMapId = bufferMapId;
 			bufferBitmap = bufferBitmapTmp;
 			bufferBitmapTmp = t;
+			progressBitmap = null;
 			
 			if (recreatedBuffer)
 			{
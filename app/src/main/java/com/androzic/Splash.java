@@ -58,6 +58,7 @@ import android.widget.TextView;
 
 import com.androzic.data.Route;
 import com.androzic.data.Track;
+import com.androzic.map.MapIndex;
 import com.androzic.overlay.CurrentTrackOverlay;
 import com.androzic.util.AutoloadedRouteFilenameFilter;
 import com.androzic.util.FileList;
@@ -481,7 +482,25 @@ public class Splash extends Activity implements OnClickListener
 			mHandler.sendMessage(msg);
 
 			// initialize maps
-			application.initializeMaps();
+			final int mapsStart = total;
+			application.initializeMaps(new MapIndex.OnProgressListener() {
+				private int last = -1;
+
+				@Override
+				public void onProgress(int loaded, int count)
+				{
+					int step = (int) ((long) PROGRESS_STEP * loaded / count);
+					// Do not flood handler with messages
+					if (step - last < PROGRESS_STEP / 100 && loaded < count)
+						return;
+					last = step;
+					Message msg = mHandler.obtainMessage(MSG_PROGRESS);
+					Bundle b = new Bundle();
+					b.putInt("total", mapsStart + step);
+					msg.setData(b);
+					mHandler.sendMessage(msg);
+				}
+			});
 			application.moveTileCache();
 
 			total += PROGRESS_STEP;
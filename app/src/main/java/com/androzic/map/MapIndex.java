@@ -21,8 +21,6 @@
 package com.androzic.map;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -31,194 +29,332 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import android.annotation.SuppressLint;
 
 import com.androzic.data.Bounds;
-import com.androzic.map.forge.ForgeMap;
-import com.androzic.map.ozf.Grid;
 import com.androzic.map.ozf.OzfMap;
 import com.androzic.util.FileList;
 import com.androzic.util.MapFilenameFilter;
-import com.esotericsoftware.kryo.Kryo;
-import com.esotericsoftware.kryo.io.Input;
-import com.esotericsoftware.kryo.io.Output;
-import com.jhlabs.map.proj.Projection;
 
 public class MapIndex implements Serializable
 {
-	private static final long serialVersionUID = 9L;
+	private static final long serialVersionUID = 12L;
+
+	private static final int MAX_LOADERS = 4;
 	
-	private HashSet<Integer>[][] maps;
+	private MapTree tree;
 	private HashMap<Integer,BaseMap> mapIndex;
-	private int hashCode;
+	private HashMap<String,MapFile> mapFiles;
+	// Maps stored in index file which were not requested yet
+	private HashSet<Integer> unloaded;
+	private transient MapIndexFile source;
+	private transient final Object updateLock = new Object();
+	// Serializes index file writes, they are performed without holding index lock
+	private transient final Object saveLock = new Object();
+	// Maps dropped by update, they can still be drawn and are destroyed after deactivation
+	private transient final List<BaseMap> dropped = new ArrayList<>();
 	private transient Comparator<BaseMap> comparator = new MapComparator();
 
+	public interface OnProgressListener
+	{
+		/**
+		 * Called on the thread building index after each map file is loaded.
+		 */
+		void onProgress(int loaded, int total);
+	}
+
 	@SuppressWarnings("unused")
 	MapIndex()
 	{
 	}
 
-	@SuppressLint("UseSparseArrays")
-	@SuppressWarnings("unchecked")
 	public MapIndex(String path, String charset)
 	{
-		maps = new HashSet[181][361];
+		this(path, charset, null);
+	}
+
+	@SuppressLint("UseSparseArrays")
+	public MapIndex(String path, String charset, OnProgressListener listener)
+	{
+		tree = new MapTree();
 		mapIndex = new HashMap<>();
+		mapFiles = new HashMap<>();
+		unloaded = new HashSet<>();
 		File root = new File(path);
 		List<File> files = FileList.getFileListing(root, new MapFilenameFilter());
-		for (File file: files)
+		List<BaseMap> loaded = loadMaps(files, charset, listener, mapFiles);
+		int[] ids = new int[loaded.size()];
+		double[] boxes = new double[loaded.size() * MapTree.STRIDE];
+		int n = 0;
+		for (BaseMap map : loaded)
 		{
-			try
+			if (putMap(map, false))
 			{
-				BaseMap map = MapLoader.load(file, charset);
-				addMap(map);
+				ids[n] = map.id;
+				MapTree.getBox(map, boxes, n * MapTree.STRIDE);
+				n++;
 			}
-			catch (IOException e)
+		}
+		tree.build(ids, boxes, n);
+	}
+
+	/**
+	 * Brings index in sync with map files: loads new and modified files and drops maps
+	 * which files were removed. Unchanged files are not touched. Maps are loaded without
+	 * holding index lock so queries are not blocked by update. Dropped maps are not destroyed
+	 * as they can still be in use, call {@link #destroyDropped()} after they are deactivated.
+	 * @return true if index was changed
+	 */
+	public boolean update(String path, String charset, OnProgressListener listener)
+	{
+		synchronized (updateLock)
+		{
+			File root = new File(path);
+			List<File> files = FileList.getFileListing(root, new MapFilenameFilter());
+			HashSet<String> present = new HashSet<>(files.size() * 2);
+			List<File> modified = new ArrayList<>();
+			// Fingerprints are changed only under update lock so they can be read here
+			for (File file: files)
+			{
+				String filePath = file.getAbsolutePath();
+				present.add(filePath);
+				MapFile mapFile = mapFiles.get(filePath);
+				if (mapFile != null && mapFile.size == file.length() && mapFile.modified == file.lastModified())
+					continue;
+				modified.add(file);
+			}
+			HashMap<String,MapFile> loadedFiles = new HashMap<>();
+			List<BaseMap> loaded = loadMaps(modified, charset, listener, loadedFiles);
+
+			synchronized (this)
 			{
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+				boolean changed = !modified.isEmpty();
+				for (File file : modified)
+				{
+					MapFile mapFile = mapFiles.remove(file.getAbsolutePath());
+					if (mapFile != null)
+						dropMap(mapFile);
+				}
+				mapFiles.putAll(loadedFiles);
+				for (BaseMap map : loaded)
+				{
+					if (putMap(map, false))
+						tree.insert(map);
+				}
+				Iterator<Map.Entry<String,MapFile>> i = mapFiles.entrySet().iterator();
+				while (i.hasNext())
+				{
+					Map.Entry<String,MapFile> entry = i.next();
+					if (present.contains(entry.getKey()))
+						continue;
+					dropMap(entry.getValue());
+					i.remove();
+					changed = true;
+				}
+				return changed;
 			}
 		}
-		hashCode = getMapsHash(files);
 	}
-	
-	public static int getMapsHash(String path)
+
+	/**
+	 * Loads map files with a pool of workers, maps are returned in the order of files and their
+	 * fingerprints are put to <code>fingerprints</code>. Files that can not be read are skipped.
+	 */
+	private List<BaseMap> loadMaps(List<File> files, String charset, OnProgressListener listener, Map<String,MapFile> fingerprints)
 	{
-		File root = new File(path);
-		List<File> files = FileList.getFileListing(root, new MapFilenameFilter());
-		return getMapsHash(files);
+		int count = files.size();
+		List<BaseMap> maps = new ArrayList<>(count);
+		if (count == 0)
+			return maps;
+
+		int threads = Math.min(MAX_LOADERS, Runtime.getRuntime().availableProcessors());
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<MapLoadTask> tasks = new ArrayList<>(count);
+		List<Future<BaseMap>> results = new ArrayList<>(count);
+		try
+		{
+			for (File file : files)
+			{
+				MapLoadTask task = new MapLoadTask(file, charset);
+				tasks.add(task);
+				results.add(executor.submit(task));
+			}
+			// Results are merged in the order of files to keep index deterministic
+			for (int i = 0; i < count; i++)
+			{
+				try
+				{
+					BaseMap map = results.get(i).get();
+					MapLoadTask task = tasks.get(i);
+					fingerprints.put(task.file.getAbsolutePath(), new MapFile(map.id, task.size, task.modified));
+					maps.add(map);
+				}
+				catch (ExecutionException e)
+				{
+					Throwable cause = e.getCause();
+					if (cause instanceof RuntimeException)
+						throw (RuntimeException) cause;
+					if (cause instanceof Error)
+						throw (Error) cause;
+					cause.printStackTrace();
+				}
+				if (listener != null)
+					listener.onProgress(i + 1, count);
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+		return maps;
 	}
 
-	private static int getMapsHash(List<File> files)
+	private void dropMap(MapFile mapFile)
 	{
-		int result = 13;
-		for (File file: files)
+		if (unloaded.remove(mapFile.id))
 		{
-			result = 31 * result + file.getAbsolutePath().hashCode();
+			tree.remove(mapFile.id);
+			return;
 		}
-		return result;
+		BaseMap map = mapIndex.remove(mapFile.id);
+		if (map == null || map.loadError != null)
+			return;
+		tree.remove(map.id);
+		dropped.add(map);
 	}
 
-	@Override
-	public int hashCode()
+	/**
+	 * Destroys maps dropped by {@link #update(String, String, OnProgressListener)}. Should be called
+	 * after these maps were deactivated and are not drawn any more.
+	 */
+	public void destroyDropped()
 	{
-		return hashCode;
+		List<BaseMap> maps;
+		synchronized (this)
+		{
+			if (dropped.isEmpty())
+				return;
+			maps = new ArrayList<>(dropped);
+			dropped.clear();
+		}
+		for (BaseMap map : maps)
+			map.destroy();
 	}
 
-	public void addMap(BaseMap map)
+	/**
+	 * Returns map by id, map stored in index file is loaded and initialized on first request.
+	 */
+	private BaseMap getMap(int id)
 	{
-		if (mapIndex.containsKey(map.id))
-			return;
+		BaseMap map = mapIndex.get(id);
+		if (map != null || !unloaded.remove(id))
+			return map;
+		try
+		{
+			map = source.readMap(id);
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+		if (map == null)
+		{
+			tree.remove(id);
+			return null;
+		}
+		mapIndex.put(id, map);
+		map.initialize();
+		return map;
+	}
+
+	public synchronized void addMap(BaseMap map)
+	{
+		if (putMap(map, true))
+			tree.insert(map);
+	}
+
+	/**
+	 * Registers and initializes map, returns true if map can be put into spatial index.
+	 * @param initialize false if map was already initialized by loader
+	 */
+	private boolean putMap(BaseMap map, boolean initialize)
+	{
+		if (mapIndex.containsKey(map.id) || unloaded.contains(map.id))
+			return false;
 
 		mapIndex.put(map.id, map);
 		if (map.loadError != null)
-			return;
+			return false;
 
-		map.initialize();
+		if (initialize || !(map instanceof OzfMap))
+			map.initialize();
 		// Error can be raised during initialization.
 		if (map.loadError != null)
-			return;
+			return false;
 
-		// TODO Use corner markers instead
 		Bounds bounds = map.getBounds();
-		int minLat = (int) Math.floor(bounds.minLat);
-		int maxLat = (int) Math.ceil(bounds.maxLat);
-		int minLon = (int) Math.floor(bounds.minLon);
-		int maxLon = (int) Math.ceil(bounds.maxLon);
-		for (int lat = minLat; lat <= maxLat; lat++)
+		if (bounds.minLat < -90 || bounds.maxLat > 90 || bounds.minLon < -180 || bounds.maxLon > 180)
 		{
-			for (int lon = minLon; lon <= maxLon; lon++)
-			{
-				HashSet<Integer> lli;
-				try
-				{
-					lli = maps[lat + 90][lon + 180];
-				}
-				catch (IndexOutOfBoundsException e)
-				{
-					e.printStackTrace();
-					map.loadError = e;
-					return;
-				}
-				if (lli == null)
-				{
-					lli = new HashSet<>();
-					maps[lat + 90][lon + 180] = lli;
-				}
-				lli.add(map.id);
-			}
+			map.loadError = new IndexOutOfBoundsException("Map bounds are out of range: " + bounds);
+			return false;
 		}
+		return true;
 	}
 
-	public void removeMap(BaseMap map)
+	public synchronized void removeMap(BaseMap map)
 	{
 		mapIndex.remove(map.id);
 		if (map.loadError != null)
 			return;
 		map.destroy();
-		// TODO Use corner markers instead
-		Bounds bounds = map.getBounds();
-		int minLat = (int) Math.floor(bounds.minLat);
-		int maxLat = (int) Math.ceil(bounds.maxLat);
-		int minLon = (int) Math.floor(bounds.minLon);
-		int maxLon = (int) Math.ceil(bounds.maxLon);
-		for (int lat = minLat; lat <= maxLat; lat++)
-		{
-			for (int lon = minLon; lon <= maxLon; lon++)
-			{
-				HashSet<Integer> lli = maps[lat+90][lon+180];
-				if (lli != null)
-					lli.remove(map.id);
-			}
-		}
+		tree.remove(map.id);
 	}
 
-	public List<BaseMap> getCoveringMaps(BaseMap refMap, Bounds area, boolean covered, boolean bestmap)
+	public synchronized List<BaseMap> getCoveringMaps(BaseMap refMap, Bounds area, boolean covered, boolean bestmap)
 	{
 		List<BaseMap> llmaps = new ArrayList<>();
-		Set<BaseMap> llmapsidx = new HashSet<>();
 
-		int minLat = (int) Math.floor(area.minLat);
-		int maxLat = (int) Math.ceil(area.maxLat);
-		int minLon = (int) Math.floor(area.minLon);
-		int maxLon = (int) Math.ceil(area.maxLon);
-		
-		for (int lat = minLat; lat <= maxLat; lat++)
+		// If map has bigger scale but best map is not enabled do not use it
+		if (! bestmap && covered)
+			return llmaps;
+
+		// Covering ratio is refMpp / mpp, look only for maps that can pass ratio checks below
+		double minRatio = covered ? 0.99 : 0.2;
+		int[] candidates = tree.search(area, refMap.mpp / 5d * 0.999, refMap.mpp / minRatio * 1.001);
+
+		for (int id : candidates)
 		{
-			for (int lon = minLon; lon <= maxLon; lon++)
-			{
-				HashSet<Integer> lli = maps[lat+90][lon+180];
-				if (lli != null)
-				{
-					for (Integer id : lli)
-					{
-						BaseMap map = mapIndex.get(id);
-						if (llmapsidx.contains(map))
-							continue;
-						if (map.equals(refMap))
-							continue;
-						double ratio = map.getCoveringRatio(refMap.mpp);
-						// If map has smaller scale and reference map covers all screen do not use it
-						if ((covered || ratio < 0.2) && ratio < 0.99)
-							continue;
-
-						// If map has bigger scale but best map is not enabled do not use it
-						if ((! bestmap && covered) || ratio > 5d)
-							continue;
-
-						// If map does not cover referencing area do not use it
-						// We put it at last place because this check is expensive
-						if (!map.containsArea(area))
-							continue;
-
-						llmaps.add(map);
-						llmapsidx.add(map);
-					}
-				}
-			}
+			BaseMap map = getMap(id);
+			if (map == null || map.equals(refMap))
+				continue;
+			double ratio = map.getCoveringRatio(refMap.mpp);
+			// If map has smaller scale and reference map covers all screen do not use it
+			if (ratio < minRatio)
+				continue;
+
+			// If map has bigger scale do not use it
+			if (ratio > 5d)
+				continue;
+
+			// If map does not cover referencing area do not use it
+			// We put it at last place because this check is expensive
+			if (!map.containsArea(area))
+				continue;
+
+			llmaps.add(map);
 		}
 
 		Collections.sort(llmaps, comparator);
@@ -227,45 +363,56 @@ public class MapIndex implements Serializable
 		return llmaps;
 	}
 
-	public List<BaseMap> getMaps(double latitude, double longitude)
+	public synchronized List<BaseMap> getMaps(double latitude, double longitude)
 	{
 		List<BaseMap> llmaps = new ArrayList<>();
-		
-		int minLat = (int) Math.floor(latitude);
-		int maxLat = (int) Math.ceil(latitude);
-		int minLon = (int) Math.floor(longitude);
-		int maxLon = (int) Math.ceil(longitude);
+		int[] candidates = tree.search(latitude, longitude, latitude, longitude, 0d, Double.POSITIVE_INFINITY);
 
-		for (int lat = minLat; lat <= maxLat; lat++)
+		for (int id : candidates)
 		{
-			for (int lon = minLon; lon <= maxLon; lon++)
-			{
-				HashSet<Integer> lli = maps[lat+90][lon+180];
-				if (lli != null)
-				{
-					for (Integer id : lli)
-					{
-						BaseMap map = mapIndex.get(id);
-						if (!llmaps.contains(map) && map.coversLatLon(latitude, longitude))
-						{
-							llmaps.add(map);
-						}
-					}
-				}
-			}
+			BaseMap map = getMap(id);
+			if (map != null && map.coversLatLon(latitude, longitude))
+				llmaps.add(map);
 		}
-		
+
 		Collections.sort(llmaps, comparator);
 
 		return llmaps;
 	}
 
-	public Collection<BaseMap> getMaps()
+	/**
+	 * Returns true if map is the instance currently held by index.
+	 */
+	public synchronized boolean contains(BaseMap map)
+	{
+		return mapIndex.get(map.id) == map;
+	}
+
+	/**
+	 * Returns all maps, loading them from index file if needed.
+	 */
+	public synchronized Collection<BaseMap> getMaps()
 	{
+		for (Integer id : new ArrayList<>(unloaded))
+			getMap(id);
 		return mapIndex.values();
 	}
 
-	public void cleanBadMaps()
+	/**
+	 * Returns maps which failed to load. Maps that were not requested from index file are not checked.
+	 */
+	public synchronized List<BaseMap> getBadMaps()
+	{
+		List<BaseMap> badMaps = new ArrayList<>();
+		for (BaseMap map : mapIndex.values())
+		{
+			if (map.loadError != null)
+				badMaps.add(map);
+		}
+		return badMaps;
+	}
+
+	public synchronized void cleanBadMaps()
 	{
 		HashSet<BaseMap> badMaps = new HashSet<>();
 		
@@ -285,68 +432,123 @@ public class MapIndex implements Serializable
 
 	public void clear()
 	{
-		for (BaseMap map : mapIndex.values())
-			map.destroy();
-		mapIndex.clear();
-		for (int lat = 0; lat < 181; lat++)
+		synchronized (updateLock)
 		{
-			for (int lon = 0; lon < 361; lon++)
+			synchronized (this)
 			{
-				HashSet<Integer> lli = maps[lat][lon];
-				if (lli != null)
-				{
-					lli.clear();
-					maps[lat][lon] = null;
-				}
+				for (BaseMap map : mapIndex.values())
+					map.destroy();
+				for (BaseMap map : dropped)
+					map.destroy();
+				dropped.clear();
+				mapIndex.clear();
+				mapFiles.clear();
+				unloaded.clear();
+				source = null;
+				tree.clear();
 			}
 		}
-		maps = null;
 	}
 
+	/**
+	 * Opens index file. Maps are not loaded until they are requested.
+	 */
 	public static MapIndex loadIndex(File file) throws Throwable
 	{
-		//com.esotericsoftware.minlog.Log.DEBUG();
-		Kryo kryo = new Kryo();
-		kryo.register(MapIndex.class);
-		kryo.register(BaseMap.class);
-		kryo.register(OzfMap.class);
-		kryo.register(ForgeMap.class);
-		kryo.register(Grid.class);
-		kryo.register(MapPoint.class);
-		kryo.register(MapPoint[].class);
-		kryo.register(Projection.class);
-		kryo.register(Integer.class);
-		kryo.register(String.class);
-		kryo.register(ArrayList.class);
-		kryo.register(HashSet.class);
-		kryo.register(HashMap.class);
-		Input input = new Input(new FileInputStream(file));
-		MapIndex index = kryo.readObject(input, MapIndex.class);
-		input.close();
-		for (BaseMap map : index.getMaps())
-			map.initialize();
+		MapIndexFile source = MapIndexFile.open(file);
+		MapIndex index = new MapIndex();
+		index.source = source;
+		index.tree = source.getTree();
+		index.mapIndex = new HashMap<>();
+		index.mapFiles = source.getFiles();
+		index.unloaded = new HashSet<>(source.getRecordCount() * 2);
+		for (int i = 0; i < source.getRecordCount(); i++)
+			index.unloaded.add(source.getRecordId(i));
 		return index;
 	}
 
+	/**
+	 * Writes index file. Index is locked only while its state is copied, so map queries are
+	 * not blocked by disk writes.
+	 */
 	public static void saveIndex(MapIndex index, File file) throws Throwable
 	{
-		Kryo kryo = new Kryo();
-		kryo.register(MapIndex.class);
-		kryo.register(BaseMap.class);
-		kryo.register(OzfMap.class);
-		kryo.register(ForgeMap.class);
-		kryo.register(Grid.class);
-		kryo.register(MapPoint.class);
-		kryo.register(MapPoint[].class);
-		kryo.register(Projection.class);
-		kryo.register(Integer.class);
-		kryo.register(String.class);
-		kryo.register(ArrayList.class);
-		kryo.register(HashSet.class);
-		kryo.register(HashMap.class);
-		Output output = new Output(new FileOutputStream(file));
-		kryo.writeObject(output, index);
-		output.close();
+		synchronized (index.saveLock)
+		{
+			MapTree tree;
+			HashMap<String,MapFile> files;
+			List<BaseMap> maps;
+			int[] unloaded;
+			MapIndexFile source;
+			synchronized (index)
+			{
+				files = new HashMap<>(index.mapFiles);
+				HashSet<Integer> ids = new HashSet<>(files.size() * 2);
+				for (MapFile mapFile : files.values())
+					ids.add(mapFile.id);
+				tree = index.tree.subset(ids);
+				maps = new ArrayList<>(index.mapIndex.values());
+				unloaded = new int[index.unloaded.size()];
+				int i = 0;
+				for (int id : index.unloaded)
+					unloaded[i++] = id;
+				source = index.source;
+			}
+			MapIndexFile.write(file, tree, files, maps, unloaded, source);
+		}
+	}
+
+	/**
+	 * Loads and initializes map in worker thread. Only OZF maps are initialized here because
+	 * other map types touch shared state during initialization.
+	 */
+	private static class MapLoadTask implements Callable<BaseMap>
+	{
+		final File file;
+		final String charset;
+		long size;
+		long modified;
+
+		MapLoadTask(File file, String charset)
+		{
+			this.file = file;
+			this.charset = charset;
+		}
+
+		@Override
+		public BaseMap call() throws IOException
+		{
+			size = file.length();
+			modified = file.lastModified();
+			BaseMap map = MapLoader.load(file, charset);
+			if (map instanceof OzfMap && map.loadError == null)
+				map.initialize();
+			return map;
+		}
+	}
+
+	/**
+	 * Map file fingerprint used to detect changed files
+	 */
+	static class MapFile implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		int id;
+		long size;
+		long modified;
+
+		@SuppressWarnings("unused")
+		MapFile()
+		{
+		}
+
+		MapFile(int id, long size, long modified)
+		{
+			this.id = id;
+			this.size = size;
+			this.modified = modified;
+		}
 	}
 
 	private class MapComparator implements Comparator<BaseMap>, Serializable
@@ -0,0 +1,378 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2014  Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.androzic.map;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.androzic.map.forge.ForgeMap;
+import com.androzic.map.ozf.Grid;
+import com.androzic.map.ozf.OzfMap;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.jhlabs.map.proj.Projection;
+
+/**
+ * Map index file. File starts with a fixed header followed by four sections:
+ * <ul>
+ * <li>metadata: shared projections and map file fingerprints, read on open;</li>
+ * <li>packed spatial tree, used directly from memory mapped file;</li>
+ * <li>record table: map id, record offset and length sorted by id, memory mapped;</li>
+ * <li>map records, each deserialized when map is first requested.</li>
+ * </ul>
+ * Projections are stored once in metadata and are referenced by records by their number.
+ */
+class MapIndexFile
+{
+	private static final int MAGIC = 0x415A4D49; // AZMI
+	static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 40;
+	private static final int RECORD_SIZE = 12;
+
+	private final ByteBuffer buffer;
+	private final IntBuffer table;
+	private final int dataOffset;
+	private final List<Projection> projections;
+	private final HashMap<String,MapIndex.MapFile> files;
+	private final MapTree tree;
+	private final Kryo kryo;
+
+	private MapIndexFile(ByteBuffer buffer) throws IOException
+	{
+		this.buffer = buffer;
+		if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+			throw new IOException("Not a map index file");
+		int version = buffer.getInt(4);
+		if (version != VERSION)
+			throw new IOException("Unsupported map index version: " + version);
+		int metaOffset = buffer.getInt(8);
+		int metaLength = buffer.getInt(12);
+		int treeOffset = buffer.getInt(16);
+		int tableOffset = buffer.getInt(24);
+		int recordCount = buffer.getInt(28);
+		dataOffset = buffer.getInt(32);
+		int dataLength = buffer.getInt(36);
+		if (dataOffset + dataLength > buffer.limit())
+			throw new IOException("Map index file is truncated");
+
+		byte[] meta = new byte[metaLength];
+		ByteBuffer b = buffer.duplicate();
+		b.position(metaOffset);
+		b.get(meta);
+		Input input = new Input(meta);
+		Kryo plain = new Kryo();
+		int count = input.readInt(true);
+		projections = new ArrayList<>(count);
+		for (int i = 0; i < count; i++)
+			projections.add((Projection) plain.readClassAndObject(input));
+		count = input.readInt(true);
+		files = new HashMap<>(count * 2);
+		for (int i = 0; i < count; i++)
+		{
+			String path = input.readString();
+			int id = input.readInt();
+			long size = input.readLong();
+			long modified = input.readLong();
+			files.put(path, new MapIndex.MapFile(id, size, modified));
+		}
+
+		b = buffer.duplicate();
+		b.position(treeOffset);
+		tree = MapTree.read(b);
+
+		b = buffer.duplicate();
+		b.position(tableOffset);
+		b = b.slice();
+		b.limit(recordCount * RECORD_SIZE);
+		table = b.asIntBuffer();
+
+		kryo = createKryo(new ProjectionSerializer(projections, null));
+	}
+
+	/**
+	 * Opens index file, only metadata is read, the rest of file is memory mapped.
+	 */
+	static MapIndexFile open(File file) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = raf.getChannel();
+			return new MapIndexFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+
+	MapTree getTree()
+	{
+		return tree;
+	}
+
+	HashMap<String,MapIndex.MapFile> getFiles()
+	{
+		return files;
+	}
+
+	int getRecordCount()
+	{
+		return table.limit() / 3;
+	}
+
+	int getRecordId(int i)
+	{
+		return table.get(i * 3);
+	}
+
+	/**
+	 * Deserializes map record, returns null if there is no such record.
+	 */
+	synchronized BaseMap readMap(int id)
+	{
+		byte[] record = getRecord(id);
+		if (record == null)
+			return null;
+		return (BaseMap) kryo.readClassAndObject(new Input(record));
+	}
+
+	private byte[] getRecord(int id)
+	{
+		int lo = 0;
+		int hi = getRecordCount() - 1;
+		while (lo <= hi)
+		{
+			int mid = (lo + hi) >>> 1;
+			int key = table.get(mid * 3);
+			if (key < id)
+			{
+				lo = mid + 1;
+			}
+			else if (key > id)
+			{
+				hi = mid - 1;
+			}
+			else
+			{
+				byte[] record = new byte[table.get(mid * 3 + 2)];
+				ByteBuffer b = buffer.duplicate();
+				b.position(dataOffset + table.get(mid * 3 + 1));
+				b.get(record);
+				return record;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Writes index file. Loaded maps are serialized, records of not yet loaded maps are copied
+	 * from source file as is. File is written aside and then replaces old one.
+	 * @param tree spatial tree, only maps which records are written are stored in it
+	 * @param files map file fingerprints by path
+	 * @param maps loaded maps
+	 * @param unloaded ids of maps that were not loaded from source
+	 * @param source file from which index was loaded, or null
+	 */
+	static void write(File file, MapTree tree, Map<String,MapIndex.MapFile> files, List<BaseMap> maps, int[] unloaded, MapIndexFile source) throws IOException
+	{
+		// Only maps backed by files are stored
+		HashSet<Integer> ids = new HashSet<>(files.size() * 2);
+		for (MapIndex.MapFile mapFile : files.values())
+			ids.add(mapFile.id);
+
+		// Keep projection numbers of source so that its records can be copied
+		List<Projection> projections = new ArrayList<>();
+		if (source != null)
+			projections.addAll(source.projections);
+		ProjectionSerializer serializer = new ProjectionSerializer(projections, new IdentityHashMap<Projection,Integer>());
+		Kryo kryo = createKryo(serializer);
+
+		HashMap<Integer,byte[]> records = new HashMap<>(maps.size() + unloaded.length);
+		Output output = new Output(4096, -1);
+		for (BaseMap map : maps)
+		{
+			if (map.loadError != null || !ids.contains(map.id))
+				continue;
+			output.clear();
+			kryo.writeClassAndObject(output, map);
+			records.put(map.id, output.toBytes());
+		}
+		for (int id : unloaded)
+		{
+			if (source != null && ids.contains(id) && !records.containsKey(id))
+			{
+				byte[] record = source.getRecord(id);
+				if (record != null)
+					records.put(id, record);
+			}
+		}
+
+		// Tree must not reference maps without records, e.g. online maps
+		tree = tree.subset(records.keySet());
+
+		output.clear();
+		Kryo plain = new Kryo();
+		output.writeInt(projections.size(), true);
+		for (Projection projection : projections)
+			plain.writeClassAndObject(output, projection);
+		output.writeInt(files.size(), true);
+		for (Map.Entry<String,MapIndex.MapFile> entry : files.entrySet())
+		{
+			MapIndex.MapFile mapFile = entry.getValue();
+			output.writeString(entry.getKey());
+			output.writeInt(mapFile.id);
+			output.writeLong(mapFile.size);
+			output.writeLong(mapFile.modified);
+		}
+		byte[] meta = output.toBytes();
+
+		int[] keys = new int[records.size()];
+		int k = 0;
+		for (int id : records.keySet())
+			keys[k++] = id;
+		Arrays.sort(keys);
+		int dataLength = 0;
+		for (byte[] record : records.values())
+			dataLength += record.length;
+
+		int metaOffset = HEADER_SIZE;
+		int treeOffset = metaOffset + meta.length;
+		int treeLength = tree.getByteSize();
+		int tableOffset = treeOffset + treeLength;
+		int dataOffset = tableOffset + keys.length * RECORD_SIZE;
+
+		ByteBuffer head = ByteBuffer.allocate(dataOffset);
+		head.putInt(MAGIC);
+		head.putInt(VERSION);
+		head.putInt(metaOffset);
+		head.putInt(meta.length);
+		head.putInt(treeOffset);
+		head.putInt(treeLength);
+		head.putInt(tableOffset);
+		head.putInt(keys.length);
+		head.putInt(dataOffset);
+		head.putInt(dataLength);
+		head.put(meta);
+		tree.write(head);
+		int offset = 0;
+		for (int id : keys)
+		{
+			int length = records.get(id).length;
+			head.putInt(id);
+			head.putInt(offset);
+			head.putInt(length);
+			offset += length;
+		}
+
+		File temp = new File(file.getPath() + ".tmp");
+		FileOutputStream out = new FileOutputStream(temp);
+		try
+		{
+			out.write(head.array());
+			for (int id : keys)
+				out.write(records.get(id));
+		}
+		finally
+		{
+			out.close();
+		}
+		if (!temp.renameTo(file))
+		{
+			//noinspection ResultOfMethodCallIgnored
+			temp.delete();
+			throw new IOException("Failed to replace " + file);
+		}
+	}
+
+	private static Kryo createKryo(ProjectionSerializer serializer)
+	{
+		Kryo kryo = new Kryo();
+		kryo.addDefaultSerializer(Projection.class, serializer);
+		kryo.register(BaseMap.class);
+		kryo.register(OzfMap.class);
+		kryo.register(ForgeMap.class);
+		kryo.register(Grid.class);
+		kryo.register(MapPoint.class);
+		kryo.register(MapPoint[].class);
+		kryo.register(Projection.class);
+		kryo.register(Integer.class);
+		kryo.register(String.class);
+		kryo.register(ArrayList.class);
+		kryo.register(HashSet.class);
+		kryo.register(HashMap.class);
+		return kryo;
+	}
+
+	/**
+	 * Writes projections as numbers in shared projection table.
+	 */
+	private static class ProjectionSerializer extends Serializer<Projection>
+	{
+		private final List<Projection> projections;
+		private final IdentityHashMap<Projection,Integer> numbers;
+
+		ProjectionSerializer(List<Projection> projections, IdentityHashMap<Projection,Integer> numbers)
+		{
+			this.projections = projections;
+			this.numbers = numbers;
+			if (numbers != null)
+			{
+				for (int i = 0; i < projections.size(); i++)
+					numbers.put(projections.get(i), i);
+			}
+		}
+
+		@Override
+		public void write(Kryo kryo, Output output, Projection projection)
+		{
+			Integer number = numbers.get(projection);
+			if (number == null)
+			{
+				number = projections.size();
+				projections.add(projection);
+				numbers.put(projection, number);
+			}
+			output.writeInt(number, true);
+		}
+
+		@Override
+		public Projection read(Kryo kryo, Input input, Class<Projection> type)
+		{
+			return projections.get(input.readInt(true));
+		}
+	}
+}
@@ -50,7 +50,7 @@ import com.jhlabs.map.proj.UniversalTransverseMercatorProjection;
 
 public class MapLoader
 {
-	private static Hashtable<String,String> projections;
+	private static volatile Hashtable<String,String> projections;
 	private static Ellipsoid[] ellipsoids = new Ellipsoid[]
 	                                        {
 												Ellipsoid.AIRY,
@@ -234,7 +234,7 @@ public class MapLoader
 				map.projection.setEllipsoid(datum.getEllipsoid());
 		    if ("".equals(map.projection.getEllipsoid().shortName))
 		    	map.projection.setEllipsoid(Ellipsoid.WGS_1984);
-		    map.projection.initialize();
+		    map.projection = ProjectionFactory.getSharedProjection(map.projection);
 		    fixCalibration(map);
 			fixCoords(map, datum);
 		    map.bind();
@@ -304,17 +304,19 @@ public class MapLoader
 		{
 		    if (map.projection instanceof UniversalTransverseMercatorProjection)
 		    {
+		    	// Shared projection can not be modified, setup a copy
+		    	UniversalTransverseMercatorProjection utm = (UniversalTransverseMercatorProjection) map.projection.clone();
 		    	if (mp.zone != 0)
 		    	{
-		    		((UniversalTransverseMercatorProjection) map.projection).setUTMZone(mp.zone);
+		    		utm.setUTMZone(mp.zone);
 		    	}
 		    	else
 		    	{
-	    			map.projection.setProjectionLongitudeDegrees(mp.lon);
-		    		((UniversalTransverseMercatorProjection) map.projection).clearUTMZone();
+	    			utm.setProjectionLongitudeDegrees(mp.lon);
+		    		utm.clearUTMZone();
 		    	}
-	    		((UniversalTransverseMercatorProjection) map.projection).setIsSouth(mp.hemisphere == 1);
-	    		map.projection.initialize();
+	    		utm.setIsSouth(mp.hemisphere == 1);
+	    		map.projection = ProjectionFactory.getSharedProjection(utm);
 		    }
 			if (mp.n != 0 && mp.e != 0)
 			{
@@ -735,46 +737,48 @@ public class MapLoader
 
     private static void initialize()
     {
-        projections = new Hashtable<String,String>();
+        // Table is published when complete as maps can be loaded concurrently
+        Hashtable<String,String> table = new Hashtable<String,String>();
 
-		projections.put("Latitude/Longitude", "+proj=longlat");
-        projections.put("Mercator", "+proj=merc");
-		projections.put("Transverse Mercator", "+proj=tmerc");
-		projections.put("(UTM) Universal Transverse Mercator", "+proj=utm");
-		projections.put("(BNG) British National Grid", "+proj=tmerc +lat_0=49 +lon_0=-2 +k=0.999601 +x_0=400000 +y_0=-100000");
-		projections.put("(IG) Irish Grid", "+proj=tmerc +lat_0=53.5 +lon_0=-8 +k=1.000035 +x_0=200000 +y_0=250000 +a=6377340.189 +b=6356034.447938534");
-		projections.put("(NZG) New Zealand Grid", "+proj=nzmg +lat_0=-41 +lon_0=173 +x_0=2510000 +y_0=6023150");
-		projections.put("(SG) Swedish Grid", "+proj=tmerc +lat_0=0 +lon_0=15.80827777777778 +k=1 +x_0=1500000 +y_0=0");
-//		projections.put("(SG) Swedish Grid", "+proj=tmerc +lat_0=0 +lon_0=15.806284529444449 +k=1.00000561024 +x_0=1500064.274 +y_0=-667.711");
-//		projections.put("(SUI) Swiss Grid", "+proj=omerc +ellps=bessel +lat_0=46.95240555555556 +lon_0=7.439583333333333 +x_0=600000 +y_0=200000");
-//		projections.put("(SUI) Swiss Grid", "+proj=omerc +ellps=bessel +lat_0=46.951083 +lon_0=7.438639 +x_0=600000 +y_0=200000");
-//		projections.put("(SUI) Swiss Grid", "+proj=somerc +ellps=bessel +lat_0=46.95240555555556 +lon_0=7.439583333333333 +x_0=600000 +y_0=200000");
+		table.put("Latitude/Longitude", "+proj=longlat");
+        table.put("Mercator", "+proj=merc");
+		table.put("Transverse Mercator", "+proj=tmerc");
+		table.put("(UTM) Universal Transverse Mercator", "+proj=utm");
+		table.put("(BNG) British National Grid", "+proj=tmerc +lat_0=49 +lon_0=-2 +k=0.999601 +x_0=400000 +y_0=-100000");
+		table.put("(IG) Irish Grid", "+proj=tmerc +lat_0=53.5 +lon_0=-8 +k=1.000035 +x_0=200000 +y_0=250000 +a=6377340.189 +b=6356034.447938534");
+		table.put("(NZG) New Zealand Grid", "+proj=nzmg +lat_0=-41 +lon_0=173 +x_0=2510000 +y_0=6023150");
+		table.put("(SG) Swedish Grid", "+proj=tmerc +lat_0=0 +lon_0=15.80827777777778 +k=1 +x_0=1500000 +y_0=0");
+//		table.put("(SG) Swedish Grid", "+proj=tmerc +lat_0=0 +lon_0=15.806284529444449 +k=1.00000561024 +x_0=1500064.274 +y_0=-667.711");
+//		table.put("(SUI) Swiss Grid", "+proj=omerc +ellps=bessel +lat_0=46.95240555555556 +lon_0=7.439583333333333 +x_0=600000 +y_0=200000");
+//		table.put("(SUI) Swiss Grid", "+proj=omerc +ellps=bessel +lat_0=46.951083 +lon_0=7.438639 +x_0=600000 +y_0=200000");
+//		table.put("(SUI) Swiss Grid", "+proj=somerc +ellps=bessel +lat_0=46.95240555555556 +lon_0=7.439583333333333 +x_0=600000 +y_0=200000");
 
 
 		
-//		projections.put("(SUI) Swiss Grid", "+proj=somerc +ellps=bessel +lat_0=46.95240555555556 +lon_0=7.439583333333333 +x_0=600000 +y_0=200000");
-		projections.put("(SUI) Swiss Grid", "+proj=somerc +ellps=bessel +x_0=600000 +y_0=200000");
+//		table.put("(SUI) Swiss Grid", "+proj=somerc +ellps=bessel +lat_0=46.95240555555556 +lon_0=7.439583333333333 +x_0=600000 +y_0=200000");
+		table.put("(SUI) Swiss Grid", "+proj=somerc +ellps=bessel +x_0=600000 +y_0=200000");
 		
 		
-		projections.put("(I) France Zone I", "+proj=lcc +lat_1=48.598523 +lat_2=50.395912 +lat_0=49.5 +lon_0=2.337229 +x_0=600000 +y_0=200000 +a=6378249.2 +b=6356515");
-		projections.put("(II) France Zone II", "+proj=lcc +lat_1=45.898919 +lat_2=47.696014 +lat_0=46.8 +lon_0=2.337229 +x_0=600000 +y_0=2200000 +a=6378249.2 +b=6356515");
-		projections.put("(III) France Zone III", "+proj=lcc +lat_1=43.199291 +lat_2=44.996094 +lat_0=44.1 +lon_0=2.337229 +x_0=600000 +y_0=200000 +a=6378249.2 +b=6356515");
-		projections.put("(IV) France Zone IV", "+proj=lcc +lat_1=41.560388 +lat_2=42.767663 +lat_0=42.165 +lon_0=2.337229 +x_0=234.358 +y_0=4185861.369 +a=6378249.2 +b=6356515");
-        projections.put("Lambert Conformal Conic", "+proj=lcc");
-		projections.put("(A)Lambert Azimuthual Equal Area", "+proj=laea");
-		projections.put("(EQC) Equidistant Conic", "+proj=eqdc");
-		projections.put("Sinusoidal", "+proj=sinu");
-		projections.put("Polyconic (American)", "+proj=poly");
-		projections.put("Albers Equal Area", "+proj=aea");
-		projections.put("Van Der Grinten", "+proj=vandg");
-		projections.put("Vertical Near-Sided Perspective", "+proj=nsper");
-		projections.put("(WIV) Wagner IV", "+proj=wag4");
-		projections.put("Bonne", "+proj=bonne");
-		projections.put("(MT0) Montana State Plane Zone 2500", "+proj=lcc +lat_1=45 +lat_2=49 +lat_0=44.25 +lon_0=-109.5 +x_0=600000 +y_0=0");
-		projections.put("(ITA1) Italy Grid Zone 1", "+proj=tmerc +lat_0=0 +lon_0=-3.45233333333333 +k=0.999600 +x_0=1500000 +y_0=0");
-		projections.put("(ITA2) Italy Grid Zone 2", "+proj=tmerc +lat_0=0 +lon_0=2.54766666666666 +k=0.999600 +x_0=2520000 +y_0=0");
-		projections.put("(VICMAP-TM) Victoria Aust.(pseudo AMG)", "+proj=tmerc +lat_0=145 +x_0=500000 +y_0=10000000");
-		projections.put("(VICGRID) Victoria Australia", "+proj=lcc +lat_1=-36 +lat_2=-38 +lat_0=-37 +lon_0=145 +x_0=2500000 +y_0=4500000");
-		projections.put("(VG94) VICGRID94 Victoria Australia", "+proj=lcc +lat_1=-36 +lat_2=-38 +lat_0=-37 +lon_0=145 +x_0=2500000 +y_0=2500000");
+		table.put("(I) France Zone I", "+proj=lcc +lat_1=48.598523 +lat_2=50.395912 +lat_0=49.5 +lon_0=2.337229 +x_0=600000 +y_0=200000 +a=6378249.2 +b=6356515");
+		table.put("(II) France Zone II", "+proj=lcc +lat_1=45.898919 +lat_2=47.696014 +lat_0=46.8 +lon_0=2.337229 +x_0=600000 +y_0=2200000 +a=6378249.2 +b=6356515");
+		table.put("(III) France Zone III", "+proj=lcc +lat_1=43.199291 +lat_2=44.996094 +lat_0=44.1 +lon_0=2.337229 +x_0=600000 +y_0=200000 +a=6378249.2 +b=6356515");
+		table.put("(IV) France Zone IV", "+proj=lcc +lat_1=41.560388 +lat_2=42.767663 +lat_0=42.165 +lon_0=2.337229 +x_0=234.358 +y_0=4185861.369 +a=6378249.2 +b=6356515");
+        table.put("Lambert Conformal Conic", "+proj=lcc");
+		table.put("(A)Lambert Azimuthual Equal Area", "+proj=laea");
+		table.put("(EQC) Equidistant Conic", "+proj=eqdc");
+		table.put("Sinusoidal", "+proj=sinu");
+		table.put("Polyconic (American)", "+proj=poly");
+		table.put("Albers Equal Area", "+proj=aea");
+		table.put("Van Der Grinten", "+proj=vandg");
+		table.put("Vertical Near-Sided Perspective", "+proj=nsper");
+		table.put("(WIV) Wagner IV", "+proj=wag4");
+		table.put("Bonne", "+proj=bonne");
+		table.put("(MT0) Montana State Plane Zone 2500", "+proj=lcc +lat_1=45 +lat_2=49 +lat_0=44.25 +lon_0=-109.5 +x_0=600000 +y_0=0");
+		table.put("(ITA1) Italy Grid Zone 1", "+proj=tmerc +lat_0=0 +lon_0=-3.45233333333333 +k=0.999600 +x_0=1500000 +y_0=0");
+		table.put("(ITA2) Italy Grid Zone 2", "+proj=tmerc +lat_0=0 +lon_0=2.54766666666666 +k=0.999600 +x_0=2520000 +y_0=0");
+		table.put("(VICMAP-TM) Victoria Aust.(pseudo AMG)", "+proj=tmerc +lat_0=145 +x_0=500000 +y_0=10000000");
+		table.put("(VICGRID) Victoria Australia", "+proj=lcc +lat_1=-36 +lat_2=-38 +lat_0=-37 +lon_0=145 +x_0=2500000 +y_0=4500000");
+		table.put("(VG94) VICGRID94 Victoria Australia", "+proj=lcc +lat_1=-36 +lat_2=-38 +lat_0=-37 +lon_0=145 +x_0=2500000 +y_0=2500000");
+        projections = table;
     }
 }
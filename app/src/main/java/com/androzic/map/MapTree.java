@@ -0,0 +1,485 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2014  Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.androzic.map;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.androzic.data.Bounds;
+import com.androzic.map.ozf.OzfMap;
+
+/**
+ * Packed R-tree of maps, bulk loaded with Sort-Tile-Recursive algorithm. Maps are referenced by
+ * their ids and indexed by border bounds and by scale, so that maps of inappropriate scale are
+ * skipped before they are looked at. Maps added after packing are kept aside and removed maps
+ * leave holes until the amount of changes justifies repacking. Packed tree is stored in flat
+ * buffers which can be read directly from memory mapped index file.
+ */
+class MapTree
+{
+	private static final int NODE_SIZE = 16;
+
+	private static final int MIN_LAT = 0;
+	private static final int MIN_LON = 1;
+	private static final int MAX_LAT = 2;
+	private static final int MAX_LON = 3;
+	private static final int MIN_MPP = 4;
+	private static final int MAX_MPP = 5;
+	static final int STRIDE = 6;
+
+	// Leaves followed by nodes, level by level, root is the last one
+	private int size;
+	private int depth;
+	private DoubleBuffer boxes;
+	private IntBuffer first;
+	private IntBuffer last;
+	private IntBuffer keys;
+	private int removed;
+
+	private int pendingCount;
+	private int[] pendingKeys;
+	private double[] pendingBoxes;
+
+	MapTree()
+	{
+		build(new int[0], new double[0], 0);
+	}
+
+	/**
+	 * Replaces tree contents with given maps.
+	 * @param ids map ids
+	 * @param mapBoxes map boxes filled by {@link #getBox(BaseMap, double[], int)}
+	 * @param n number of maps
+	 */
+	void build(int[] ids, double[] mapBoxes, int n)
+	{
+		pendingCount = 0;
+		pendingKeys = new int[NODE_SIZE];
+		pendingBoxes = new double[NODE_SIZE * STRIDE];
+		removed = 0;
+		size = n;
+		depth = 0;
+		int total = n;
+		for (int count = n; count > 1 || depth == 0 && count > 0; depth++)
+		{
+			count = (count + NODE_SIZE - 1) / NODE_SIZE;
+			total += count;
+		}
+		int[] treeKeys = new int[n];
+		double[] treeBoxes = new double[total * STRIDE];
+		int[] treeFirst = new int[total - n];
+		int[] treeLast = new int[total - n];
+
+		// Elements of current level, their boxes and children ranges
+		double[] levelBoxes = Arrays.copyOf(mapBoxes, n * STRIDE);
+		int[] levelFirst = null;
+		int[] levelLast = null;
+
+		int base = 0;
+		int count = n;
+		while (base < total)
+		{
+			Integer[] order = sort(levelBoxes, count);
+			for (int i = 0; i < count; i++)
+			{
+				int k = order[i];
+				System.arraycopy(levelBoxes, k * STRIDE, treeBoxes, (base + i) * STRIDE, STRIDE);
+				if (base < n)
+				{
+					treeKeys[i] = ids[k];
+				}
+				else
+				{
+					treeFirst[base + i - n] = levelFirst[k];
+					treeLast[base + i - n] = levelLast[k];
+				}
+			}
+			if (base + count == total)
+				break;
+
+			// Group sorted elements into parent nodes
+			int parents = (count + NODE_SIZE - 1) / NODE_SIZE;
+			levelBoxes = new double[parents * STRIDE];
+			levelFirst = new int[parents];
+			levelLast = new int[parents];
+			for (int p = 0; p < parents; p++)
+			{
+				levelFirst[p] = base + p * NODE_SIZE;
+				levelLast[p] = Math.min(levelFirst[p] + NODE_SIZE, base + count);
+				int o = p * STRIDE;
+				System.arraycopy(treeBoxes, levelFirst[p] * STRIDE, levelBoxes, o, STRIDE);
+				for (int c = levelFirst[p] + 1; c < levelLast[p]; c++)
+				{
+					int b = c * STRIDE;
+					levelBoxes[o + MIN_LAT] = Math.min(levelBoxes[o + MIN_LAT], treeBoxes[b + MIN_LAT]);
+					levelBoxes[o + MIN_LON] = Math.min(levelBoxes[o + MIN_LON], treeBoxes[b + MIN_LON]);
+					levelBoxes[o + MAX_LAT] = Math.max(levelBoxes[o + MAX_LAT], treeBoxes[b + MAX_LAT]);
+					levelBoxes[o + MAX_LON] = Math.max(levelBoxes[o + MAX_LON], treeBoxes[b + MAX_LON]);
+					levelBoxes[o + MIN_MPP] = Math.min(levelBoxes[o + MIN_MPP], treeBoxes[b + MIN_MPP]);
+					levelBoxes[o + MAX_MPP] = Math.max(levelBoxes[o + MAX_MPP], treeBoxes[b + MAX_MPP]);
+				}
+			}
+			base += count;
+			count = parents;
+		}
+		keys = IntBuffer.wrap(treeKeys);
+		boxes = DoubleBuffer.wrap(treeBoxes);
+		first = IntBuffer.wrap(treeFirst);
+		last = IntBuffer.wrap(treeLast);
+	}
+
+	/**
+	 * Sorts level elements into slabs by scale, slabs into runs by longitude and runs by latitude.
+	 */
+	private static Integer[] sort(final double[] levelBoxes, int count)
+	{
+		Integer[] order = new Integer[count];
+		for (int i = 0; i < count; i++)
+			order[i] = i;
+		int nodes = (count + NODE_SIZE - 1) / NODE_SIZE;
+		int s = (int) Math.ceil(Math.cbrt(nodes));
+		int slab = s * s * NODE_SIZE;
+		int run = s * NODE_SIZE;
+
+		Arrays.sort(order, new BoxComparator(levelBoxes, MIN_MPP, MAX_MPP));
+		Comparator<Integer> byLon = new BoxComparator(levelBoxes, MIN_LON, MAX_LON);
+		Comparator<Integer> byLat = new BoxComparator(levelBoxes, MIN_LAT, MAX_LAT);
+		for (int i = 0; i < count; i += slab)
+		{
+			int end = Math.min(i + slab, count);
+			Arrays.sort(order, i, end, byLon);
+			for (int j = i; j < end; j += run)
+				Arrays.sort(order, j, Math.min(j + run, end), byLat);
+		}
+		return order;
+	}
+
+	void insert(BaseMap map)
+	{
+		if (pendingCount == pendingKeys.length)
+		{
+			pendingKeys = Arrays.copyOf(pendingKeys, pendingCount * 2);
+			pendingBoxes = Arrays.copyOf(pendingBoxes, pendingCount * 2 * STRIDE);
+		}
+		pendingKeys[pendingCount] = map.id;
+		getBox(map, pendingBoxes, pendingCount * STRIDE);
+		pendingCount++;
+		repackIfNeeded();
+	}
+
+	/**
+	 * Removes map, including its copies in the tree if it was inserted several times.
+	 */
+	void remove(int id)
+	{
+		for (int i = pendingCount - 1; i >= 0; i--)
+		{
+			if (pendingKeys[i] == id)
+			{
+				pendingCount--;
+				pendingKeys[i] = pendingKeys[pendingCount];
+				System.arraycopy(pendingBoxes, pendingCount * STRIDE, pendingBoxes, i * STRIDE, STRIDE);
+			}
+		}
+		boolean changed = false;
+		for (int i = 0; i < size; i++)
+		{
+			if (keys.get(i) == id)
+			{
+				// Mapped keys are copied on first change
+				if (keys.isReadOnly())
+				{
+					int[] copy = new int[size];
+					keys.rewind();
+					keys.get(copy);
+					keys = IntBuffer.wrap(copy);
+				}
+				keys.put(i, -1);
+				removed++;
+				changed = true;
+			}
+		}
+		if (changed)
+			repackIfNeeded();
+	}
+
+	void clear()
+	{
+		build(new int[0], new double[0], 0);
+	}
+
+	private void repackIfNeeded()
+	{
+		if (pendingCount + removed > NODE_SIZE * 2 + size / 8)
+			pack();
+	}
+
+	/**
+	 * Packs pending maps into the tree and drops holes.
+	 */
+	void pack()
+	{
+		if (pendingCount == 0 && removed == 0)
+			return;
+		int n = size - removed + pendingCount;
+		int[] ids = new int[n];
+		double[] mapBoxes = new double[n * STRIDE];
+		n = collect(null, ids, mapBoxes);
+		build(ids, mapBoxes, n);
+	}
+
+	/**
+	 * Returns packed copy of the tree which contains only maps with given ids.
+	 */
+	MapTree subset(Set<Integer> filter)
+	{
+		int n = size - removed + pendingCount;
+		int[] ids = new int[n];
+		double[] mapBoxes = new double[n * STRIDE];
+		n = collect(filter, ids, mapBoxes);
+		MapTree tree = new MapTree();
+		tree.build(ids, mapBoxes, n);
+		return tree;
+	}
+
+	/**
+	 * Collects packed and pending maps, each map is collected once.
+	 * @param filter ids of maps to collect, or null to collect all maps
+	 * @return number of collected maps
+	 */
+	private int collect(Set<Integer> filter, int[] ids, double[] mapBoxes)
+	{
+		HashSet<Integer> collected = new HashSet<>(ids.length * 2);
+		int k = 0;
+		for (int i = 0; i < size; i++)
+		{
+			int id = keys.get(i);
+			if (id == -1 || filter != null && !filter.contains(id) || !collected.add(id))
+				continue;
+			ids[k] = id;
+			for (int j = 0; j < STRIDE; j++)
+				mapBoxes[k * STRIDE + j] = boxes.get(i * STRIDE + j);
+			k++;
+		}
+		for (int i = 0; i < pendingCount; i++)
+		{
+			int id = pendingKeys[i];
+			if (filter != null && !filter.contains(id) || !collected.add(id))
+				continue;
+			ids[k] = id;
+			System.arraycopy(pendingBoxes, i * STRIDE, mapBoxes, k * STRIDE, STRIDE);
+			k++;
+		}
+		return k;
+	}
+
+	/**
+	 * Finds maps which border bounds intersect given area and which scale intersects given range.
+	 * @return unique ids of found maps
+	 */
+	int[] search(Bounds area, double minMpp, double maxMpp)
+	{
+		return search(area.minLat, area.minLon, area.maxLat, area.maxLon, minMpp, maxMpp);
+	}
+
+	int[] search(double minLat, double minLon, double maxLat, double maxLon, double minMpp, double maxMpp)
+	{
+		int[] result = new int[NODE_SIZE];
+		int found = 0;
+		int nodes = first.limit();
+		if (nodes > 0)
+		{
+			int[] stack = new int[depth * NODE_SIZE + 1];
+			int sp = 0;
+			stack[sp++] = size + nodes - 1;
+			while (sp > 0)
+			{
+				int node = stack[--sp] - size;
+				int end = last.get(node);
+				for (int i = first.get(node); i < end; i++)
+				{
+					if (!intersects(boxes, i * STRIDE, minLat, minLon, maxLat, maxLon, minMpp, maxMpp))
+						continue;
+					if (i >= size)
+					{
+						stack[sp++] = i;
+						continue;
+					}
+					int id = keys.get(i);
+					if (id == -1)
+						continue;
+					if (found == result.length)
+						result = Arrays.copyOf(result, found * 2);
+					result[found++] = id;
+				}
+			}
+		}
+		DoubleBuffer pending = DoubleBuffer.wrap(pendingBoxes);
+		for (int i = 0; i < pendingCount; i++)
+		{
+			if (!intersects(pending, i * STRIDE, minLat, minLon, maxLat, maxLon, minMpp, maxMpp))
+				continue;
+			if (found == result.length)
+				result = Arrays.copyOf(result, found * 2);
+			result[found++] = pendingKeys[i];
+		}
+		// Map can be both in packed tree and in pending maps if it was added again
+		Arrays.sort(result, 0, found);
+		int unique = 0;
+		for (int i = 0; i < found; i++)
+		{
+			if (unique == 0 || result[i] != result[unique - 1])
+				result[unique++] = result[i];
+		}
+		return Arrays.copyOf(result, unique);
+	}
+
+	private static boolean intersects(DoubleBuffer box, int o, double minLat, double minLon, double maxLat, double maxLon, double minMpp, double maxMpp)
+	{
+		return box.get(o + MIN_MPP) <= maxMpp && box.get(o + MAX_MPP) >= minMpp
+				&& box.get(o + MIN_LAT) <= maxLat && box.get(o + MAX_LAT) >= minLat
+				&& box.get(o + MIN_LON) <= maxLon && box.get(o + MAX_LON) >= minLon;
+	}
+
+	/**
+	 * Returns size of packed tree in bytes.
+	 */
+	int getByteSize()
+	{
+		return 12 + boxes.limit() * 8 + (first.limit() + last.limit() + size) * 4;
+	}
+
+	/**
+	 * Writes packed tree, tree should be packed before writing.
+	 */
+	void write(ByteBuffer buffer)
+	{
+		if (pendingCount > 0 || removed > 0)
+			throw new IllegalStateException("Tree is not packed");
+		buffer.putInt(size);
+		buffer.putInt(depth);
+		buffer.putInt(first.limit());
+		put(buffer.slice().asDoubleBuffer(), boxes);
+		buffer.position(buffer.position() + boxes.limit() * 8);
+		put(buffer.slice().asIntBuffer(), first);
+		buffer.position(buffer.position() + first.limit() * 4);
+		put(buffer.slice().asIntBuffer(), last);
+		buffer.position(buffer.position() + last.limit() * 4);
+		put(buffer.slice().asIntBuffer(), keys);
+		buffer.position(buffer.position() + size * 4);
+	}
+
+	private static void put(DoubleBuffer dst, DoubleBuffer src)
+	{
+		DoubleBuffer s = src.duplicate();
+		s.rewind();
+		dst.put(s);
+	}
+
+	private static void put(IntBuffer dst, IntBuffer src)
+	{
+		IntBuffer s = src.duplicate();
+		s.rewind();
+		dst.put(s);
+	}
+
+	/**
+	 * Creates tree backed by the buffer, buffer contents are not copied.
+	 */
+	static MapTree read(ByteBuffer buffer)
+	{
+		MapTree tree = new MapTree();
+		int n = buffer.getInt();
+		int d = buffer.getInt();
+		int nodes = buffer.getInt();
+		tree.size = n;
+		tree.depth = d;
+		tree.boxes = slice(buffer, (n + nodes) * STRIDE * 8).asDoubleBuffer();
+		tree.first = slice(buffer, nodes * 4).asIntBuffer();
+		tree.last = slice(buffer, nodes * 4).asIntBuffer();
+		tree.keys = slice(buffer, n * 4).asIntBuffer();
+		return tree;
+	}
+
+	private static ByteBuffer slice(ByteBuffer buffer, int length)
+	{
+		ByteBuffer slice = buffer.slice();
+		slice.limit(length);
+		buffer.position(buffer.position() + length);
+		return slice.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Fills indexed box of the map. Only OZF maps have fixed scale, other maps can be viewed
+	 * at any scale.
+	 */
+	static void getBox(BaseMap map, double[] box, int o)
+	{
+		Bounds bounds = map.getBounds();
+		box[o + MIN_LAT] = bounds.minLat;
+		box[o + MIN_LON] = bounds.minLon;
+		box[o + MAX_LAT] = bounds.maxLat;
+		box[o + MAX_LON] = bounds.maxLon;
+		if (map instanceof OzfMap)
+		{
+			box[o + MIN_MPP] = map.getAbsoluteMPP();
+			box[o + MAX_MPP] = map.getAbsoluteMPP();
+		}
+		else
+		{
+			box[o + MIN_MPP] = 0;
+			box[o + MAX_MPP] = Double.POSITIVE_INFINITY;
+		}
+	}
+
+	private static class BoxComparator implements Comparator<Integer>
+	{
+		private final double[] boxes;
+		private final int min;
+		private final int max;
+
+		BoxComparator(double[] boxes, int min, int max)
+		{
+			this.boxes = boxes;
+			this.min = min;
+			this.max = max;
+		}
+
+		@Override
+		public int compare(Integer o1, Integer o2)
+		{
+			return Double.compare(center(o1), center(o2));
+		}
+
+		private double center(int i)
+		{
+			double lo = boxes[i * STRIDE + min];
+			double hi = boxes[i * STRIDE + max];
+			// Unbounded scale ranges are grouped together
+			return hi == Double.POSITIVE_INFINITY ? hi : (lo + hi) / 2;
+		}
+	}
+}
@@ -0,0 +1,250 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.androzic.map;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import android.os.FileObserver;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import com.androzic.util.MapFilenameFilter;
+
+/**
+ * Watches map folder and its subfolders and keeps map index in sync with files. File events
+ * are debounced so that a bulk copy results in a single index update. Folder is also polled
+ * periodically because file events are not delivered for some storage types (e.g. files
+ * written over MTP) or when there are too many folders to observe.
+ */
+public class MapWatcher
+{
+	private static final String TAG = "MapWatcher";
+
+	private static final int EVENTS = FileObserver.CREATE | FileObserver.DELETE | FileObserver.CLOSE_WRITE | FileObserver.MOVED_FROM | FileObserver.MOVED_TO | FileObserver.DELETE_SELF | FileObserver.MOVE_SELF;
+	private static final long DEBOUNCE_DELAY = 3000; // 3 seconds
+	private static final long POLL_INTERVAL = 300000; // 5 minutes
+	private static final long FALLBACK_POLL_INTERVAL = 30000; // 30 seconds
+	private static final int MAX_OBSERVERS = 256;
+
+	public interface OnMapsChangedListener
+	{
+		/**
+		 * Called on watcher thread after index was changed.
+		 */
+		void onMapsChanged(MapIndex index);
+	}
+
+	private final MapIndex index;
+	private final String path;
+	private final String charset;
+	private final OnMapsChangedListener listener;
+	private final MapFilenameFilter filter = new MapFilenameFilter();
+
+	private final HashMap<String, DirectoryObserver> observers = new HashMap<>();
+	private volatile boolean polling;
+	private HandlerThread thread;
+	private Handler handler;
+
+	public MapWatcher(MapIndex index, String path, String charset, OnMapsChangedListener listener)
+	{
+		this.index = index;
+		this.path = path;
+		this.charset = charset;
+		this.listener = listener;
+	}
+
+	public synchronized void start()
+	{
+		if (thread != null)
+			return;
+		thread = new HandlerThread("MapWatcherThread", Process.THREAD_PRIORITY_BACKGROUND);
+		thread.start();
+		handler = new Handler(thread.getLooper());
+		handler.post(new Runnable() {
+			@Override
+			public void run()
+			{
+				observe(new File(path));
+				schedulePoll();
+			}
+		});
+	}
+
+	public synchronized void stop()
+	{
+		if (thread == null)
+			return;
+		handler.removeCallbacksAndMessages(null);
+		thread.quit();
+		thread = null;
+		handler = null;
+		synchronized (observers)
+		{
+			for (DirectoryObserver observer : observers.values())
+				observer.stopWatching();
+			observers.clear();
+		}
+	}
+
+	/**
+	 * Requests index update after changes settle down.
+	 */
+	public synchronized void changed()
+	{
+		if (handler == null)
+			return;
+		handler.removeCallbacks(update);
+		handler.postDelayed(update, DEBOUNCE_DELAY);
+	}
+
+	private synchronized void schedulePoll()
+	{
+		if (handler == null)
+			return;
+		handler.removeCallbacks(poll);
+		handler.postDelayed(poll, polling ? FALLBACK_POLL_INTERVAL : POLL_INTERVAL);
+	}
+
+	/**
+	 * Starts observing folder and its subfolders. Switches to frequent polling if folders
+	 * can not be observed.
+	 */
+	private void observe(File dir)
+	{
+		List<File> dirs = new ArrayList<>();
+		dirs.add(dir);
+		synchronized (observers)
+		{
+			while (!dirs.isEmpty())
+			{
+				File d = dirs.remove(dirs.size() - 1);
+				if (!d.isDirectory())
+					continue;
+				String p = d.getAbsolutePath();
+				if (observers.containsKey(p))
+					continue;
+				if (observers.size() >= MAX_OBSERVERS)
+				{
+					Log.w(TAG, "Too many folders, falling back to polling");
+					polling = true;
+					return;
+				}
+				DirectoryObserver observer = new DirectoryObserver(p);
+				observer.startWatching();
+				observers.put(p, observer);
+				File[] files = d.listFiles();
+				if (files == null)
+					continue;
+				for (File file : files)
+				{
+					if (file.isDirectory())
+						dirs.add(file);
+				}
+			}
+		}
+	}
+
+	private boolean forget(String dir)
+	{
+		synchronized (observers)
+		{
+			DirectoryObserver observer = observers.remove(dir);
+			if (observer != null)
+				observer.stopWatching();
+			return observer != null;
+		}
+	}
+
+	private final Runnable update = new Runnable() {
+		@Override
+		public void run()
+		{
+			Log.d(TAG, "Updating map index");
+			try
+			{
+				if (index.update(path, charset, null) && listener != null)
+					listener.onMapsChanged(index);
+			}
+			catch (Exception e)
+			{
+				e.printStackTrace();
+			}
+		}
+	};
+
+	private final Runnable poll = new Runnable() {
+		@Override
+		public void run()
+		{
+			update.run();
+			// Folder could be unavailable when watcher was started (e.g. storage was not mounted)
+			if (polling || observers.isEmpty())
+				observe(new File(path));
+			schedulePoll();
+		}
+	};
+
+	private class DirectoryObserver extends FileObserver
+	{
+		private final String dir;
+
+		DirectoryObserver(String dir)
+		{
+			super(dir, EVENTS);
+			this.dir = dir;
+		}
+
+		@Override
+		public void onEvent(int event, String name)
+		{
+			event &= FileObserver.ALL_EVENTS;
+			if ((event & (FileObserver.DELETE_SELF | FileObserver.MOVE_SELF)) != 0)
+			{
+				forget(dir);
+				changed();
+				return;
+			}
+			if (name == null)
+				return;
+			File file = new File(dir, name);
+			if ((event & (FileObserver.CREATE | FileObserver.MOVED_TO)) != 0 && file.isDirectory())
+			{
+				observe(file);
+				changed();
+			}
+			else if ((event & (FileObserver.MOVED_FROM | FileObserver.DELETE)) != 0 && forget(file.getAbsolutePath()))
+			{
+				changed();
+			}
+			else if (filter.accept(file.getParentFile(), name))
+			{
+				// Map file is not complete until it is closed
+				if (event != FileObserver.CREATE)
+					changed();
+			}
+		}
+	}
+}
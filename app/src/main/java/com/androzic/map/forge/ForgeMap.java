@@ -24,6 +24,7 @@ import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Matrix;
 import android.graphics.Path;
+import android.graphics.Region;
 import android.text.format.DateFormat;
 
 import com.androzic.Androzic;
@@ -268,7 +269,13 @@ public class ForgeMap extends TileMap
 	}
 
 	@Override
-	public synchronized boolean drawMap(Viewport viewport, boolean cropBorder, boolean drawBorder, Canvas c) throws OutOfMemoryError
+	public boolean drawMap(Viewport viewport, boolean cropBorder, boolean drawBorder, Canvas c) throws OutOfMemoryError
+	{
+		return drawMap(viewport, cropBorder, drawBorder, null, c);
+	}
+
+	@Override
+	public synchronized boolean drawMap(Viewport viewport, boolean cropBorder, boolean drawBorder, Region visible, Canvas c) throws OutOfMemoryError
 	{
 		if (!isActive)
 			return false;
@@ -335,7 +342,13 @@ public class ForgeMap extends TileMap
 		List<TilePosition> tilePositions = new ArrayList<>();
 		for (int i = r_min; i <= r_max; i++)
 			for (int j = c_min; j <= c_max; j++)
-				tilePositions.add(new TilePosition(new Tile(j, i, srcZoom, tileSize), new Point(j, i)));
+			{
+				// Tiles hidden by other maps are not rendered
+				int tx = (int) (w2mx + j * tile_wh);
+				int ty = (int) (h2my + i * tile_wh);
+				if (isTileVisible(visible, tx, ty, tx + twh, ty + twh))
+					tilePositions.add(new TilePosition(new Tile(j, i, srcZoom, tileSize), new Point(j, i)));
+			}
 
 		Set<Job> jobs = new HashSet<>();
 		for (TilePosition tilePosition : tilePositions)
@@ -24,9 +24,12 @@ import android.content.ComponentName;
 import android.content.Intent;
 import android.content.ServiceConnection;
 import android.content.SharedPreferences;
+import android.graphics.Rect;
 import android.os.IBinder;
 import android.preference.PreferenceManager;
+import android.view.MotionEvent;
 
+import com.androzic.MapView;
 import com.androzic.R;
 import com.androzic.data.Track;
 import com.androzic.location.ILocationService;
@@ -62,6 +65,12 @@ public class CurrentTrackOverlay extends TrackOverlay
 		track.clear();
 	}
 
+	@Override
+	public boolean onSingleTap(MotionEvent e, Rect mapTap, MapView mapView)
+	{
+		return false;
+	}
+
 	public void onBeforeDestroy()
 	{
 		super.onBeforeDestroy();
@@ -12,6 +12,7 @@ import android.graphics.Paint;
 
 import com.androzic.Androzic;
 import com.androzic.map.BaseMap;
+import com.androzic.map.ProjectionMesh;
 import com.androzic.ui.Viewport;
 
 public class HillShadeOverlay extends MapOverlay
@@ -101,11 +102,12 @@ public class HillShadeOverlay extends MapOverlay
     	BaseMap map = application.getCurrentMap();
 		int w = viewport.width;
 		int h = viewport.height;
+    	ProjectionMesh mesh = map.getProjectionMesh();
     	double[] cll = new double[2];
 		for (int x = 0; x < w; x++)
 			for (int y = 0; y < h; y++)
 			{
-		    	map.getLatLonByXY(cxy[0] + x, cxy[1] + y, cll);
+		    	mesh.getLatLonByXY(cxy[0] + x, cxy[1] + y, cll);
 		    	int height = getHeight(cll[0], cll[1]);
 				paint.setAlpha(height);
 		    	c.drawPoint(x - viewport.width / 2, y - viewport.height / 2, paint);
@@ -31,6 +31,7 @@ import android.util.Log;
 
 import com.androzic.R;
 import com.androzic.map.BaseMap;
+import com.androzic.map.ProjectionMesh;
 import com.androzic.map.ozf.Grid;
 import com.androzic.ui.Viewport;
 import com.androzic.util.Geo;
@@ -75,6 +76,8 @@ public class OtherGridOverlay extends MapOverlay
 			return;
 
     	clip = new Rect(0, 0, map.getScaledWidth(), map.getScaledHeight());
+    	// grid does not need exact projection
+    	ProjectionMesh mesh = map.getProjectionMesh();
 
     	ArrayList<int[]> points = new ArrayList<>();
     	ArrayList<double[]> refPoints = new ArrayList<>();
@@ -93,7 +96,7 @@ public class OtherGridOverlay extends MapOverlay
     	{
         	int[] pxy = new int[2];
         	double[] pll = Geo.projection(ll[0], ll[1], spacing * 3, 180);
-	    	map.getXYByLatLon(pll[0], pll[1], pxy);
+	    	mesh.getXYByLatLon(pll[0], pll[1], pxy);
     		refPoints.add(pll);
     		points.add(pxy);
         	ll[0] = pll[0];
@@ -105,7 +108,7 @@ public class OtherGridOverlay extends MapOverlay
     	{
         	int[] pxy = new int[2];
     		double[] pll = Geo.projection(ll[0], ll[1], spacing * 3, 0);
-	    	map.getXYByLatLon(pll[0], pll[1], pxy);
+	    	mesh.getXYByLatLon(pll[0], pll[1], pxy);
     		refPoints.add(0, pll);
     		points.add(0, pxy);
         	ll[0] = pll[0];
@@ -138,7 +141,7 @@ public class OtherGridOverlay extends MapOverlay
     		{
             	int[] pxy = new int[2];
         		double[] dll = Geo.projection(pll[0], pll[1], spacing * i, 90);
-       	    	map.getXYByLatLon(dll[0], dll[1], pxy);
+       	    	mesh.getXYByLatLon(dll[0], dll[1], pxy);
         	    points.add(pxy);
         	    onmap |= pxy[0] <= map.getScaledWidth();
     		}
@@ -168,7 +171,7 @@ public class OtherGridOverlay extends MapOverlay
     		{
             	int[] pxy = new int[2];
         		double[] dll = Geo.projection(pll[0], pll[1], spacing * i, 270);
-       	    	map.getXYByLatLon(dll[0], dll[1], pxy);
+       	    	mesh.getXYByLatLon(dll[0], dll[1], pxy);
         	    points.add(pxy);
         	    onmap |= pxy[0] >= 0;
     		}
@@ -199,7 +202,7 @@ public class OtherGridOverlay extends MapOverlay
     	{
         	int[] pxy = new int[2];
         	double[] pll = Geo.projection(ll[0], ll[1], spacing * 3, 90);
-	    	map.getXYByLatLon(pll[0], pll[1], pxy);
+	    	mesh.getXYByLatLon(pll[0], pll[1], pxy);
     		refPoints.add(pll);
     		points.add(pxy);
         	ll[0] = pll[0];
@@ -211,7 +214,7 @@ public class OtherGridOverlay extends MapOverlay
     	{
         	int[] pxy = new int[2];
     		double[] pll = Geo.projection(ll[0], ll[1], spacing * 3, 270);
-	    	map.getXYByLatLon(pll[0], pll[1], pxy);
+	    	mesh.getXYByLatLon(pll[0], pll[1], pxy);
     		refPoints.add(0, pll);
     		points.add(0, pxy);
         	ll[0] = pll[0];
@@ -244,7 +247,7 @@ public class OtherGridOverlay extends MapOverlay
     		{
             	int[] pxy = new int[2];
         		double[] dll = Geo.projection(pll[0], pll[1], spacing * i, 180);
-       	    	map.getXYByLatLon(dll[0], dll[1], pxy);
+       	    	mesh.getXYByLatLon(dll[0], dll[1], pxy);
         	    points.add(pxy);
         	    onmap |= pxy[1] <= map.getScaledHeight();
     		}
@@ -274,7 +277,7 @@ public class OtherGridOverlay extends MapOverlay
     		{
             	int[] pxy = new int[2];
         		double[] dll = Geo.projection(pll[0], pll[1], spacing * i, 0);
-       	    	map.getXYByLatLon(dll[0], dll[1], pxy);
+       	    	mesh.getXYByLatLon(dll[0], dll[1], pxy);
         	    points.add(pxy);
         	    onmap |= pxy[1] >= 0;
     		}
@@ -20,6 +20,7 @@
 
 package com.androzic.overlay;
 
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
@@ -43,6 +44,7 @@ import com.androzic.MapView;
 import com.androzic.R;
 import com.androzic.data.Route;
 import com.androzic.data.Waypoint;
+import com.androzic.map.BaseMap;
 import com.androzic.ui.Viewport;
 
 public class RouteOverlay extends MapOverlay
@@ -54,6 +56,16 @@ public class RouteOverlay extends MapOverlay
 	private Paint textFillPaint;
 	private Route route;
 	private Map<Waypoint, Bitmap> bitmaps;
+	// Waypoint projections of current and two previous maps
+	private final LinkedHashMap<Long, Projection> projections = new LinkedHashMap<Long, Projection>(4, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Projection> eldest)
+		{
+			return size() > 3;
+		}
+	};
 
 	private int pointWidth = 10;
 	private int routeWidth = 2;
@@ -190,11 +202,12 @@ public class RouteOverlay extends MapOverlay
 		List<Waypoint> waypoints = route.getWaypoints();
 		synchronized (waypoints)
 		{
+			int[] xy = getProjection(waypoints);
+			if (xy == null)
+				return false;
 			for (int i = waypoints.size() - 1; i >= 0; i--)
 			{
-				Waypoint wpt = waypoints.get(i);
-				int[] pointXY = application.getXYbyLatLon(wpt.latitude, wpt.longitude);
-				if (mapTap.contains(pointXY[0], pointXY[1]))
+				if (mapTap.contains(xy[i * 2], xy[i * 2 + 1]))
 				{
 					return application.getMapHolder().routeWaypointTapped(route, i, (int) e.getX(), (int) e.getY());
 				}
@@ -212,31 +225,33 @@ public class RouteOverlay extends MapOverlay
 		final int[] cxy = viewport.mapCenterXY;
 
 		final Path path = new Path();
-		int i = 0;
 		int lastX = 0, lastY = 0;
 		List<Waypoint> waypoints = route.getWaypoints();
 		synchronized (waypoints)
 		{
-			for (Waypoint wpt : waypoints)
+			int[] pxy = getProjection(waypoints);
+			if (pxy == null)
+				return;
+			for (int i = 0; i < waypoints.size(); i++)
 			{
-				int[] xy = application.getXYbyLatLon(wpt.latitude, wpt.longitude);
+				int x = pxy[i * 2];
+				int y = pxy[i * 2 + 1];
 
 				if (i == 0)
 				{
-					path.setLastPoint(xy[0] - cxy[0], xy[1] - cxy[1]);
-					lastX = xy[0];
-					lastY = xy[1];
+					path.setLastPoint(x - cxy[0], y - cxy[1]);
+					lastX = x;
+					lastY = y;
 				}
 				else
 				{
-					if (Math.abs(lastX - xy[0]) > 2 || Math.abs(lastY - xy[1]) > 2)
+					if (Math.abs(lastX - x) > 2 || Math.abs(lastY - y) > 2)
 					{
-						path.lineTo(xy[0] - cxy[0], xy[1] - cxy[1]);
-						lastX = xy[0];
-						lastY = xy[1];
+						path.lineTo(x - cxy[0], y - cxy[1]);
+						lastX = x;
+						lastY = y;
 					}
 				}
-				i++;
 			}
 		}
 		c.drawPath(path, linePaint);
@@ -256,8 +271,12 @@ public class RouteOverlay extends MapOverlay
 
 		synchronized (waypoints)
 		{
-			for (Waypoint wpt : waypoints)
+			int[] pxy = getProjection(waypoints);
+			if (pxy == null)
+				return;
+			for (int i = 0; i < waypoints.size(); i++)
 			{
+				Waypoint wpt = waypoints.get(i);
 				Bitmap bitmap = bitmaps.get(wpt);
 				if (bitmap == null)
 				{
@@ -294,17 +313,74 @@ public class RouteOverlay extends MapOverlay
 					}
 					bitmaps.put(wpt, bitmap);
 				}
-				int[] xy = application.getXYbyLatLon(wpt.latitude, wpt.longitude);
-
 				Matrix matrix = new Matrix();
 				if (viewport.mapHeading != 0f)
 					matrix.preRotate(viewport.mapHeading, half, half);
-				matrix.postTranslate(xy[0] - half - cxy[0], xy[1] - half - cxy[1]);
+				matrix.postTranslate(pxy[i * 2] - half - cxy[0], pxy[i * 2 + 1] - half - cxy[1]);
 				c.drawBitmap(bitmap, matrix, null);
 			}
 		}
 	}
 
+	/**
+	 * Returns map pixel coordinates of route waypoints in pairs. Coordinates are cached per map
+	 * and zoom and are projected again in bulk only if waypoints were changed. Waypoints
+	 * should be locked by caller.
+	 *
+	 * @return coordinates or null if there is no map
+	 */
+	private int[] getProjection(List<Waypoint> waypoints)
+	{
+		BaseMap map = application.getCurrentMap();
+		if (map == null)
+			return null;
+		long key = TrackOverlay.getProjectionKey(map);
+		synchronized (projections)
+		{
+			Projection projection = projections.get(key);
+			if (projection == null)
+			{
+				projection = new Projection();
+				projections.put(key, projection);
+			}
+			if (!projection.matches(waypoints))
+			{
+				int n = waypoints.size();
+				projection.latitudes = new double[n];
+				projection.longitudes = new double[n];
+				projection.xy = new int[n * 2];
+				for (int i = 0; i < n; i++)
+				{
+					Waypoint wpt = waypoints.get(i);
+					projection.latitudes[i] = wpt.latitude;
+					projection.longitudes[i] = wpt.longitude;
+				}
+				map.getXYByLatLon(projection.latitudes, projection.longitudes, projection.xy);
+			}
+			return projection.xy;
+		}
+	}
+
+	private static class Projection
+	{
+		double[] latitudes = new double[0];
+		double[] longitudes = new double[0];
+		int[] xy;
+
+		boolean matches(List<Waypoint> waypoints)
+		{
+			if (xy == null || latitudes.length != waypoints.size())
+				return false;
+			for (int i = 0; i < latitudes.length; i++)
+			{
+				Waypoint wpt = waypoints.get(i);
+				if (wpt.latitude != latitudes[i] || wpt.longitude != longitudes[i])
+					return false;
+			}
+			return true;
+		}
+	}
+
 	@Override
 	public void onPreferencesChanged(SharedPreferences settings)
 	{
@@ -20,24 +20,40 @@
 
 package com.androzic.overlay;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import android.content.SharedPreferences;
 import android.content.res.Resources;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.Path;
+import android.graphics.Rect;
 import android.preference.PreferenceManager;
+import android.view.MotionEvent;
 
+import com.androzic.MapView;
 import com.androzic.R;
 import com.androzic.data.Track;
+import com.androzic.data.TrackPyramid;
+import com.androzic.map.BaseMap;
 import com.androzic.ui.Viewport;
 
 public class TrackOverlay extends MapOverlay
 {
+	private static final ExecutorService simplifier = Executors.newSingleThreadExecutor();
+	private static final ExecutorService projectors = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
 	Paint paint;
 	Track track;
 
+	private TrackPyramid pyramid;
+	private final TrackPyramid.Vertices vertices = new TrackPyramid.Vertices();
+	private volatile boolean simplifying = false;
+
 	private boolean preserveWidth = false;
 	private boolean preserveColor = false;
 
@@ -110,43 +126,68 @@ public class TrackOverlay extends MapOverlay
 	@Override
 	public void onMapChanged()
 	{
-		synchronized (track)
-		{
-			for (Track.TrackSegment segment : track.getSegments())
-			{
-				synchronized (segment)
-				{
-					List<Track.TrackPoint> points = segment.getPoints();
-					for (Track.TrackPoint tp : points)
-					{
-						tp.dirty = true;
-					}
-				}
-			}
-		}
+		// Projections are cached per map and zoom, so nothing has to be invalidated
 		application.getMapHolder().refreshMap();
 	}
 
+	/**
+	 * Returns key that identifies map pixel coordinates produced by the map at its current zoom.
+	 * Map instance is used instead of map id, as reloaded map has the same id but may have
+	 * different calibration.
+	 */
+	static long getProjectionKey(BaseMap map)
+	{
+		return ((long) map.getInstance() << 32) | (Float.floatToIntBits((float) map.getZoom()) & 0xffffffffL);
+	}
+
+	@Override
+	public boolean onSingleTap(MotionEvent e, Rect mapTap, MapView mapView)
+	{
+		if (!track.show)
+			return false;
+
+		BaseMap map = application.getCurrentMap();
+		if (map == null)
+			return false;
+		double[] ll = new double[2];
+		application.getLatLonByXY(mapTap.centerX(), mapTap.centerY(), ll);
+		int i = track.getNearestPoint(ll[0], ll[1], mapTap.width() / 2 * map.getMPP());
+		if (i < 0)
+			return false;
+		return application.getMapHolder().trackTapped(track, i, (int) e.getX(), (int) e.getY());
+	}
+
 	@Override
 	public void onPrepareBuffer(final Viewport viewport, final Canvas c)
 	{
 		if (!track.show)
 			return;
 
-		final int[] cxy = viewport.mapCenterXY;
+		final BaseMap map = application.getCurrentMap();
+		if (map == null)
+			return;
 
-		int w2 = viewport.canvasWidth / 2;
-		int h2 = viewport.canvasHeight / 2;
-		int left = cxy[0] - w2;
-		int right = cxy[0] + w2;
-		int top = cxy[1] - h2;
-		int bottom = cxy[1] + h2;
+		final int[] cxy = viewport.mapCenterXY;
 
 		final Path path = new Path();
 		boolean first = true;
 		boolean skipped = false;
 		int lastX = 0, lastY = 0;
 		int[] xy = new int[2];
+
+		// Draw simplified track that matches current scale
+		int level = TrackPyramid.getLevel(map.getMPP());
+		TrackPyramid pyramid = getPyramid();
+
+		final long key = getProjectionKey(map);
+		final Track.Projector projector = new Track.Projector() {
+			@Override
+			public void project(double[] lat, double[] lon, int count, int[] xy)
+			{
+				map.getXYByLatLon(lat, lon, count, xy);
+			}
+		};
+		project(viewport, key, projector);
 		
 		synchronized (track)
 		{
@@ -156,23 +197,22 @@ public class TrackOverlay extends MapOverlay
 					continue;
 				synchronized (segment)
 				{
-					List<Track.TrackPoint> points = segment.getPoints();
-					if (points.size() == 0)
-						continue;
-					for (Track.TrackPoint tp : points)
+					Track.Projection projection = segment.getProjection(key, projector);
+					int n = segment.size();
+					if (level >= 0)
 					{
-						if (tp.dirty)
-						{
-							application.getXYbyLatLon(tp.latitude, tp.longitude, xy);
-							tp.x = xy[0];
-							tp.y = xy[1];
-							tp.dirty = false;
-						}
-						else
-						{
-							xy[0] = tp.x;
-							xy[1] = tp.y;
-						}
+						pyramid.getVertices(segment, level, vertices);
+						n = vertices.count;
+					}
+					int prev = 0;
+					for (int k = 0; k < n; k++)
+					{
+						int i = level >= 0 ? vertices.indices[k] : k;
+						// Legs that are off the screen are looked up in segment index
+						boolean visible = k == 0 || segment.intersects(prev, i, viewport.mapArea);
+						prev = i;
+						xy[0] = projection.getX(i);
+						xy[1] = projection.getY(i);
 		
 						if (first)
 						{
@@ -182,11 +222,7 @@ public class TrackOverlay extends MapOverlay
 							first = false;
 							continue;
 						}
-						if ((lastX == xy[0] && lastY == xy[1]) ||
-							lastX < left && cxy[0] < left ||
-							lastX > right && cxy[0] > right ||
-							lastY < top && cxy[1] < top ||
-							lastY > bottom && cxy[1] > bottom)
+						if ((lastX == xy[0] && lastY == xy[1]) || !visible)
 						{
 							lastX = xy[0];
 							lastY = xy[1];
@@ -198,7 +234,7 @@ public class TrackOverlay extends MapOverlay
 							path.moveTo(lastX - cxy[0], lastY - cxy[1]);
 							skipped = false;
 						}
-						if (tp.continous)
+						if (segment.isContinous(i))
 							path.lineTo(xy[0] - cxy[0], xy[1] - cxy[1]);
 						else
 							path.moveTo(xy[0] - cxy[0], xy[1] - cxy[1]);
@@ -209,6 +245,85 @@ public class TrackOverlay extends MapOverlay
 			}
 		}
 		c.drawPath(path, paint);
+
+		if (!simplifying && pyramid.needsUpdate())
+			simplify(pyramid);
+	}
+
+	/**
+	 * Projects visible segments that are not projected for current map yet in parallel.
+	 * Segments outside of viewport are projected only when they become visible.
+	 */
+	private void project(final Viewport viewport, final long key, final Track.Projector projector)
+	{
+		List<Track.TrackSegment> segments;
+		synchronized (track)
+		{
+			segments = new ArrayList<Track.TrackSegment>(track.getSegments());
+		}
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (final Track.TrackSegment segment : segments)
+		{
+			if (! viewport.mapArea.intersects(segment.bounds))
+				continue;
+			synchronized (segment)
+			{
+				if (segment.isProjected(key))
+					continue;
+			}
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call()
+				{
+					synchronized (segment)
+					{
+						segment.getProjection(key, projector);
+					}
+					return null;
+				}
+			});
+		}
+		// Single segment is projected while track is drawn
+		if (tasks.size() < 2)
+			return;
+		try
+		{
+			projectors.invokeAll(tasks);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private TrackPyramid getPyramid()
+	{
+		if (pyramid == null || pyramid.getTrack() != track)
+			pyramid = new TrackPyramid(track);
+		return pyramid;
+	}
+
+	/**
+	 * Extends track pyramid in background and redraws map when it is ready.
+	 */
+	private void simplify(final TrackPyramid pyramid)
+	{
+		simplifying = true;
+		simplifier.execute(new Runnable() {
+			@Override
+			public void run()
+			{
+				try
+				{
+					if (pyramid.update() && pyramid == TrackOverlay.this.pyramid)
+						application.getMapHolder().refreshMap();
+				}
+				finally
+				{
+					simplifying = false;
+				}
+			}
+		});
 	}
 
 	@Override
@@ -78,12 +78,14 @@ import com.androzic.MapView;
 import com.androzic.R;
 import com.androzic.SuitableMapsList;
 import com.androzic.data.Route;
+import com.androzic.data.Track;
 import com.androzic.data.Waypoint;
 import com.androzic.location.LocationService;
 import com.androzic.map.BaseMap;
 import com.androzic.navigation.NavigationService;
 import com.androzic.route.OnRouteActionListener;
 import com.androzic.route.RouteEdit;
+import com.androzic.track.OnTrackActionListener;
 import com.androzic.ui.TooltipManager;
 import com.androzic.util.Astro;
 import com.androzic.util.Clipboard;
@@ -107,6 +109,7 @@ public class MapFragment extends Fragment implements MapHolder, OnSharedPreferen
 
     private OnWaypointActionListener waypointActionsCallback;
     private OnRouteActionListener routeActionsCallback;
+    private OnTrackActionListener trackActionsCallback;
 
     // Settings
     /**
@@ -421,6 +424,11 @@ public class MapFragment extends Fragment implements MapHolder, OnSharedPreferen
         } catch (ClassCastException e) {
             throw new ClassCastException(activity.toString() + " must implement OnRouteActionListener");
         }
+        try {
+            trackActionsCallback = (OnTrackActionListener) activity;
+        } catch (ClassCastException e) {
+            throw new ClassCastException(activity.toString() + " must implement OnTrackActionListener");
+        }
     }
 
     @Override
@@ -920,6 +928,17 @@ public class MapFragment extends Fragment implements MapHolder, OnSharedPreferen
         return true;
     }
 
+    @Override
+    public boolean trackTapped(Track track, int index, int x, int y) {
+        if (track == application.editingTrack) {
+            track.editingPos = index;
+            map.refreshMap();
+        } else {
+            trackActionsCallback.onTrackDetails(track);
+        }
+        return true;
+    }
+
     @Override
     public boolean mapObjectTapped(long id, int x, int y) {
         mapObjectSelected = id;
@@ -44,8 +44,7 @@ import com.androzic.Androzic;
 import com.androzic.FragmentHolder;
 import com.androzic.R;
 import com.androzic.data.Track;
-import com.androzic.util.Geo;
-import com.androzic.util.MeanValue;
+import com.androzic.data.TrackStatistics;
 import com.androzic.util.StringFormatter;
 
 public class TrackDetails extends Fragment
@@ -221,48 +220,15 @@ public class TrackDetails extends Fragment
 		}
 		((TextView) view.findViewById(R.id.time_span)).setText(timeSpan);
 
-		// Gather statistics
-		int segmentCount = 0;
-		double minElevation = Double.MAX_VALUE;
-		double maxElevation = Double.MIN_VALUE;
-		double maxSpeed = 0;
-				
-		MeanValue mv = new MeanValue();
-
-		for (Track.TrackSegment segment : track.getSegments())
-		{
-			Track.TrackPoint ptp = null;
-			if (segment.independent)
-				segmentCount++;
-
-			for (Track.TrackPoint tp : segment.getPoints())
-			{
-				if (ptp != null)
-				{
-					double d = Geo.distance(tp.latitude, tp.longitude, ptp.latitude, ptp.longitude);
-					double speed = d / ((tp.time - ptp.time) / 1000);
-					if (speed == Double.POSITIVE_INFINITY)
-						continue;
-					mv.addValue(speed);
-					if (speed > maxSpeed)
-						maxSpeed = speed;
-				}
-				ptp = tp;
-				if (tp.elevation < minElevation && tp.elevation != 0)
-					minElevation = tp.elevation;
-				if (tp.elevation > maxElevation)
-					maxElevation = tp.elevation;
-			}
-		}
-
-		double averageSpeed = mv.getMeanValue();
+		TrackStatistics statistics = track.getStatistics();
+		int segmentCount = statistics.segmentCount;
 
 		((TextView) view.findViewById(R.id.segment_count)).setText(resources.getQuantityString(R.plurals.numberOfSegments, segmentCount, segmentCount));
 
-		((TextView) view.findViewById(R.id.max_elevation)).setText(StringFormatter.elevationH(maxElevation));
-		((TextView) view.findViewById(R.id.min_elevation)).setText(StringFormatter.elevationH(minElevation));
+		((TextView) view.findViewById(R.id.max_elevation)).setText(StringFormatter.elevationH(statistics.maxElevation));
+		((TextView) view.findViewById(R.id.min_elevation)).setText(StringFormatter.elevationH(statistics.minElevation));
 
-		((TextView) view.findViewById(R.id.max_speed)).setText(String.format(Locale.getDefault(), "%s: %s", resources.getString(R.string.max_speed), StringFormatter.speedH(maxSpeed)));
-		((TextView) view.findViewById(R.id.average_speed)).setText(String.format(Locale.getDefault(), "%s: %s", resources.getString(R.string.average_speed), StringFormatter.speedH(averageSpeed)));
+		((TextView) view.findViewById(R.id.max_speed)).setText(String.format(Locale.getDefault(), "%s: %s", resources.getString(R.string.max_speed), StringFormatter.speedH(statistics.maxSpeed)));
+		((TextView) view.findViewById(R.id.average_speed)).setText(String.format(Locale.getDefault(), "%s: %s", resources.getString(R.string.average_speed), StringFormatter.speedH(statistics.getAverageSpeed())));
 	}
 }
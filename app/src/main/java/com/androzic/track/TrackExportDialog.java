@@ -2,7 +2,6 @@ package com.androzic.track;
 
 import java.io.File;
 import java.util.Calendar;
-import java.util.List;
 
 import android.app.Activity;
 import android.app.Dialog;
@@ -163,9 +162,7 @@ public class TrackExportDialog extends DialogFragment implements TextWatcher
 					long end = endTime.getTimeInMillis();
 					
 					Track track = locationService.getTrack(start, end);
-					List<Track.TrackPoint> points = track.getAllPoints();
-					
-					if (points.size() < 2)
+					if (track.getPointCount() < 2)
 					{
 						activity.runOnUiThread(new Runnable() {
 							public void run()
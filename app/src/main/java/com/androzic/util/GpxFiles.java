@@ -46,7 +46,6 @@ import android.util.Xml;
 import com.androzic.Androzic;
 import com.androzic.data.Route;
 import com.androzic.data.Track;
-import com.androzic.data.Track.TrackPoint;
 import com.androzic.data.Waypoint;
 
 /**
@@ -134,22 +133,22 @@ public class GpxFiles
 		
 		boolean first = true;
 		serializer.startTag(GPX_NAMESPACE, GpxParser.TRKSEG);
-		List<TrackPoint> trackPoints = track.getAllPoints();
-		for (TrackPoint tp : trackPoints)
+		Track.Cursor tp = track.cursor();
+		while (tp.moveToNext())
 		{
-			if (!tp.continous && !first)
+			if (!tp.isContinous() && !first)
 			{
 				serializer.endTag(GPX_NAMESPACE, GpxParser.TRKSEG);
 				serializer.startTag(GPX_NAMESPACE, GpxParser.TRKSEG);
 			}
 			serializer.startTag(GPX_NAMESPACE, GpxParser.TRKPT);
-			serializer.attribute("", GpxParser.LAT, String.valueOf(tp.latitude));
-			serializer.attribute("", GpxParser.LON, String.valueOf(tp.longitude));
+			serializer.attribute("", GpxParser.LAT, String.valueOf(tp.getLatitude()));
+			serializer.attribute("", GpxParser.LON, String.valueOf(tp.getLongitude()));
 			serializer.startTag(GPX_NAMESPACE, GpxParser.ELE);
-			serializer.text(String.valueOf(tp.elevation));
+			serializer.text(String.valueOf(tp.getElevation()));
 			serializer.endTag(GPX_NAMESPACE, GpxParser.ELE);
 			serializer.startTag(GPX_NAMESPACE, GpxParser.TIME);
-			serializer.text(GpxParser.trktime.format(new Date(tp.time)));
+			serializer.text(GpxParser.trktime.format(new Date(tp.getTime())));
 			serializer.endTag(GPX_NAMESPACE, GpxParser.TIME);
 			serializer.endTag(GPX_NAMESPACE, GpxParser.TRKPT);
 			first = false;
@@ -281,8 +280,8 @@ class GpxParser extends DefaultHandler
 		// <trkpt>
 		if (localName.equalsIgnoreCase(TRKPT) && track != null)
 		{
-			track.addPoint(continous, Double.parseDouble(attributes.getValue(LAT)), Double.parseDouble(attributes.getValue(LON)), 0.0, 0.0, 0.0, 0.0, 0);
-			trkpt = track.getLastPoint();
+			// Point is added to track when all its properties are parsed
+			trkpt = new Track.TrackPoint(continous, Double.parseDouble(attributes.getValue(LAT)), Double.parseDouble(attributes.getValue(LON)), 0.0, 0.0, 0.0, 0.0, 0);
 			continous = true;
 		}
 		super.startElement(uri, localName, qName, attributes);
@@ -336,6 +335,7 @@ class GpxParser extends DefaultHandler
 		// </trkpt>
 		else if (trkpt != null && localName.equalsIgnoreCase(TRKPT))
 		{
+			track.addPoint(trkpt);
 			trkpt = null;
 		}
 		// </name>
@@ -48,7 +48,6 @@ import android.util.Xml;
 
 import com.androzic.data.Route;
 import com.androzic.data.Track;
-import com.androzic.data.Track.TrackPoint;
 import com.androzic.data.Waypoint;
 
 /**
@@ -154,20 +153,17 @@ public class KmlFiles
 		int part = 1;
 		boolean first = true;
 		startTrackPart(serializer, part, track.name);
-		List<TrackPoint> trackPoints = track.getAllPoints();
-		synchronized (trackPoints)
+		Track.Cursor tp = track.cursor();
+		while (tp.moveToNext())
 		{
-			for (TrackPoint tp : trackPoints)
+			if (!tp.isContinous() && !first)
 			{
-				if (!tp.continous && !first)
-				{
-					stopTrackPart(serializer);
-					part++;
-					startTrackPart(serializer, part, track.name);
-				}
-				serializer.text(String.format("%f,%f,%f ", tp.longitude, tp.latitude, tp.elevation));
-				first = false;
+				stopTrackPart(serializer);
+				part++;
+				startTrackPart(serializer, part, track.name);
 			}
+			serializer.text(String.format("%f,%f,%f ", tp.getLongitude(), tp.getLatitude(), tp.getElevation()));
+			first = false;
 		}
 		stopTrackPart(serializer);
 		serializer.endTag(KML_NAMESPACE, KmlParser.FOLDER);
@@ -217,12 +213,11 @@ public class KmlFiles
 		for (Track track : tracks)
 		{
 			Route route = new Route(track.name, track.description, track.show);
-			int i = 0;
-			for (Track.TrackPoint tp : track.getAllPoints())
+			Track.Cursor tp = track.cursor();
+			while (tp.moveToNext())
 			{
-				String name = "RWPT"+i;
-				route.addWaypoint(name, tp.latitude, tp.longitude);
-				i++;
+				String name = "RWPT"+tp.getIndex();
+				route.addWaypoint(name, tp.getLatitude(), tp.getLongitude());
 			}
 			routes.add(route);
 		}
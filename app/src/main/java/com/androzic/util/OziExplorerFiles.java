@@ -37,7 +37,6 @@ import java.util.Locale;
 
 import com.androzic.data.Route;
 import com.androzic.data.Track;
-import com.androzic.data.Track.TrackPoint;
 import com.androzic.data.Waypoint;
 import com.androzic.map.MapLoader;
 import com.jhlabs.map.Datum;
@@ -394,23 +393,20 @@ public class OziExplorerFiles
 	
 		//-27.350436, 153.055540,1,-777,36169.6307194, 09-Jan-99, 3:08:14 
 	
-        List<TrackPoint> trackPoints = track.getAllPoints();
-        synchronized (trackPoints)
-        {  
-	        for (TrackPoint tp : trackPoints)
-	        {
-	        	writer.write(coordFormat.format(tp.latitude)+","+coordFormat.format(tp.longitude)+",");
-	        	if (tp.continous)
-	        		writer.write("0");
-	        	else
-	        		writer.write("1");
-	        	writer.write(","+String.valueOf(Math.round(tp.elevation * 3.2808399)));
-	        	if (tp.time > 0)
-	        	{
-		        	writer.write(","+String.valueOf(TDateTime.toDateTime(tp.time)));
-	        	}
-	        	writer.write("\n");
-	        }
+        Track.Cursor tp = track.cursor();
+        while (tp.moveToNext())
+        {
+        	writer.write(coordFormat.format(tp.getLatitude())+","+coordFormat.format(tp.getLongitude())+",");
+        	if (tp.isContinous())
+        		writer.write("0");
+        	else
+        		writer.write("1");
+        	writer.write(","+String.valueOf(Math.round(tp.getElevation() * 3.2808399)));
+        	if (tp.getTime() > 0)
+        	{
+	        	writer.write(","+String.valueOf(TDateTime.toDateTime(tp.getTime())));
+        	}
+        	writer.write("\n");
         }
         writer.close();
 	}
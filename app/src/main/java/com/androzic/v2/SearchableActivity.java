@@ -556,7 +556,7 @@ public class SearchableActivity extends AppCompatActivity implements AdapterView
 				TextView textView = (TextView) v.findViewById(R.id.name);
 				String coords = StringFormatter.coordinates(" ", coordinates.lat, coordinates.lon);
 				textView.setText(coords);
-				double dist = Geo.distance(mLocation[0], mLocation[1], coordinates.lat, coordinates.lon);
+				double dist = Geo.distance(mLocation[0], mLocation[1], coordinates.lat, coordinates.lon, Geo.APPROXIMATE);
 				double bearing = Geo.bearing(mLocation[0], mLocation[1], coordinates.lat, coordinates.lon);
 				String distance = StringFormatter.distanceH(dist) + " " + StringFormatter.bearingSimpleH(bearing);
 				textView = (TextView) v.findViewById(R.id.distance);
@@ -569,7 +569,7 @@ public class SearchableActivity extends AppCompatActivity implements AdapterView
 				String coords = StringFormatter.coordinates(" ", waypoint.latitude, waypoint.longitude);
 				textView = (TextView) v.findViewById(R.id.coordinates);
 				textView.setText(coords);
-				double dist = Geo.distance(mLocation[0], mLocation[1], waypoint.latitude, waypoint.longitude);
+				double dist = Geo.distance(mLocation[0], mLocation[1], waypoint.latitude, waypoint.longitude, Geo.APPROXIMATE);
 				double bearing = Geo.bearing(mLocation[0], mLocation[1], waypoint.latitude, waypoint.longitude);
 				String distance = StringFormatter.distanceH(dist) + " " + StringFormatter.bearingSimpleH(bearing);
 				textView = (TextView) v.findViewById(R.id.distance);
@@ -696,7 +696,7 @@ public class SearchableActivity extends AppCompatActivity implements AdapterView
 				String coords = StringFormatter.coordinates(" ", address.getLatitude(), address.getLongitude());
 				textView = (TextView) v.findViewById(R.id.coordinates);
 				textView.setText(coords);
-				double dist = Geo.distance(mLocation[0], mLocation[1], address.getLatitude(), address.getLongitude());
+				double dist = Geo.distance(mLocation[0], mLocation[1], address.getLatitude(), address.getLongitude(), Geo.APPROXIMATE);
 				double bearing = Geo.bearing(mLocation[0], mLocation[1], address.getLatitude(), address.getLongitude());
 				String distance = StringFormatter.distanceH(dist) + " " + StringFormatter.bearingSimpleH(bearing);
 				textView = (TextView) v.findViewById(R.id.distance);
@@ -22,6 +22,7 @@ package com.androzic.waypoint;
 
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
 
 import android.annotation.SuppressLint;
@@ -420,7 +421,7 @@ public class WaypointList extends ListFragment implements FileListDialog.OnFileL
 			String coordinates = StringFormatter.coordinates(" ", wpt.latitude, wpt.longitude);
 			waypointHolder.coordinates.setText(coordinates);
 			
-			double dist = Geo.distance(loc[0], loc[1], wpt.latitude, wpt.longitude);
+			double dist = Geo.distance(loc[0], loc[1], wpt.latitude, wpt.longitude, Geo.APPROXIMATE);
 			double bearing = Geo.bearing(loc[0], loc[1], wpt.latitude, wpt.longitude);
 			String distance = StringFormatter.distanceH(dist) + " " + StringFormatter.bearingSimpleH(bearing);
 			waypointHolder.distance.setText(distance);
@@ -502,16 +503,31 @@ public class WaypointList extends ListFragment implements FileListDialog.OnFileL
 
 		public void sort(final int type)
 		{
-			Collections.sort(application.getWaypoints(), new Comparator<Waypoint>() {
+			List<Waypoint> waypoints = application.getWaypoints();
+			final IdentityHashMap<Waypoint, Double> distances = new IdentityHashMap<>(waypoints.size());
+			if (type == 1)
+			{
+				int n = waypoints.size();
+				double[] lats = new double[n];
+				double[] lons = new double[n];
+				double[] dists = new double[n];
+				for (int i = 0; i < n; i++)
+				{
+					Waypoint wpt = waypoints.get(i);
+					lats[i] = wpt.latitude;
+					lons[i] = wpt.longitude;
+				}
+				Geo.distances(loc[0], loc[1], lats, lons, n, Geo.APPROXIMATE, dists);
+				for (int i = 0; i < n; i++)
+					distances.put(waypoints.get(i), dists[i]);
+			}
+			Collections.sort(waypoints, new Comparator<Waypoint>() {
 				@Override
 				public int compare(Waypoint o1, Waypoint o2)
 				{
 					if (type == 1)
 					{
-						// TODO cache distances
-						double dist1 = Geo.distance(loc[0], loc[1], o1.latitude, o1.longitude);
-						double dist2 = Geo.distance(loc[0], loc[1], o2.latitude, o2.longitude);
-						return (Double.compare(dist1, dist2));
+						return (Double.compare(distances.get(o1), distances.get(o2)));
 					}
 					else
 					{
@@ -0,0 +1,16 @@
+package android.text;
+
+/**
+ * Headless replacement of Android text utilities used by library sources.
+ */
+public final class TextUtils
+{
+	private TextUtils()
+	{
+	}
+
+	public static boolean isEmpty(CharSequence str)
+	{
+		return str == null || str.length() == 0;
+	}
+}
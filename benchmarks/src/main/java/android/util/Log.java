@@ -0,0 +1,24 @@
+package android.util;
+
+/**
+ * Headless replacement of Android logger used by library sources.
+ */
+public final class Log
+{
+	public static final int VERBOSE = 2;
+	public static final int DEBUG = 3;
+	public static final int INFO = 4;
+	public static final int WARN = 5;
+	public static final int ERROR = 6;
+	public static final int ASSERT = 7;
+
+	private Log()
+	{
+	}
+
+	public static int println(int priority, String tag, String msg)
+	{
+		System.err.println(tag + ": " + msg);
+		return 0;
+	}
+}
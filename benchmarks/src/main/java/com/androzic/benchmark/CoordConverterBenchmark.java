@@ -0,0 +1,79 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.androzic.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.coords.MGRSCoord;
+import gov.nasa.worldwind.geom.coords.UTMCoord;
+
+/**
+ * UTM and MGRS conversions used for coordinate formatting.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CoordConverterBenchmark
+{
+	private static final int POINTS = 256;
+
+	private double[] track;
+	private String[] mgrs;
+	private int i;
+
+	@Setup
+	public void setup()
+	{
+		track = Fixtures.track(POINTS);
+		mgrs = new String[POINTS];
+		for (int j = 0; j < POINTS; j++)
+			mgrs[j] = MGRSCoord.fromLatLon(Angle.fromDegrees(track[j * 2]), Angle.fromDegrees(track[j * 2 + 1])).toString();
+	}
+
+	@Benchmark
+	public UTMCoord utmFromLatLon()
+	{
+		i = (i + 1) % POINTS;
+		return UTMCoord.fromLatLon(Angle.fromDegrees(track[i * 2]), Angle.fromDegrees(track[i * 2 + 1]));
+	}
+
+	@Benchmark
+	public MGRSCoord mgrsFromLatLon()
+	{
+		i = (i + 1) % POINTS;
+		return MGRSCoord.fromLatLon(Angle.fromDegrees(track[i * 2]), Angle.fromDegrees(track[i * 2 + 1]));
+	}
+
+	@Benchmark
+	public MGRSCoord mgrsFromString()
+	{
+		i = (i + 1) % POINTS;
+		return MGRSCoord.fromString(mgrs[i]);
+	}
+}
@@ -0,0 +1,351 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.androzic.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import com.androzic.util.TDateTime;
+
+/**
+ * Synthetic map images and track files. All data is generated from fixed seeds so benchmark
+ * runs are comparable.
+ */
+final class Fixtures
+{
+	static final int TILE_SIZE = 64;
+
+	private static final byte[] d1_key =
+	{
+		(byte) 0x2D, (byte) 0x4A, (byte) 0x43, (byte) 0xF1, (byte) 0x27, (byte) 0x9B, (byte) 0x69, (byte) 0x4F,
+		(byte) 0x36, (byte) 0x52, (byte) 0x87, (byte) 0xEC, (byte) 0x5F, (byte) 0x42, (byte) 0x53, (byte) 0x22,
+		(byte) 0x9E, (byte) 0x8B, (byte) 0x2D, (byte) 0x83, (byte) 0x3D, (byte) 0xD2, (byte) 0x84, (byte) 0xBA,
+		(byte) 0xD8, (byte) 0x5B, (byte) 0x8B, (byte) 0xC0
+	};
+
+	// OZFX3 layout constants, see OzfDecoder
+	private static final int OZFX3_BYTES_PER_INFOBLOCK = 200;
+	private static final int OZFX3_INITIAL_KEY = 0x5A;
+	private static final int OZFX3_HEADER_LENGTH = 256;
+
+	private Fixtures()
+	{
+	}
+
+	/**
+	 * Returns palette indexes of one tile in OZF order (bottom-up rows). Image resembles
+	 * a topographic map: smooth areas crossed by contour-like lines.
+	 */
+	static byte[] tileIndexes(int c, int r)
+	{
+		byte[] data = new byte[TILE_SIZE * TILE_SIZE];
+		for (int y = 0; y < TILE_SIZE; y++)
+		{
+			int gy = r * TILE_SIZE + (TILE_SIZE - 1 - y);
+			for (int x = 0; x < TILE_SIZE; x++)
+			{
+				int gx = c * TILE_SIZE + x;
+				double h = Math.sin(gx / 97.) * 40 + Math.cos(gy / 131.) * 40 + Math.sin((gx + gy) / 53.) * 20;
+				int index = (int) (h + 100) & 0x3F;
+				if (((int) h) % 10 == 0)
+					index = 200;
+				if ((gx + 3 * gy) % 157 == 0)
+					index = 255;
+				data[y * TILE_SIZE + x] = (byte) index;
+			}
+		}
+		return data;
+	}
+
+	static byte[] compress(byte[] data)
+	{
+		// Best compression gives 0x78DA zlib signature expected by OZF decoder
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		deflater.setInput(data);
+		deflater.finish();
+		ByteArrayOutputStream out = new ByteArrayOutputStream(data.length);
+		byte[] buffer = new byte[4096];
+		while (!deflater.finished())
+			out.write(buffer, 0, deflater.deflate(buffer));
+		deflater.end();
+		return out.toByteArray();
+	}
+
+	static byte[] palette()
+	{
+		byte[] palette = new byte[256 * 4];
+		Random random = new Random(256);
+		for (int i = 0; i < 256; i++)
+		{
+			palette[i * 4] = (byte) random.nextInt(256);
+			palette[i * 4 + 1] = (byte) random.nextInt(256);
+			palette[i * 4 + 2] = (byte) random.nextInt(256);
+		}
+		return palette;
+	}
+
+	/**
+	 * Creates single scale OZF2 (raw) image.
+	 */
+	static File createOzf2(File dir, int width, int height) throws IOException
+	{
+		return createOzf(new File(dir, "synthetic.ozf2"), width, height, false);
+	}
+
+	/**
+	 * Creates single scale OZFX3 (encrypted) image, tiles are encrypted entirely.
+	 */
+	static File createOzfx3(File dir, int width, int height) throws IOException
+	{
+		return createOzf(new File(dir, "synthetic.ozfx3"), width, height, true);
+	}
+
+	private static File createOzf(File file, int width, int height, boolean encrypted) throws IOException
+	{
+		int xtiles = (width + TILE_SIZE - 1) / TILE_SIZE;
+		int ytiles = (height + TILE_SIZE - 1) / TILE_SIZE;
+		int key = OZFX3_INITIAL_KEY;
+
+		byte[][] tiles = new byte[xtiles * ytiles][];
+		for (int r = 0; r < ytiles; r++)
+			for (int c = 0; c < xtiles; c++)
+				tiles[r * xtiles + c] = compress(tileIndexes(c, r));
+
+		Output out = new Output(encrypted ? key : -1);
+
+		// File header
+		if (encrypted)
+		{
+			byte[] header = new byte[OZFX3_HEADER_LENGTH];
+			header[0] = (byte) 0x80;
+			header[1] = 0x77;
+			header[14] = (byte) OZFX3_BYTES_PER_INFOBLOCK;
+			header[0xA2] = (byte) OZFX3_INITIAL_KEY;
+			// Key block decodes to value that does not modify initial key
+			int keyblock = 15 + OZFX3_BYTES_PER_INFOBLOCK;
+			byte[] kb = {0, 0, 0, 0};
+			encode(kb, OZFX3_INITIAL_KEY);
+			System.arraycopy(kb, 0, header, keyblock, kb.length);
+			byte[] ozf3 = new byte[16];
+			putInt(ozf3, 0, 0);
+			putInt(ozf3, 4, width);
+			putInt(ozf3, 8, height);
+			putShort(ozf3, 12, 1);
+			putShort(ozf3, 14, 8);
+			encode(ozf3, key);
+			System.arraycopy(ozf3, 0, header, keyblock + 4, ozf3.length);
+			out.raw(header);
+		}
+		else
+		{
+			byte[] header = new byte[50];
+			putShort(header, 0, 0x7778);
+			putInt(header, 18, width);
+			putInt(header, 22, height);
+			putShort(header, 26, 1);
+			putShort(header, 28, 8);
+			out.raw(header);
+		}
+
+		// Scale header, palette and tile table
+		int scaleOffset = out.size();
+		out.putInt(width);
+		out.putInt(height);
+		out.putShort(xtiles);
+		out.putShort(ytiles);
+		out.chunk(palette());
+		int tilePos = out.size() + (tiles.length + 1) * 4;
+		for (byte[] tile : tiles)
+		{
+			out.putInt(tilePos);
+			tilePos += tile.length;
+		}
+		out.putInt(tilePos);
+		for (byte[] tile : tiles)
+			out.chunk(tile);
+
+		// Scales table
+		int tableOffset = out.size();
+		out.putInt(scaleOffset);
+		out.putInt(tableOffset);
+
+		FileOutputStream fos = new FileOutputStream(file);
+		fos.write(out.toByteArray());
+		fos.close();
+		return file;
+	}
+
+	private static void encode(byte[] data, int key)
+	{
+		for (int j = 0; j < data.length; j++)
+		{
+			byte c = d1_key[j % 0x1A];
+			c += (key & 0xFF);
+			data[j] ^= c;
+		}
+	}
+
+	private static void putInt(byte[] buffer, int pos, int value)
+	{
+		buffer[pos] = (byte) value;
+		buffer[pos + 1] = (byte) (value >>> 8);
+		buffer[pos + 2] = (byte) (value >>> 16);
+		buffer[pos + 3] = (byte) (value >>> 24);
+	}
+
+	private static void putShort(byte[] buffer, int pos, int value)
+	{
+		buffer[pos] = (byte) value;
+		buffer[pos + 1] = (byte) (value >>> 8);
+	}
+
+	/**
+	 * Little endian output which encrypts every written field separately, as OZFX3 reader decrypts them.
+	 */
+	private static class Output extends ByteArrayOutputStream
+	{
+		private final int key;
+
+		Output(int key)
+		{
+			this.key = key;
+		}
+
+		void raw(byte[] data)
+		{
+			write(data, 0, data.length);
+		}
+
+		void chunk(byte[] data)
+		{
+			byte[] copy = data.clone();
+			if (key >= 0)
+				encode(copy, key);
+			raw(copy);
+		}
+
+		void putInt(int value)
+		{
+			byte[] b = new byte[4];
+			Fixtures.putInt(b, 0, value);
+			chunk(b);
+		}
+
+		void putShort(int value)
+		{
+			byte[] b = new byte[2];
+			Fixtures.putShort(b, 0, value);
+			chunk(b);
+		}
+	}
+
+	/**
+	 * Returns coordinates of a random walk starting at 55.75, 37.62 as lat, lon pairs.
+	 */
+	static double[] track(int points)
+	{
+		double[] track = new double[points * 2];
+		Random random = new Random(points);
+		double lat = 55.75;
+		double lon = 37.62;
+		double bearing = 0;
+		for (int i = 0; i < points; i++)
+		{
+			bearing += random.nextGaussian() * 0.2;
+			double step = 0.00005 + random.nextDouble() * 0.0001;
+			lat += Math.cos(bearing) * step;
+			lon += Math.sin(bearing) * step * 1.8;
+			track[i * 2] = lat;
+			track[i * 2 + 1] = lon;
+		}
+		return track;
+	}
+
+	/**
+	 * Returns track point lines of OziExplorer PLT file.
+	 */
+	static String[] pltLines(int points)
+	{
+		double[] track = track(points);
+		String[] lines = new String[points];
+		long time = 1420070400000L;
+		for (int i = 0; i < points; i++)
+		{
+			lines[i] = String.format(Locale.US, "%11.7f,%12.7f,%d,%9.1f,%.7f, 01-Jan-15, 00:00:00", track[i * 2], track[i * 2 + 1], i == 0 ? 1 : 0, 500 + Math.sin(i / 50.) * 100, TDateTime.toDateTime(time + i * 1000L));
+		}
+		return lines;
+	}
+
+	static File createPlt(File dir, int points) throws IOException
+	{
+		File file = new File(dir, "synthetic.plt");
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		writer.write("OziExplorer Track Point File Version 2.1\nWGS 84\nAltitude is in Feet\nReserved 3\n");
+		writer.write("0,2,255,Synthetic,0,0\n0\n");
+		for (String line : pltLines(points))
+		{
+			writer.write(line);
+			writer.write('\n');
+		}
+		writer.close();
+		return file;
+	}
+
+	static File createGpx(File dir, int points) throws IOException
+	{
+		File file = new File(dir, "synthetic.gpx");
+		double[] track = track(points);
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<gpx version=\"1.1\" creator=\"benchmark\" xmlns=\"http://www.topografix.com/GPX/1/1\">\n<trk><name>Synthetic</name><trkseg>\n");
+		long time = 1420070400L;
+		for (int i = 0; i < points; i++)
+		{
+			long t = time + i;
+			writer.write(String.format(Locale.US, "<trkpt lat=\"%.7f\" lon=\"%.7f\"><ele>%.1f</ele><time>2015-01-01T%02d:%02d:%02dZ</time></trkpt>\n", track[i * 2], track[i * 2 + 1], 150 + Math.sin(i / 50.) * 30, (t / 3600) % 24, (t / 60) % 60, t % 60));
+		}
+		writer.write("</trkseg></trk>\n</gpx>\n");
+		writer.close();
+		return file;
+	}
+
+	static File createTempDir() throws IOException
+	{
+		File dir = File.createTempFile("androzic", "bench");
+		if (!dir.delete() || !dir.mkdir())
+			throw new IOException("Can not create temporary directory");
+		return dir;
+	}
+
+	static void deleteDir(File dir)
+	{
+		File[] files = dir.listFiles();
+		if (files != null)
+			for (File file : files)
+				file.delete();
+		dir.delete();
+	}
+}
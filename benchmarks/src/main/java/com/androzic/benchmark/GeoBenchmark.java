@@ -0,0 +1,120 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.androzic.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.androzic.util.Geo;
+
+/**
+ * Geodesic calculations performed for every track point and navigation update.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GeoBenchmark
+{
+	private static final int POINTS = 1024;
+
+	private double[] track;
+	private double[] lats;
+	private double[] lons;
+	private double[] result;
+	private int i;
+
+	@Setup
+	public void setup()
+	{
+		track = Fixtures.track(POINTS + 1);
+		lats = new double[POINTS + 1];
+		lons = new double[POINTS + 1];
+		for (int j = 0; j <= POINTS; j++)
+		{
+			lats[j] = track[j * 2];
+			lons[j] = track[j * 2 + 1];
+		}
+		result = new double[POINTS + 1];
+	}
+
+	@Benchmark
+	public double distance()
+	{
+		i = (i + 1) % POINTS;
+		return Geo.distance(track[i * 2], track[i * 2 + 1], track[i * 2 + 2], track[i * 2 + 3]);
+	}
+
+	@Benchmark
+	public double distanceAccurate()
+	{
+		i = (i + 1) % POINTS;
+		return Geo.distance(track[i * 2], track[i * 2 + 1], track[i * 2 + 2], track[i * 2 + 3], Geo.ACCURATE);
+	}
+
+	/**
+	 * Distance to a point far enough to require Andoyer-Lambert formula.
+	 */
+	@Benchmark
+	public double distanceFarApproximate()
+	{
+		i = (i + 1) % POINTS;
+		return Geo.distance(track[i * 2], track[i * 2 + 1], track[i * 2] - 40, track[i * 2 + 1] + 60, Geo.APPROXIMATE);
+	}
+
+	@Benchmark
+	public double distanceFar()
+	{
+		i = (i + 1) % POINTS;
+		return Geo.distance(track[i * 2], track[i * 2 + 1], track[i * 2] - 40, track[i * 2 + 1] + 60);
+	}
+
+	/**
+	 * Leg distances of the whole track.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public double[] distances()
+	{
+		Geo.distances(lats, lons, POINTS + 1, Geo.ACCURATE, result);
+		return result;
+	}
+
+	@Benchmark
+	public double bearing()
+	{
+		i = (i + 1) % POINTS;
+		return Geo.bearing(track[i * 2], track[i * 2 + 1], track[i * 2 + 2], track[i * 2 + 3]);
+	}
+
+	@Benchmark
+	public double[] projection()
+	{
+		i = (i + 1) % POINTS;
+		return Geo.projection(track[i * 2], track[i * 2 + 1], 1000, i % 360);
+	}
+}
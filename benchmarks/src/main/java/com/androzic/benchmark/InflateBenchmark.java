@@ -0,0 +1,113 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.androzic.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.androzic.map.ozf.JZlibTileInflater;
+import com.androzic.map.ozf.TileInflater;
+import com.androzic.map.ozf.ZipTileInflater;
+import com.jcraft.jzlib.JZlib;
+import com.jcraft.jzlib.ZStream;
+
+/**
+ * Inflates single OZF tile with freshly initialized and with reset jzlib inflater and with
+ * tile inflaters available to OzfDecoder.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InflateBenchmark
+{
+	private byte[] tile;
+	private byte[] decompressed;
+	private ZStream zip;
+	private ZStream reusable;
+	private TileInflater jzlibInflater;
+	private TileInflater platformInflater;
+
+	@Setup
+	public void setup()
+	{
+		tile = Fixtures.compress(Fixtures.tileIndexes(3, 5));
+		decompressed = new byte[Fixtures.TILE_SIZE * Fixtures.TILE_SIZE];
+		zip = new ZStream();
+		reusable = new ZStream();
+		reusable.inflateInit();
+		jzlibInflater = new JZlibTileInflater();
+		platformInflater = new ZipTileInflater();
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		jzlibInflater.end();
+		platformInflater.end();
+	}
+
+	@Benchmark
+	public long jzlib()
+	{
+		zip.next_in = tile;
+		zip.avail_in = tile.length;
+		zip.next_in_index = 0;
+		zip.next_out = decompressed;
+		zip.avail_out = decompressed.length;
+		zip.next_out_index = 0;
+
+		zip.inflateInit();
+		zip.inflate(JZlib.Z_FINISH);
+		long size = zip.total_out;
+		zip.inflateEnd();
+		return size;
+	}
+
+	@Benchmark
+	public long jzlibReset()
+	{
+		reusable.inflateReset();
+		reusable.setInput(tile, 0, tile.length, false);
+		reusable.setOutput(decompressed, 0, decompressed.length);
+		reusable.inflate(JZlib.Z_FINISH);
+		return reusable.total_out;
+	}
+
+	@Benchmark
+	public int jzlibTileInflater() throws DataFormatException
+	{
+		return jzlibInflater.inflate(tile, 0, tile.length, decompressed, decompressed.length);
+	}
+
+	@Benchmark
+	public int platformTileInflater() throws DataFormatException
+	{
+		return platformInflater.inflate(tile, 0, tile.length, decompressed, decompressed.length);
+	}
+}
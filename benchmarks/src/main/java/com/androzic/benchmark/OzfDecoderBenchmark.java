@@ -0,0 +1,84 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.androzic.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.androzic.map.ozf.OzfDecoder;
+import com.androzic.map.ozf.OzfFile;
+
+/**
+ * Reads, decrypts, inflates and converts to ARGB tiles of synthetic OZF images.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OzfDecoderBenchmark
+{
+	private static final int WIDTH = 1024;
+	private static final int HEIGHT = 768;
+
+	@Param({"ozf2", "ozfx3"})
+	public String format;
+
+	private File dir;
+	private OzfFile file;
+	private int xtiles;
+	private int ytiles;
+	private int tile;
+
+	@Setup
+	public void setup() throws IOException
+	{
+		dir = Fixtures.createTempDir();
+		File image = "ozfx3".equals(format) ? Fixtures.createOzfx3(dir, WIDTH, HEIGHT) : Fixtures.createOzf2(dir, WIDTH, HEIGHT);
+		file = OzfDecoder.open(image);
+		xtiles = OzfDecoder.num_tiles_per_x(file, 0);
+		ytiles = OzfDecoder.num_tiles_per_y(file, 0);
+		if (OzfDecoder.getTile(file, 0, 0, 0, Fixtures.TILE_SIZE, Fixtures.TILE_SIZE) == null)
+			throw new IOException("Failed to decode synthetic image");
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		OzfDecoder.close(file);
+		Fixtures.deleteDir(dir);
+	}
+
+	@Benchmark
+	public int[] getTile()
+	{
+		tile = (tile + 1) % (xtiles * ytiles);
+		return OzfDecoder.getTile(file, 0, tile % xtiles, tile / xtiles, Fixtures.TILE_SIZE, Fixtures.TILE_SIZE);
+	}
+}
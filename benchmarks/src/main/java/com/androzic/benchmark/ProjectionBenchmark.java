@@ -0,0 +1,123 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.androzic.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.jhlabs.Point2D;
+import com.jhlabs.map.Ellipsoid;
+import com.jhlabs.map.proj.Projection;
+import com.jhlabs.map.proj.ProjectionFactory;
+
+/**
+ * Forward and inverse transformations of projections commonly used by OziExplorer maps.
+ * Projections are created the same way MapLoader creates them. Bulk benchmarks convert
+ * all points in one call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProjectionBenchmark
+{
+	private static final int POINTS = 1024;
+
+	@Param({"+proj=tmerc +lon_0=39 +k=1 +x_0=500000 +y_0=0", "+proj=merc +lon_0=0 +x_0=0 +y_0=0", "+proj=lcc +lat_1=53 +lat_2=57 +lat_0=55 +lon_0=37 +x_0=0 +y_0=0", "+proj=utm +zone=37"})
+	public String spec;
+
+	private Projection projection;
+	private double[] track;
+	private double[] projected;
+	private double[] lat;
+	private double[] lon;
+	private double[] x;
+	private double[] y;
+	private final Point2D.Double src = new Point2D.Double();
+	private final Point2D.Double dst = new Point2D.Double();
+	private int i;
+
+	@Setup
+	public void setup()
+	{
+		projection = ProjectionFactory.fromPROJ4Specification(spec.split(" "));
+		projection.setEllipsoid(Ellipsoid.WGS_1984);
+		projection.initialize();
+		track = Fixtures.track(POINTS);
+		projected = new double[POINTS * 2];
+		lat = new double[POINTS];
+		lon = new double[POINTS];
+		x = new double[POINTS];
+		y = new double[POINTS];
+		for (int j = 0; j < POINTS; j++)
+		{
+			projection.transform(track[j * 2 + 1], track[j * 2], dst);
+			projected[j * 2] = dst.x;
+			projected[j * 2 + 1] = dst.y;
+			lat[j] = track[j * 2];
+			lon[j] = track[j * 2 + 1];
+		}
+	}
+
+	@Benchmark
+	public Point2D.Double transform()
+	{
+		i = (i + 1) % POINTS;
+		return projection.transform(track[i * 2 + 1], track[i * 2], dst);
+	}
+
+	@Benchmark
+	public Point2D.Double inverseTransform()
+	{
+		i = (i + 1) % POINTS;
+		src.x = projected[i * 2];
+		src.y = projected[i * 2 + 1];
+		return projection.inverseTransform(src, dst);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public double[] transformBulk()
+	{
+		projection.transform(lon, lat, x, y, 0, POINTS);
+		return y;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public double[] inverseTransformBulk()
+	{
+		for (int j = 0; j < POINTS; j++)
+		{
+			x[j] = projected[j * 2];
+			y[j] = projected[j * 2 + 1];
+		}
+		projection.inverseTransform(x, y, x, y, 0, POINTS);
+		return y;
+	}
+}
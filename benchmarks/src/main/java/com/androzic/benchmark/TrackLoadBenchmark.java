@@ -0,0 +1,176 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.androzic.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import com.androzic.data.Track;
+import com.androzic.util.CSV;
+import com.androzic.util.TDateTime;
+
+/**
+ * Loads synthetic track files into Track. Parsing loops mirror OziExplorerFiles and GpxFiles
+ * which depend on Android and can not be used directly.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TrackLoadBenchmark
+{
+	private static final int POINTS = 10000;
+
+	private File dir;
+	private File plt;
+	private File gpx;
+	private SAXParser parser;
+
+	@Setup
+	public void setup() throws IOException, ParserConfigurationException, SAXException
+	{
+		dir = Fixtures.createTempDir();
+		plt = Fixtures.createPlt(dir, POINTS);
+		gpx = Fixtures.createGpx(dir, POINTS);
+		SAXParserFactory factory = SAXParserFactory.newInstance();
+		factory.setNamespaceAware(true);
+		parser = factory.newSAXParser();
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		Fixtures.deleteDir(dir);
+	}
+
+	@Benchmark
+	public Track loadPlt() throws IOException
+	{
+		Track track = new Track();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(plt), "UTF-8"));
+		String line;
+		// skip header
+		for (int i = 0; i < 6; i++)
+			reader.readLine();
+		while ((line = reader.readLine()) != null)
+		{
+			String[] fields = CSV.parseLine(line);
+			long time = fields.length > 4 ? TDateTime.fromDateTime(Double.parseDouble(fields[4])) : 0L;
+			double elevation = fields.length > 3 ? Double.parseDouble(fields[3]) * 0.3048 : 0;
+			if (fields.length >= 3)
+				track.addPoint("0".equals(fields[2]), Double.parseDouble(fields[0]), Double.parseDouble(fields[1]), elevation, 0.0, 0.0, 0.0, time);
+		}
+		reader.close();
+		return track;
+	}
+
+	@Benchmark
+	public Track loadGpx() throws IOException, SAXException
+	{
+		GpxHandler handler = new GpxHandler();
+		parser.parse(gpx, handler);
+		return handler.track;
+	}
+
+	private static class GpxHandler extends DefaultHandler
+	{
+		private final StringBuilder builder = new StringBuilder();
+		private final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+		Track track;
+		Track.TrackPoint trkpt;
+		boolean continous;
+
+		GpxHandler()
+		{
+			format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		}
+
+		@Override
+		public void characters(char[] ch, int start, int length)
+		{
+			builder.append(ch, start, length);
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes)
+		{
+			builder.setLength(0);
+			if ("trk".equals(localName))
+				track = new Track();
+			else if ("trkseg".equals(localName))
+				continous = false;
+			else if ("trkpt".equals(localName) && track != null)
+			{
+				trkpt = new Track.TrackPoint(continous, Double.parseDouble(attributes.getValue("lat")), Double.parseDouble(attributes.getValue("lon")), 0.0, 0.0, 0.0, 0.0, 0);
+				continous = true;
+			}
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) throws SAXException
+		{
+			if (trkpt == null)
+				return;
+			if ("ele".equals(localName))
+			{
+				trkpt.elevation = Double.parseDouble(builder.toString());
+			}
+			else if ("time".equals(localName))
+			{
+				try
+				{
+					trkpt.time = format.parse(builder.toString()).getTime();
+				}
+				catch (ParseException e)
+				{
+					throw new SAXException(e);
+				}
+			}
+			else if ("trkpt".equals(localName))
+			{
+				track.addPoint(trkpt);
+				trkpt = null;
+			}
+		}
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.androzic.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.androzic.map.WebMercator;
+
+/**
+ * Tile map coordinate math: closed form Web Mercator kernel against the iterative
+ * implementation it replaced. Their agreement is checked by WebMercatorTest.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WebMercatorBenchmark
+{
+	private static final int POINTS = 1024;
+	private static final int ZOOM = 17;
+	private static final int TILE_SIZE = 256;
+	private static final double E = 0.0818197;
+
+	@Param({"false", "true"})
+	public boolean ellipsoid;
+
+	private double size;
+	private double[] lat;
+	private double[] lon;
+	private int[] xy;
+	private double[] ll;
+	private int i;
+
+	@Setup
+	public void setup()
+	{
+		size = WebMercator.tiles(ZOOM) * TILE_SIZE;
+		double[] track = Fixtures.track(POINTS);
+		lat = new double[POINTS];
+		lon = new double[POINTS];
+		for (int j = 0; j < POINTS; j++)
+		{
+			lat[j] = track[j * 2];
+			lon[j] = track[j * 2 + 1];
+		}
+		xy = new int[POINTS * 2];
+		ll = new double[2];
+	}
+
+	@Benchmark
+	public int[] forward()
+	{
+		i = (i + 1) % POINTS;
+		xy[0] = (int) Math.floor(WebMercator.x(lon[i]) * size);
+		xy[1] = (int) Math.floor(WebMercator.y(lat[i], ellipsoid) * size);
+		return xy;
+	}
+
+	@Benchmark
+	public int[] legacyForward()
+	{
+		i = (i + 1) % POINTS;
+		legacyXY(lat[i], lon[i], xy);
+		return xy;
+	}
+
+	@Benchmark
+	public int[] forwardBulk()
+	{
+		WebMercator.getXYByLatLon(lat, lon, POINTS, size, ellipsoid, xy);
+		return xy;
+	}
+
+	@Benchmark
+	public double[] inverse()
+	{
+		i = (i + 1) % POINTS;
+		ll[0] = WebMercator.latitude(i * 113 / size + 0.3, ellipsoid);
+		ll[1] = WebMercator.longitude(i * 127 / size + 0.4);
+		return ll;
+	}
+
+	@Benchmark
+	public double[] legacyInverse()
+	{
+		i = (i + 1) % POINTS;
+		legacyLatLon((int) (i * 127 + 0.4 * size), (int) (i * 113 + 0.3 * size), ll);
+		return ll;
+	}
+
+	private void legacyXY(double lat, double lon, int[] xy)
+	{
+		double n = Math.pow(2.0, ZOOM);
+		xy[0] = (int) Math.floor((lon + 180.0) / 360.0 * n * TILE_SIZE);
+		if (ellipsoid)
+		{
+			double z = Math.sin(Math.toRadians(lat));
+			xy[1] = (int) Math.floor((1 - (atanh(z) - E * atanh(E * z)) / Math.PI) / 2 * n * TILE_SIZE);
+		}
+		else
+		{
+			xy[1] = (int) Math.floor((1 - (Math.log(Math.tan(Math.toRadians(lat)) + 1 / Math.cos(Math.toRadians(lat))) / Math.PI)) / 2 * n * TILE_SIZE);
+		}
+	}
+
+	private void legacyLatLon(int map_x, int map_y, double[] ll)
+	{
+		double dx = map_x * 1. / TILE_SIZE;
+		double dy = map_y * 1. / TILE_SIZE;
+		double n = Math.pow(2.0, ZOOM);
+		if (ellipsoid)
+		{
+			double Zu = 2 * Math.atan(Math.exp((map_y - TILE_SIZE * n / 2) / -(TILE_SIZE * n / (2 * Math.PI)))) - Math.PI / 2;
+			double Zum1 = Zu + 1;
+			double yy = (map_y - TILE_SIZE * n / 2);
+			int i = 100000;
+			while ((Math.abs(Zum1 - Zu) > 0.0000001) && (i != 0))
+			{
+				i--;
+				Zum1 = Zu;
+				Zu = Math.asin(1 - ((1 + Math.sin(Zum1)) * Math.pow(1 - E * Math.sin(Zum1), E))
+						/ (Math.exp((2 * yy) / -(TILE_SIZE * n / (2 * Math.PI))) * Math.pow(1 + E * Math.sin(Zum1), E)));
+			}
+			ll[0] = Math.toDegrees(Zu);
+		}
+		else
+		{
+			ll[0] = Math.toDegrees(Math.atan((Math.sinh(Math.PI * (1 - 2 * dy / n)))));
+		}
+		ll[1] = dx * 360.0 / n - 180.0;
+	}
+
+	private static double atanh(double arg)
+	{
+		return 0.5 * Math.log((1 + arg) / (1 - arg));
+	}
+}
@@ -0,0 +1,176 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.androzic.export;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.androzic.map.MapPoint;
+import com.androzic.map.mbtiles.JdbcMBTilesStore;
+import com.androzic.map.mbtiles.MBTilesExporter;
+import com.androzic.map.ozf.ImageTransform;
+import com.androzic.map.ozf.OzfDecoder;
+import com.androzic.map.ozf.OzfFile;
+import com.jhlabs.map.Ellipsoid;
+import com.jhlabs.map.proj.Projection;
+import com.jhlabs.map.proj.ProjectionFactory;
+
+/**
+ * Headless OziExplorer map to MBTiles converter. Map calibration is given in command line
+ * because .map parser depends on Android, coordinates are WGS84 degrees.
+ */
+public class MBTilesExport
+{
+	private static final String USAGE =
+			"Usage: MBTilesExport <PROJ.4 spec> [options] <image.ozf> <output.mbtiles>\n" +
+			"  +param=value             map projection, e.g. +proj=tmerc +lon_0=39 +k=1 +x_0=500000 +ellps=WGS84\n" +
+			"  --point x,y,lat,lon      calibration point in image pixels, at least three are required\n" +
+			"  --corner lat,lon         map border polygon vertex, whole image is exported if not set\n" +
+			"  --zoom min-max           zoom range, by default it is calculated from map scale\n" +
+			"  --threads n              number of rendering threads\n" +
+			"  --name title             map name stored in metadata";
+
+	public static void main(String[] args) throws Exception
+	{
+		List<String> proj = new ArrayList<>();
+		List<MapPoint> points = new ArrayList<>();
+		List<MapPoint> corners = new ArrayList<>();
+		int minZoom = -1;
+		int maxZoom = -1;
+		int threads = 0;
+		String name = null;
+		List<String> files = new ArrayList<>();
+
+		try
+		{
+			for (int i = 0; i < args.length; i++)
+			{
+				String arg = args[i];
+				if (arg.startsWith("+"))
+				{
+					proj.add(arg);
+					continue;
+				}
+				if (!arg.startsWith("--"))
+				{
+					files.add(arg);
+					continue;
+				}
+				if (i + 1 >= args.length)
+					throw new IllegalArgumentException("Missing value of " + arg);
+				String value = args[++i];
+				if ("--point".equals(arg))
+				{
+					String[] fields = split(value, 4);
+					MapPoint mp = new MapPoint();
+					mp.x = Integer.parseInt(fields[0]);
+					mp.y = Integer.parseInt(fields[1]);
+					mp.lat = Double.parseDouble(fields[2]);
+					mp.lon = Double.parseDouble(fields[3]);
+					points.add(mp);
+				}
+				else if ("--corner".equals(arg))
+				{
+					String[] fields = split(value, 2);
+					MapPoint mp = new MapPoint();
+					mp.lat = Double.parseDouble(fields[0]);
+					mp.lon = Double.parseDouble(fields[1]);
+					corners.add(mp);
+				}
+				else if ("--zoom".equals(arg))
+				{
+					String[] fields = value.split("-");
+					minZoom = Integer.parseInt(fields[0].trim());
+					maxZoom = Integer.parseInt(fields[fields.length - 1].trim());
+				}
+				else if ("--threads".equals(arg))
+				{
+					threads = Integer.parseInt(value);
+				}
+				else if ("--name".equals(arg))
+				{
+					name = value;
+				}
+				else
+				{
+					throw new IllegalArgumentException("Unknown option " + arg);
+				}
+			}
+			if (files.size() != 2)
+				throw new IllegalArgumentException("Image and output files should be specified");
+			if (proj.isEmpty())
+				throw new IllegalArgumentException("Projection is not specified");
+			if (points.size() < 3)
+				throw new IllegalArgumentException("At least three calibration points are required");
+			if (!corners.isEmpty() && corners.size() < 3)
+				throw new IllegalArgumentException("At least three corners are required");
+		}
+		catch (IllegalArgumentException e)
+		{
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(1);
+			return;
+		}
+
+		Projection projection = ProjectionFactory.fromPROJ4Specification(proj.toArray(new String[proj.size()]));
+		if ("".equals(projection.getEllipsoid().shortName))
+			projection.setEllipsoid(Ellipsoid.WGS_1984);
+		projection.initialize();
+
+		File image = new File(files.get(0));
+		OzfFile ozf = OzfDecoder.open(image);
+		try
+		{
+			ImageTransform transform = ImageTransform.fit(projection, points, 1., 1.);
+			MapPoint[] bounds = corners.isEmpty() ? null : corners.toArray(new MapPoint[corners.size()]);
+			MBTilesExporter exporter = new MBTilesExporter(ozf, transform, bounds, new JdbcMBTilesStore(files.get(1)));
+			exporter.setName(name != null ? name : image.getName().replaceFirst("\\.[^.]*$", ""));
+			if (minZoom >= 0)
+				exporter.setZoomRange(minZoom, maxZoom);
+			if (threads > 0)
+				exporter.setThreads(threads);
+			exporter.setProgressListener(new MBTilesExporter.OnProgressListener() {
+				@Override
+				public void onProgress(int zoom, int done, int total)
+				{
+					System.out.println("zoom " + zoom + ": " + done + "/" + total);
+				}
+			});
+			exporter.export();
+		}
+		finally
+		{
+			OzfDecoder.close(ozf);
+		}
+	}
+
+	private static String[] split(String value, int count)
+	{
+		String[] fields = value.split(",");
+		if (fields.length != count)
+			throw new IllegalArgumentException("Expected " + count + " comma separated values: " + value);
+		for (int i = 0; i < count; i++)
+			fields[i] = fields[i].trim();
+		return fields;
+	}
+}
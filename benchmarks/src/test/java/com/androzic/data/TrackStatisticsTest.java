@@ -0,0 +1,189 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.androzic.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.androzic.util.Geo;
+
+/**
+ * Checks accumulated track statistics on synthetic point sequences.
+ */
+public class TrackStatisticsTest
+{
+	@Test
+	public void elevationChangesBelowThresholdAreIgnored()
+	{
+		TrackStatistics statistics = new TrackStatistics();
+		double[] elevations = {100, 103, 98, 104, 106, 102, 101, 100, 0, 94, 97};
+		for (int i = 0; i < elevations.length; i++)
+			statistics.addPoint(true, elevations[i], i * 1000L, 10);
+		// 100 -> 106 is a gain, 106 -> 100 and 100 -> 94 are losses, zero is unknown elevation
+		assertEquals(6, statistics.elevationGain, 0);
+		assertEquals(12, statistics.elevationLoss, 0);
+		assertEquals(94, statistics.minElevation, 0);
+		assertEquals(106, statistics.maxElevation, 0);
+	}
+
+	@Test
+	public void elevationNoiseDoesNotAccumulate()
+	{
+		TrackStatistics statistics = new TrackStatistics();
+		Random random = new Random(1);
+		for (int i = 0; i < 10000; i++)
+			statistics.addPoint(true, 200 + (random.nextDouble() * 2 - 1) * TrackStatistics.ELEVATION_THRESHOLD / 2, i * 1000L, 1);
+		assertEquals(0, statistics.elevationGain, 0);
+		assertEquals(0, statistics.elevationLoss, 0);
+	}
+
+	@Test
+	public void steadyClimbIsCountedFully()
+	{
+		TrackStatistics statistics = new TrackStatistics();
+		for (int i = 0; i <= 500; i++)
+			statistics.addPoint(true, 1000 + i, i * 1000L, 1);
+		// Gain is counted in steps exceeding threshold, the rest is below threshold
+		assertEquals(500, statistics.elevationGain, TrackStatistics.ELEVATION_THRESHOLD + 1);
+		assertEquals(0, statistics.elevationLoss, 0);
+	}
+
+	@Test
+	public void splitsCoverTrack()
+	{
+		TrackStatistics statistics = new TrackStatistics();
+		int count = 100;
+		double leg = 300;
+		for (int i = 0; i < count; i++)
+			statistics.addPoint(true, 100 + (i % 20 < 10 ? i % 20 : 20 - i % 20) * 3, i * 100000L, i > 0 ? leg : 0);
+		List<TrackStatistics.Split> splits = statistics.getSplits();
+		double distance = 0;
+		long time = 0;
+		double gain = 0;
+		double loss = 0;
+		for (int i = 0; i < splits.size(); i++)
+		{
+			TrackStatistics.Split split = splits.get(i);
+			if (i < splits.size() - 1)
+			{
+				assertTrue(split.distance >= TrackStatistics.SPLIT_DISTANCE);
+				assertTrue(split.distance < TrackStatistics.SPLIT_DISTANCE + leg);
+			}
+			assertEquals(3, split.maxSpeed, 1e-9);
+			distance += split.distance;
+			time += split.time;
+			gain += split.elevationGain;
+			loss += split.elevationLoss;
+		}
+		assertEquals(statistics.distance, distance, 1e-9);
+		assertEquals(statistics.movingTime + statistics.stoppedTime, time);
+		assertEquals(statistics.elevationGain, gain, 1e-9);
+		assertEquals(statistics.elevationLoss, loss, 1e-9);
+		assertEquals((count - 1) * leg, statistics.distance, 1e-9);
+	}
+
+	@Test
+	public void stopsAndBreaksAreSeparated()
+	{
+		TrackStatistics statistics = new TrackStatistics();
+		// 10 s legs: moving at 2 m/s, standing at 0.1 m/s, then a break and moving again
+		long t = 0;
+		statistics.addPoint(true, 0, t, 0);
+		for (int i = 0; i < 5; i++)
+			statistics.addPoint(true, 0, t += 10000, 20);
+		for (int i = 0; i < 5; i++)
+			statistics.addPoint(true, 0, t += 10000, 1);
+		statistics.addPoint(false, 0, t += 600000, 5000);
+		for (int i = 0; i < 5; i++)
+			statistics.addPoint(true, 0, t += 10000, 40);
+
+		assertEquals(1, statistics.segmentCount);
+		assertEquals(17, statistics.pointCount);
+		assertEquals(100000, statistics.movingTime);
+		assertEquals(50000, statistics.stoppedTime);
+		assertEquals(300, statistics.movingDistance, 1e-9);
+		assertEquals(5305, statistics.distance, 1e-9);
+		assertEquals(4, statistics.maxSpeed, 1e-9);
+		assertEquals(3, statistics.getMovingSpeed(), 1e-9);
+		// Mean of leg speeds, the leg across the break is not a speed sample
+		assertEquals((5 * 2 + 5 * 0.1 + 5 * 4) / 15, statistics.getAverageSpeed(), 1e-9);
+	}
+
+	@Test
+	public void copyIsIndependent()
+	{
+		TrackStatistics statistics = new TrackStatistics();
+		for (int i = 0; i < 20; i++)
+			statistics.addPoint(true, 100 + i * 10, i * 1000L, 200);
+		TrackStatistics copy = statistics.copy();
+		statistics.addPoint(true, 500, 20000, 200);
+		assertEquals(20, copy.pointCount);
+		assertEquals(4000, copy.distance, 1e-9);
+		assertEquals(190, copy.elevationGain, 1e-9);
+		assertEquals(4, copy.getSplits().size());
+		// Copy continues from the same state as original
+		copy.addPoint(true, 500, 20000, 200);
+		assertEquals(statistics.elevationGain, copy.elevationGain, 1e-9);
+		assertEquals(statistics.getSplits().size(), copy.getSplits().size());
+		assertEquals(statistics.getAverageSpeed(), copy.getAverageSpeed(), 1e-9);
+	}
+
+	@Test
+	public void resetClearsStatistics()
+	{
+		TrackStatistics statistics = new TrackStatistics();
+		for (int i = 0; i < 20; i++)
+			statistics.addPoint(i % 5 != 0, 100 + i * 10, i * 1000L, 200);
+		statistics.reset();
+		statistics.addPoint(true, 50, 0, 0);
+		statistics.addPoint(true, 60, 1000, 10);
+		assertEquals(2, statistics.pointCount);
+		assertEquals(0, statistics.segmentCount);
+		assertEquals(10, statistics.distance, 0);
+		assertEquals(10, statistics.elevationGain, 0);
+		assertEquals(50, statistics.minElevation, 0);
+		assertEquals(1, statistics.getSplits().size());
+	}
+
+	@Test
+	public void boundedTrackKeepsStatisticsOfAllPoints()
+	{
+		Track track = new Track("test", "", true, 50);
+		double[][] points = TrackTest.walk(new Random(31), 1000);
+		double distance = 0;
+		for (int i = 0; i < points.length; i++)
+		{
+			if (i > 0)
+				distance += Geo.distance(points[i - 1][0], points[i - 1][1], points[i][0], points[i][1], Geo.ACCURATE);
+			track.addPoint(true, points[i][0], points[i][1], 100, 0, 0, 0, i * 1000L);
+		}
+		TrackStatistics statistics = track.getStatistics();
+		assertEquals(1000, statistics.pointCount);
+		assertEquals(distance, statistics.distance, 1e-6 * distance);
+		track.clear();
+		assertEquals(0, track.getStatistics().pointCount);
+	}
+}
@@ -0,0 +1,246 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.androzic.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.androzic.util.Geo;
+
+/**
+ * Checks track bookkeeping and point queries against values recalculated from retained points.
+ */
+public class TrackTest
+{
+	private static final double METERS_PER_DEGREE = 111319.5;
+
+	@Test
+	public void boundedTrackKeepsNewestPoints()
+	{
+		Track track = new Track("test", "", true, 100);
+		double[][] points = walk(new Random(3), 1000);
+		for (int i = 0; i < points.length; i++)
+		{
+			add(track, points[i], true, i);
+			int count = Math.min(i + 1, 100);
+			assertEquals(count, track.getPointCount());
+			Track.TrackPoint oldest = track.getPoint(0);
+			assertEquals(points[i + 1 - count][0], oldest.latitude, 0);
+			assertEquals(points[i + 1 - count][1], oldest.longitude, 0);
+			assertEquals(i, track.getLastPoint().time);
+		}
+	}
+
+	@Test
+	public void boundedDistanceMatchesRetainedPoints()
+	{
+		Track track = new Track("test", "", true, 300);
+		Random random = new Random(5);
+		// Enough points to fill several segments, with breaks
+		double[][] points = walk(random, 12000);
+		for (int i = 0; i < points.length; i++)
+		{
+			add(track, points[i], i % 37 != 0, i);
+			if (i % 97 == 0 || i == points.length - 1)
+				assertDistance(track);
+		}
+		assertEquals(300, track.getPointCount());
+	}
+
+	@Test
+	public void decreasedLimitRemovesSeveralPoints()
+	{
+		Track track = new Track("test", "", true, 0);
+		double[][] points = walk(new Random(9), 500);
+		for (int i = 0; i < 400; i++)
+			add(track, points[i], true, i);
+		assertDistance(track);
+		track.maxPoints = 50;
+		add(track, points[400], true, 400);
+		assertEquals(50, track.getPointCount());
+		assertEquals(351, track.getPoint(0).time);
+		assertDistance(track);
+	}
+
+	@Test
+	public void segmentBoundsContainRetainedPoints()
+	{
+		Track track = new Track("test", "", true, 250);
+		double[][] points = walk(new Random(13), 6000);
+		for (int i = 0; i < points.length; i++)
+			add(track, points[i], i % 500 != 0, i);
+		for (Track.TrackSegment segment : track.getSegments())
+		{
+			for (int i = 0; i < segment.size(); i++)
+			{
+				double lat = segment.getLatitude(i);
+				double lon = segment.getLongitude(i);
+				assertTrue(segment.bounds.minLat <= lat && lat <= segment.bounds.maxLat);
+				assertTrue(segment.bounds.minLon <= lon && lon <= segment.bounds.maxLon);
+			}
+		}
+	}
+
+	@Test
+	public void clearResetsTrack()
+	{
+		Track track = new Track("test", "", true, 10);
+		double[][] points = walk(new Random(17), 30);
+		for (int i = 0; i < points.length; i++)
+			add(track, points[i], true, i);
+		track.clear();
+		assertEquals(0, track.getPointCount());
+		assertEquals(0, track.distance, 0);
+		add(track, points[0], true, 0);
+		add(track, points[1], true, 1);
+		assertDistance(track);
+	}
+
+	@Test
+	public void nearestPointMatchesBruteForce()
+	{
+		Random random = new Random(21);
+		for (long max : new long[] {0, 700})
+		{
+			Track track = new Track("test", "", true, max);
+			double[][] points = walk(random, 6000);
+			for (int i = 0; i < points.length; i++)
+				add(track, points[i], i % 1000 != 0, i);
+			List<Track.TrackPoint> retained = track.getAllPoints();
+			for (int q = 0; q < 300; q++)
+			{
+				Track.TrackPoint p = retained.get(random.nextInt(retained.size()));
+				double lat = p.latitude + (random.nextDouble() * 2 - 1) * 0.01;
+				double lon = p.longitude + (random.nextDouble() * 2 - 1) * 0.01;
+				double radius = Math.pow(10, random.nextDouble() * 3 + 1);
+				int expected = -1;
+				double min = radius * radius;
+				for (int i = 0; i < retained.size(); i++)
+				{
+					double d2 = distance2(lat, lon, retained.get(i));
+					if (d2 <= min)
+					{
+						min = d2;
+						expected = i;
+					}
+				}
+				int nearest = track.getNearestPoint(lat, lon, radius);
+				if (expected < 0)
+				{
+					assertEquals(-1, nearest);
+				}
+				else
+				{
+					assertTrue(nearest >= 0);
+					// Points at the same distance can be found in any order
+					assertEquals(min, distance2(lat, lon, retained.get(nearest)), 1e-9);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void pointsWithinMatchBruteForce()
+	{
+		Random random = new Random(23);
+		for (long max : new long[] {0, 700})
+		{
+			Track track = new Track("test", "", true, max);
+			double[][] points = walk(random, 6000);
+			for (int i = 0; i < points.length; i++)
+				add(track, points[i], i % 1000 != 0, i);
+			List<Track.TrackPoint> retained = track.getAllPoints();
+			for (int q = 0; q < 300; q++)
+			{
+				Track.TrackPoint p = retained.get(random.nextInt(retained.size()));
+				double lat = p.latitude + (random.nextDouble() * 2 - 1) * 0.01;
+				double lon = p.longitude + (random.nextDouble() * 2 - 1) * 0.01;
+				double radius = Math.pow(10, random.nextDouble() * 3 + 1);
+				List<Integer> expected = new ArrayList<Integer>();
+				for (int i = 0; i < retained.size(); i++)
+				{
+					if (distance2(lat, lon, retained.get(i)) <= radius * radius)
+						expected.add(i);
+				}
+				int[] within = track.getPointsWithin(lat, lon, radius);
+				assertEquals(expected.size(), within.length);
+				for (int i = 0; i < within.length; i++)
+					assertEquals((int) expected.get(i), within[i]);
+			}
+		}
+	}
+
+	/**
+	 * Square of distance on a plane tangent at query point, as approximated by track.
+	 */
+	private static double distance2(double lat, double lon, Track.TrackPoint point)
+	{
+		double dx = (point.longitude - lon) * METERS_PER_DEGREE * Math.cos(Math.toRadians(lat));
+		double dy = (point.latitude - lat) * METERS_PER_DEGREE;
+		return dx * dx + dy * dy;
+	}
+
+	/**
+	 * Returns random walk with legs from a meter to a kilometer.
+	 */
+	static double[][] walk(Random random, int count)
+	{
+		double[][] points = new double[count][2];
+		double lat = 55.75;
+		double lon = 37.62;
+		for (int i = 0; i < count; i++)
+		{
+			points[i][0] = lat;
+			points[i][1] = lon;
+			double step = Math.pow(10, random.nextDouble() * 3 - 5);
+			lat += (random.nextDouble() * 2 - 1) * step;
+			lon += (random.nextDouble() * 2 - 1) * step;
+		}
+		return points;
+	}
+
+	static void add(Track track, double[] point, boolean continous, long time)
+	{
+		track.addPoint(continous, point[0], point[1], 0, 0, 0, 0, time);
+	}
+
+	/**
+	 * Track distance includes legs between segments, as they are accounted when points are added.
+	 */
+	private static void assertDistance(Track track)
+	{
+		List<Track.TrackPoint> points = track.getAllPoints();
+		double expected = 0;
+		for (int i = 1; i < points.size(); i++)
+		{
+			Track.TrackPoint p = points.get(i - 1);
+			Track.TrackPoint c = points.get(i);
+			expected += Geo.distance(p.latitude, p.longitude, c.latitude, c.longitude, Geo.ACCURATE);
+		}
+		assertEquals(expected, track.distance, 1e-6 * expected + 1e-6);
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.androzic.map;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Checks closed form Web Mercator kernel against the iterative implementation it replaced.
+ */
+public class WebMercatorTest
+{
+	private static final int ZOOM = 17;
+	private static final int TILE_SIZE = 256;
+	private static final double E = 0.0818197;
+
+	@Test
+	public void sphereMatchesLegacy()
+	{
+		verify(false);
+	}
+
+	@Test
+	public void ellipsoidMatchesLegacy()
+	{
+		verify(true);
+	}
+
+	@Test
+	public void tilesArePowersOfTwo()
+	{
+		for (int z = -30; z <= 40; z++)
+			assertEquals(Math.pow(2, z), WebMercator.tiles(z), 0);
+	}
+
+	@Test
+	public void bulkMatchesSingle()
+	{
+		double size = WebMercator.tiles(ZOOM) * TILE_SIZE;
+		int n = 1000;
+		double[] lat = new double[n];
+		double[] lon = new double[n];
+		for (int i = 0; i < n; i++)
+		{
+			lat[i] = -85 + i * 0.17;
+			lon[i] = -180 + i * 0.359;
+		}
+		for (boolean ellipsoid : new boolean[] {false, true})
+		{
+			int[] xy = new int[n * 2];
+			WebMercator.getXYByLatLon(lat, lon, n, size, ellipsoid, xy);
+			double[] rlat = new double[n];
+			double[] rlon = new double[n];
+			WebMercator.getLatLonByXY(xy, n, size, ellipsoid, rlat, rlon);
+			for (int i = 0; i < n; i++)
+			{
+				assertEquals(Math.floor(WebMercator.x(lon[i]) * size), xy[i * 2], 1);
+				assertEquals(Math.floor(WebMercator.y(lat[i], ellipsoid) * size), xy[i * 2 + 1], 1);
+				assertEquals(WebMercator.latitude(xy[i * 2 + 1] / size, ellipsoid), rlat[i], 0);
+				assertEquals(WebMercator.longitude(xy[i * 2] / size), rlon[i], 0);
+			}
+		}
+	}
+
+	private static void verify(boolean ellipsoid)
+	{
+		double size = WebMercator.tiles(ZOOM) * TILE_SIZE;
+		int[] p = new int[2];
+		double[] r = new double[2];
+		for (double la = -85; la <= 85; la += 0.0137)
+		{
+			double lo = la * 2.1;
+			legacyXY(la, lo, ellipsoid, p);
+			String at = " at " + la + "," + lo;
+			assertEquals("x" + at, p[0], Math.floor(WebMercator.x(lo) * size), 1);
+			assertEquals("y" + at, p[1], Math.floor(WebMercator.y(la, ellipsoid) * size), 1);
+			legacyLatLon(p[0], p[1], ellipsoid, r);
+			double phi = WebMercator.latitude(p[1] / size, ellipsoid);
+			// legacy iteration sometimes fails, then kernel is checked against source latitude
+			// which differs by pixel rounding
+			if (Double.isNaN(r[0]))
+				assertEquals("latitude" + at, la, phi, 2 * 360 / size);
+			else
+				// legacy iteration stops at 1e-7 radians
+				assertEquals("latitude" + at, r[0], phi, 1e-5);
+			assertEquals("longitude" + at, r[1], WebMercator.longitude(p[0] / size), 1e-9);
+		}
+	}
+
+	private static void legacyXY(double lat, double lon, boolean ellipsoid, int[] xy)
+	{
+		double n = Math.pow(2.0, ZOOM);
+		xy[0] = (int) Math.floor((lon + 180.0) / 360.0 * n * TILE_SIZE);
+		if (ellipsoid)
+		{
+			double z = Math.sin(Math.toRadians(lat));
+			xy[1] = (int) Math.floor((1 - (atanh(z) - E * atanh(E * z)) / Math.PI) / 2 * n * TILE_SIZE);
+		}
+		else
+		{
+			xy[1] = (int) Math.floor((1 - (Math.log(Math.tan(Math.toRadians(lat)) + 1 / Math.cos(Math.toRadians(lat))) / Math.PI)) / 2 * n * TILE_SIZE);
+		}
+	}
+
+	private static void legacyLatLon(int map_x, int map_y, boolean ellipsoid, double[] ll)
+	{
+		double dx = map_x * 1. / TILE_SIZE;
+		double dy = map_y * 1. / TILE_SIZE;
+		double n = Math.pow(2.0, ZOOM);
+		if (ellipsoid)
+		{
+			double Zu = 2 * Math.atan(Math.exp((map_y - TILE_SIZE * n / 2) / -(TILE_SIZE * n / (2 * Math.PI)))) - Math.PI / 2;
+			double Zum1 = Zu + 1;
+			double yy = (map_y - TILE_SIZE * n / 2);
+			int i = 100000;
+			while ((Math.abs(Zum1 - Zu) > 0.0000001) && (i != 0))
+			{
+				i--;
+				Zum1 = Zu;
+				Zu = Math.asin(1 - ((1 + Math.sin(Zum1)) * Math.pow(1 - E * Math.sin(Zum1), E))
+						/ (Math.exp((2 * yy) / -(TILE_SIZE * n / (2 * Math.PI))) * Math.pow(1 + E * Math.sin(Zum1), E)));
+			}
+			ll[0] = Math.toDegrees(Zu);
+		}
+		else
+		{
+			ll[0] = Math.toDegrees(Math.atan((Math.sinh(Math.PI * (1 - 2 * dy / n)))));
+		}
+		ll[1] = dx * 360.0 / n - 180.0;
+	}
+
+	private static double atanh(double arg)
+	{
+		return 0.5 * Math.log((1 + arg) / (1 - arg));
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.androzic.map.ozf;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.androzic.map.MapPoint;
+import com.jhlabs.map.Ellipsoid;
+import com.jhlabs.map.proj.Projection;
+import com.jhlabs.map.proj.ProjectionFactory;
+
+/**
+ * Checks image transform fitted to calibration points of transverse Mercator map.
+ */
+public class ImageTransformTest
+{
+	private static final double[][] POINTS = {
+			// x, y, lat, lon
+			{0, 0, 56.0, 37.0},
+			{4000, 0, 56.0, 38.0},
+			{0, 5000, 55.5, 37.0},
+			{4000, 5000, 55.5, 38.0}
+	};
+
+	private static Projection projection()
+	{
+		Projection projection = ProjectionFactory.fromPROJ4Specification("+proj=tmerc +lon_0=39 +k=1 +x_0=500000".split(" "));
+		projection.setEllipsoid(Ellipsoid.WGS_1984);
+		projection.initialize();
+		return projection;
+	}
+
+	private static List<MapPoint> calibration()
+	{
+		List<MapPoint> points = new ArrayList<>();
+		for (double[] p : POINTS)
+		{
+			MapPoint mp = new MapPoint();
+			mp.x = (int) p[0];
+			mp.y = (int) p[1];
+			mp.lat = p[2];
+			mp.lon = p[3];
+			points.add(mp);
+		}
+		return points;
+	}
+
+	@Test
+	public void calibrationPointsAreMatched()
+	{
+		ImageTransform transform = ImageTransform.fit(projection(), calibration(), 1., 1.);
+		double[] xy = new double[2];
+		for (double[] p : POINTS)
+		{
+			transform.getXYByLatLon(p[2], p[3], xy);
+			// Map is not exactly linear in projected coordinates, allow residual of a few pixels
+			assertEquals(p[0], xy[0], 20);
+			assertEquals(p[1], xy[1], 20);
+		}
+	}
+
+	@Test
+	public void conversionRoundTrips()
+	{
+		ImageTransform transform = ImageTransform.fit(projection(), calibration(), 1., 1.);
+		double[] xy = new double[2];
+		double[] ll = new double[2];
+		for (int x = 0; x <= 4000; x += 500)
+		{
+			for (int y = 0; y <= 5000; y += 500)
+			{
+				transform.getLatLonByXY(x, y, ll);
+				transform.getXYByLatLon(ll[0], ll[1], xy);
+				// Direct and inverse conversions are fitted separately, they agree within a pixel
+				assertEquals(x, xy[0], .5);
+				assertEquals(y, xy[1], .5);
+			}
+		}
+	}
+
+	@Test
+	public void scaleIsAppliedToPixels()
+	{
+		ImageTransform full = ImageTransform.fit(projection(), calibration(), 1., 1.);
+		ImageTransform half = ImageTransform.fit(projection(), calibration(), .5, .25);
+		double[] f = new double[2];
+		double[] h = new double[2];
+		full.getXYByLatLon(55.75, 37.5, f);
+		half.getXYByLatLon(55.75, 37.5, h);
+		assertEquals(f[0] * .5, h[0], 1);
+		assertEquals(f[1] * .25, h[1], 1);
+	}
+}
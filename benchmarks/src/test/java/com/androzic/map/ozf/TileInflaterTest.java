@@ -0,0 +1,155 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.androzic.map.ozf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+
+import org.junit.Test;
+
+/**
+ * Checks that tile inflaters accept and reject streams the same way the decoder always did.
+ */
+public class TileInflaterTest
+{
+	private static final int[] BACKENDS = {OzfDecoder.INFLATER_JZLIB, OzfDecoder.INFLATER_PLATFORM};
+
+	private final byte[] reference = sampleTile();
+	private final byte[] compressed = compress(reference);
+
+	@Test
+	public void inflatesCompleteStream() throws DataFormatException
+	{
+		for (int backend : BACKENDS)
+		{
+			TileInflater inflater = InflaterPool.newInflater(backend);
+			byte[] dest = new byte[reference.length];
+			assertEquals(reference.length, inflater.inflate(compressed, 0, compressed.length, dest, dest.length));
+			assertArrayEquals(reference, dest);
+			inflater.end();
+		}
+	}
+
+	@Test
+	public void rejectsCorruptedStreams()
+	{
+		byte[] wrongChecksum = compressed.clone();
+		wrongChecksum[wrongChecksum.length - 1]++;
+		byte[] wrongBlock = compressed.clone();
+		wrongBlock[2] = (byte) 0xFF;
+
+		for (int backend : BACKENDS)
+		{
+			TileInflater inflater = InflaterPool.newInflater(backend);
+			byte[] dest = new byte[reference.length];
+			assertRejects(backend, "longer than destination", inflater, compressed, compressed.length, new byte[reference.length / 2]);
+			assertRejects(backend, "truncated", inflater, compressed, compressed.length / 2, dest);
+			assertRejects(backend, "without checksum", inflater, compressed, compressed.length - 4, dest);
+			assertRejects(backend, "wrong checksum", inflater, wrongChecksum, wrongChecksum.length, dest);
+			assertRejects(backend, "invalid block type", inflater, wrongBlock, wrongBlock.length, dest);
+			inflater.end();
+		}
+	}
+
+	@Test
+	public void reusableAfterFailure() throws DataFormatException
+	{
+		for (int backend : BACKENDS)
+		{
+			TileInflater inflater = InflaterPool.newInflater(backend);
+			byte[] dest = new byte[reference.length];
+			assertRejects(backend, "truncated", inflater, compressed, compressed.length / 2, dest);
+			Arrays.fill(dest, (byte) 0);
+			assertEquals(reference.length, inflater.inflate(compressed, 0, compressed.length, dest, dest.length));
+			assertArrayEquals(reference, dest);
+			inflater.end();
+		}
+	}
+
+	@Test
+	public void keepsDecodedPartOfTruncatedTile()
+	{
+		for (int backend : BACKENDS)
+		{
+			InflaterPool.Context context = new InflaterPool.Context(backend);
+			assertFalse(context.inflate(compressed, compressed.length / 2));
+			int size = context.inflater.getTotalOut();
+			assertTrue("backend " + backend + " decoded nothing", size > 0);
+			assertTrue(size < reference.length);
+			assertArrayEquals(Arrays.copyOf(reference, size), Arrays.copyOf(context.output, size));
+			for (int i = size; i < context.output.length; i++)
+				assertEquals(0, context.output[i]);
+			context.inflater.end();
+		}
+	}
+
+	private static void assertRejects(int backend, String message, TileInflater inflater, byte[] source, int length, byte[] dest)
+	{
+		try
+		{
+			inflater.inflate(source, 0, length, dest, dest.length);
+			fail("backend " + backend + " accepted " + message + " stream");
+		}
+		catch (DataFormatException e)
+		{
+			// expected
+		}
+	}
+
+	/**
+	 * Returns palette indexes resembling a typical map tile.
+	 */
+	private static byte[] sampleTile()
+	{
+		byte[] tile = new byte[OzfDecoder.OZF_TILE_WIDTH * OzfDecoder.OZF_TILE_HEIGHT];
+		for (int y = 0; y < OzfDecoder.OZF_TILE_HEIGHT; y++)
+		{
+			for (int x = 0; x < OzfDecoder.OZF_TILE_WIDTH; x++)
+			{
+				int index = (x * x + y * 3) / 97 & 0x1F;
+				if ((x + 2 * y) % 23 == 0)
+					index = 0xC8;
+				tile[y * OzfDecoder.OZF_TILE_WIDTH + x] = (byte) index;
+			}
+		}
+		return tile;
+	}
+
+	private static byte[] compress(byte[] data)
+	{
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		deflater.setInput(data);
+		deflater.finish();
+		byte[] buffer = new byte[data.length * 2 + 64];
+		int size = 0;
+		while (!deflater.finished())
+			size += deflater.deflate(buffer, size, buffer.length - size);
+		deflater.end();
+		return Arrays.copyOf(buffer, size);
+	}
+}
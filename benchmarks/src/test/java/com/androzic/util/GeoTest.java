@@ -0,0 +1,132 @@
+/*
+ * Androzic - android navigation client that uses OziExplorer maps (ozf2, ozfx3).
+ * Copyright (C) 2010-2015 Andrey Novikov <http://andreynovikov.info/>
+ *
+ * This file is part of Androzic application.
+ *
+ * Androzic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Androzic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Androzic. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.androzic.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks tolerance based distance against Vincenty formula.
+ */
+public class GeoTest
+{
+	private static final double[] TOLERANCES = {1e-6, 1e-5, 1e-4, Geo.APPROXIMATE, 1e-2};
+
+	@Test
+	public void randomPairsAreWithinTolerance()
+	{
+		Random random = new Random(7);
+		for (double tolerance : TOLERANCES)
+		{
+			for (int i = 0; i < 50000; i++)
+			{
+				double lat1 = (random.nextDouble() * 2 - 1) * 85;
+				double lon1 = random.nextDouble() * 360 - 180;
+				// Spans from meters to thousands of kilometers
+				double scale = Math.pow(10, random.nextDouble() * 6 - 4);
+				double lat2 = Math.max(-85, Math.min(85, lat1 + (random.nextDouble() * 2 - 1) * scale * 90));
+				double lon2 = lon1 + (random.nextDouble() * 2 - 1) * scale * 180;
+				assertWithinTolerance(lat1, lon1, lat2, lon2, tolerance);
+			}
+		}
+	}
+
+	@Test
+	public void nearPolePairsAreWithinTolerance()
+	{
+		Random random = new Random(11);
+		for (double tolerance : TOLERANCES)
+		{
+			for (int i = 0; i < 20000; i++)
+			{
+				double sign = i % 2 == 0 ? 1 : -1;
+				double lat1 = sign * (89 + random.nextDouble());
+				double lat2 = sign * (89 + random.nextDouble());
+				double lon1 = random.nextDouble() * 360 - 180;
+				double lon2 = lon1 + (random.nextDouble() * 2 - 1) * Math.pow(10, random.nextDouble() * 5 - 3);
+				assertWithinTolerance(lat1, lon1, lat2, lon2, tolerance);
+			}
+		}
+		assertWithinTolerance(90, 0, 89.9, 45, Geo.ACCURATE);
+		assertWithinTolerance(89.99, 0, 89.99, 180, Geo.ACCURATE);
+	}
+
+	@Test
+	public void antipodalPairsUseVincenty()
+	{
+		double[][] pairs = {
+				{0, 0, 0, 179.5},
+				{10, 20, -10, -160.5},
+				{45, 0, -45, 179},
+				{89, 0, -89, 180},
+				{-30, 100, 29.5, -80},
+		};
+		for (double tolerance : TOLERANCES)
+		{
+			for (double[] p : pairs)
+				assertEquals(Geo.distance(p[0], p[1], p[2], p[3]), Geo.distance(p[0], p[1], p[2], p[3], tolerance), 0);
+		}
+	}
+
+	@Test
+	public void longitudeIsWrapped()
+	{
+		assertWithinTolerance(10, 179.99, 10.01, -179.99, Geo.ACCURATE);
+		assertWithinTolerance(-60, -179.9, -60, 540.1, Geo.ACCURATE);
+		assertEquals(0, Geo.distance(30, 10, 30, 370, Geo.ACCURATE), 1e-6);
+	}
+
+	@Test
+	public void batchMatchesSingleCalls()
+	{
+		Random random = new Random(3);
+		int n = 100;
+		double[] lat = new double[n];
+		double[] lon = new double[n];
+		for (int i = 0; i < n; i++)
+		{
+			lat[i] = 55 + random.nextDouble();
+			lon[i] = 37 + random.nextDouble() * 2;
+		}
+		double[] legs = new double[n - 1];
+		Geo.distances(lat, lon, n, Geo.ACCURATE, legs);
+		for (int i = 1; i < n; i++)
+			assertEquals(Geo.distance(lat[i - 1], lon[i - 1], lat[i], lon[i], Geo.ACCURATE), legs[i - 1], 0);
+		double[] from = new double[n];
+		Geo.distances(50, 30, lat, lon, n, Geo.APPROXIMATE, from);
+		for (int i = 0; i < n; i++)
+			assertEquals(Geo.distance(50, 30, lat[i], lon[i], Geo.APPROXIMATE), from[i], 0);
+	}
+
+	private static void assertWithinTolerance(double lat1, double lon1, double lat2, double lon2, double tolerance)
+	{
+		double reference = Geo.distance(lat1, lon1, lat2, lon2);
+		double distance = Geo.distance(lat1, lon1, lat2, lon2, tolerance);
+		// Vincenty converges to about 1e-12 radians, that is few micrometers
+		double error = Math.abs(distance - reference) - 1e-5;
+		assertTrue(String.format("%f,%f %f,%f: %f instead of %f, tolerance %g", lat1, lon1, lat2, lon2, distance, reference, tolerance),
+				error <= reference * tolerance);
+	}
+}